@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.benchmarks;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.util.HttpUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures query string encoding of a query protocol (SQS style) request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpUtilsBenchmark {
+
+    private static final int ATTRIBUTES = 10;
+
+    private DefaultRequest<Void> request;
+
+    @Setup
+    public void setup() {
+        request = new DefaultRequest<Void>("AmazonSQS");
+        request.addParameter("Action", "SendMessage");
+        request.addParameter("Version", "2012-11-05");
+        request.addParameter("MessageBody", Payloads.text(256));
+        for (int i = 1; i <= ATTRIBUTES; i++) {
+            request.addParameter("MessageAttribute." + i + ".Name", "attribute-" + i);
+            request.addParameter("MessageAttribute." + i + ".Value.DataType", "String");
+            request.addParameter("MessageAttribute." + i + ".Value.StringValue",
+                    "value with spaces & symbols/" + i);
+        }
+    }
+
+    @Benchmark
+    public String encodeParameters() {
+        return HttpUtils.encodeParameters(request);
+    }
+
+    @Benchmark
+    public String urlEncodePath() {
+        return HttpUtils.urlEncode("photos/2019 summer/IMG_0001 (copy).jpg", true);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.benchmarks;
+
+import com.amazonaws.Request;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.transform.PutItemRequestMarshaller;
+import com.amazonaws.services.dynamodbv2.model.transform.QueryResultJsonUnmarshaller;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.transform.PutRecordsRequestMarshaller;
+import com.amazonaws.services.kinesis.model.transform.PutRecordsResultJsonUnmarshaller;
+import com.amazonaws.services.pinpoint.model.Event;
+import com.amazonaws.services.pinpoint.model.EventsBatch;
+import com.amazonaws.services.pinpoint.model.EventsRequest;
+import com.amazonaws.services.pinpoint.model.PublicEndpoint;
+import com.amazonaws.services.pinpoint.model.PutEventsRequest;
+import com.amazonaws.services.pinpoint.model.PutEventsResult;
+import com.amazonaws.services.pinpoint.model.transform.PutEventsRequestMarshaller;
+import com.amazonaws.services.pinpoint.model.transform.PutEventsResultJsonUnmarshaller;
+import com.amazonaws.transform.JsonUnmarshallerContext;
+import com.amazonaws.util.StringUtils;
+import com.amazonaws.util.json.JsonUtils;
+import com.amazonaws.util.json.JsonUtils.JsonEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JSON marshalling and unmarshalling of representative DynamoDB,
+ * Kinesis and Pinpoint payloads with each {@link JsonEngine}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({
+            "Gson", "Jackson", "Utf8"
+    })
+    public String engine;
+
+    @Param({
+            "10", "100"
+    })
+    public int count;
+
+    private byte[] queryResponse;
+    private byte[] putRecordsResponse;
+    private byte[] putEventsResponse;
+    private PutItemRequest putItemRequest;
+    private PutRecordsRequest putRecordsRequest;
+    private PutEventsRequest putEventsRequest;
+
+    @Setup
+    public void setup() {
+        JsonUtils.setJsonEngine(JsonEngine.valueOf(engine));
+
+        queryResponse = Payloads.dynamoDbQueryResponse(count).getBytes(StringUtils.UTF8);
+        putRecordsResponse = Payloads.kinesisPutRecordsResponse(count)
+                .getBytes(StringUtils.UTF8);
+        putEventsResponse = Payloads.pinpointPutEventsResponse(count)
+                .getBytes(StringUtils.UTF8);
+
+        final Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+        item.put("Artist", new AttributeValue().withS("No One You Know"));
+        item.put("SongTitle", new AttributeValue().withS("Call Me Today"));
+        item.put("Year", new AttributeValue().withN("2019"));
+        item.put("Genres", new AttributeValue().withSS("Rock", "Pop"));
+        final List<AttributeValue> tracks = new ArrayList<AttributeValue>();
+        for (int i = 0; i < count; i++) {
+            tracks.add(new AttributeValue().withS("Track " + i));
+        }
+        item.put("Tracks", new AttributeValue().withL(tracks));
+        putItemRequest = new PutItemRequest().withTableName("Music").withItem(item);
+
+        final List<PutRecordsRequestEntry> records = new ArrayList<PutRecordsRequestEntry>();
+        final byte[] data = Payloads.text(512).getBytes(StringUtils.UTF8);
+        for (int i = 0; i < count; i++) {
+            records.add(new PutRecordsRequestEntry()
+                    .withPartitionKey("partition-" + i)
+                    .withData(ByteBuffer.wrap(data)));
+        }
+        putRecordsRequest = new PutRecordsRequest().withStreamName("stream")
+                .withRecords(records);
+
+        final Map<String, Event> events = new HashMap<String, Event>();
+        for (int i = 0; i < count; i++) {
+            final Map<String, String> attributes = new HashMap<String, String>();
+            attributes.put("screen", "main");
+            attributes.put("button", "button-" + i);
+            final Map<String, Double> metrics = new HashMap<String, Double>();
+            metrics.put("duration", Double.valueOf(i));
+            events.put("event-" + i, new Event()
+                    .withEventType("_session.start")
+                    .withTimestamp("2019-01-01T00:00:00.000Z")
+                    .withAppPackageName("com.example.app")
+                    .withAttributes(attributes)
+                    .withMetrics(metrics));
+        }
+        final Map<String, EventsBatch> batch = new HashMap<String, EventsBatch>();
+        batch.put("endpoint-1", new EventsBatch()
+                .withEndpoint(new PublicEndpoint().withChannelType("GCM").withAddress("token"))
+                .withEvents(events));
+        putEventsRequest = new PutEventsRequest().withApplicationId("app")
+                .withEventsRequest(new EventsRequest().withBatchItem(batch));
+    }
+
+    @Benchmark
+    public QueryResult dynamoDbQueryUnmarshall() throws Exception {
+        return QueryResultJsonUnmarshaller.getInstance().unmarshall(context(queryResponse));
+    }
+
+    @Benchmark
+    public Request<PutItemRequest> dynamoDbPutItemMarshall() {
+        return new PutItemRequestMarshaller().marshall(putItemRequest);
+    }
+
+    @Benchmark
+    public PutRecordsResult kinesisPutRecordsUnmarshall() throws Exception {
+        return PutRecordsResultJsonUnmarshaller.getInstance()
+                .unmarshall(context(putRecordsResponse));
+    }
+
+    @Benchmark
+    public Request<PutRecordsRequest> kinesisPutRecordsMarshall() {
+        return new PutRecordsRequestMarshaller().marshall(putRecordsRequest);
+    }
+
+    @Benchmark
+    public PutEventsResult pinpointPutEventsUnmarshall() throws Exception {
+        return PutEventsResultJsonUnmarshaller.getInstance()
+                .unmarshall(context(putEventsResponse));
+    }
+
+    @Benchmark
+    public Request<PutEventsRequest> pinpointPutEventsMarshall() {
+        return new PutEventsRequestMarshaller().marshall(putEventsRequest);
+    }
+
+    private static JsonUnmarshallerContext context(byte[] json) {
+        return new JsonUnmarshallerContext(JsonUtils.getJsonReader(
+                new ByteArrayInputStream(json)));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.benchmarks;
+
+/**
+ * Representative request and response bodies shared by the benchmarks.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * @param length the number of characters.
+     * @return a printable ASCII string of the given length.
+     */
+    static String text(int length) {
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        return sb.toString();
+    }
+
+    static String dynamoDbQueryRequest() {
+        return "{\"TableName\":\"Music\","
+                + "\"KeyConditionExpression\":\"Artist = :artist\","
+                + "\"ExpressionAttributeValues\":{\":artist\":{\"S\":\"No One You Know\"}},"
+                + "\"ReturnConsumedCapacity\":\"TOTAL\"}";
+    }
+
+    /**
+     * @param items the number of items.
+     * @return a DynamoDB Query response with items of mixed attribute types.
+     */
+    static String dynamoDbQueryResponse(int items) {
+        final StringBuilder sb = new StringBuilder("{\"Count\":").append(items)
+                .append(",\"ScannedCount\":").append(items).append(",\"Items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"Artist\":{\"S\":\"No One You Know\"},")
+                    .append("\"SongTitle\":{\"S\":\"Song ").append(i).append("\"},")
+                    .append("\"Year\":{\"N\":\"").append(1990 + i % 30).append("\"},")
+                    .append("\"Price\":{\"N\":\"1.29\"},")
+                    .append("\"Explicit\":{\"BOOL\":false},")
+                    .append("\"Cover\":{\"B\":\"dGhpcyB0ZXh0IGlzIGJhc2U2NC1lbmNvZGVk\"},")
+                    .append("\"Genres\":{\"SS\":[\"Rock\",\"Pop\"]},")
+                    .append("\"Tags\":{\"L\":[{\"S\":\"live\"},{\"N\":\"3\"}]},")
+                    .append("\"Album\":{\"M\":{\"Title\":{\"S\":\"Somewhat Famous\"},")
+                    .append("\"Tracks\":{\"N\":\"12\"}}}}");
+        }
+        sb.append("],\"LastEvaluatedKey\":{\"Artist\":{\"S\":\"No One You Know\"}},")
+                .append("\"ConsumedCapacity\":{\"TableName\":\"Music\",\"CapacityUnits\":")
+                .append("12.5}}");
+        return sb.toString();
+    }
+
+    /**
+     * @param records the number of records.
+     * @return a Kinesis PutRecords response.
+     */
+    static String kinesisPutRecordsResponse(int records) {
+        final StringBuilder sb = new StringBuilder("{\"FailedRecordCount\":1,\"Records\":[");
+        for (int i = 0; i < records; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (i == 1) {
+                sb.append("{\"ErrorCode\":\"ProvisionedThroughputExceededException\",")
+                        .append("\"ErrorMessage\":\"Rate exceeded for shard\"}");
+            } else {
+                sb.append("{\"SequenceNumber\":\"4954420359838591728637051739059153")
+                        .append(1000000 + i).append("\",\"ShardId\":\"shardId-00000000000")
+                        .append(i % 4).append("\"}");
+            }
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    /**
+     * @param events the number of events.
+     * @return a Pinpoint PutEvents response for one endpoint.
+     */
+    static String pinpointPutEventsResponse(int events) {
+        final StringBuilder sb = new StringBuilder("{\"Results\":{\"endpoint-1\":{")
+                .append("\"EndpointItemResponse\":{\"Message\":\"Accepted\",\"StatusCode\":202},")
+                .append("\"EventsItemResponse\":{");
+        for (int i = 0; i < events; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\"event-").append(i)
+                    .append("\":{\"Message\":\"Accepted\",\"StatusCode\":202}");
+        }
+        sb.append("}}}}");
+        return sb.toString();
+    }
+
+    /**
+     * @param messages the number of messages.
+     * @return an SQS ReceiveMessage response.
+     */
+    static String sqsReceiveMessageResponse(int messages) {
+        final StringBuilder sb = new StringBuilder(
+                "<ReceiveMessageResponse xmlns=\"http://queue.amazonaws.com/doc/2012-11-05/\">")
+                .append("<ReceiveMessageResult>");
+        for (int i = 0; i < messages; i++) {
+            sb.append("<Message><MessageId>5fea7756-0ea4-451a-a703-a558b933e27").append(i)
+                    .append("</MessageId><ReceiptHandle>")
+                    .append("MbZj6wDWli+JvwwJaBV+3dcjk2YW2vA3+STFFljTM8tJJg6HRG6PYSasuWXPJB+Cw")
+                    .append("</ReceiptHandle><MD5OfBody>fafb00f5732ab283681e124bf8747ed1")
+                    .append("</MD5OfBody><Body>").append(text(200)).append("</Body>")
+                    .append("<Attribute><Name>SenderId</Name><Value>195004372649</Value>")
+                    .append("</Attribute><Attribute><Name>SentTimestamp</Name>")
+                    .append("<Value>1238099229000</Value></Attribute></Message>");
+        }
+        sb.append("</ReceiveMessageResult><ResponseMetadata><RequestId>")
+                .append("b6633655-283d-45b4-aee4-4e84e0ae6afa</RequestId></ResponseMetadata>")
+                .append("</ReceiveMessageResponse>");
+        return sb.toString();
+    }
+
+    /**
+     * @param objects the number of objects.
+     * @return an S3 ListObjects response.
+     */
+    static String s3ListObjectsResponse(int objects) {
+        final StringBuilder sb = new StringBuilder(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>bucket</Name><Prefix></Prefix><Marker></Marker>")
+                .append("<MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated>");
+        for (int i = 0; i < objects; i++) {
+            sb.append("<Contents><Key>photos/2019/IMG_").append(10000 + i)
+                    .append(".jpg</Key><LastModified>2019-01-01T00:00:00.000Z</LastModified>")
+                    .append("<ETag>&quot;828ef3fdfa96f00ad9f27c383fc9ac7f&quot;</ETag>")
+                    .append("<Size>").append(1024 * i).append("</Size>")
+                    .append("<Owner><ID>75aa57f09aa0c8caeab4f8c24e99d10f8e7faeebf76c078efc7c6")
+                    .append("caea54ba06a</ID><DisplayName>owner</DisplayName></Owner>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+        }
+        sb.append("</ListBucketResult>");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.benchmarks;
+
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.StaxResponseHandler;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3ObjectSummaryListener;
+import com.amazonaws.services.s3.model.transform.XmlResponsesSaxParser;
+import com.amazonaws.services.s3.model.transform.XmlResponsesSaxParser.ListBucketHandler;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.transform.ReceiveMessageResultStaxUnmarshaller;
+import com.amazonaws.util.StringUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures XML unmarshalling of an SQS ReceiveMessage response through
+ * {@link StaxResponseHandler} and of an S3 ListObjects response through
+ * {@link XmlResponsesSaxParser}, which is how S3 parses its responses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlBenchmark {
+
+    @Param({
+            "10", "1000"
+    })
+    public int count;
+
+    private byte[] receiveMessageResponse;
+    private byte[] listObjectsResponse;
+    private StaxResponseHandler<ReceiveMessageResult> sqsHandler;
+    private XmlResponsesSaxParser s3Parser;
+
+    @Setup
+    public void setup() {
+        receiveMessageResponse = Payloads.sqsReceiveMessageResponse(count)
+                .getBytes(StringUtils.UTF8);
+        listObjectsResponse = Payloads.s3ListObjectsResponse(count).getBytes(StringUtils.UTF8);
+        sqsHandler = new StaxResponseHandler<ReceiveMessageResult>(
+                ReceiveMessageResultStaxUnmarshaller.getInstance());
+        s3Parser = new XmlResponsesSaxParser();
+    }
+
+    @Benchmark
+    public AmazonWebServiceResponse<ReceiveMessageResult> sqsReceiveMessage() throws Exception {
+        return sqsHandler.handle(HttpResponse.builder()
+                .statusCode(200)
+                .content(new ByteArrayInputStream(receiveMessageResponse))
+                .build());
+    }
+
+    @Benchmark
+    public ListBucketHandler s3ListObjects() throws Exception {
+        return s3Parser.parseListBucketObjectsResponse(
+                new ByteArrayInputStream(listObjectsResponse), false);
+    }
+
+    @Benchmark
+    public void s3ListObjectsToListener(final Blackhole blackhole) throws Exception {
+        s3Parser.parseListBucketObjectsResponse(new ByteArrayInputStream(listObjectsResponse),
+                false, new S3ObjectSummaryListener() {
+                    @Override
+                    public void onObjectSummary(S3ObjectSummary summary) {
+                        blackhole.consume(summary);
+                    }
+                });
+    }
+}
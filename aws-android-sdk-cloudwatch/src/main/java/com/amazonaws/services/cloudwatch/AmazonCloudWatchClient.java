@@ -220,7 +220,7 @@ public class AmazonCloudWatchClient extends AmazonWebServiceClient implements Am
      */
     public AmazonCloudWatchClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -215,7 +215,7 @@ public class AmazonCognitoIdentityProviderClient extends AmazonWebServiceClient
      */
     public AmazonCognitoIdentityProviderClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
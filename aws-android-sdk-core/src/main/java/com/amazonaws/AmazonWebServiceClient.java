@@ -25,13 +25,14 @@ import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.http.AmazonHttpClient;
 import com.amazonaws.http.ExecutionContext;
 import com.amazonaws.http.HttpClient;
-import com.amazonaws.http.UrlHttpClient;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsCompact;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
 import com.amazonaws.util.AwsHostNameUtils;
 import com.amazonaws.util.Classes;
 import com.amazonaws.util.StringUtils;
@@ -118,7 +119,7 @@ public abstract class AmazonWebServiceClient {
      */
     protected AmazonWebServiceClient(
             final ClientConfiguration clientConfiguration) {
-        this(clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -133,7 +134,7 @@ public abstract class AmazonWebServiceClient {
     protected AmazonWebServiceClient(
             final ClientConfiguration clientConfiguration,
             final RequestMetricCollector requestMetricCollector) {
-        this(clientConfiguration, new UrlHttpClient(clientConfiguration), null);
+        this(clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration), null);
     }
 
     /**
@@ -564,8 +565,33 @@ public abstract class AmazonWebServiceClient {
     }
 
     protected ExecutionContext createExecutionContext(final AmazonWebServiceRequest req) {
-        final boolean isMetricsEnabled = isRequestMetricsEnabled(req) || isProfilingEnabled();
-        return new ExecutionContext(requestHandler2s, isMetricsEnabled, this);
+        return new ExecutionContext(requestHandler2s, createAwsRequestMetrics(req), this);
+    }
+
+    /**
+     * Returns the request metrics to record the execution of the given request
+     * into: the compact metrics if the request metric collector in use is
+     * satisfied with those, the full metrics if metrics or profiling are
+     * otherwise enabled, and the minimal metrics if not.
+     *
+     * @param req the original request.
+     * @return the request metrics.
+     * @deprecated metrics is deprecated
+     */
+    @Deprecated
+    protected final AWSRequestMetrics createAwsRequestMetrics(final AmazonWebServiceRequest req) {
+        RequestMetricCollector c = req.getRequestMetricCollector();
+        if (c == null || !c.isEnabled()) {
+            c = requestMetricCollector();
+        }
+        if (c != null && c.isEnabled()) {
+            return c.isCompactMetricsSupported()
+                    ? new AWSRequestMetricsCompact()
+                    : new AWSRequestMetricsFullSupport();
+        }
+        return isProfilingEnabled()
+                ? new AWSRequestMetricsFullSupport()
+                : new AWSRequestMetrics();
     }
 
     protected final ExecutionContext createExecutionContext(final Request<?> req) {
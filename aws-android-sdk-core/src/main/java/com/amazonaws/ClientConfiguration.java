@@ -17,10 +17,16 @@ package com.amazonaws;
 
 import com.amazonaws.http.IdleConnectionReaper;
 import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.AdaptiveRateLimiter;
+import com.amazonaws.retry.RetryBudget;
 import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.util.VersionInfoUtils;
 
 import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.net.ssl.TrustManager;
 
@@ -65,6 +71,19 @@ public class ClientConfiguration {
      */
     public static final boolean DEFAULT_USE_REAPER = true;
 
+    /**
+     * The default maximum time in milliseconds a pooled connection of the
+     * {@link com.amazonaws.http.NioHttpClient} may sit idle before it is
+     * closed.
+     */
+    public static final long DEFAULT_CONNECTION_MAX_IDLE_MILLIS = 60 * 1000;
+
+    /**
+     * The default minimum size in bytes of a request payload that is
+     * compressed when request compression is enabled.
+     */
+    public static final int DEFAULT_REQUEST_MIN_COMPRESSION_SIZE_BYTES = 10 * 1024;
+
     /** The HTTP user agent header passed with all HTTP requests. */
     private String userAgent = DEFAULT_USER_AGENT;
 
@@ -79,6 +98,12 @@ public class ClientConfiguration {
     /** The retry policy upon failed requests. **/
     private RetryPolicy retryPolicy = DEFAULT_RETRY_POLICY;
 
+    /** Optional retry budget shared by the clients using it. */
+    private RetryBudget retryBudget;
+
+    /** Optional adaptive send-rate limiter shared by the clients using it. */
+    private AdaptiveRateLimiter rateLimiter;
+
     /** Optionally specifies the local address to bind to */
     private InetAddress localAddress;
 
@@ -184,6 +209,36 @@ public class ClientConfiguration {
      */
     private boolean enableGzip = false;
 
+    /**
+     * Optional whether to send requests through the pooled
+     * {@link com.amazonaws.http.NioHttpClient} instead of the default
+     * {@link com.amazonaws.http.UrlHttpClient}.
+     */
+    private boolean useNioHttpClient = false;
+
+    /**
+     * The maximum time in milliseconds a pooled connection may sit idle before
+     * it is closed.
+     */
+    private long connectionMaxIdleMillis = DEFAULT_CONNECTION_MAX_IDLE_MILLIS;
+
+    /**
+     * Optional whether to gzip the payload of every request.
+     */
+    private boolean requestCompressionEnabled = false;
+
+    /**
+     * The request classes of the operations whose payload is gzipped even if
+     * request compression is not enabled for every request.
+     */
+    private Set<Class<? extends AmazonWebServiceRequest>> requestCompressionOperations =
+            Collections.emptySet();
+
+    /**
+     * The minimum size in bytes of a request payload that is compressed.
+     */
+    private int requestMinCompressionSizeBytes = DEFAULT_REQUEST_MIN_COMPRESSION_SIZE_BYTES;
+
     /**
      * Constructor.
      */
@@ -199,6 +254,8 @@ public class ClientConfiguration {
         this.maxConnections = other.maxConnections;
         this.maxErrorRetry = other.maxErrorRetry;
         this.retryPolicy = other.retryPolicy;
+        this.retryBudget = other.retryBudget;
+        this.rateLimiter = other.rateLimiter;
         this.localAddress = other.localAddress;
         this.protocol = other.protocol;
         this.proxyDomain = other.proxyDomain;
@@ -217,6 +274,11 @@ public class ClientConfiguration {
         this.trustManager = other.trustManager;
         this.curlLogging = other.curlLogging;
         this.enableGzip = other.enableGzip;
+        this.useNioHttpClient = other.useNioHttpClient;
+        this.connectionMaxIdleMillis = other.connectionMaxIdleMillis;
+        this.requestCompressionEnabled = other.requestCompressionEnabled;
+        this.requestCompressionOperations = other.requestCompressionOperations;
+        this.requestMinCompressionSizeBytes = other.requestMinCompressionSizeBytes;
     }
 
     /**
@@ -621,6 +683,79 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the retry budget shared by the clients using this
+     * configuration, or null if retries are only bounded by the retry policy.
+     *
+     * @return The retry budget, or null.
+     */
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Sets the retry budget used by clients created with this configuration.
+     * Each retry consumes tokens from the budget and is not made once the
+     * budget is exhausted; successful requests refill it. Setting the same
+     * instance on several configurations shares the budget across clients.
+     *
+     * @param retryBudget The retry budget, or null to disable it.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Sets the retry budget used by clients created with this configuration,
+     * and returns the updated ClientConfiguration object.
+     *
+     * @param retryBudget The retry budget, or null to disable it.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withRetryBudget(RetryBudget retryBudget) {
+        setRetryBudget(retryBudget);
+        return this;
+    }
+
+    /**
+     * Returns the adaptive send-rate limiter shared by the clients using this
+     * configuration, or null if sends are not rate limited.
+     *
+     * @return The rate limiter, or null.
+     */
+    public AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the adaptive send-rate limiter used by clients created with this
+     * configuration. Once a request is throttled by the service, every
+     * attempt waits for the limiter before it is sent. Setting the same
+     * instance on several configurations shares the allowed rate across
+     * clients.
+     *
+     * @param rateLimiter The rate limiter, or null to disable it.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setRateLimiter(AdaptiveRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sets the adaptive send-rate limiter used by clients created with this
+     * configuration, and returns the updated ClientConfiguration object.
+     *
+     * @param rateLimiter The rate limiter, or null to disable it.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withRateLimiter(AdaptiveRateLimiter rateLimiter) {
+        setRateLimiter(rateLimiter);
+        return this;
+    }
+
     /**
      * Returns the maximum number of retry attempts for failed retryable
      * requests (ex: 5xx error responses from a service). This method returns -1
@@ -1132,4 +1267,203 @@ public class ClientConfiguration {
         setEnableGzip(enableGzip);
         return this;
     }
+
+    /**
+     * Returns whether requests are sent through the pooled
+     * {@link com.amazonaws.http.NioHttpClient}. Service clients that are not
+     * given an {@link com.amazonaws.http.HttpClient} use the NIO client
+     * instead of the default {@link com.amazonaws.http.UrlHttpClient} when
+     * this is set, unless a proxy host is configured, which the NIO client
+     * doesn't support; an HttpClient passed to a client is always honored.
+     *
+     * @return true if the NIO HTTP client is used; false by default.
+     */
+    public boolean useNioHttpClient() {
+        return useNioHttpClient;
+    }
+
+    /**
+     * Sets whether requests are sent through the pooled
+     * {@link com.amazonaws.http.NioHttpClient}.
+     *
+     * @param use true to use the NIO HTTP client.
+     */
+    public void setUseNioHttpClient(boolean use) {
+        this.useNioHttpClient = use;
+    }
+
+    /**
+     * Sets whether requests are sent through the pooled
+     * {@link com.amazonaws.http.NioHttpClient}, and returns the updated
+     * ClientConfiguration object so that additional calls may be chained
+     * together.
+     *
+     * @param use true to use the NIO HTTP client.
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withNioHttpClient(boolean use) {
+        setUseNioHttpClient(use);
+        return this;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a pooled connection may sit
+     * idle before it is closed. Currently only used by the
+     * {@link com.amazonaws.http.NioHttpClient}.
+     *
+     * @return the maximum idle time of a pooled connection.
+     */
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds a pooled connection may sit idle
+     * before it is closed. It should be shorter than the idle timeout of the
+     * service endpoint, otherwise requests may be sent on connections the
+     * service has already closed.
+     *
+     * @param connectionMaxIdleMillis the maximum idle time of a pooled
+     *            connection.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds a pooled connection may sit idle
+     * before it is closed, and returns the updated ClientConfiguration object
+     * so that additional calls may be chained together.
+     *
+     * @param connectionMaxIdleMillis the maximum idle time of a pooled
+     *            connection.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        setConnectionMaxIdleMillis(connectionMaxIdleMillis);
+        return this;
+    }
+
+    /**
+     * Checks if the payload of every request is gzipped before it is signed
+     * and sent. Payloads smaller than
+     * {@link #getRequestMinCompressionSizeBytes()} are sent as is.
+     *
+     * @return true if request compression is enabled for every operation.
+     */
+    public boolean isRequestCompressionEnabled() {
+        return requestCompressionEnabled;
+    }
+
+    /**
+     * Sets whether to gzip the payload of every request before it is signed
+     * and sent. Only enable it for services that accept a
+     * <code>Content-Encoding: gzip</code> request; use
+     * {@link #setRequestCompressionOperations(Collection)} to enable it for
+     * some operations only.
+     *
+     * @param requestCompressionEnabled whether to compress every request.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+        this.requestCompressionEnabled = requestCompressionEnabled;
+    }
+
+    /**
+     * Sets whether to gzip the payload of every request before it is signed
+     * and sent, and returns the updated ClientConfiguration object so that
+     * additional calls may be chained together.
+     *
+     * @param requestCompressionEnabled whether to compress every request.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withRequestCompressionEnabled(boolean requestCompressionEnabled) {
+        setRequestCompressionEnabled(requestCompressionEnabled);
+        return this;
+    }
+
+    /**
+     * Returns the request classes of the operations whose payload is gzipped
+     * even if request compression is not enabled for every request.
+     *
+     * @return an unmodifiable set of request classes.
+     */
+    public Set<Class<? extends AmazonWebServiceRequest>> getRequestCompressionOperations() {
+        return requestCompressionOperations;
+    }
+
+    /**
+     * Sets the operations whose payload is gzipped before it is signed and
+     * sent, identified by their request class, eg
+     * <code>PutRecordBatchRequest.class</code>.
+     *
+     * @param operations the request classes of the operations.
+     */
+    public void setRequestCompressionOperations(
+            Collection<Class<? extends AmazonWebServiceRequest>> operations) {
+        this.requestCompressionOperations = operations == null
+                ? Collections.<Class<? extends AmazonWebServiceRequest>> emptySet()
+                : Collections.unmodifiableSet(
+                        new HashSet<Class<? extends AmazonWebServiceRequest>>(operations));
+    }
+
+    /**
+     * Sets the operations whose payload is gzipped before it is signed and
+     * sent, identified by their request class, and returns the updated
+     * ClientConfiguration object so that additional calls may be chained
+     * together.
+     *
+     * @param operations the request classes of the operations.
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withRequestCompressionOperations(
+            Collection<Class<? extends AmazonWebServiceRequest>> operations) {
+        setRequestCompressionOperations(operations);
+        return this;
+    }
+
+    /**
+     * Returns the minimum size in bytes of a request payload that is
+     * compressed. Smaller payloads are sent as is since they do not shrink
+     * enough to pay for the compression.
+     *
+     * @return the minimum size of a compressed payload.
+     */
+    public int getRequestMinCompressionSizeBytes() {
+        return requestMinCompressionSizeBytes;
+    }
+
+    /**
+     * Sets the minimum size in bytes of a request payload that is compressed.
+     *
+     * @param requestMinCompressionSizeBytes the minimum size of a compressed
+     *            payload.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public void setRequestMinCompressionSizeBytes(int requestMinCompressionSizeBytes) {
+        if (requestMinCompressionSizeBytes < 0) {
+            throw new IllegalArgumentException(
+                    "requestMinCompressionSizeBytes must not be negative");
+        }
+        this.requestMinCompressionSizeBytes = requestMinCompressionSizeBytes;
+    }
+
+    /**
+     * Sets the minimum size in bytes of a request payload that is compressed,
+     * and returns the updated ClientConfiguration object so that additional
+     * calls may be chained together.
+     *
+     * @param requestMinCompressionSizeBytes the minimum size of a compressed
+     *            payload.
+     * @return The updated ClientConfiguration object.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ClientConfiguration withRequestMinCompressionSizeBytes(
+            int requestMinCompressionSizeBytes) {
+        setRequestMinCompressionSizeBytes(requestMinCompressionSizeBytes);
+        return this;
+    }
 }
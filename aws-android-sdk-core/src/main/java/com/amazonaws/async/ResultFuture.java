@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.async;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future completed explicitly by an asynchronous operation, rather than by a
+ * task. Cancelling it does not interrupt anything; the operation is expected
+ * to check {@link #isDone()} before each step, and any future registered
+ * with {@link #cancelWith(Future)} is cancelled along with it.
+ *
+ * @param <V> the result type.
+ */
+public final class ResultFuture<V> implements Future<V> {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private boolean cancelled;
+    private V value;
+    private Throwable failure;
+    private Future<?> dependent;
+
+    /**
+     * Completes the future with a result or a failure.
+     *
+     * @param result the result, used if failure is null.
+     * @param t the failure, or null if the operation succeeded.
+     * @return false if the future was already completed or cancelled.
+     */
+    public synchronized boolean complete(V result, Throwable t) {
+        if (done.getCount() == 0) {
+            return false;
+        }
+        value = result;
+        failure = t;
+        done.countDown();
+        return true;
+    }
+
+    /**
+     * Registers a future that is cancelled when this one is, such as the
+     * future of a request this operation is waiting on. It is cancelled right
+     * away if this future is already cancelled.
+     *
+     * @param future the future to cancel along with this one.
+     */
+    public void cancelWith(Future<?> future) {
+        synchronized (this) {
+            if (!cancelled) {
+                dependent = future;
+                return;
+            }
+        }
+        future.cancel(false);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final Future<?> toCancel;
+        synchronized (this) {
+            if (done.getCount() == 0) {
+                return false;
+            }
+            cancelled = true;
+            done.countDown();
+            toCancel = dependent;
+        }
+        if (toCancel != null) {
+            toCancel.cancel(mayInterruptIfRunning);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        done.await();
+        return report();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    private synchronized V report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return value;
+    }
+}
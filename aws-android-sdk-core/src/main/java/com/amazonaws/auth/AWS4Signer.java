@@ -295,13 +295,10 @@ public class AWS4Signer extends AbstractAWSSigner
                 getCanonicalRequest(request, contentSha256));
 
         // AWS4 uses a series of derived keys, formed by hashing different
-        // pieces of data
-        final byte[] kSecret = ("AWS4" + sanitizedCredentials.getAWSSecretKey())
-                .getBytes(StringUtils.UTF8);
-        final byte[] kDate = sign(dateStamp, kSecret, SigningAlgorithm.HmacSHA256);
-        final byte[] kRegion = sign(regionName, kDate, SigningAlgorithm.HmacSHA256);
-        final byte[] kService = sign(serviceName, kRegion, SigningAlgorithm.HmacSHA256);
-        final byte[] kSigning = sign(TERMINATOR, kService, SigningAlgorithm.HmacSHA256);
+        // pieces of data. The derived key only changes with the secret key
+        // and the scope, so it is shared through the signing key cache.
+        final byte[] kSigning = SigningKeyCache.getDefault().getSigningKey(
+                sanitizedCredentials.getAWSSecretKey(), dateStamp, regionName, serviceName);
 
         final byte[] signature = sign(stringToSign.getBytes(StringUtils.UTF8), kSigning,
                 SigningAlgorithm.HmacSHA256);
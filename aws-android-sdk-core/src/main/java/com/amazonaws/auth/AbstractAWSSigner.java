@@ -33,16 +33,12 @@ import java.io.InputStream;
 import java.net.URI;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
 /**
  * Abstract base class for AWS signing protocol implementations. Provides
  * utilities commonly needed by signing protocols such as computing
@@ -54,25 +50,12 @@ public abstract class AbstractAWSSigner implements Signer {
 
     /** Empty sha256 hex. */
     public static final String EMPTY_STRING_SHA256_HEX;
-    private static final ThreadLocal<MessageDigest> SHA256_MESSAGE_DIGEST;
+    private static final String SHA256 = "SHA-256";
     private static final int DEFAULT_BUFFER_SIZE = 1024;
     private static final int BUFFER_SIZE_MULTIPLIER = 5;
     private static final int TIME_MILLISEC = 1000;
 
     static {
-        SHA256_MESSAGE_DIGEST = new ThreadLocal<MessageDigest>() {
-            @Override
-            protected MessageDigest initialValue() {
-                try {
-                    return MessageDigest.getInstance("SHA-256");
-                } catch (final NoSuchAlgorithmException e) {
-                    throw new AmazonClientException(
-                            "Unable to get SHA256 Function"
-                                    + e.getMessage(),
-                            e);
-                }
-            }
-        };
         EMPTY_STRING_SHA256_HEX = BinaryUtils.toHex(doHash(""));
     }
 
@@ -119,9 +102,7 @@ public abstract class AbstractAWSSigner implements Signer {
 
     protected byte[] sign(byte[] data, byte[] key, SigningAlgorithm algorithm) {
         try {
-            final Mac mac = Mac.getInstance(algorithm.toString());
-            mac.init(new SecretKeySpec(key, algorithm.toString()));
-            return mac.doFinal(data);
+            return CryptoPrimitivePool.hmac(data, key, algorithm);
         } catch (final Exception e) {
             throw new AmazonClientException("Unable to calculate a request signature: "
                     + e.getMessage(), e);
@@ -141,9 +122,7 @@ public abstract class AbstractAWSSigner implements Signer {
 
     private static byte[] doHash(String text) {
         try {
-            final MessageDigest md = getMessageDigestInstance();
-            md.update(text.getBytes(UTF8));
-            return md.digest();
+            return CryptoPrimitivePool.digest(SHA256, text.getBytes(UTF8));
         } catch (final Exception e) {
             throw new AmazonClientException(
                     "Unable to compute hash while signing request: "
@@ -154,8 +133,9 @@ public abstract class AbstractAWSSigner implements Signer {
 
     @SuppressWarnings("checkstyle:emptystatement")
     protected byte[] hash(InputStream input) {
+        MessageDigest md = null;
         try {
-            final MessageDigest md = getMessageDigestInstance();
+            md = CryptoPrimitivePool.borrowMessageDigest(SHA256);
             @SuppressWarnings("resource")
             final DigestInputStream digestInputStream = new SdkDigestInputStream(input, md);
             final byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
@@ -166,6 +146,10 @@ public abstract class AbstractAWSSigner implements Signer {
         } catch (final Exception e) {
             throw new AmazonClientException("Unable to compute hash while signing request: "
                     + e.getMessage(), e);
+        } finally {
+            if (md != null) {
+                CryptoPrimitivePool.releaseMessageDigest(md);
+            }
         }
     }
 
@@ -178,9 +162,7 @@ public abstract class AbstractAWSSigner implements Signer {
      */
     public byte[] hash(byte[] data) {
         try {
-            final MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(data);
-            return md.digest();
+            return CryptoPrimitivePool.digest(SHA256, data);
         } catch (final Exception e) {
             throw new AmazonClientException("Unable to compute hash while signing request: "
                     + e.getMessage(), e);
@@ -460,15 +442,4 @@ public abstract class AbstractAWSSigner implements Signer {
      */
     protected abstract void addSessionCredentials(Request<?> request,
             AWSSessionCredentials credentials);
-
-    /**
-     * Returns the re-usable thread local version of MessageDigest.
-     *
-     * @return
-     */
-    private static MessageDigest getMessageDigestInstance() {
-        final MessageDigest messageDigest = SHA256_MESSAGE_DIGEST.get();
-        messageDigest.reset();
-        return messageDigest;
-    }
 }
@@ -464,6 +464,10 @@ public class CognitoCachingCredentialsProvider
 
     @Override
     public AWSSessionCredentials getCredentials() {
+        final AWSSessionCredentials credentials = getCurrentCredentials();
+        if (credentials != null) {
+            return credentials;
+        }
     	credentialsLock.writeLock().lock();
         try {
             // return only if the credentials are valid
@@ -65,11 +65,14 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     /** Default threshold for refreshing session credentials */
     public static final int DEFAULT_THRESHOLD_SECONDS = 500;
 
-    /** The current session credentials */
-    protected AWSSessionCredentials sessionCredentials;
+    /**
+     * The current session credentials. They are read without locking, so the
+     * credentials must be assigned before their expiration.
+     */
+    protected volatile AWSSessionCredentials sessionCredentials;
 
     /** The expiration time for the current session credentials */
-    protected Date sessionCredentialsExpiration;
+    protected volatile Date sessionCredentialsExpiration;
 
     /** The current Token */
     protected String token;
@@ -90,6 +93,13 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
 
     protected ReentrantReadWriteLock credentialsLock;
 
+    private final CredentialsRefresher refresher = new CredentialsRefresher(new Runnable() {
+        @Override
+        public void run() {
+            refreshInBackground();
+        }
+    });
+
     /**
      * Constructs a new {@link CognitoCredentialsProvider}, which will use the
      * specified Amazon Cognito identity pool to make a request, using the basic
@@ -455,10 +465,16 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     /**
      * If the current session has expired/credentials are invalid, a new session
      * is started, establishing the credentials. In either case, those
-     * credentials are returned
+     * credentials are returned. Credentials within the refresh threshold are
+     * still returned while new ones are fetched in the background, until they
+     * are about to expire.
      */
     @Override
     public AWSSessionCredentials getCredentials() {
+        final AWSSessionCredentials credentials = getCurrentCredentials();
+        if (credentials != null) {
+            return credentials;
+        }
         credentialsLock.writeLock().lock();
         try {
             if (needsNewSession()) {
@@ -512,7 +528,10 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
     /**
      * Set the refresh threshold for the session credentials created by this
      * client in seconds. This value will be used internally to determine if new
-     * credentials should be fetched from STS.
+     * credentials should be fetched from STS. Credentials within the threshold
+     * are refreshed in the background while they are still handed out, and
+     * callers only wait for new credentials during the last minute before
+     * expiry.
      *
      * @see com.amazonaws.services.securitytoken.model.AssumeRoleWithWebIdentityRequest
      * @param refreshThreshold The new refresh threshold for session credentials
@@ -834,6 +853,49 @@ public class CognitoCredentialsProvider implements AWSCredentialsProvider {
 
     }
 
+    /**
+     * Returns the current credentials without locking, unless they are missing
+     * or about to expire. Credentials within the refresh threshold trigger a
+     * single background refresh.
+     *
+     * @return the current credentials, or null if the caller has to wait for
+     *         new ones.
+     */
+    protected AWSSessionCredentials getCurrentCredentials() {
+        // Read the expiration first: it is assigned after the credentials.
+        final Date expiration = sessionCredentialsExpiration;
+        final AWSSessionCredentials credentials = sessionCredentials;
+        if (credentials == null || expiration == null) {
+            return null;
+        }
+        final long currentTime = System.currentTimeMillis()
+                - SDKGlobalConfiguration.getGlobalTimeOffset() * 1000;
+        final long timeRemaining = expiration.getTime() - currentTime;
+        final long thresholdMillis = refreshThreshold * 1000L;
+        if (timeRemaining >= thresholdMillis) {
+            return credentials;
+        }
+        if (timeRemaining < Math.min(thresholdMillis, CredentialsRefresher.MIN_REMAINING_MILLIS)) {
+            return null;
+        }
+        refresher.refreshAsync();
+        return credentials;
+    }
+
+    /**
+     * Refreshes the credentials unless another thread already has.
+     */
+    private void refreshInBackground() {
+        credentialsLock.writeLock().lock();
+        try {
+            if (sessionCredentials != null && needsNewSession()) {
+                refresh();
+            }
+        } finally {
+            credentialsLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Returns true if a new STS session needs to be started. A new STS session
      * is needed when no session has been started yet, or if the last session is
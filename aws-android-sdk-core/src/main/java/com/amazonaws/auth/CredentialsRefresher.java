@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import com.amazonaws.logging.Log;
+import com.amazonaws.logging.LogFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the refresh of a credentials provider in the background, at most one
+ * at a time, so that callers can keep using the current credentials while new
+ * ones are fetched ahead of their expiry. After a failed refresh no other is
+ * started for {@link #RETRY_INTERVAL_MILLIS}; the provider falls back to
+ * refreshing in the calling thread once its credentials are about to expire.
+ */
+final class CredentialsRefresher {
+    /**
+     * Credentials closer to their expiry than this are not handed out while
+     * they are refreshed in the background; callers wait for new ones.
+     */
+    static final long MIN_REMAINING_MILLIS = 60 * 1000;
+
+    /** Minimum time between a failed background refresh and the next one. */
+    static final long RETRY_INTERVAL_MILLIS = 10 * 1000;
+
+    private static final Log log = LogFactory.getLog(CredentialsRefresher.class);
+
+    private final Executor executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile long retryAfter;
+    private final Runnable task;
+
+    /**
+     * @param refresh refreshes the credentials of the provider.
+     */
+    CredentialsRefresher(Runnable refresh) {
+        this(refresh, RefreshExecutor.INSTANCE);
+    }
+
+    CredentialsRefresher(final Runnable refresh, Executor executor) {
+        this.executor = executor;
+        this.task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh.run();
+                    retryAfter = 0;
+                } catch (final RuntimeException e) {
+                    retryAfter = System.currentTimeMillis() + RETRY_INTERVAL_MILLIS;
+                    log.warn("Unable to refresh credentials in the background", e);
+                } finally {
+                    running.set(false);
+                }
+            }
+        };
+    }
+
+    /**
+     * Starts a background refresh unless one is already running or the last
+     * one failed recently.
+     *
+     * @return true if a refresh was started.
+     */
+    boolean refreshAsync() {
+        if (retryAfter != 0 && System.currentTimeMillis() < retryAfter) {
+            return false;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (final RejectedExecutionException e) {
+            running.set(false);
+            return false;
+        }
+    }
+
+    /**
+     * @return true if a background refresh is running.
+     */
+    boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Holder of the executor shared by all providers. Its threads exit when
+     * they have been idle for a minute.
+     */
+    private static final class RefreshExecutor {
+        static final ExecutorService INSTANCE = Executors
+                .newCachedThreadPool(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread t = new Thread(r);
+                        t.setName("android-sdk-credentials-refresh");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Per-thread pool of {@link Mac} and {@link MessageDigest} instances used by
+ * the signers and checksum utilities. Looking up a provider through
+ * {@code getInstance} is expensive, so each thread keeps one instance per
+ * algorithm and re-keys or resets it for every use.
+ * <p>
+ * Instances are borrowed rather than simply shared: a borrowed instance is
+ * taken out of the thread's pool until it is released, so a nested use on
+ * the same thread (e.g. a stream being digested that computes a digest
+ * itself) gets a fresh instance instead of corrupting the outer one.
+ * <p>
+ * Not intended to be used by developers.
+ */
+public final class CryptoPrimitivePool {
+
+    private static final ThreadLocal<Mac[]> MACS = new ThreadLocal<Mac[]>() {
+        @Override
+        protected Mac[] initialValue() {
+            return new Mac[SigningAlgorithm.values().length];
+        }
+    };
+
+    private static final ThreadLocal<Map<String, MessageDigest>> MESSAGE_DIGESTS =
+            new ThreadLocal<Map<String, MessageDigest>>() {
+                @Override
+                protected Map<String, MessageDigest> initialValue() {
+                    return new HashMap<String, MessageDigest>();
+                }
+            };
+
+    private CryptoPrimitivePool() {
+    }
+
+    /**
+     * Computes an HMAC of the given data with a pooled {@link Mac} instance.
+     *
+     * @param data the data to sign.
+     * @param key the key in bytes.
+     * @param algorithm the signing algorithm.
+     * @return the HMAC of the data.
+     * @throws NoSuchAlgorithmException if the algorithm is not available.
+     * @throws InvalidKeyException if the key is not valid for the algorithm.
+     */
+    public static byte[] hmac(byte[] data, byte[] key, SigningAlgorithm algorithm)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        final Mac mac = borrowMac(algorithm);
+        try {
+            mac.init(new SecretKeySpec(key, algorithm.toString()));
+            return mac.doFinal(data);
+        } finally {
+            releaseMac(algorithm, mac);
+        }
+    }
+
+    /**
+     * Computes the digest of the given data with a pooled
+     * {@link MessageDigest} instance.
+     *
+     * @param algorithm the digest algorithm, e.g. "SHA-256" or "MD5".
+     * @param data the data to digest.
+     * @return the digest of the data.
+     * @throws NoSuchAlgorithmException if the algorithm is not available.
+     */
+    public static byte[] digest(String algorithm, byte[] data) throws NoSuchAlgorithmException {
+        final MessageDigest md = borrowMessageDigest(algorithm);
+        try {
+            return md.digest(data);
+        } finally {
+            releaseMessageDigest(md);
+        }
+    }
+
+    /**
+     * Takes the calling thread's {@link Mac} for the given algorithm out of
+     * the pool, creating one if none is available. The returned instance
+     * must be initialized by the caller and given back with
+     * {@link #releaseMac(SigningAlgorithm, Mac)}.
+     *
+     * @param algorithm the signing algorithm.
+     * @return an uninitialized or previously used Mac instance.
+     * @throws NoSuchAlgorithmException if the algorithm is not available.
+     */
+    public static Mac borrowMac(SigningAlgorithm algorithm) throws NoSuchAlgorithmException {
+        final Mac[] macs = MACS.get();
+        final Mac mac = macs[algorithm.ordinal()];
+        if (mac == null) {
+            return Mac.getInstance(algorithm.toString());
+        }
+        macs[algorithm.ordinal()] = null;
+        return mac;
+    }
+
+    /**
+     * Returns a {@link Mac} obtained from
+     * {@link #borrowMac(SigningAlgorithm)} to the calling thread's pool.
+     *
+     * @param algorithm the signing algorithm of the Mac.
+     * @param mac the Mac instance.
+     */
+    public static void releaseMac(SigningAlgorithm algorithm, Mac mac) {
+        MACS.get()[algorithm.ordinal()] = mac;
+    }
+
+    /**
+     * Takes the calling thread's {@link MessageDigest} for the given
+     * algorithm out of the pool, creating one if none is available. The
+     * returned instance is reset and must be given back with
+     * {@link #releaseMessageDigest(MessageDigest)}.
+     *
+     * @param algorithm the digest algorithm, e.g. "SHA-256" or "MD5".
+     * @return a reset MessageDigest instance.
+     * @throws NoSuchAlgorithmException if the algorithm is not available.
+     */
+    public static MessageDigest borrowMessageDigest(String algorithm)
+            throws NoSuchAlgorithmException {
+        final MessageDigest md = MESSAGE_DIGESTS.get().remove(algorithm);
+        if (md == null) {
+            return MessageDigest.getInstance(algorithm);
+        }
+        md.reset();
+        return md;
+    }
+
+    /**
+     * Returns a {@link MessageDigest} obtained from
+     * {@link #borrowMessageDigest(String)} to the calling thread's pool.
+     *
+     * @param md the MessageDigest instance.
+     */
+    public static void releaseMessageDigest(MessageDigest md) {
+        MESSAGE_DIGESTS.get().put(md.getAlgorithm(), md);
+    }
+}
@@ -37,14 +37,34 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
     /** Time before expiry within which credentials will be renewed. */
     private static final int EXPIRY_TIME_MILLIS = 60 * 1000;
 
+    /**
+     * Time before expiry within which credentials will be renewed in the
+     * background while they are still handed out.
+     */
+    private static final int PREFETCH_TIME_MILLIS = 5 * 60 * 1000;
+
     /** The client for starting STS sessions. */
     private final AWSSecurityTokenService securityTokenService;
 
-    /** The current session credentials. */
-    private AWSSessionCredentials sessionCredentials;
+    /**
+     * The current session credentials. They are read without locking, so the
+     * credentials must be assigned before their expiration.
+     */
+    private volatile AWSSessionCredentials sessionCredentials;
 
     /** The expiration time for the current session credentials. */
-    private Date sessionCredentialsExpiration;
+    private volatile Date sessionCredentialsExpiration;
+
+    private final CredentialsRefresher refresher = new CredentialsRefresher(new Runnable() {
+        @Override
+        public void run() {
+            synchronized (STSAssumeRoleSessionCredentialsProvider.this) {
+                if (sessionCredentials != null && needsPrefetch()) {
+                    startSession();
+                }
+            }
+        }
+    });
 
     /** The arn of the role to be assumed. */
     private String roleArn;
@@ -172,16 +192,36 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
         sessionCredentials = null;
     }
 
+    /**
+     * Returns the current session credentials, starting a new session if there
+     * is none or it is about to expire. Credentials are returned without
+     * locking; a session nearing its expiry is renewed in the background while
+     * its credentials are still returned.
+     */
     @Override
     public AWSCredentials getCredentials() {
-        if (needsNewSession()) {
-            startSession();
+        // Read the expiration first: it is assigned after the credentials.
+        final Date expiration = sessionCredentialsExpiration;
+        final AWSSessionCredentials credentials = sessionCredentials;
+        if (credentials != null && expiration != null) {
+            final long timeRemaining = expiration.getTime() - System.currentTimeMillis();
+            if (timeRemaining >= EXPIRY_TIME_MILLIS) {
+                if (timeRemaining < PREFETCH_TIME_MILLIS) {
+                    refresher.refreshAsync();
+                }
+                return credentials;
+            }
+        }
+        synchronized (this) {
+            if (needsNewSession()) {
+                startSession();
+            }
+            return sessionCredentials;
         }
-        return sessionCredentials;
     }
 
     @Override
-    public void refresh() {
+    public synchronized void refresh() {
         startSession();
     }
 
@@ -217,4 +257,13 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
         return timeRemaining < EXPIRY_TIME_MILLIS;
     }
 
+    /**
+     * Returns true if the current session is within
+     * {@link #PREFETCH_TIME_MILLIS} of expiring.
+     */
+    private boolean needsPrefetch() {
+        long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
+        return timeRemaining < PREFETCH_TIME_MILLIS;
+    }
+
 }
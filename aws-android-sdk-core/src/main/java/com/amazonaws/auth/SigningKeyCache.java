@@ -0,0 +1,198 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.BinaryUtils;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of derived AWS4 signing keys. The AWS4 signing key only
+ * depends on the secret key, the date stamp, the region and the service, so
+ * it can be shared by every request signed for the same scope on the same
+ * day instead of being re-derived with four HMAC rounds per request.
+ * <p>
+ * Entries are keyed by a SHA-256 fingerprint of the secret key rather than
+ * the secret key itself. Once the cache is full the least recently used
+ * entry is evicted, which also ages out keys for past dates.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class SigningKeyCache {
+
+    /** Default maximum number of cached signing keys. */
+    public static final int DEFAULT_MAX_ENTRIES = 300;
+
+    private static final String KEY_PREFIX = "AWS4";
+    private static final String TERMINATOR = "aws4_request";
+    private static final String SHA256 = "SHA-256";
+
+    private static final SigningKeyCache DEFAULT = new SigningKeyCache(DEFAULT_MAX_ENTRIES);
+
+    private final InternalCache internalCache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates a new cache that will contain, at most, the specified number of
+     * signing keys.
+     *
+     * @param maxEntries The maximum size of this cache.
+     */
+    public SigningKeyCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        internalCache = new InternalCache(maxEntries);
+    }
+
+    /**
+     * @return the process-wide cache shared by all AWS4 signers.
+     */
+    public static SigningKeyCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the AWS4 signing key (kSigning) for the given secret key and
+     * scope, deriving and caching it if it is not already cached.
+     *
+     * @param secretKey the sanitized AWS secret key.
+     * @param dateStamp the date stamp of the scope, in yyyyMMdd format.
+     * @param regionName the region name of the scope.
+     * @param serviceName the service name of the scope.
+     * @return a copy of the derived signing key.
+     */
+    public byte[] getSigningKey(String secretKey, String dateStamp, String regionName,
+            String serviceName) {
+        final String cacheKey = fingerprint(secretKey) + "/" + dateStamp + "/"
+                + regionName + "/" + serviceName;
+
+        byte[] signingKey;
+        synchronized (internalCache) {
+            signingKey = internalCache.get(cacheKey);
+        }
+        if (signingKey != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+            signingKey = deriveSigningKey(secretKey, dateStamp, regionName, serviceName);
+            synchronized (internalCache) {
+                internalCache.put(cacheKey, signingKey);
+            }
+        }
+        return copyOf(signingKey);
+    }
+
+    /**
+     * @return the number of lookups that were served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of lookups that had to derive a new signing key.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return the number of signing keys currently cached.
+     */
+    public int size() {
+        synchronized (internalCache) {
+            return internalCache.size();
+        }
+    }
+
+    /**
+     * Removes all cached signing keys and resets the hit and miss counters.
+     */
+    public void clear() {
+        synchronized (internalCache) {
+            internalCache.clear();
+        }
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    /**
+     * Derives the AWS4 signing key, formed by a series of HMACs over the
+     * different pieces of the credential scope.
+     */
+    static byte[] deriveSigningKey(String secretKey, String dateStamp, String regionName,
+            String serviceName) {
+        final byte[] kSecret = (KEY_PREFIX + secretKey).getBytes(UTF8);
+        final byte[] kDate = hmac(dateStamp, kSecret);
+        final byte[] kRegion = hmac(regionName, kDate);
+        final byte[] kService = hmac(serviceName, kRegion);
+        return hmac(TERMINATOR, kService);
+    }
+
+    private static byte[] hmac(String data, byte[] key) {
+        try {
+            return CryptoPrimitivePool.hmac(data.getBytes(UTF8), key,
+                    SigningAlgorithm.HmacSHA256);
+        } catch (final Exception e) {
+            throw new AmazonClientException("Unable to calculate a request signature: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    private static String fingerprint(String secretKey) {
+        try {
+            return BinaryUtils.toHex(CryptoPrimitivePool.digest(SHA256,
+                    secretKey.getBytes(UTF8)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new AmazonClientException("Unable to get SHA256 Function"
+                    + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] copyOf(byte[] bytes) {
+        final byte[] copy = new byte[bytes.length];
+        System.arraycopy(bytes, 0, copy, 0, bytes.length);
+        return copy;
+    }
+
+    /**
+     * LinkedHashMap in access order that evicts the least recently used
+     * signing key once the max size has been reached.
+     */
+    private static final class InternalCache extends LinkedHashMap<String, byte[]> {
+        private static final long serialVersionUID = 1L;
+        private static final float LOAD_FACTOR = 0.75f;
+        private final int maxSize;
+
+        InternalCache(int maxSize) {
+            super(maxSize, LOAD_FACTOR, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Entry<String, byte[]> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
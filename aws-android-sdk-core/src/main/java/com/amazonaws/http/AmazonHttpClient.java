@@ -27,6 +27,7 @@ import com.amazonaws.RequestClientOptions.Marker;
 import com.amazonaws.Response;
 import com.amazonaws.ResponseMetadata;
 import com.amazonaws.SDKGlobalConfiguration;
+import com.amazonaws.async.Callback;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.Signer;
 import com.amazonaws.handlers.CredentialsRequestHandler;
@@ -34,6 +35,8 @@ import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.internal.CRC32MismatchException;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.AdaptiveRateLimiter;
+import com.amazonaws.retry.RetryBudget;
 import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.util.AWSRequestMetrics;
@@ -53,6 +56,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * The Amazon HTTP Client class.
@@ -109,7 +114,7 @@ public class AmazonHttpClient {
      *            communicate with AWS (ex: proxy settings, retry count, etc.).
      */
     public AmazonHttpClient(ClientConfiguration config) {
-        this(config, new UrlHttpClient(config));
+        this(config, defaultHttpClient(config));
     }
 
     /**
@@ -126,7 +131,7 @@ public class AmazonHttpClient {
     @Deprecated
     public AmazonHttpClient(ClientConfiguration config,
             RequestMetricCollector requestMetricCollector) {
-        this(config, new UrlHttpClient(config), requestMetricCollector);
+        this(config, defaultHttpClient(config), requestMetricCollector);
     }
 
     /**
@@ -164,6 +169,29 @@ public class AmazonHttpClient {
         this.requestMetricCollector = requestMetricCollector;
     }
 
+    /**
+     * Returns the {@link HttpClient} used by clients that are not given one:
+     * the {@link NioHttpClient} if the configuration asks for it, the
+     * {@link UrlHttpClient} otherwise. The NIO client doesn't support
+     * proxies, so a configuration with a proxy host keeps the
+     * {@link UrlHttpClient}. An {@link HttpClient} passed to a client
+     * explicitly is always used as is.
+     *
+     * @param config Configuration options of the client.
+     * @return a new default HttpClient.
+     */
+    public static HttpClient defaultHttpClient(ClientConfiguration config) {
+        if (config.useNioHttpClient()) {
+            if (config.getProxyHost() == null) {
+                return new NioHttpClient(config);
+            }
+            log.warn("The NIO HTTP client doesn't support proxies, "
+                    + "using the default HTTP client to connect through "
+                    + config.getProxyHost());
+        }
+        return new UrlHttpClient(config);
+    }
+
     /**
      * Returns additional response metadata for an executed request. Response
      * metadata isn't considered part of the standard results returned by an
@@ -257,6 +285,49 @@ public class AmazonHttpClient {
         return requestHandler2s;
     }
 
+    /**
+     * Executes the request asynchronously and returns a handle to the result.
+     * Every attempt (signing, sending and unmarshalling) runs as a task on
+     * the given executor. When an attempt fails with a retryable error, the
+     * next attempt is scheduled on a shared timer after the back-off delay
+     * instead of sleeping, so no thread is held while waiting to retry. In
+     * the same way, an attempt held back by the configured rate limiter is
+     * scheduled on that timer once its send token is due.
+     *
+     * @param request The AmazonWebServices request to send to the remote server
+     * @param responseHandler A response handler to accept a successful response
+     *            from the remote server
+     * @param errorResponseHandler A response handler to accept an unsuccessful
+     *            response from the remote server
+     * @param executionContext Additional information about the context of this
+     *            web service call
+     * @param executor the executor on which attempts are run.
+     * @param callback optional callback notified once the request completes;
+     *            may be null.
+     * @param <T> the response type.
+     * @return a future holding the response of the request. Cancelling the
+     *         future prevents any further attempts.
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            Executor executor,
+            Callback<Response<T>> callback) {
+        if (executionContext == null) {
+            throw new AmazonClientException(
+                    "Internal SDK Error: No execution context parameter specified.");
+        }
+        if (executor == null) {
+            throw new AmazonClientException(
+                    "Internal SDK Error: No executor specified for asynchronous execution.");
+        }
+        final AsyncExecution<T> execution = new AsyncExecution<T>(this, request,
+                responseHandler, errorResponseHandler, executionContext, executor, callback);
+        execution.start();
+        return execution.getFuture();
+    }
+
     /**
      * Internal method to execute the HTTP method given.
      *
@@ -265,19 +336,54 @@ public class AmazonHttpClient {
      * @see AmazonHttpClient#execute(Request, HttpResponseHandler,
      *      HttpResponseHandler, ExecutionContext)
      */
-    @SuppressWarnings("checkstyle:methodlength")
     <T> Response<T> executeHelper(Request<?> request,
             HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
             HttpResponseHandler<AmazonServiceException> errorResponseHandler,
             ExecutionContext executionContext) {
-        /*
-         * Depending on which response handler we end up choosing to handle the
-         * HTTP response, it might require us to leave the underlying HTTP
-         * connection open, depending on whether or not it reads the complete
-         * HTTP response stream from the HTTP connection, or if delays reading
-         * any of the content until after a response is returned to the caller.
-         */
-        boolean leaveHttpConnectionOpen = false;
+        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        final ExecutionState state = beginExecution(request, executionContext);
+
+        while (true) {
+            prepareAttempt(request, state, awsRequestMetrics);
+            if (state.requestCount > 1) { // retry
+                awsRequestMetrics.startEvent(Field.RetryPauseTime);
+                try {
+                    state.lastBackoffDelay = pauseBeforeNextRetry(request.getOriginalRequest(),
+                            state.retriedException,
+                            state.requestCount,
+                            config.getRetryPolicy());
+                } catch (final RuntimeException e) {
+                    throw handleUnexpectedFailure(e, awsRequestMetrics);
+                } finally {
+                    awsRequestMetrics.endEvent(Field.RetryPauseTime);
+                }
+            }
+            final AdaptiveRateLimiter rateLimiter = config.getRateLimiter();
+            if (rateLimiter != null) {
+                awsRequestMetrics.startEvent(Field.RateLimiterWaitTime);
+                try {
+                    rateLimiter.acquire();
+                } catch (final RuntimeException e) {
+                    throw handleUnexpectedFailure(e, awsRequestMetrics);
+                } finally {
+                    awsRequestMetrics.endEvent(Field.RateLimiterWaitTime);
+                }
+            }
+
+            final Response<T> response = executeAttempt(request, responseHandler,
+                    errorResponseHandler, executionContext, state);
+            if (response != null) {
+                return response;
+            }
+        } /* end while (true) */
+    }
+
+    /**
+     * Applies the request options that are common to every attempt and
+     * captures the original state of the request so that it can be restored
+     * before each retry.
+     */
+    ExecutionState beginExecution(Request<?> request, ExecutionContext executionContext) {
         final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
         /*
          * add the service endpoint to the logs. You can infer service name from
@@ -290,195 +396,263 @@ public class AmazonHttpClient {
         // user-agent.
         setUserAgent(request);
         request.addHeader(HEADER_SDK_TRANSACTION_ID, UUID.randomUUID().toString());
-        int requestCount = 0;
-        long lastBackoffDelay = 0;
-        URI redirectedURI = null;
-        AmazonClientException retriedException = null;
-
-        // Make a copy of the original request params and headers so that we can
-        // permute it in this loop and start over with the original every time.
-        final Map<String, String> originalParameters = new LinkedHashMap<String, String>(
-                request.getParameters());
-        final Map<String, String> originalHeaders = new HashMap<String, String>(request.getHeaders());
-        // mark input stream if supported
-        final InputStream originalContent = request.getContent();
-        if (originalContent != null && originalContent.markSupported()) {
-            originalContent.mark(-1);
-        }
 
-        final AWSCredentials credentials = executionContext.getCredentials();
+        // Compress before the original state is captured so that retries
+        // resend the compressed payload without compressing it again.
         Signer signer = null;
-        HttpResponse httpResponse = null;
-        HttpRequest httpRequest = null;
+        if (RequestCompressor.isEnabled(config, request.getOriginalRequest())) {
+            signer = executionContext.getSignerByURI(request.getEndpoint());
+            RequestCompressor.compress(request, signer, config, awsRequestMetrics);
+        }
 
-        while (true) {
-            ++requestCount;
-            awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
-            if (requestCount > 1) { // retry
-                request.setParameters(originalParameters);
-                request.setHeaders(originalHeaders);
-                request.setContent(originalContent);
-            }
-            if (redirectedURI != null && request.getEndpoint() == null
-                    && request.getResourcePath() == null) {
-                request.setEndpoint(URI.create(
-                        redirectedURI.getScheme() + "://" + redirectedURI.getAuthority()));
-                request.setResourcePath(redirectedURI.getPath());
-            }
+        final ExecutionState state = new ExecutionState(request,
+                executionContext.getCredentials());
+        state.signer = signer;
+        // mark input stream if supported
+        if (state.originalContent != null && state.originalContent.markSupported()) {
+            state.originalContent.mark(-1);
+        }
+        return state;
+    }
 
-            try {
-                if (requestCount > 1) { // retry
-                    awsRequestMetrics.startEvent(Field.RetryPauseTime);
-                    try {
-                        lastBackoffDelay = pauseBeforeNextRetry(request.getOriginalRequest(),
-                                retriedException,
-                                requestCount,
-                                config.getRetryPolicy());
-                    } finally {
-                        awsRequestMetrics.endEvent(Field.RetryPauseTime);
-                    }
-                    final InputStream content = request.getContent();
-                    if (content != null && content.markSupported()) {
-                        content.reset();
-                    }
-                }
-                request.addHeader(HEADER_SDK_RETRY_INFO,
-                        (requestCount - 1) + "/" + lastBackoffDelay);
+    /**
+     * Restores the request to its original state, and points it to the
+     * redirected location if any, before the next attempt.
+     */
+    void prepareAttempt(Request<?> request, ExecutionState state,
+            AWSRequestMetrics awsRequestMetrics) {
+        ++state.requestCount;
+        awsRequestMetrics.setCounter(Field.RequestCount, state.requestCount);
+        if (state.requestCount > 1) { // retry
+            request.setParameters(state.originalParameters);
+            request.setHeaders(state.originalHeaders);
+            request.setContent(state.originalContent);
+        }
+        if (state.redirectedURI != null && request.getEndpoint() == null
+                && request.getResourcePath() == null) {
+            request.setEndpoint(URI.create(
+                    state.redirectedURI.getScheme() + "://"
+                            + state.redirectedURI.getAuthority()));
+            request.setResourcePath(state.redirectedURI.getPath());
+        }
+    }
 
-                // Sign the request if a signer was provided
-                if (signer == null) {
-                    signer = executionContext.getSignerByURI(request.getEndpoint());
-                }
-                if (signer != null && credentials != null) {
-                    awsRequestMetrics.startEvent(Field.RequestSigningTime);
-                    try {
-                        signer.sign(request, credentials);
-                    } finally {
-                        awsRequestMetrics.endEvent(Field.RequestSigningTime);
-                    }
-                }
+    /**
+     * Signs and sends the request once and handles the response. Callers
+     * take a token from the configured rate limiter, if any, beforehand.
+     *
+     * @return the response if the request succeeded, or null if the request
+     *         failed and should be retried.
+     * @throws AmazonClientException if the request failed and should not be
+     *             retried.
+     */
+    @SuppressWarnings("checkstyle:methodlength")
+    <T> Response<T> executeAttempt(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            ExecutionState state) {
+        /*
+         * Depending on which response handler we end up choosing to handle the
+         * HTTP response, it might require us to leave the underlying HTTP
+         * connection open, depending on whether or not it reads the complete
+         * HTTP response stream from the HTTP connection, or if delays reading
+         * any of the content until after a response is returned to the caller.
+         */
+        boolean leaveHttpConnectionOpen = false;
+        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        HttpResponse httpResponse = null;
 
-                if (REQUEST_LOG.isDebugEnabled()) {
-                    REQUEST_LOG.debug("Sending Request: " + request.toString());
+        try {
+            if (state.requestCount > 1) { // retry
+                final InputStream content = request.getContent();
+                if (content != null && content.markSupported()) {
+                    content.reset();
                 }
+            }
+            request.addHeader(HEADER_SDK_RETRY_INFO,
+                    (state.requestCount - 1) + "/" + state.lastBackoffDelay);
 
-                httpRequest = requestFactory.createHttpRequest(request, config,
-                        executionContext);
-
-                retriedException = null;
-                awsRequestMetrics.startEvent(Field.HttpRequestTime);
+            // Sign the request if a signer was provided
+            if (state.signer == null) {
+                state.signer = executionContext.getSignerByURI(request.getEndpoint());
+            }
+            if (state.signer != null && state.credentials != null) {
+                awsRequestMetrics.startEvent(Field.RequestSigningTime);
                 try {
-                    httpResponse = httpClient.execute(httpRequest);
+                    state.signer.sign(request, state.credentials);
                 } finally {
-                    awsRequestMetrics.endEvent(Field.HttpRequestTime);
+                    awsRequestMetrics.endEvent(Field.RequestSigningTime);
                 }
+            }
 
-                if (isRequestSuccessful(httpResponse)) {
-                    awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
-                    /*
-                     * If we get back any 2xx status code, then we know we
-                     * should treat the service call as successful.
-                     */
-                    leaveHttpConnectionOpen = responseHandler.needsConnectionLeftOpen();
-                    final T response = handleResponse(request, responseHandler,
-                            httpResponse,
-                            executionContext);
-                    return new Response<T>(response, httpResponse);
-                } else if (isTemporaryRedirect(httpResponse)) {
-                    /*
-                     * S3 sends 307 Temporary Redirects if you try to delete an
-                     * EU bucket from the US endpoint. If we get a 307, we'll
-                     * point the HTTP method to the redirected location, and let
-                     * the next retry deliver the request to the right location.
-                     */
-                    final String redirectedLocation = httpResponse.getHeaders().get("Location");
-                    log.debug("Redirecting to: " + redirectedLocation);
-                    // set redirect uri and retry
-                    redirectedURI = URI.create(redirectedLocation);
-                    request.setEndpoint(null);
-                    request.setResourcePath(null);
-                    awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
-                    awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
-                    awsRequestMetrics.addProperty(Field.AWSRequestID, null);
-                } else {
-                    leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
-                    final AmazonServiceException ase = handleErrorResponse(request, errorResponseHandler,
-                            httpResponse);
-                    awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
-                    awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
-                    awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
-
-                    if (!shouldRetry(request.getOriginalRequest(),
-                            httpRequest.getContent(),
-                            ase,
-                            requestCount,
-                            config.getRetryPolicy())) {
-                        throw ase;
-                    }
+            if (REQUEST_LOG.isDebugEnabled()) {
+                REQUEST_LOG.debug("Sending Request: " + request.toString());
+            }
 
-                    // Cache the retryable exception
-                    retriedException = ase;
-                    /*
-                     * Checking for clock skew error again because we don't want
-                     * to set the global time offset for every service
-                     * exception.
-                     */
-                    if (RetryUtils.isClockSkewError(ase)) {
-                        final int timeOffset = parseClockSkewOffset(httpResponse, ase);
-                        SDKGlobalConfiguration.setGlobalTimeOffset(timeOffset);
-                    }
-                    resetRequestAfterError(request, ase);
+            state.httpRequest = requestFactory.createHttpRequest(request, config,
+                    executionContext);
+
+            state.retriedException = null;
+            final AdaptiveRateLimiter rateLimiter = config.getRateLimiter();
+            awsRequestMetrics.startEvent(Field.HttpRequestTime);
+            try {
+                httpResponse = httpClient.execute(state.httpRequest);
+            } finally {
+                awsRequestMetrics.endEvent(Field.HttpRequestTime);
+            }
+
+            if (isRequestSuccessful(httpResponse)) {
+                awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
+                if (rateLimiter != null) {
+                    rateLimiter.onResponse(false);
+                }
+                /*
+                 * If we get back any 2xx status code, then we know we
+                 * should treat the service call as successful.
+                 */
+                leaveHttpConnectionOpen = responseHandler.needsConnectionLeftOpen();
+                final T response = handleResponse(request, responseHandler,
+                        httpResponse,
+                        executionContext);
+                final RetryBudget retryBudget = config.getRetryBudget();
+                if (retryBudget != null) {
+                    retryBudget.release(state.lastRetryCapacityConsumed);
                 }
-            } catch (final IOException ioe) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+                return new Response<T>(response, httpResponse);
+            } else if (isTemporaryRedirect(httpResponse)) {
+                /*
+                 * S3 sends 307 Temporary Redirects if you try to delete an
+                 * EU bucket from the US endpoint. If we get a 307, we'll
+                 * point the HTTP method to the redirected location, and let
+                 * the next retry deliver the request to the right location.
+                 */
+                final String redirectedLocation = httpResponse.getHeaders().get("Location");
+                log.debug("Redirecting to: " + redirectedLocation);
+                if (rateLimiter != null) {
+                    rateLimiter.onResponse(false);
                 }
-                awsRequestMetrics.incrementCounter(Field.Exception);
-                awsRequestMetrics.addProperty(Field.Exception, ioe);
+                // set redirect uri and retry
+                state.redirectedURI = URI.create(redirectedLocation);
+                request.setEndpoint(null);
+                request.setResourcePath(null);
+                awsRequestMetrics.addProperty(Field.StatusCode, httpResponse.getStatusCode());
+                awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
                 awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+            } else {
+                leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
+                final AmazonServiceException ase = handleErrorResponse(request, errorResponseHandler,
+                        httpResponse);
+                awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
+                awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
+                awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+                if (rateLimiter != null) {
+                    rateLimiter.onResponse(RetryUtils.isThrottlingException(ase));
+                }
 
-                final AmazonClientException ace = new AmazonClientException(
-                        "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 if (!shouldRetry(request.getOriginalRequest(),
-                        httpRequest.getContent(),
-                        ace,
-                        requestCount,
-                        config.getRetryPolicy())) {
-                    throw ace;
+                        state.httpRequest.getContent(),
+                        ase,
+                        state.requestCount,
+                        config.getRetryPolicy())
+                        || !acquireRetryCapacity(ase, state, awsRequestMetrics)) {
+                    throw ase;
                 }
 
                 // Cache the retryable exception
-                retriedException = ace;
-                resetRequestAfterError(request, ioe);
-            } catch (final RuntimeException e) {
-                throw handleUnexpectedFailure(e, awsRequestMetrics);
-            } catch (final Error e) {
-                throw handleUnexpectedFailure(e, awsRequestMetrics);
-            } finally {
+                state.retriedException = ase;
                 /*
-                 * Some response handlers need to manually manage the HTTP
-                 * connection and will take care of releasing the connection on
-                 * their own, but if this response handler doesn't need the
-                 * connection left open, we go ahead and release the it to free
-                 * up resources.
+                 * Checking for clock skew error again because we don't want
+                 * to set the global time offset for every service
+                 * exception.
                  */
-                if (!leaveHttpConnectionOpen && httpResponse != null) {
-                    try {
-                        if (httpResponse.getRawContent() != null) {
-                            httpResponse.getRawContent().close();
-                        }
-                    } catch (final IOException e) {
-                        log.warn("Cannot close the response content.", e);
+                if (RetryUtils.isClockSkewError(ase)) {
+                    final int timeOffset = parseClockSkewOffset(httpResponse, ase);
+                    SDKGlobalConfiguration.setGlobalTimeOffset(timeOffset);
+                }
+                resetRequestAfterError(request, ase);
+            }
+        } catch (final IOException ioe) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+            }
+            awsRequestMetrics.incrementCounter(Field.Exception);
+            awsRequestMetrics.addProperty(Field.Exception, ioe);
+            awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+
+            final AmazonClientException ace = new AmazonClientException(
+                    "Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+            if (!shouldRetry(request.getOriginalRequest(),
+                    state.httpRequest.getContent(),
+                    ace,
+                    state.requestCount,
+                    config.getRetryPolicy())
+                    || !acquireRetryCapacity(ace, state, awsRequestMetrics)) {
+                throw ace;
+            }
+
+            // Cache the retryable exception
+            state.retriedException = ace;
+            resetRequestAfterError(request, ioe);
+        } catch (final RuntimeException e) {
+            throw handleUnexpectedFailure(e, awsRequestMetrics);
+        } catch (final Error e) {
+            throw handleUnexpectedFailure(e, awsRequestMetrics);
+        } finally {
+            /*
+             * Some response handlers need to manually manage the HTTP
+             * connection and will take care of releasing the connection on
+             * their own, but if this response handler doesn't need the
+             * connection left open, we go ahead and release the it to free
+             * up resources.
+             */
+            if (!leaveHttpConnectionOpen && httpResponse != null) {
+                try {
+                    if (httpResponse.getRawContent() != null) {
+                        httpResponse.getRawContent().close();
                     }
+                } catch (final IOException e) {
+                    log.warn("Cannot close the response content.", e);
                 }
             }
-        } /* end while (true) */
+        }
+        return null;
+    }
+
+    /**
+     * Mutable state of a single request execution that is carried from one
+     * attempt to the next.
+     */
+    static final class ExecutionState {
+        final Map<String, String> originalParameters;
+        final Map<String, String> originalHeaders;
+        final InputStream originalContent;
+        final AWSCredentials credentials;
+        int requestCount;
+        long lastBackoffDelay;
+        URI redirectedURI;
+        AmazonClientException retriedException;
+        int lastRetryCapacityConsumed;
+        long totalRetryCapacityConsumed;
+        Signer signer;
+        HttpRequest httpRequest;
+
+        ExecutionState(Request<?> request, AWSCredentials credentials) {
+            // Make a copy of the original request params and headers so that we
+            // can permute it in each attempt and start over with the original
+            // every time.
+            this.originalParameters = new LinkedHashMap<String, String>(
+                    request.getParameters());
+            this.originalHeaders = new HashMap<String, String>(request.getHeaders());
+            this.originalContent = request.getContent();
+            this.credentials = credentials;
+        }
     }
 
     /**
      * Handles an unexpected failure, returning the Throwable instance as given.
      */
-    private <T extends Throwable> T handleUnexpectedFailure(T t, AWSRequestMetrics awsRequestMetrics) {
+    <T extends Throwable> T handleUnexpectedFailure(T t, AWSRequestMetrics awsRequestMetrics) {
         awsRequestMetrics.incrementCounter(Field.Exception);
         awsRequestMetrics.addProperty(Field.Exception, t);
         return t;
@@ -606,6 +780,34 @@ public class AmazonHttpClient {
                 retries);
     }
 
+    /**
+     * Takes the tokens needed for the next retry from the retry budget
+     * configured in {@link ClientConfiguration}, if any.
+     *
+     * @return True if the request may be retried, false if the retry budget
+     *         is exhausted.
+     */
+    private boolean acquireRetryCapacity(AmazonClientException exception,
+            ExecutionState state,
+            AWSRequestMetrics awsRequestMetrics) {
+        final RetryBudget retryBudget = config.getRetryBudget();
+        if (retryBudget == null) {
+            return true;
+        }
+        final int consumed = retryBudget.tryAcquire(exception);
+        if (consumed < 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Retry budget exhausted, not retrying");
+            }
+            return false;
+        }
+        state.lastRetryCapacityConsumed = consumed;
+        state.totalRetryCapacityConsumed += consumed;
+        awsRequestMetrics.setCounter(Field.RetryCapacityConsumed,
+                state.totalRetryCapacityConsumed);
+        return true;
+    }
+
     private static boolean isTemporaryRedirect(HttpResponse response) {
         final int statusCode = response.getStatusCode();
         final String location = response.getHeaders().get("Location");
@@ -747,6 +949,34 @@ public class AmazonHttpClient {
             AmazonClientException previousException,
             int requestCount,
             RetryPolicy retryPolicy) {
+        final long delay = delayBeforeNextRetry(originalRequest, previousException,
+                requestCount, retryPolicy);
+
+        try {
+            Thread.sleep(delay);
+            return delay;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Computes the back-off delay before the next retry.
+     *
+     * @param originalRequest The original service request that is being
+     *            executed.
+     * @param previousException Exception information for the previous attempt,
+     *            if any.
+     * @param requestCount current request count (including the next attempt
+     *            after the delay)
+     * @param retryPolicy The retry policy configured in this http client.
+     * @return the delay in milliseconds.
+     */
+    long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+            AmazonClientException previousException,
+            int requestCount,
+            RetryPolicy retryPolicy) {
         final int retries = requestCount // including next attempt
                 - 1 // number of attempted requests
                 - 1; // number of attempted retries
@@ -758,14 +988,7 @@ public class AmazonHttpClient {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
-
-        try {
-            Thread.sleep(delay);
-            return delay;
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
-        }
+        return delay;
     }
 
     /**
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.async.Callback;
+import com.amazonaws.async.ResultFuture;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.retry.AdaptiveRateLimiter;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a single asynchronous request execution for
+ * {@link AmazonHttpClient#executeAsync}. Each attempt runs as a task on the
+ * caller supplied executor; between attempts, and while an attempt waits for
+ * a rate limiter token, the execution is parked on a shared timer, so these
+ * delays do not hold a thread.
+ *
+ * @param <T> the response type.
+ */
+final class AsyncExecution<T> implements Runnable {
+
+    private final AmazonHttpClient client;
+    private final Request<?> request;
+    private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+    private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+    private final ExecutionContext executionContext;
+    private final Executor executor;
+    private final Callback<Response<T>> callback;
+    private final ResultFuture<Response<T>> future = new ResultFuture<Response<T>>();
+
+    /*
+     * Only accessed by the task running the current attempt. Attempts never
+     * overlap and are handed over through the executor and the timer, which
+     * makes the state visible to the next attempt.
+     */
+    private List<RequestHandler2> requestHandler2s;
+    private AmazonHttpClient.ExecutionState state;
+    /* Whether the current attempt has taken its token and waits for it. */
+    private boolean waitingForSendToken;
+
+    AsyncExecution(AmazonHttpClient client,
+            Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            Executor executor,
+            Callback<Response<T>> callback) {
+        this.client = client;
+        this.request = request;
+        this.responseHandler = responseHandler;
+        this.errorResponseHandler = errorResponseHandler;
+        this.executionContext = executionContext;
+        this.executor = executor;
+        this.callback = callback;
+    }
+
+    /**
+     * Submits the first attempt to the executor.
+     */
+    void start() {
+        executor.execute(this);
+    }
+
+    Future<Response<T>> getFuture() {
+        return future;
+    }
+
+    @Override
+    public void run() {
+        if (future.isDone()) {
+            // cancelled while waiting for this attempt
+            return;
+        }
+        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        Response<T> response = null;
+        try {
+            if (state == null) {
+                requestHandler2s = client.requestHandler2s(request, executionContext);
+                state = client.beginExecution(request, executionContext);
+            } else if (waitingForSendToken) {
+                awsRequestMetrics.endEvent(Field.RateLimiterWaitTime);
+            } else {
+                awsRequestMetrics.endEvent(Field.RetryPauseTime);
+            }
+            if (waitingForSendToken) {
+                waitingForSendToken = false;
+            } else {
+                client.prepareAttempt(request, state, awsRequestMetrics);
+                final AdaptiveRateLimiter rateLimiter = client.config.getRateLimiter();
+                final long delay = rateLimiter == null ? 0 : rateLimiter.reserve();
+                if (delay > 0) {
+                    waitingForSendToken = true;
+                    awsRequestMetrics.startEvent(Field.RateLimiterWaitTime);
+                    schedule(delay);
+                    return;
+                }
+            }
+
+            response = client.executeAttempt(request, responseHandler, errorResponseHandler,
+                    executionContext, state);
+            if (response == null) {
+                scheduleRetry(awsRequestMetrics);
+                return;
+            }
+            final TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
+            client.afterResponse(request, requestHandler2s, response, timingInfo);
+        } catch (final AmazonClientException e) {
+            if (requestHandler2s != null) {
+                client.afterError(request, response, requestHandler2s, e);
+            }
+            complete(null, e);
+            return;
+        } catch (final RuntimeException e) {
+            complete(null, e);
+            return;
+        } catch (final Error e) {
+            complete(null, e);
+            return;
+        }
+        complete(response, null);
+    }
+
+    private void scheduleRetry(AWSRequestMetrics awsRequestMetrics) {
+        final long delay;
+        try {
+            delay = client.delayBeforeNextRetry(request.getOriginalRequest(),
+                    state.retriedException,
+                    state.requestCount + 1,
+                    client.config.getRetryPolicy());
+        } catch (final RuntimeException e) {
+            throw client.handleUnexpectedFailure(e, awsRequestMetrics);
+        }
+        state.lastBackoffDelay = delay;
+        awsRequestMetrics.startEvent(Field.RetryPauseTime);
+        schedule(delay);
+    }
+
+    /**
+     * Hands this execution back to its executor once the delay has elapsed.
+     */
+    private void schedule(long delay) {
+        RetryTimer.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute(AsyncExecution.this);
+                } catch (final RejectedExecutionException e) {
+                    complete(null, new AmazonClientException(
+                            "Unable to schedule the next attempt: " + e.getMessage(), e));
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void complete(Response<T> response, Throwable failure) {
+        if (!future.complete(response, failure) || callback == null) {
+            return;
+        }
+        if (failure == null) {
+            callback.onResult(response);
+        } else if (failure instanceof Exception) {
+            callback.onError((Exception) failure);
+        } else {
+            callback.onError(new AmazonClientException(failure.getMessage(), failure));
+        }
+    }
+
+    /**
+     * Holder of the timer shared by all asynchronous executions. The timer
+     * thread only hands the next attempt back to its executor and never runs
+     * an attempt itself.
+     */
+    private static final class RetryTimer {
+        static final ScheduledExecutorService INSTANCE = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread t = new Thread(r);
+                        t.setName("android-sdk-async-retry-timer");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+}
@@ -61,10 +61,21 @@ public class ExecutionContext {
      */
     public ExecutionContext(List<RequestHandler2> requestHandler2s,
             boolean isMetricEnabled, AmazonWebServiceClient awsClient) {
-        this.requestHandler2s = requestHandler2s;
-        awsRequestMetrics = isMetricEnabled
+        this(requestHandler2s, isMetricEnabled
                 ? new AWSRequestMetricsFullSupport()
-                : new AWSRequestMetrics();
+                : new AWSRequestMetrics(), awsClient);
+    }
+
+    /**
+     * Constructor.
+     * @param requestHandler2s the list of request handlers.
+     * @param awsRequestMetrics the request metrics to record into.
+     * @param awsClient the AWS client.
+     */
+    public ExecutionContext(List<RequestHandler2> requestHandler2s,
+            AWSRequestMetrics awsRequestMetrics, AmazonWebServiceClient awsClient) {
+        this.requestHandler2s = requestHandler2s;
+        this.awsRequestMetrics = awsRequestMetrics;
         this.awsClient = awsClient;
     }
 
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+/**
+ * A point in time view of the connection pool of a {@link NioHttpClient}.
+ * The totals count from the creation of the client.
+ */
+public final class HttpConnectionPoolStats {
+    private final long hits;
+    private final long opens;
+    private final long idleEvictions;
+    private final int available;
+    private final int leased;
+
+    HttpConnectionPoolStats(long hits, long opens, long idleEvictions, int available,
+            int leased) {
+        this.hits = hits;
+        this.opens = opens;
+        this.idleEvictions = idleEvictions;
+        this.available = available;
+        this.leased = leased;
+    }
+
+    /**
+     * @return the number of requests sent on a pooled connection.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of connections opened.
+     */
+    public long getOpens() {
+        return opens;
+    }
+
+    /**
+     * @return the number of pooled connections closed because they had been
+     *         idle for too long or had been closed by the server.
+     */
+    public long getIdleEvictions() {
+        return idleEvictions;
+    }
+
+    /**
+     * @return the number of idle connections in the pool.
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return the number of connections executing a request or holding a
+     *         response that has not been fully read.
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits
+                + ", opens=" + opens
+                + ", idleEvictions=" + idleEvictions
+                + ", available=" + available
+                + ", leased=" + leased;
+    }
+}
@@ -32,7 +32,6 @@ import com.amazonaws.logging.LogFactory;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
@@ -108,8 +107,7 @@ public class JsonResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
             }
         }
 
-        final AwsJsonReader jsonReader = JsonUtils.getJsonReader(new InputStreamReader(content,
-                StringUtils.UTF8));
+        final AwsJsonReader jsonReader = JsonUtils.getJsonReader(content);
 
         try {
             final AmazonWebServiceResponse<T> awsResponse = new AmazonWebServiceResponse<T>();
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.ClientConfiguration;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A persistent connection of the {@link NioHttpClient} to one endpoint. Plain
+ * HTTP is written straight to the {@link SocketChannel}, which lets file
+ * content be transferred without copying it through the Java heap. HTTPS
+ * layers an {@link SSLSocket} on top of the channel's socket.
+ * <p>
+ * A connection is used by one request at a time and is not thread-safe.
+ */
+final class NioConnection {
+    /** Size of the per connection buffer requests are written through. */
+    static final int BUFFER_SIZE = 32 * 1024;
+    private static final int RESPONSE_BUFFER_SIZE = 8 * 1024;
+    private static final int DIRECT_BUFFER_SIZE = 64 * 1024;
+
+    private final String route;
+    private final SocketChannel channel;
+    private final Socket socket;
+    private final boolean secure;
+    private final InputStream in;
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer probe = ByteBuffer.allocate(1);
+    private ByteBuffer directBuffer;
+    private long idleSince;
+
+    private NioConnection(String route, SocketChannel channel, Socket socket, boolean secure)
+            throws IOException {
+        this.route = route;
+        this.channel = channel;
+        this.socket = socket;
+        this.secure = secure;
+        this.in = new BufferedInputStream(socket.getInputStream(), RESPONSE_BUFFER_SIZE);
+        this.out = secure ? socket.getOutputStream() : null;
+    }
+
+    /**
+     * Opens a connection to the given host.
+     *
+     * @param route the pool key of the endpoint.
+     * @param host the host name.
+     * @param port the port.
+     * @param sslSocketFactory the factory of TLS sockets, or null for plain
+     *            HTTP.
+     * @param config the client configuration.
+     * @return the connected connection.
+     * @throws IOException if the connection cannot be established.
+     */
+    static NioConnection open(String route, String host, int port,
+            SSLSocketFactory sslSocketFactory, ClientConfiguration config) throws IOException {
+        final SocketChannel channel = SocketChannel.open();
+        try {
+            final Socket plain = channel.socket();
+            plain.setTcpNoDelay(true);
+            plain.setKeepAlive(true);
+            final int[] hints = config.getSocketBufferSizeHints();
+            if (hints[0] > 0) {
+                plain.setSendBufferSize(hints[0]);
+            }
+            if (hints[1] > 0) {
+                plain.setReceiveBufferSize(hints[1]);
+            }
+            if (config.getLocalAddress() != null) {
+                plain.bind(new InetSocketAddress(config.getLocalAddress(), 0));
+            }
+            plain.connect(new InetSocketAddress(host, port), config.getConnectionTimeout());
+            plain.setSoTimeout(config.getSocketTimeout());
+            if (sslSocketFactory == null) {
+                return new NioConnection(route, channel, plain, false);
+            }
+            final SSLSocket ssl = (SSLSocket) sslSocketFactory.createSocket(plain, host, port,
+                    true);
+            final boolean verifiedByHandshake = enableHostnameVerification(ssl);
+            ssl.startHandshake();
+            if (!verifiedByHandshake
+                    && !HttpsURLConnection.getDefaultHostnameVerifier().verify(host,
+                            ssl.getSession())) {
+                throw new SSLPeerUnverifiedException("Hostname " + host + " not verified");
+            }
+            return new NioConnection(route, channel, ssl, true);
+        } catch (final IOException e) {
+            closeQuietly(channel);
+            throw e;
+        } catch (final RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Asks the TLS handshake to verify the host name, which is available from
+     * Java 7 and Android API level 24.
+     *
+     * @return true if the handshake verifies the host name.
+     */
+    private static boolean enableHostnameVerification(SSLSocket ssl) {
+        try {
+            final SSLParameters parameters = ssl.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            ssl.setSSLParameters(parameters);
+            return true;
+        } catch (final NoSuchMethodError e) {
+            return false;
+        }
+    }
+
+    String getRoute() {
+        return route;
+    }
+
+    boolean isSecure() {
+        return secure;
+    }
+
+    InputStream getInputStream() {
+        return in;
+    }
+
+    /** @return the buffer requests are written through. */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    long getIdleSince() {
+        return idleSince;
+    }
+
+    void setIdleSince(long idleSince) {
+        this.idleSince = idleSince;
+    }
+
+    void setSoTimeout(int timeout) throws IOException {
+        socket.setSoTimeout(timeout);
+    }
+
+    int getSoTimeout() throws IOException {
+        return socket.getSoTimeout();
+    }
+
+    /**
+     * Writes bytes to the connection. Plain HTTP writes go straight to the
+     * channel in a single call where the kernel allows it.
+     */
+    void write(byte[] b, int off, int len) throws IOException {
+        if (secure) {
+            out.write(b, off, len);
+            return;
+        }
+        final ByteBuffer src = ByteBuffer.wrap(b, off, len);
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+    void flush() throws IOException {
+        if (secure) {
+            out.flush();
+        }
+    }
+
+    /**
+     * @return true if file content can be transferred to this connection
+     *         without being copied through the Java heap.
+     */
+    boolean supportsFileTransfer() {
+        return !secure;
+    }
+
+    /**
+     * Transfers a region of a file to a plain HTTP connection, by
+     * {@link FileChannel#transferTo} where the platform supports it and
+     * through a direct buffer otherwise.
+     *
+     * @param file the file channel.
+     * @param position the position of the region in the file.
+     * @param count the length of the region.
+     * @throws IOException if the file ends early or the write fails.
+     */
+    void transferFrom(FileChannel file, long position, long count) throws IOException {
+        long pos = position;
+        final long end = position + count;
+        while (pos < end) {
+            final long n = file.transferTo(pos, end - pos, channel);
+            if (n <= 0) {
+                break;
+            }
+            pos += n;
+        }
+        if (pos == end) {
+            return;
+        }
+        if (directBuffer == null) {
+            directBuffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        }
+        while (pos < end) {
+            directBuffer.clear();
+            if (end - pos < directBuffer.capacity()) {
+                directBuffer.limit((int) (end - pos));
+            }
+            final int n = file.read(directBuffer, pos);
+            if (n < 0) {
+                throw new EOFException("File ended " + (end - pos) + " bytes early");
+            }
+            directBuffer.flip();
+            while (directBuffer.hasRemaining()) {
+                channel.write(directBuffer);
+            }
+            pos += n;
+        }
+    }
+
+    /**
+     * Checks whether an idle connection has been closed by the other end,
+     * without blocking. A connection the server has sent anything to while it
+     * was idle is also considered stale.
+     * <p>
+     * The channel of a TLS connection carries records the TLS engine handles
+     * itself, such as session tickets sent after the handshake, so only the
+     * data already decrypted is checked there; a connection closed by the
+     * server is then found by the first read of the request that uses it.
+     *
+     * @return true if the connection can no longer be used.
+     */
+    boolean isStale() {
+        if (!channel.isOpen() || socket.isClosed() || socket.isInputShutdown()) {
+            return true;
+        }
+        try {
+            if (in.available() > 0) {
+                return true;
+            }
+            if (secure) {
+                return false;
+            }
+            channel.configureBlocking(false);
+            probe.clear();
+            final int n;
+            try {
+                n = channel.read(probe);
+            } finally {
+                channel.configureBlocking(true);
+            }
+            return n != 0;
+        } catch (final IOException e) {
+            return true;
+        }
+    }
+
+    void close() {
+        closeQuietly(socket);
+        closeQuietly(channel);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (final IOException e) {
+            // ignored
+        }
+    }
+
+    private static void closeQuietly(Socket s) {
+        try {
+            s.close();
+        } catch (final IOException e) {
+            // ignored
+        }
+    }
+}
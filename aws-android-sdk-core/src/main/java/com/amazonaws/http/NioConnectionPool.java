@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keep-alive pool of the idle connections of a {@link NioHttpClient}, per
+ * endpoint. The most recently used connection is handed out first so that
+ * surplus connections age out. Idle connections are evicted lazily when the
+ * pool is used; there is no background thread.
+ */
+final class NioConnectionPool {
+    private final int maxIdlePerRoute;
+    private final long maxIdleMillis;
+
+    /* All guarded by this. */
+    private final Map<String, LinkedList<NioConnection>> idle =
+            new HashMap<String, LinkedList<NioConnection>>();
+    private int available;
+    private int leased;
+    private long hits;
+    private long opens;
+    private long idleEvictions;
+    private long lastSweep;
+    private boolean shutdown;
+
+    /**
+     * @param maxIdlePerRoute the maximum number of idle connections kept per
+     *            endpoint.
+     * @param maxIdleMillis the maximum time a connection may sit idle.
+     */
+    NioConnectionPool(int maxIdlePerRoute, long maxIdleMillis) {
+        this.maxIdlePerRoute = maxIdlePerRoute;
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    /**
+     * Takes an idle connection to the endpoint out of the pool.
+     *
+     * @param route the endpoint.
+     * @return a live connection, or null if there is none.
+     */
+    NioConnection lease(String route) {
+        while (true) {
+            NioConnection connection = null;
+            final List<NioConnection> expired = new ArrayList<NioConnection>(0);
+            synchronized (this) {
+                final LinkedList<NioConnection> connections = idle.get(route);
+                final long now = System.currentTimeMillis();
+                while (connections != null && !connections.isEmpty()) {
+                    final NioConnection c = connections.removeFirst();
+                    available--;
+                    if (now - c.getIdleSince() < maxIdleMillis) {
+                        connection = c;
+                        break;
+                    }
+                    expired.add(c);
+                }
+                idleEvictions += expired.size();
+            }
+            closeAll(expired);
+            if (connection == null) {
+                return null;
+            }
+            if (!connection.isStale()) {
+                synchronized (this) {
+                    hits++;
+                    leased++;
+                }
+                return connection;
+            }
+            connection.close();
+            synchronized (this) {
+                idleEvictions++;
+            }
+        }
+    }
+
+    /**
+     * Accounts for a newly opened connection, which is leased right away.
+     */
+    synchronized void opened() {
+        opens++;
+        leased++;
+    }
+
+    /**
+     * Returns a leased connection, either to the pool or to be closed.
+     *
+     * @param connection the connection.
+     * @param reusable true if the connection may carry another request.
+     */
+    void release(NioConnection connection, boolean reusable) {
+        final long now = System.currentTimeMillis();
+        boolean pooled = false;
+        List<NioConnection> expired = null;
+        synchronized (this) {
+            leased--;
+            if (reusable && !shutdown) {
+                LinkedList<NioConnection> connections = idle.get(connection.getRoute());
+                if (connections == null) {
+                    connections = new LinkedList<NioConnection>();
+                    idle.put(connection.getRoute(), connections);
+                }
+                if (connections.size() < maxIdlePerRoute) {
+                    connection.setIdleSince(now);
+                    connections.addFirst(connection);
+                    available++;
+                    pooled = true;
+                }
+            }
+            if (now - lastSweep >= maxIdleMillis) {
+                lastSweep = now;
+                expired = removeExpired(now);
+            }
+        }
+        if (!pooled) {
+            connection.close();
+        }
+        if (expired != null) {
+            closeAll(expired);
+        }
+    }
+
+    /**
+     * Closes all idle connections. Connections released afterwards are closed
+     * instead of pooled.
+     */
+    void shutdown() {
+        final List<NioConnection> connections = new ArrayList<NioConnection>();
+        synchronized (this) {
+            shutdown = true;
+            for (final LinkedList<NioConnection> c : idle.values()) {
+                connections.addAll(c);
+            }
+            idle.clear();
+            available = 0;
+        }
+        closeAll(connections);
+    }
+
+    synchronized HttpConnectionPoolStats getStats() {
+        return new HttpConnectionPoolStats(hits, opens, idleEvictions, available, leased);
+    }
+
+    /* Must hold the lock. */
+    private List<NioConnection> removeExpired(long now) {
+        final List<NioConnection> expired = new ArrayList<NioConnection>();
+        for (final Iterator<LinkedList<NioConnection>> routes = idle.values().iterator(); routes
+                .hasNext();) {
+            final LinkedList<NioConnection> connections = routes.next();
+            // the oldest connections are at the end
+            while (!connections.isEmpty()
+                    && now - connections.getLast().getIdleSince() >= maxIdleMillis) {
+                expired.add(connections.removeLast());
+            }
+            if (connections.isEmpty()) {
+                routes.remove();
+            }
+        }
+        available -= expired.size();
+        idleEvictions += expired.size();
+        return expired;
+    }
+
+    private static void closeAll(List<NioConnection> connections) {
+        for (final NioConnection c : connections) {
+            c.close();
+        }
+    }
+}
@@ -0,0 +1,677 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.internal.FileRegionInputStream;
+import com.amazonaws.logging.Log;
+import com.amazonaws.logging.LogFactory;
+import com.amazonaws.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+/**
+ * An implementation of {@link HttpClient} that speaks HTTP/1.1 directly over
+ * NIO socket channels and keeps a pool of persistent connections per endpoint.
+ * Compared to {@link UrlHttpClient} it
+ * <ul>
+ * <li>reuses connections explicitly and reports how well it does so through
+ * {@link #getPoolStats()};</li>
+ * <li>writes the request line, the headers and the first part of the body in
+ * a single write, and copies bodies through a buffer owned by the connection
+ * instead of one allocated per request;</li>
+ * <li>transfers a body read from a {@link FileInputStream}, or a file region
+ * given by a {@link FileRegionInputStream}, to a plain HTTP connection with
+ * {@link FileChannel#transferTo}, falling back to a direct buffer;</li>
+ * <li>waits for the response to an "Expect: 100-continue" request before
+ * sending the body, and accepts a final response in place of 100 (continue),
+ * as required by S3.</li>
+ * </ul>
+ * The client connects to endpoints directly; proxy settings and curl logging
+ * of the {@link ClientConfiguration} are not supported. It is selected with
+ * {@link ClientConfiguration#setUseNioHttpClient(boolean)}, which is ignored
+ * when a proxy host is configured.
+ * <p>
+ * This class is thread-safe.
+ */
+public class NioHttpClient implements HttpClient {
+
+    private static final Log log = LogFactory.getLog(NioHttpClient.class);
+    private static final String TRANSFER_ENCODING = "Transfer-Encoding";
+    private static final String CONNECTION = "Connection";
+    private static final String CRLF = "\r\n";
+    private static final int HTTP_PORT = 80;
+    private static final int HTTPS_PORT = 443;
+    private static final int HTTP_NO_CONTENT = 204;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_CONTINUE = 100;
+    private static final int HTTP_SWITCHING_PROTOCOLS = 101;
+    private static final int STATUS_CLASS = 100;
+    private static final int HEX = 16;
+    /** Room left in front of each chunk for its size line. */
+    private static final int CHUNK_HEADER_LENGTH = 6;
+    private static final int CHUNK_SIZE_DIGITS = 4;
+    private static final int CONTINUE_TIMEOUT_MILLIS = 1000;
+    /** Responses closed with at most this many unread bytes are drained. */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final ClientConfiguration config;
+    private final NioConnectionPool pool;
+    private SSLSocketFactory sslSocketFactory;
+
+    /**
+     * Constructor.
+     * @param config the client config.
+     */
+    public NioHttpClient(ClientConfiguration config) {
+        this.config = config;
+        this.pool = new NioConnectionPool(config.getMaxConnections(),
+                config.getConnectionMaxIdleMillis());
+    }
+
+    /**
+     * @return the statistics of the connection pool.
+     */
+    public HttpConnectionPoolStats getPoolStats() {
+        return pool.getStats();
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        final URI uri = request.getUri();
+        final boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        final String host = uri.getHost();
+        final int port = uri.getPort() != -1 ? uri.getPort() : secure ? HTTPS_PORT : HTTP_PORT;
+        final String route = (secure ? "https://" : "http://") + host + ":" + port;
+
+        final NioConnection pooled = pool.lease(route);
+        if (pooled != null) {
+            try {
+                return exchange(pooled, request);
+            } catch (final IOException e) {
+                // The server may close an idle connection just as a request
+                // is sent on it. Only requests without a body can be resent
+                // here; the others are retried by the retry policy.
+                if (request.getContent() != null) {
+                    throw e;
+                }
+                log.debug("Retrying on a new connection: " + e.getMessage());
+            }
+        }
+        final NioConnection connection = NioConnection.open(route, host, port,
+                secure ? getSslSocketFactory() : null, config);
+        pool.opened();
+        return exchange(connection, request);
+    }
+
+    /**
+     * Closes all idle connections. Connections of responses that are still
+     * being read are closed once the responses are done.
+     */
+    @Override
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private HttpResponse exchange(NioConnection connection, HttpRequest request)
+            throws IOException {
+        try {
+            final InputStream content = request.getContent();
+            final boolean chunked = content != null
+                    && (request.isStreaming()
+                            || request.getHeaders().get(HttpHeader.CONTENT_LENGTH) == null);
+            final byte[] head = head(request, content != null, chunked);
+
+            if (content != null
+                    && "100-continue".equalsIgnoreCase(request.getHeaders().get(HttpHeader.EXPECT))) {
+                connection.write(head, 0, head.length);
+                connection.flush();
+                final String statusLine = awaitContinue(connection);
+                if (statusLine != null) {
+                    // the server answered before the body was sent
+                    return readResponse(connection, request, statusLine, false);
+                }
+                writeBody(connection, null, content, chunked, request.getContentLength());
+            } else {
+                writeBody(connection, head, content, chunked, request.getContentLength());
+            }
+            connection.flush();
+            return readResponse(connection, request, readStatusLine(connection), true);
+        } catch (final IOException e) {
+            pool.release(connection, false);
+            throw e;
+        } catch (final RuntimeException e) {
+            pool.release(connection, false);
+            throw e;
+        }
+    }
+
+    private static byte[] head(HttpRequest request, boolean hasContent, boolean chunked) {
+        final URI uri = request.getUri();
+        final StringBuilder builder = new StringBuilder(256);
+        final String path = uri.getRawPath();
+        builder.append(request.getMethod()).append(' ')
+                .append(path == null || path.length() == 0 ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            builder.append('?').append(uri.getRawQuery());
+        }
+        builder.append(" HTTP/1.1").append(CRLF);
+
+        boolean hasHost = false;
+        boolean hasContentLength = false;
+        for (final Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            final String key = header.getKey();
+            if (header.getValue() == null
+                    || chunked && (HttpHeader.CONTENT_LENGTH.equalsIgnoreCase(key)
+                            || TRANSFER_ENCODING.equalsIgnoreCase(key))) {
+                continue;
+            }
+            hasHost |= HttpHeader.HOST.equalsIgnoreCase(key);
+            hasContentLength |= HttpHeader.CONTENT_LENGTH.equalsIgnoreCase(key);
+            builder.append(key).append(": ").append(header.getValue()).append(CRLF);
+        }
+        if (!hasHost) {
+            builder.append(HttpHeader.HOST).append(": ").append(uri.getHost());
+            if (uri.getPort() != -1) {
+                builder.append(':').append(uri.getPort());
+            }
+            builder.append(CRLF);
+        }
+        if (chunked) {
+            builder.append(TRANSFER_ENCODING).append(": chunked").append(CRLF);
+        } else if (!hasContent && !hasContentLength && permitsBody(request.getMethod())) {
+            builder.append(HttpHeader.CONTENT_LENGTH).append(": 0").append(CRLF);
+        }
+        builder.append(CRLF);
+        return builder.toString().getBytes(StringUtils.UTF8);
+    }
+
+    private static boolean permitsBody(String method) {
+        return "POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method);
+    }
+
+    /**
+     * Writes the head, if not yet written, and the body. Small heads share
+     * the first write with the body.
+     */
+    private static void writeBody(NioConnection connection, byte[] head, InputStream content,
+            boolean chunked, long contentLength) throws IOException {
+        final byte[] buffer = connection.getBuffer();
+        int pos = 0;
+        if (head != null) {
+            if (head.length <= buffer.length / 2) {
+                System.arraycopy(head, 0, buffer, 0, head.length);
+                pos = head.length;
+            } else {
+                connection.write(head, 0, head.length);
+            }
+        }
+        if (content == null || !chunked && contentLength <= 0) {
+            connection.write(buffer, 0, pos);
+            return;
+        }
+
+        if (chunked) {
+            while (true) {
+                final int dataStart = pos + CHUNK_HEADER_LENGTH;
+                final int n = content.read(buffer, dataStart, buffer.length - dataStart - 2);
+                if (n < 0) {
+                    break;
+                }
+                if (n == 0) {
+                    continue;
+                }
+                writeChunkSize(buffer, pos, n);
+                buffer[dataStart + n] = '\r';
+                buffer[dataStart + n + 1] = '\n';
+                connection.write(buffer, 0, dataStart + n + 2);
+                pos = 0;
+            }
+            buffer[pos++] = '0';
+            buffer[pos++] = '\r';
+            buffer[pos++] = '\n';
+            buffer[pos++] = '\r';
+            buffer[pos++] = '\n';
+            connection.write(buffer, 0, pos);
+            return;
+        }
+
+        if (content instanceof FileRegionInputStream && connection.supportsFileTransfer()
+                && ((FileRegionInputStream) content).getRemaining() == contentLength) {
+            final FileRegionInputStream region = (FileRegionInputStream) content;
+            connection.write(buffer, 0, pos);
+            connection.transferFrom(region.getChannel(), region.getFilePosition(),
+                    contentLength);
+            region.advance(contentLength);
+            return;
+        }
+
+        if (content instanceof FileInputStream && connection.supportsFileTransfer()) {
+            connection.write(buffer, 0, pos);
+            final FileChannel file = ((FileInputStream) content).getChannel();
+            final long position = file.position();
+            connection.transferFrom(file, position, contentLength);
+            file.position(position + contentLength);
+            return;
+        }
+
+        long remaining = contentLength;
+        while (remaining > 0) {
+            final int n = content.read(buffer, pos,
+                    (int) Math.min(buffer.length - pos, remaining));
+            if (n < 0) {
+                throw new EOFException("Request content ended " + remaining
+                        + " bytes before the Content-Length");
+            }
+            remaining -= n;
+            connection.write(buffer, 0, pos + n);
+            pos = 0;
+        }
+    }
+
+    /** Writes a chunk size as a fixed width hex number followed by CRLF. */
+    private static void writeChunkSize(byte[] buffer, int offset, int size) {
+        int value = size;
+        for (int i = CHUNK_SIZE_DIGITS - 1; i >= 0; i--) {
+            buffer[offset + i] = (byte) Character.forDigit(value % HEX, HEX);
+            value /= HEX;
+        }
+        buffer[offset + CHUNK_SIZE_DIGITS] = '\r';
+        buffer[offset + CHUNK_SIZE_DIGITS + 1] = '\n';
+    }
+
+    /**
+     * Waits a short while for the response to an "Expect: 100-continue"
+     * request head.
+     *
+     * @return the status line of a final response, or null if the body
+     *         should be sent.
+     */
+    private static String awaitContinue(NioConnection connection) throws IOException {
+        final int timeout = connection.getSoTimeout();
+        final String statusLine;
+        connection.setSoTimeout(CONTINUE_TIMEOUT_MILLIS);
+        try {
+            statusLine = readLine(connection.getInputStream());
+        } catch (final SocketTimeoutException e) {
+            return null;
+        } finally {
+            connection.setSoTimeout(timeout);
+        }
+        if (statusCode(statusLine) != HTTP_CONTINUE) {
+            return statusLine;
+        }
+        skipHeaders(connection.getInputStream());
+        return null;
+    }
+
+    /** Reads the status line of the final response, skipping interim ones. */
+    private static String readStatusLine(NioConnection connection) throws IOException {
+        while (true) {
+            final String statusLine = readLine(connection.getInputStream());
+            final int statusCode = statusCode(statusLine);
+            if (statusCode / STATUS_CLASS != 1 || statusCode == HTTP_SWITCHING_PROTOCOLS) {
+                return statusLine;
+            }
+            skipHeaders(connection.getInputStream());
+        }
+    }
+
+    private HttpResponse readResponse(NioConnection connection, HttpRequest request,
+            String statusLine, boolean requestSent) throws IOException {
+        final InputStream in = connection.getInputStream();
+        final int statusCode = statusCode(statusLine);
+        final int reasonStart = statusLine.indexOf(' ', statusLine.indexOf(' ') + 1);
+        final HttpResponse.Builder builder = HttpResponse.builder()
+                .statusCode(statusCode)
+                .statusText(reasonStart < 0 ? "" : statusLine.substring(reasonStart + 1));
+
+        // No AWS service returns a list of header values, so it's safe to
+        // keep the first one.
+        final Map<String, String> headers = new HashMap<String, String>();
+        for (String line = readLine(in); line.length() > 0; line = readLine(in)) {
+            final int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            final String name = line.substring(0, colon).trim();
+            final String lowerCaseName = name.toLowerCase(Locale.US);
+            if (!headers.containsKey(lowerCaseName)) {
+                final String value = line.substring(colon + 1).trim();
+                headers.put(lowerCaseName, value);
+                builder.header(name, value);
+            }
+        }
+
+        final String connectionHeader = headers.get(CONNECTION.toLowerCase(Locale.US));
+        final boolean keepAlive = requestSent
+                && !"close".equalsIgnoreCase(connectionHeader)
+                && (statusLine.startsWith("HTTP/1.1")
+                        || "keep-alive".equalsIgnoreCase(connectionHeader));
+        final String transferEncoding = headers.get(TRANSFER_ENCODING.toLowerCase(Locale.US));
+        final String contentLength = headers.get(HttpHeader.CONTENT_LENGTH.toLowerCase(Locale.US));
+
+        final InputStream content;
+        if ("HEAD".equals(request.getMethod())) {
+            pool.release(connection, keepAlive);
+            content = null;
+        } else if (statusCode == HTTP_NO_CONTENT || statusCode == HTTP_NOT_MODIFIED
+                || "0".equals(contentLength) && transferEncoding == null) {
+            pool.release(connection, keepAlive);
+            content = new ByteArrayInputStream(new byte[0]);
+        } else if (transferEncoding != null
+                && transferEncoding.toLowerCase(Locale.US).contains("chunked")) {
+            content = new ChunkedBody(pool, connection, keepAlive);
+        } else if (contentLength != null) {
+            final long length;
+            try {
+                length = Long.parseLong(contentLength);
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid Content-Length: " + contentLength);
+            }
+            content = new FixedLengthBody(pool, connection, keepAlive, length);
+        } else {
+            content = new UntilCloseBody(pool, connection);
+        }
+        return builder.content(content).build();
+    }
+
+    private static int statusCode(String statusLine) throws IOException {
+        final int start = statusLine.indexOf(' ');
+        if (!statusLine.startsWith("HTTP/") || start < 0) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+        int end = statusLine.indexOf(' ', start + 1);
+        if (end < 0) {
+            end = statusLine.length();
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(start + 1, end));
+        } catch (final NumberFormatException e) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+    }
+
+    private static void skipHeaders(InputStream in) throws IOException {
+        while (readLine(in).length() > 0) {
+            // skip
+        }
+    }
+
+    /**
+     * Reads a line terminated by LF or CRLF, without the terminator.
+     */
+    static String readLine(InputStream in) throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        while (true) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+            if (b == '\n') {
+                final int length = builder.length();
+                if (length > 0 && builder.charAt(length - 1) == '\r') {
+                    builder.setLength(length - 1);
+                }
+                return builder.toString();
+            }
+            if (builder.length() >= MAX_LINE_LENGTH) {
+                throw new IOException("Response line too long");
+            }
+            builder.append((char) b);
+        }
+    }
+
+    private synchronized SSLSocketFactory getSslSocketFactory() throws IOException {
+        if (sslSocketFactory == null) {
+            if (config.getTrustManager() == null) {
+                sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+            } else {
+                try {
+                    final SSLContext sc = SSLContext.getInstance("TLS");
+                    sc.init(null, new TrustManager[] {
+                            config.getTrustManager()
+                    }, null);
+                    sslSocketFactory = sc.getSocketFactory();
+                } catch (final GeneralSecurityException e) {
+                    throw new IOException("Unable to initialize TLS: " + e.getMessage());
+                }
+            }
+        }
+        return sslSocketFactory;
+    }
+
+    /**
+     * Content of a response, read straight from its connection. The connection
+     * goes back to the pool as soon as the last byte of the body has been read,
+     * or when the stream is closed with little left to read; otherwise it is
+     * closed.
+     */
+    private abstract static class ResponseBody extends InputStream {
+        private final NioConnectionPool pool;
+        private final NioConnection connection;
+        private final boolean reusable;
+        protected final InputStream in;
+        private final byte[] single = new byte[1];
+        private boolean released;
+        private boolean eof;
+
+        ResponseBody(NioConnectionPool pool, NioConnection connection, boolean reusable) {
+            this.pool = pool;
+            this.connection = connection;
+            this.reusable = reusable;
+            this.in = connection.getInputStream();
+        }
+
+        /**
+         * Reads from the body. Called only before the end has been reached.
+         *
+         * @return the number of bytes read, or -1 at the end of the body.
+         */
+        abstract int readBody(byte[] b, int off, int len) throws IOException;
+
+        /**
+         * @return true if closing the stream early should try to read the rest
+         *         of the body, so that the connection can be reused.
+         */
+        abstract boolean isDrainable();
+
+        @Override
+        public int read() throws IOException {
+            final int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            if (released) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            final int n;
+            try {
+                n = readBody(b, off, len);
+            } catch (final IOException e) {
+                release(false);
+                throw e;
+            }
+            if (n < 0) {
+                endOfBody();
+            }
+            return n;
+        }
+
+        /** Marks the end of the body and hands the connection back. */
+        void endOfBody() {
+            eof = true;
+            release(reusable);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (released) {
+                return;
+            }
+            if (reusable && isDrainable()) {
+                final byte[] skip = new byte[NioConnection.BUFFER_SIZE / 8];
+                long drained = 0;
+                try {
+                    while (!released && drained <= MAX_DRAIN_BYTES) {
+                        drained += Math.max(read(skip, 0, skip.length), 0);
+                    }
+                } catch (final IOException e) {
+                    // the connection has been released
+                }
+            }
+            release(false);
+        }
+
+        private void release(boolean reuse) {
+            if (!released) {
+                released = true;
+                pool.release(connection, reuse);
+            }
+        }
+    }
+
+    private static final class FixedLengthBody extends ResponseBody {
+        private long remaining;
+
+        FixedLengthBody(NioConnectionPool pool, NioConnection connection, boolean reusable,
+                long length) {
+            super(pool, connection, reusable);
+            this.remaining = length;
+        }
+
+        @Override
+        int readBody(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            final int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n < 0) {
+                throw new EOFException("Response ended " + remaining
+                        + " bytes before the Content-Length");
+            }
+            remaining -= n;
+            if (remaining == 0) {
+                endOfBody();
+            }
+            return n;
+        }
+
+        @Override
+        boolean isDrainable() {
+            return remaining <= MAX_DRAIN_BYTES;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return remaining == 0 ? 0 : (int) Math.min(in.available(), remaining);
+        }
+    }
+
+    private static final class ChunkedBody extends ResponseBody {
+        private long chunkRemaining;
+        private boolean firstChunk = true;
+
+        ChunkedBody(NioConnectionPool pool, NioConnection connection, boolean reusable) {
+            super(pool, connection, reusable);
+        }
+
+        @Override
+        int readBody(byte[] b, int off, int len) throws IOException {
+            if (chunkRemaining == 0) {
+                if (!firstChunk) {
+                    readLine(in);
+                }
+                firstChunk = false;
+                final String line = readLine(in);
+                final int extension = line.indexOf(';');
+                try {
+                    chunkRemaining = Long.parseLong(
+                            (extension < 0 ? line : line.substring(0, extension)).trim(), HEX);
+                } catch (final NumberFormatException e) {
+                    throw new IOException("Invalid chunk size: " + line);
+                }
+                if (chunkRemaining == 0) {
+                    skipHeaders(in);
+                    return -1;
+                }
+            }
+            final int n = in.read(b, off, (int) Math.min(len, chunkRemaining));
+            if (n < 0) {
+                throw new EOFException("Response ended in the middle of a chunk");
+            }
+            chunkRemaining -= n;
+            return n;
+        }
+
+        @Override
+        boolean isDrainable() {
+            // the size of the remaining chunks is unknown, draining stops at
+            // the limit
+            return true;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), chunkRemaining);
+        }
+    }
+
+    private static final class UntilCloseBody extends ResponseBody {
+        UntilCloseBody(NioConnectionPool pool, NioConnection connection) {
+            super(pool, connection, false);
+        }
+
+        @Override
+        int readBody(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, len);
+        }
+
+        @Override
+        boolean isDrainable() {
+            return false;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+    }
+}
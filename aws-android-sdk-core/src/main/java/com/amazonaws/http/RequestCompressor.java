@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.auth.AWS4Signer;
+import com.amazonaws.auth.Signer;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.HttpUtils;
+import com.amazonaws.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzips the payload of a request before it is signed, so that the signature
+ * covers the bytes that are sent. Only payloads held in memory are
+ * compressed: the content of a marshalled request, or the parameters of a
+ * query protocol request, which are moved into the body.
+ */
+final class RequestCompressor {
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String GZIP = "gzip";
+    private static final String FORM_CONTENT_TYPE =
+            "application/x-www-form-urlencoded; charset=utf-8";
+    private static final int BUFFER_SIZE = 4096;
+
+    private RequestCompressor() {
+    }
+
+    /**
+     * @param config the client configuration.
+     * @param originalRequest the request of the operation, may be null.
+     * @return true if the payload of the operation should be compressed.
+     */
+    static boolean isEnabled(ClientConfiguration config,
+            AmazonWebServiceRequest originalRequest) {
+        if (config.isRequestCompressionEnabled()) {
+            return true;
+        }
+        return originalRequest != null
+                && config.getRequestCompressionOperations().contains(originalRequest.getClass());
+    }
+
+    /**
+     * Compresses the payload of the request if it is at least the configured
+     * minimum size, replacing the content and updating the
+     * <code>Content-Encoding</code> and <code>Content-Length</code> headers.
+     *
+     * @param request the request, not yet signed.
+     * @param signer the signer of the request, may be null.
+     * @param config the client configuration.
+     * @param awsRequestMetrics the metrics the payload sizes are reported to.
+     * @return true if the payload was compressed.
+     */
+    static boolean compress(Request<?> request, Signer signer, ClientConfiguration config,
+            AWSRequestMetrics awsRequestMetrics) {
+        if (request.isStreaming() || hasHeader(request.getHeaders(), CONTENT_ENCODING)) {
+            return false;
+        }
+        final byte[] payload;
+        boolean formEncoded = false;
+        final InputStream content = request.getContent();
+        if (content instanceof ByteArrayInputStream) {
+            if (((ByteArrayInputStream) content).available()
+                    < config.getRequestMinCompressionSizeBytes()) {
+                return false;
+            }
+            payload = readFully(content);
+        } else if (content == null && HttpUtils.usePayloadForQueryParameters(request)
+                && (signer == null || signer instanceof AWS4Signer)) {
+            // Only a signer that hashes the body signs the parameters once
+            // they have been moved into it.
+            final String encodedParams = HttpUtils.encodeParameters(request);
+            if (encodedParams == null
+                    || encodedParams.length() < config.getRequestMinCompressionSizeBytes()) {
+                return false;
+            }
+            payload = encodedParams.getBytes(StringUtils.UTF8);
+            formEncoded = true;
+        } else {
+            return false;
+        }
+
+        final byte[] compressed = gzip(payload);
+        awsRequestMetrics.setCounter(Field.RequestBytesBeforeCompression, payload.length);
+        awsRequestMetrics.setCounter(Field.RequestBytesAfterCompression, compressed.length);
+        if (formEncoded) {
+            request.setParameters(Collections.<String, String> emptyMap());
+            if (!hasHeader(request.getHeaders(), CONTENT_TYPE)) {
+                request.addHeader(CONTENT_TYPE, FORM_CONTENT_TYPE);
+            }
+        }
+        removeHeader(request.getHeaders(), CONTENT_LENGTH);
+        request.addHeader(CONTENT_ENCODING, GZIP);
+        request.addHeader(CONTENT_LENGTH, String.valueOf(compressed.length));
+        request.setContent(new ByteArrayInputStream(compressed));
+        return true;
+    }
+
+    static byte[] gzip(byte[] payload) {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 4 + 64);
+            final GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+            gzip.write(payload);
+            gzip.close();
+            return out.toByteArray();
+        } catch (final IOException e) {
+            throw new AmazonClientException("Unable to compress request payload", e);
+        }
+    }
+
+    private static byte[] readFully(InputStream content) {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(content.available());
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = content.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (final IOException e) {
+            throw new AmazonClientException("Unable to read request payload", e);
+        }
+    }
+
+    private static boolean hasHeader(Map<String, String> headers, String name) {
+        for (final String key : headers.keySet()) {
+            if (key.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void removeHeader(Map<String, String> headers, String name) {
+        for (final Iterator<String> keys = headers.keySet().iterator(); keys.hasNext();) {
+            if (keys.next().equalsIgnoreCase(name)) {
+                keys.remove();
+            }
+        }
+    }
+}
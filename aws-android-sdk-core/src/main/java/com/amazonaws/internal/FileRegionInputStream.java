@@ -0,0 +1,330 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.internal;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressListenerCallbackExecutor;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A repeatable input stream over a region of a file, given by its offset and
+ * length. Besides being read like any stream, the region can be handed to an
+ * HTTP client as is, which may then send it with
+ * {@link FileChannel#transferTo} instead of copying it through the heap; see
+ * {@link #getChannel()} and {@link #advance(long)}. Digests of the region are
+ * computed over memory mapped buffers by {@link #getDigest(String)}, without
+ * moving the stream.
+ * <p>
+ * Since wrapping the stream would hide the region from the HTTP client, the
+ * stream reports the bytes read or transferred to a progress listener itself.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class FileRegionInputStream extends SdkInputStream {
+
+    /** Constant to represent 1KB. */
+    private static final int BYTES_IN_KB = 1024;
+    /** The default threshold of bytes between progress notifications. */
+    private static final int DEFAULT_NOTIFICATION_THRESHOLD = 8 * BYTES_IN_KB;
+    /** The largest part of the region mapped at once while digesting. */
+    private static final int MAX_MAPPED_BYTES = 8 * 1024 * 1024;
+    private static final int BYTE_MASK = 0xff;
+
+    private final File file;
+    private final long offset;
+    private final long length;
+    private final FileInputStream fis;
+    private final FileChannel channel;
+    private final Map<String, byte[]> digests = new HashMap<String, byte[]>();
+
+    /** The position in the region of the next byte. */
+    private long position;
+    private long markPosition;
+
+    private ProgressListenerCallbackExecutor listenerCallbackExecutor;
+    private int notificationThreshold = DEFAULT_NOTIFICATION_THRESHOLD;
+    private long unnotifiedByteCount;
+
+    /**
+     * @param file the file.
+     * @param offset the offset of the region in the file.
+     * @param length the length of the region.
+     * @throws FileNotFoundException if the file doesn't exist or can't be
+     *             opened.
+     */
+    public FileRegionInputStream(File file, long offset, long length)
+            throws FileNotFoundException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid region of " + length
+                    + " bytes at offset " + offset);
+        }
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.fis = new FileInputStream(file);
+        this.channel = fis.getChannel();
+    }
+
+    /**
+     * @return the file of the region.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the offset of the region in the file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the length of the region.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the channel of the file, to transfer the rest of the region
+     *         from, starting at {@link #getFilePosition()}.
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return the position in the file of the next byte of the stream.
+     */
+    public long getFilePosition() {
+        return offset + position;
+    }
+
+    /**
+     * @return the number of bytes left in the region.
+     */
+    public long getRemaining() {
+        return length - position;
+    }
+
+    /**
+     * Moves the stream past bytes that were transferred from the channel
+     * directly, counting them as progress.
+     *
+     * @param count the number of bytes transferred.
+     */
+    public void advance(long count) {
+        if (count < 0 || count > getRemaining()) {
+            throw new IllegalArgumentException("Cannot advance " + count
+                    + " bytes with " + getRemaining() + " bytes left");
+        }
+        position += count;
+        notifyProgress(count);
+    }
+
+    /**
+     * Sets the listener to notify about the bytes read or transferred.
+     *
+     * @param listenerCallbackExecutor the listener callback executor, or
+     *            null.
+     * @param threshold Number of Kbytes that needs to be read before a
+     *            notification occurs.
+     */
+    public void setProgressListener(ProgressListenerCallbackExecutor listenerCallbackExecutor,
+            int threshold) {
+        this.listenerCallbackExecutor = listenerCallbackExecutor;
+        this.notificationThreshold = threshold * BYTES_IN_KB;
+    }
+
+    /**
+     * Returns the digest of the whole region, computed on the first call over
+     * memory mapped buffers and cached afterwards. The position of the stream
+     * doesn't change.
+     *
+     * @param algorithm the digest algorithm, such as "MD5" or "SHA-256".
+     * @return the digest.
+     * @throws IOException if the file can't be read.
+     */
+    public byte[] getDigest(String algorithm) throws IOException {
+        computeDigests(algorithm);
+        return digests.get(algorithm).clone();
+    }
+
+    /**
+     * Computes the digests of the region that haven't been computed yet, in a
+     * single pass over the file.
+     *
+     * @param algorithms the digest algorithms.
+     * @throws IOException if the file can't be read.
+     */
+    public void computeDigests(String... algorithms) throws IOException {
+        final List<String> names = new ArrayList<String>();
+        final List<MessageDigest> pending = new ArrayList<MessageDigest>();
+        for (final String algorithm : algorithms) {
+            if (digests.containsKey(algorithm) || names.contains(algorithm)) {
+                continue;
+            }
+            try {
+                pending.add(MessageDigest.getInstance(algorithm));
+            } catch (final NoSuchAlgorithmException e) {
+                throw new AmazonClientException("Unable to compute " + algorithm
+                        + " digest: " + e.getMessage(), e);
+            }
+            names.add(algorithm);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        long pos = offset;
+        final long end = offset + length;
+        while (pos < end) {
+            abortIfNeeded();
+            final long size = Math.min(MAX_MAPPED_BYTES, end - pos);
+            if (pos + size > channel.size()) {
+                throw new EOFException("File " + file + " ended before the end of the region");
+            }
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos,
+                    size);
+            for (final MessageDigest digest : pending) {
+                buffer.rewind();
+                digest.update(buffer);
+            }
+            pos += size;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            digests.put(names.get(i), pending.get(i).digest());
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Marks the current position in the region.
+     *
+     * @param readlimit ignored
+     */
+    @Override
+    public void mark(int readlimit) {
+        abortIfNeeded();
+        markPosition = position;
+    }
+
+    /**
+     * Moves back to the marked position, or the beginning of the region, and
+     * tells the progress listener about it.
+     */
+    @Override
+    public void reset() throws IOException {
+        abortIfNeeded();
+        position = markPosition;
+        if (listenerCallbackExecutor != null) {
+            final ProgressEvent event = new ProgressEvent(unnotifiedByteCount);
+            event.setEventCode(ProgressEvent.RESET_EVENT_CODE);
+            listenerCallbackExecutor.progressChanged(event);
+        }
+        unnotifiedByteCount = 0;
+    }
+
+    @Override
+    public int available() throws IOException {
+        abortIfNeeded();
+        return (int) Math.min(Integer.MAX_VALUE, getRemaining());
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] b = new byte[1];
+        final int n = read(b, 0, 1);
+        return n == -1 ? -1 : b[0] & BYTE_MASK;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(b, off,
+                (int) Math.min(len, length - position));
+        final int n = channel.read(buffer, offset + position);
+        if (n < 0) {
+            throw new EOFException("File " + file + " ended before the end of the region");
+        }
+        position += n;
+        notifyProgress(n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        abortIfNeeded();
+        final long skipped = Math.max(0, Math.min(n, getRemaining()));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (listenerCallbackExecutor != null && unnotifiedByteCount > 0) {
+            listenerCallbackExecutor.progressChanged(new ProgressEvent(unnotifiedByteCount));
+        }
+        unnotifiedByteCount = 0;
+        fis.close();
+        abortIfNeeded();
+    }
+
+    @Override
+    protected InputStream getWrappedInputStream() {
+        return fis;
+    }
+
+    private void notifyProgress(long count) {
+        if (listenerCallbackExecutor == null) {
+            return;
+        }
+        unnotifiedByteCount += count;
+        if (unnotifiedByteCount >= notificationThreshold) {
+            listenerCallbackExecutor.progressChanged(new ProgressEvent(unnotifiedByteCount));
+            unnotifiedByteCount = 0;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of the latencies of one operation of one service.
+ * Latencies are recorded in microseconds into log-linear buckets: every power
+ * of two is split into {@value #SUB_BUCKETS} buckets, so a reported
+ * percentile is within 12.5% of the recorded value. Latencies above about 38
+ * hours fall into the last bucket.
+ * <p>
+ * Recording only updates atomic counters and never allocates. Snapshots read
+ * the counters one at a time, so a snapshot taken while requests complete may
+ * be off by the requests recorded during the snapshot.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    /** Number of buckets every power of two is split into. */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKETS
+            + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    private final String serviceName;
+    private final String operationName;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * @param serviceName the name of the service.
+     * @param operationName the name of the operation.
+     */
+    public LatencyHistogram(String serviceName, String operationName) {
+        this.serviceName = serviceName;
+        this.operationName = operationName;
+    }
+
+    /**
+     * Records the latency of a request.
+     *
+     * @param latencyNanos the latency in nanoseconds.
+     * @param failed true if the request failed.
+     */
+    public void record(long latencyNanos, boolean failed) {
+        final long micros = Math.min(Math.max(latencyNanos / NANOS_PER_MICRO, 0), MAX_VALUE);
+        buckets.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        if (failed) {
+            errorCount.incrementAndGet();
+        }
+        totalMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+     * @return the name of the service.
+     */
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return the name of the operation.
+     */
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * @return a point in time copy of this histogram.
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(serviceName, operationName, counts, count.get(),
+                errorCount.get(), totalMicros.get(), maxMicros.get());
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final int subBucket = (int) (micros >>> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest value in microseconds that falls into the bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        final long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * An immutable copy of a {@link LatencyHistogram}, suitable for export.
+     */
+    public static final class Snapshot {
+        private final String serviceName;
+        private final String operationName;
+        private final long[] counts;
+        private final long count;
+        private final long errorCount;
+        private final long totalMicros;
+        private final long maxMicros;
+
+        Snapshot(String serviceName, String operationName, long[] counts, long count,
+                long errorCount, long totalMicros, long maxMicros) {
+            this.serviceName = serviceName;
+            this.operationName = operationName;
+            this.counts = counts;
+            this.count = count;
+            this.errorCount = errorCount;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        /**
+         * @return the name of the service.
+         */
+        public String getServiceName() {
+            return serviceName;
+        }
+
+        /**
+         * @return the name of the operation.
+         */
+        public String getOperationName() {
+            return operationName;
+        }
+
+        /**
+         * @return the number of requests recorded.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the number of failed requests recorded.
+         */
+        public long getErrorCount() {
+            return errorCount;
+        }
+
+        /**
+         * @return the mean latency in microseconds; 0 if nothing was recorded.
+         */
+        public double getMeanMicros() {
+            return count == 0 ? 0 : (double) totalMicros / count;
+        }
+
+        /**
+         * @return the largest latency recorded in microseconds.
+         */
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        /**
+         * Returns an upper bound of the latency below which the given
+         * percentage of the requests fall.
+         *
+         * @param percentile the percentile, between 0 and 100.
+         * @return the latency in microseconds; 0 if nothing was recorded.
+         */
+        public long getPercentileMicros(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Invalid percentile: " + percentile);
+            }
+            long total = 0;
+            for (final long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return serviceName + "." + operationName
+                    + " count=" + count
+                    + ", errors=" + errorCount
+                    + ", mean=" + getMeanMicros()
+                    + ", p50=" + getPercentileMicros(50)
+                    + ", p99=" + getPercentileMicros(99)
+                    + ", max=" + maxMicros;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.metrics;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsCompact;
+import com.amazonaws.util.TimingInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A metric collector that aggregates the client execution time of every
+ * request into a {@link LatencyHistogram} per service and operation. The
+ * operation is named after the class of the original request, eg "PutRecord"
+ * for a PutRecordRequest.
+ * <p>
+ * Requests are measured with the allocation free
+ * {@link AWSRequestMetricsCompact}, and recording a request only updates
+ * atomic counters once its histogram exists. Histograms can be read at any
+ * time with {@link #snapshot()} without blocking requests in flight:
+ *
+ * <pre>
+ * LatencyHistogramMetricCollector collector = new LatencyHistogramMetricCollector();
+ * collector.start();
+ * AwsSdkMetrics.setMetricCollector(collector);
+ * ...
+ * for (LatencyHistogram.Snapshot s : collector.snapshot()) {
+ *     export(s);
+ * }
+ * </pre>
+ */
+public class LatencyHistogramMetricCollector extends MetricCollector {
+    private static final String REQUEST_SUFFIX = "Request";
+    private static final String UNKNOWN = "Unknown";
+
+    private volatile boolean enabled;
+    private volatile ConcurrentMap<String, ConcurrentMap<Class<?>, LatencyHistogram>> histograms =
+            newHistograms();
+
+    private final RequestMetricCollector requestMetricCollector = new RequestMetricCollector() {
+        @Override
+        public void collectMetrics(Request<?> request, Response<?> response) {
+            collect(request, response);
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public boolean isCompactMetricsSupported() {
+            return true;
+        }
+    };
+
+    @Override
+    public boolean start() {
+        enabled = true;
+        return true;
+    }
+
+    @Override
+    public boolean stop() {
+        if (!enabled) {
+            return false;
+        }
+        enabled = false;
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
+    }
+
+    @Override
+    public ServiceMetricCollector getServiceMetricCollector() {
+        return ServiceMetricCollector.NONE;
+    }
+
+    /**
+     * @return a snapshot of the histogram of every service and operation that
+     *         has been called since the collector was created or last reset.
+     */
+    public List<LatencyHistogram.Snapshot> snapshot() {
+        final List<LatencyHistogram.Snapshot> snapshots = new ArrayList<LatencyHistogram.Snapshot>();
+        for (final ConcurrentMap<Class<?>, LatencyHistogram> operations : histograms.values()) {
+            for (final LatencyHistogram histogram : operations.values()) {
+                snapshots.add(histogram.snapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Discards all histograms. Requests completing while the collector is
+     * reset may be recorded in the discarded histograms.
+     */
+    public void reset() {
+        histograms = newHistograms();
+    }
+
+    /**
+     * @param serviceName the name of the service.
+     * @param operationName the name of the operation.
+     * @return the histogram of the operation, or null if it has not been
+     *         called.
+     */
+    public LatencyHistogram getHistogram(String serviceName, String operationName) {
+        final ConcurrentMap<Class<?>, LatencyHistogram> operations = histograms.get(serviceName);
+        if (operations != null) {
+            for (final LatencyHistogram histogram : operations.values()) {
+                if (histogram.getOperationName().equals(operationName)) {
+                    return histogram;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void collect(Request<?> request, Response<?> response) {
+        final long latencyNanos = latencyNanosOf(request.getAWSRequestMetrics());
+        if (latencyNanos < 0) {
+            return;
+        }
+        histogramOf(request).record(latencyNanos, response == null);
+    }
+
+    private LatencyHistogram histogramOf(Request<?> request) {
+        final String serviceName = request.getServiceName() == null
+                ? UNKNOWN
+                : request.getServiceName();
+        final AmazonWebServiceRequest originalRequest = request.getOriginalRequest();
+        final Class<?> requestClass = originalRequest == null
+                ? AmazonWebServiceRequest.class
+                : originalRequest.getClass();
+
+        final ConcurrentMap<String, ConcurrentMap<Class<?>, LatencyHistogram>> services =
+                histograms;
+        ConcurrentMap<Class<?>, LatencyHistogram> operations = services.get(serviceName);
+        if (operations == null) {
+            final ConcurrentMap<Class<?>, LatencyHistogram> created =
+                    new ConcurrentHashMap<Class<?>, LatencyHistogram>();
+            operations = services.putIfAbsent(serviceName, created);
+            if (operations == null) {
+                operations = created;
+            }
+        }
+        LatencyHistogram histogram = operations.get(requestClass);
+        if (histogram == null) {
+            final LatencyHistogram created = new LatencyHistogram(serviceName,
+                    operationNameOf(requestClass));
+            histogram = operations.putIfAbsent(requestClass, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the client execution time of the request in nanoseconds, or -1
+     *         if it is not known.
+     */
+    static long latencyNanosOf(AWSRequestMetrics metrics) {
+        if (metrics == null) {
+            return -1;
+        }
+        if (metrics instanceof AWSRequestMetricsCompact) {
+            final AWSRequestMetricsCompact compact = (AWSRequestMetricsCompact) metrics;
+            if (compact.getEventCount(Field.ClientExecuteTime) > 0) {
+                return compact.getEventTimeNanos(Field.ClientExecuteTime);
+            }
+        } else {
+            final TimingInfo event = metrics.getTimingInfo()
+                    .getLastSubMeasurement(Field.ClientExecuteTime.name());
+            if (event != null && event.isEndTimeKnown()) {
+                return event.getEndTimeNano() - event.getStartTimeNano();
+            }
+        }
+        final TimingInfo timingInfo = metrics.getTimingInfo();
+        return timingInfo.isEndTimeKnown()
+                ? timingInfo.getEndTimeNano() - timingInfo.getStartTimeNano()
+                : -1;
+    }
+
+    static String operationNameOf(Class<?> requestClass) {
+        if (requestClass == AmazonWebServiceRequest.class) {
+            return UNKNOWN;
+        }
+        final String name = requestClass.getSimpleName();
+        return name.endsWith(REQUEST_SUFFIX) && name.length() > REQUEST_SUFFIX.length()
+                ? name.substring(0, name.length() - REQUEST_SUFFIX.length())
+                : name;
+    }
+
+    private static ConcurrentMap<String, ConcurrentMap<Class<?>, LatencyHistogram>> newHistograms() {
+        return new ConcurrentHashMap<String, ConcurrentMap<Class<?>, LatencyHistogram>>();
+    }
+}
@@ -51,6 +51,20 @@ public abstract class RequestMetricCollector {
         return true;
     }
 
+    /**
+     * Returns whether this collector only reads the predefined
+     * {@link com.amazonaws.util.AWSRequestMetrics.Field} measurements of a
+     * request. If so, the request is measured with the allocation free
+     * {@link com.amazonaws.util.AWSRequestMetricsCompact}, which does not keep
+     * the individual sub-measurements of the request's timing info.
+     *
+     * @return true if the compact request metrics are sufficient for this
+     *         collector; false by default.
+     */
+    public boolean isCompactMetricsSupported() {
+        return false;
+    }
+
     /** A convenient instance of a no-op request metric collector. */
     public static final RequestMetricCollector NONE = new RequestMetricCollector() {
         @Override
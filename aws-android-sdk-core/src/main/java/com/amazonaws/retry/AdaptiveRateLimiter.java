@@ -0,0 +1,233 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import com.amazonaws.AmazonClientException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side send-rate limiter that adapts to throttling responses. It
+ * stays out of the way until the service throttles a request; from then on
+ * every send has to take a token from a bucket whose fill rate follows a
+ * CUBIC curve: it is cut multiplicatively on each throttling error and grows
+ * back towards, and then past, the rate at which throttling last occurred.
+ * <p>
+ * A single instance can be set on any number of
+ * {@link com.amazonaws.ClientConfiguration} objects so that all clients
+ * calling the same service share one allowed rate. This class is
+ * thread-safe.
+ *
+ * @see com.amazonaws.ClientConfiguration#setRateLimiter(AdaptiveRateLimiter)
+ * @see RetryUtils#isThrottlingException(com.amazonaws.AmazonServiceException)
+ */
+public class AdaptiveRateLimiter {
+
+    /** Smallest rate, in requests per second, the limiter throttles down to. */
+    private static final double MIN_FILL_RATE = 0.5;
+    /** Smallest bucket capacity, in tokens. */
+    private static final double MIN_CAPACITY = 1.0;
+    /** Weight of the latest sample in the measured send rate. */
+    private static final double SMOOTH = 0.8;
+    /** Multiplicative decrease applied on a throttling error. */
+    private static final double BETA = 0.7;
+    /** Scale of the CUBIC growth curve. */
+    private static final double SCALE_CONSTANT = 0.4;
+    /** Width, in seconds, of the buckets used to measure the send rate. */
+    private static final double MEASUREMENT_BUCKET = 0.5;
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    private double fillRate;
+    private double maxCapacity;
+    private double currentCapacity;
+    private double lastTimestamp;
+    private boolean enabled;
+
+    private double measuredTxRate;
+    private double lastTxRateBucket;
+    private long requestCount;
+    private double lastMaxRate;
+    private double lastThrottleTime;
+    private double timeWindow;
+
+    private long throttledSendCount;
+    private long throttlingErrorCount;
+
+    private boolean started;
+
+    /**
+     * Takes a send token, waiting for the bucket to refill if the current
+     * allowed rate has been exceeded. Returns immediately while no throttling
+     * has been observed.
+     *
+     * @return the number of milliseconds spent waiting.
+     * @throws AmazonClientException if interrupted while waiting.
+     */
+    public long acquire() {
+        final long waitMillis = reserve();
+        if (waitMillis > 0) {
+            try {
+                sleep(waitMillis);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException(e.getMessage(), e);
+            }
+        }
+        return waitMillis;
+    }
+
+    /**
+     * Takes a send token without waiting for it. If the current allowed rate
+     * has been exceeded the token is borrowed from the bucket, and the caller
+     * must delay the send by the returned time; asynchronous callers can
+     * schedule the send instead of holding a thread.
+     *
+     * @return the number of milliseconds to wait before sending, or 0 if the
+     *         request can be sent right away.
+     */
+    public synchronized long reserve() {
+        if (!enabled) {
+            return 0;
+        }
+        refill();
+        if (currentCapacity >= 1) {
+            currentCapacity -= 1;
+            return 0;
+        }
+        final long waitMillis = (long) Math.ceil((1 - currentCapacity) / fillRate
+                * MILLIS_PER_SECOND);
+        currentCapacity -= 1;
+        throttledSendCount++;
+        return waitMillis;
+    }
+
+    /**
+     * Updates the allowed rate with the outcome of a request.
+     *
+     * @param throttled whether the request failed with a throttling error.
+     */
+    public synchronized void onResponse(boolean throttled) {
+        final double now = currentTimeSeconds();
+        if (!started) {
+            lastTxRateBucket = Math.floor(now);
+            lastThrottleTime = now;
+            started = true;
+        }
+        updateMeasuredRate(now);
+
+        final double calculatedRate;
+        if (throttled) {
+            throttlingErrorCount++;
+            final double rateToUse = enabled ? Math.min(measuredTxRate, fillRate)
+                    : measuredTxRate;
+            lastMaxRate = rateToUse;
+            calculateTimeWindow();
+            lastThrottleTime = now;
+            calculatedRate = rateToUse * BETA;
+            enabled = true;
+        } else {
+            calculateTimeWindow();
+            final double dt = now - lastThrottleTime;
+            calculatedRate = SCALE_CONSTANT * Math.pow(dt - timeWindow, 3) + lastMaxRate;
+        }
+        updateFillRate(Math.min(calculatedRate, 2 * measuredTxRate));
+    }
+
+    /**
+     * @return whether the limiter is currently limiting sends, which is the
+     *         case once a throttling error has been observed.
+     */
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the current allowed send rate in requests per second, or
+     *         {@link Double#POSITIVE_INFINITY} while the limiter is not
+     *         enabled.
+     */
+    public synchronized double getAllowedRate() {
+        return enabled ? fillRate : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the smoothed send rate measured by the limiter, in requests
+     *         per second.
+     */
+    public synchronized double getMeasuredRate() {
+        return measuredTxRate;
+    }
+
+    /**
+     * @return the number of sends that had to wait for a token.
+     */
+    public synchronized long getThrottledSendCount() {
+        return throttledSendCount;
+    }
+
+    /**
+     * @return the number of throttling errors reported to the limiter.
+     */
+    public synchronized long getThrottlingErrorCount() {
+        return throttlingErrorCount;
+    }
+
+    /**
+     * @return the current time in seconds; overridden in tests.
+     */
+    protected double currentTimeSeconds() {
+        return System.nanoTime() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Waits for the given time; overridden in tests.
+     *
+     * @param millis the time to wait, in milliseconds.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    protected void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    private void refill() {
+        final double now = currentTimeSeconds();
+        final double fill = (now - lastTimestamp) * fillRate;
+        currentCapacity = Math.min(maxCapacity, currentCapacity + fill);
+        lastTimestamp = now;
+    }
+
+    private void updateFillRate(double newRate) {
+        refill();
+        fillRate = Math.max(newRate, MIN_FILL_RATE);
+        maxCapacity = Math.max(newRate, MIN_CAPACITY);
+        currentCapacity = Math.min(currentCapacity, maxCapacity);
+    }
+
+    private void updateMeasuredRate(double now) {
+        final double timeBucket = Math.floor(now / MEASUREMENT_BUCKET) * MEASUREMENT_BUCKET;
+        requestCount++;
+        if (timeBucket > lastTxRateBucket) {
+            final double currentRate = requestCount / (timeBucket - lastTxRateBucket);
+            measuredTxRate = currentRate * SMOOTH + measuredTxRate * (1 - SMOOTH);
+            requestCount = 0;
+            lastTxRateBucket = timeBucket;
+        }
+    }
+
+    private void calculateTimeWindow() {
+        timeWindow = Math.cbrt(lastMaxRate * (1 - BETA) / SCALE_CONSTANT);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import com.amazonaws.AmazonClientException;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that bounds how many retries the clients sharing it may
+ * make. Every retry consumes tokens and every successful request returns
+ * some, so during an outage or throttling storm the bucket drains and
+ * further retries fail fast instead of multiplying the load on the service.
+ * <p>
+ * A single instance can be set on any number of
+ * {@link com.amazonaws.ClientConfiguration} objects to share one budget
+ * across clients. This class is thread-safe.
+ *
+ * @see com.amazonaws.ClientConfiguration#setRetryBudget(RetryBudget)
+ */
+public class RetryBudget {
+
+    /** Default number of tokens in a full bucket. */
+    public static final int DEFAULT_CAPACITY = 500;
+
+    /** Default number of tokens consumed by a retry. */
+    public static final int DEFAULT_RETRY_COST = 5;
+
+    /** Default number of tokens consumed by a retry after an I/O error. */
+    public static final int DEFAULT_IO_ERROR_RETRY_COST = 10;
+
+    /**
+     * Number of tokens returned by a request that succeeded without being
+     * retried.
+     */
+    private static final int NO_RETRY_REFUND = 1;
+
+    private final int capacity;
+    private final int retryCost;
+    private final int ioErrorRetryCost;
+    private final AtomicInteger availableTokens;
+    private final AtomicLong tokensConsumed = new AtomicLong();
+    private final AtomicLong retriesDenied = new AtomicLong();
+
+    /**
+     * Constructs a new retry budget with the default capacity and costs.
+     */
+    public RetryBudget() {
+        this(DEFAULT_CAPACITY, DEFAULT_RETRY_COST, DEFAULT_IO_ERROR_RETRY_COST);
+    }
+
+    /**
+     * Constructs a new retry budget.
+     *
+     * @param capacity the number of tokens in a full bucket.
+     * @param retryCost the number of tokens consumed by a retry.
+     * @param ioErrorRetryCost the number of tokens consumed by a retry after
+     *            the request failed with an I/O error, e.g. a timeout.
+     */
+    public RetryBudget(int capacity, int retryCost, int ioErrorRetryCost) {
+        if (capacity < 0 || retryCost < 0 || ioErrorRetryCost < 0) {
+            throw new IllegalArgumentException(
+                    "Please provide non-negative values for the retry budget.");
+        }
+        this.capacity = capacity;
+        this.retryCost = retryCost;
+        this.ioErrorRetryCost = ioErrorRetryCost;
+        this.availableTokens = new AtomicInteger(capacity);
+    }
+
+    /**
+     * Tries to take the tokens needed to retry after the given exception.
+     *
+     * @param exception the exception of the failed attempt.
+     * @return the number of tokens consumed, or -1 if the budget is exhausted
+     *         and the request should not be retried.
+     */
+    public int tryAcquire(AmazonClientException exception) {
+        final int cost = costOf(exception);
+        while (true) {
+            final int available = availableTokens.get();
+            if (available < cost) {
+                retriesDenied.incrementAndGet();
+                return -1;
+            }
+            if (availableTokens.compareAndSet(available, available - cost)) {
+                tokensConsumed.addAndGet(cost);
+                return cost;
+            }
+        }
+    }
+
+    /**
+     * Returns tokens to the bucket after a request succeeded.
+     *
+     * @param consumed the number of tokens consumed by the retry that
+     *            succeeded, or 0 if the request succeeded on its first
+     *            attempt.
+     */
+    public void release(int consumed) {
+        final int refund = consumed > 0 ? consumed : NO_RETRY_REFUND;
+        while (true) {
+            final int available = availableTokens.get();
+            if (available >= capacity) {
+                return;
+            }
+            if (availableTokens.compareAndSet(available, Math.min(capacity, available + refund))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of tokens currently available for retries.
+     */
+    public int getAvailableTokens() {
+        return availableTokens.get();
+    }
+
+    /**
+     * @return the total number of tokens consumed by retries since this
+     *         budget was created.
+     */
+    public long getTokensConsumed() {
+        return tokensConsumed.get();
+    }
+
+    /**
+     * @return the number of retries that were not made because the budget
+     *         was exhausted.
+     */
+    public long getRetriesDenied() {
+        return retriesDenied.get();
+    }
+
+    /**
+     * @return the number of tokens in a full bucket.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private int costOf(AmazonClientException exception) {
+        if (exception != null && exception.getCause() instanceof IOException) {
+            return ioErrorRetryCost;
+        }
+        return retryCost;
+    }
+}
@@ -246,7 +246,7 @@ public class AmazonCognitoIdentityClient extends AmazonWebServiceClient implemen
      */
     public AmazonCognitoIdentityClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -274,7 +274,7 @@ public class AWSSecurityTokenServiceClient extends AmazonWebServiceClient implem
      */
     public AWSSecurityTokenServiceClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
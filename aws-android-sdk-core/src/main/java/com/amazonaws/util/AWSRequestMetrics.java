@@ -141,6 +141,23 @@ public class AWSRequestMetrics {
 
         /** RetryPauseTime. */
         RetryPauseTime,
+        /**
+         * Number of retry budget tokens consumed by the retries of a request.
+         */
+        RetryCapacityConsumed,
+        /**
+         * Time spent waiting for the client side rate limiter before sending a
+         * request.
+         */
+        RateLimiterWaitTime,
+        /**
+         * Size in bytes of a request payload before it was compressed.
+         */
+        RequestBytesBeforeCompression,
+        /**
+         * Size in bytes of a request payload after it was compressed.
+         */
+        RequestBytesAfterCompression,
         // S3DownloadThroughput, // migrated to S3RequestMetric in the S3 clint
         // library
         // S3UploadThroughput, // migrated to S3RequestMetric in the S3 clint
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util;
+
+import com.amazonaws.logging.Log;
+import com.amazonaws.logging.LogFactory;
+import com.amazonaws.metrics.MetricType;
+import com.amazonaws.metrics.RequestMetricCollector;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A low overhead alternative to {@link AWSRequestMetricsFullSupport}. The
+ * predefined {@link Field} metrics are recorded into a single primitive array
+ * indexed by the ordinal of the field, so starting and ending events and
+ * updating counters never allocate. Each event keeps the total time and the
+ * number of times it has been measured rather than a list of sub-measurements,
+ * and each property keeps only its most recent value.
+ * <p>
+ * Metrics that are not predefined fields, such as service specific metric
+ * types or metrics named by string, are handed over to a lazily created
+ * {@link AWSRequestMetricsFullSupport}.
+ * <p>
+ * This class is instantiated instead of {@link AWSRequestMetricsFullSupport}
+ * when the {@link RequestMetricCollector} in use for the request returns true
+ * from {@link RequestMetricCollector#isCompactMetricsSupported()}.
+ *
+ * @deprecated metrics is deprecated
+ */
+@Deprecated
+public class AWSRequestMetricsCompact extends AWSRequestMetrics {
+    private static final Log LATENCY_LOGGER = LogFactory.getLog("com.amazonaws.latency");
+    private static final Field[] FIELDS = Field.values();
+
+    /* Slots of each field in the values array. */
+    private static final int EVENT_START = 0;
+    private static final int EVENT_RUNNING = 1;
+    private static final int EVENT_TOTAL = 2;
+    private static final int EVENT_COUNT = 3;
+    private static final int COUNTER = 4;
+    private static final int COUNTER_SET = 5;
+    private static final int STRIDE = 6;
+
+    private final long[] values = new long[FIELDS.length * STRIDE];
+    /* Created on the first property added. */
+    private Object[] properties;
+    /* Created on the first metric that is not a predefined field. */
+    private AWSRequestMetricsFullSupport others;
+
+    /**
+     * Constructs an instance that starts timing the request right away.
+     */
+    public AWSRequestMetricsCompact() {
+        super(TimingInfo.startTiming());
+    }
+
+    @Override
+    public void startEvent(String eventName) {
+        others().startEvent(eventName);
+    }
+
+    @Override
+    public void startEvent(MetricType f) {
+        if (!(f instanceof Field)) {
+            others().startEvent(f);
+            return;
+        }
+        final int base = ((Field) f).ordinal() * STRIDE;
+        values[base + EVENT_START] = System.nanoTime();
+        values[base + EVENT_RUNNING] = 1;
+    }
+
+    @Override
+    public void endEvent(String eventName) {
+        others().endEvent(eventName);
+    }
+
+    @Override
+    public void endEvent(MetricType f) {
+        if (!(f instanceof Field)) {
+            others().endEvent(f);
+            return;
+        }
+        final long now = System.nanoTime();
+        final int base = ((Field) f).ordinal() * STRIDE;
+        if (values[base + EVENT_RUNNING] == 0) {
+            LogFactory.getLog(getClass()).warn(
+                    "Trying to end an event which was never started: " + f.name());
+            return;
+        }
+        values[base + EVENT_RUNNING] = 0;
+        values[base + EVENT_TOTAL] += now - values[base + EVENT_START];
+        values[base + EVENT_COUNT]++;
+    }
+
+    @Override
+    public void incrementCounter(String event) {
+        others().incrementCounter(event);
+    }
+
+    @Override
+    public void incrementCounter(MetricType f) {
+        if (!(f instanceof Field)) {
+            others().incrementCounter(f);
+            return;
+        }
+        final int base = ((Field) f).ordinal() * STRIDE;
+        values[base + COUNTER]++;
+        values[base + COUNTER_SET] = 1;
+    }
+
+    @Override
+    public void setCounter(String counterName, long count) {
+        others().setCounter(counterName, count);
+    }
+
+    @Override
+    public void setCounter(MetricType f, long count) {
+        if (!(f instanceof Field)) {
+            others().setCounter(f, count);
+            return;
+        }
+        final int base = ((Field) f).ordinal() * STRIDE;
+        values[base + COUNTER] = count;
+        values[base + COUNTER_SET] = 1;
+    }
+
+    @Override
+    public void addProperty(String propertyName, Object value) {
+        others().addProperty(propertyName, value);
+    }
+
+    /**
+     * Sets a property. Unlike {@link AWSRequestMetricsFullSupport}, adding the
+     * same predefined property more than once replaces its previous value.
+     */
+    @Override
+    public void addProperty(MetricType f, Object value) {
+        if (!(f instanceof Field)) {
+            others().addProperty(f, value);
+            return;
+        }
+        if (properties == null) {
+            properties = new Object[FIELDS.length];
+        }
+        properties[((Field) f).ordinal()] = value;
+    }
+
+    @Override
+    public List<Object> getProperty(String propertyName) {
+        return others == null ? null : others.getProperty(propertyName);
+    }
+
+    /**
+     * @return a list holding the most recent value of the given predefined
+     *         property, or null if the property has not been added.
+     */
+    @Override
+    public List<Object> getProperty(MetricType f) {
+        if (!(f instanceof Field)) {
+            return others == null ? null : others.getProperty(f);
+        }
+        final Object value = properties == null ? null : properties[((Field) f).ordinal()];
+        return value == null ? null : Collections.singletonList(value);
+    }
+
+    /**
+     * @param f the predefined event.
+     * @return the total time in nanoseconds of all the completed measurements
+     *         of the event; 0 if it has never been measured.
+     */
+    public long getEventTimeNanos(Field f) {
+        return values[f.ordinal() * STRIDE + EVENT_TOTAL];
+    }
+
+    /**
+     * @param f the predefined event.
+     * @return the number of completed measurements of the event.
+     */
+    public int getEventCount(Field f) {
+        return (int) values[f.ordinal() * STRIDE + EVENT_COUNT];
+    }
+
+    /**
+     * @param f the predefined counter.
+     * @return the value of the counter; 0 if it has never been set.
+     */
+    public long getCounter(Field f) {
+        return values[f.ordinal() * STRIDE + COUNTER];
+    }
+
+    /**
+     * @param f the predefined counter.
+     * @return true if the counter has been set or incremented.
+     */
+    public boolean isCounterSet(Field f) {
+        return values[f.ordinal() * STRIDE + COUNTER_SET] != 0;
+    }
+
+    @Override
+    public void log() {
+        if (!LATENCY_LOGGER.isInfoEnabled()) {
+            return;
+        }
+        final StringBuilder builder = new StringBuilder();
+        if (properties != null) {
+            for (final Field f : FIELDS) {
+                final Object value = properties[f.ordinal()];
+                if (value != null) {
+                    builder.append(f.name()).append('=').append(value).append(", ");
+                }
+            }
+        }
+        for (final Field f : FIELDS) {
+            if (isCounterSet(f)) {
+                builder.append(f.name()).append('=').append(getCounter(f)).append(", ");
+            }
+        }
+        for (final Field f : FIELDS) {
+            if (getEventCount(f) > 0) {
+                builder.append(f.name()).append('=')
+                        .append(TimingInfo.durationMilliOf(0, getEventTimeNanos(f)))
+                        .append(", ");
+            }
+        }
+        LATENCY_LOGGER.info(builder.toString());
+        if (others != null) {
+            others.log();
+        }
+    }
+
+    /** Always returns true. */
+    @Override
+    public final boolean isEnabled() {
+        return true;
+    }
+
+    private AWSRequestMetricsFullSupport others() {
+        if (others == null) {
+            others = new AWSRequestMetricsFullSupport();
+        }
+        return others;
+    }
+}
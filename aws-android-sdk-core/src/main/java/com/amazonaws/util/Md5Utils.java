@@ -18,6 +18,7 @@
 
 package com.amazonaws.util;
 
+import com.amazonaws.auth.CryptoPrimitivePool;
 import com.amazonaws.logging.LogFactory;
 
 import java.io.BufferedInputStream;
@@ -25,6 +26,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -33,8 +36,14 @@ import java.security.NoSuchAlgorithmException;
  */
 public class Md5Utils {
 
+    private static final String MD5 = "MD5";
     private static final int FOURTEEN = 14;
     private static final int SIXTEEN_K = 1 << FOURTEEN;
+    /**
+     * Size of the direct buffer files are read into; files no larger than
+     * this are read through a stream.
+     */
+    private static final int FILE_BUFFER_SIZE = 256 * 1024;
 
     /**
      * Computes the MD5 hash of the data in the given input stream and returns
@@ -45,8 +54,9 @@ public class Md5Utils {
      */
     public static byte[] computeMD5Hash(InputStream is) throws IOException {
         BufferedInputStream bis = new BufferedInputStream(is);
+        MessageDigest messageDigest = null;
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+            messageDigest = CryptoPrimitivePool.borrowMessageDigest(MD5);
             byte[] buffer = new byte[SIXTEEN_K];
             int bytesRead;
             while ((bytesRead = bis.read(buffer, 0, buffer.length)) != -1) {
@@ -57,6 +67,9 @@ public class Md5Utils {
             // should never get here
             throw new IllegalStateException(e);
         } finally {
+            if (messageDigest != null) {
+                CryptoPrimitivePool.releaseMessageDigest(messageDigest);
+            }
             try {
                 bis.close();
             } catch (Exception e) {
@@ -83,8 +96,7 @@ public class Md5Utils {
      */
     public static byte[] computeMD5Hash(byte[] input) {
         try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            return md.digest(input);
+            return CryptoPrimitivePool.digest(MD5, input);
         } catch (NoSuchAlgorithmException e) {
             // should never get here
             throw new IllegalStateException(e);
@@ -100,12 +112,42 @@ public class Md5Utils {
     }
 
     /**
-     * Computes the MD5 of the given file.
+     * Computes the MD5 of the given file. Larger files are read from their
+     * {@link FileChannel} into a direct buffer, which message digests backed
+     * by native code can hash without copying it into the Java heap.
      * @param file the file.
      * @return the MD5 hash of the data.
      */
     public static byte[] computeMD5Hash(File file) throws IOException {
-        return computeMD5Hash(new FileInputStream(file));
+        final FileInputStream fis = new FileInputStream(file);
+        final FileChannel channel = fis.getChannel();
+        MessageDigest messageDigest = null;
+        try {
+            if (channel.size() <= FILE_BUFFER_SIZE) {
+                return computeMD5Hash(fis);
+            }
+            messageDigest = CryptoPrimitivePool.borrowMessageDigest(MD5);
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                messageDigest.update(buffer);
+                buffer.clear();
+            }
+            return messageDigest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            // should never get here
+            throw new IllegalStateException(e);
+        } finally {
+            if (messageDigest != null) {
+                CryptoPrimitivePool.releaseMessageDigest(messageDigest);
+            }
+            try {
+                fis.close();
+            } catch (Exception e) {
+                LogFactory.getLog(Md5Utils.class).debug(
+                        "Unable to close input stream of hash candidate: " + e);
+            }
+        }
     }
 
     /**
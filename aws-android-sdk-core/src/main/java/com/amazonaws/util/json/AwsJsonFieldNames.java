@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable table of the field names an unmarshaller knows about. Instead
+ * of comparing the name of every field against each known name in turn, an
+ * unmarshaller reads the index of the next field and switches on it:
+ *
+ * <pre>
+ * private static final AwsJsonFieldNames FIELDS = new AwsJsonFieldNames("S", "N");
+ * ...
+ * switch (FIELDS.nextField(reader)) {
+ *     case 0: ...
+ *     case 1: ...
+ *     default: reader.skipValue();
+ * }
+ * </pre>
+ *
+ * With the {@link JsonUtils.JsonEngine#Utf8} engine the name is matched
+ * against the raw bytes of the response, so known names are never turned
+ * into strings. Other engines fall back to a hash lookup of the name.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class AwsJsonFieldNames {
+
+    /** Index returned for a field name that is not in the table. */
+    public static final int UNKNOWN = -1;
+
+    private final String[] names;
+    private final byte[][] encodedNames;
+    private final Map<String, Integer> indexByName;
+    /** Open addressing table of index + 1 keyed by the hash of the bytes. */
+    private final int[] slots;
+    private final int mask;
+
+    /**
+     * Constructs a table of the given field names. The index of a name is
+     * its position in the arguments.
+     *
+     * @param names the field names.
+     */
+    public AwsJsonFieldNames(String... names) {
+        this.names = names.clone();
+        this.encodedNames = new byte[names.length][];
+        this.indexByName = new HashMap<String, Integer>(names.length * 2);
+
+        int size = 1;
+        while (size < names.length * 2) {
+            size <<= 1;
+        }
+        this.slots = new int[size];
+        this.mask = size - 1;
+
+        for (int i = 0; i < names.length; i++) {
+            if (indexByName.put(names[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate field name: " + names[i]);
+            }
+            final byte[] encoded = names[i].getBytes(UTF8);
+            encodedNames[i] = encoded;
+            int slot = hash(encoded, encoded.length) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Consumes the next field name from the reader and returns its index.
+     *
+     * @param reader the JSON reader, positioned at a field name.
+     * @return the index of the field name, or {@link #UNKNOWN}.
+     * @throws IOException
+     */
+    public int nextField(AwsJsonReader reader) throws IOException {
+        if (reader instanceof Utf8JsonReader) {
+            return ((Utf8JsonReader) reader).nextName(this);
+        }
+        return indexOf(reader.nextName());
+    }
+
+    /**
+     * @param name a field name.
+     * @return the index of the field name, or {@link #UNKNOWN}.
+     */
+    public int indexOf(String name) {
+        final Integer index = indexByName.get(name);
+        return index == null ? UNKNOWN : index;
+    }
+
+    /**
+     * @param index the index of a field name.
+     * @return the field name.
+     */
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return the number of field names in the table.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Looks up a field name by its UTF-8 bytes.
+     *
+     * @param bytes buffer holding the name.
+     * @param length length of the name.
+     * @param hash hash of the name as computed by {@link #hash(byte[], int)}.
+     * @return the index of the field name, or {@link #UNKNOWN}.
+     */
+    int indexOf(byte[] bytes, int length, int hash) {
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            final int index = slots[slot] - 1;
+            if (Utf8JsonReader.equals(encodedNames[index], bytes, length)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return UNKNOWN;
+    }
+
+    static int hash(byte[] bytes, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = Utf8JsonReader.HASH_MULTIPLIER * h + bytes[i];
+        }
+        return h;
+    }
+}
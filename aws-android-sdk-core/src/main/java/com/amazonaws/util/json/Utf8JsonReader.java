@@ -0,0 +1,722 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A streaming {@link AwsJsonReader} that parses UTF-8 encoded JSON straight
+ * from the bytes of an {@link InputStream}. Strings are decoded from the
+ * byte buffer in a single pass, field names are served from a shared pool
+ * and, through {@link AwsJsonFieldNames}, known field names are matched on
+ * their bytes without creating a string at all.
+ * <p>
+ * Like the other readers, numbers are returned as their literal text and
+ * booleans as "true" or "false" by {@link #nextString()}.
+ */
+final class Utf8JsonReader implements AwsJsonReader {
+
+    static final int HASH_MULTIPLIER = 31;
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int INITIAL_SCRATCH_SIZE = 256;
+    private static final int INITIAL_STACK_SIZE = 32;
+
+    /* scopes on the stack */
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    /* peeked tokens */
+    private static final int PEEKED_NONE = 0;
+    private static final int PEEKED_BEGIN_OBJECT = 1;
+    private static final int PEEKED_END_OBJECT = 2;
+    private static final int PEEKED_BEGIN_ARRAY = 3;
+    private static final int PEEKED_END_ARRAY = 4;
+    private static final int PEEKED_TRUE = 5;
+    private static final int PEEKED_FALSE = 6;
+    private static final int PEEKED_NULL = 7;
+    private static final int PEEKED_STRING = 8;
+    private static final int PEEKED_NAME = 9;
+    private static final int PEEKED_NUMBER = 10;
+    private static final int PEEKED_EOF = 11;
+
+    private static final int HEX_RADIX = 16;
+    private static final int TWO_BYTE_MASK = 0xE0;
+    private static final int TWO_BYTE_LEAD = 0xC0;
+    private static final int THREE_BYTE_MASK = 0xF0;
+    private static final int THREE_BYTE_LEAD = 0xE0;
+    private static final int FOUR_BYTE_MASK = 0xF8;
+    private static final int FOUR_BYTE_LEAD = 0xF0;
+    private static final int CONTINUATION_BITS = 0x3F;
+    private static final int SIX_BITS = 6;
+    private static final int MIN_SUPPLEMENTARY_CODE_POINT = 0x10000;
+    private static final int HIGH_SURROGATE_SHIFT = 10;
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+
+    private int[] stack = new int[INITIAL_STACK_SIZE];
+    private int stackSize;
+    private int peeked = PEEKED_NONE;
+
+    /** Raw bytes of the last string read, escapes included. */
+    private byte[] scratch = new byte[INITIAL_SCRATCH_SIZE];
+    private int scratchLength;
+    private int scratchHash;
+    private boolean scratchEscaped;
+    private char[] chars = new char[INITIAL_SCRATCH_SIZE];
+
+    Utf8JsonReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    Utf8JsonReader(InputStream in, int bufferSize) {
+        if (in == null) {
+            throw new IllegalArgumentException("input stream can't be null");
+        }
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect(PEEKED_BEGIN_ARRAY, "BEGIN_ARRAY");
+        push(EMPTY_ARRAY);
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(PEEKED_END_ARRAY, "END_ARRAY");
+        stackSize--;
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect(PEEKED_BEGIN_OBJECT, "BEGIN_OBJECT");
+        push(EMPTY_OBJECT);
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect(PEEKED_END_OBJECT, "END_OBJECT");
+        stackSize--;
+        peeked = PEEKED_NONE;
+    }
+
+    @Override
+    public boolean isContainer() throws IOException {
+        final int p = peekInternal();
+        return p == PEEKED_BEGIN_ARRAY || p == PEEKED_BEGIN_OBJECT;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        final int p = peekInternal();
+        return p != PEEKED_END_OBJECT && p != PEEKED_END_ARRAY && p != PEEKED_EOF;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        expect(PEEKED_NAME, "FIELD_NAME");
+        readRawString();
+        peeked = PEEKED_NONE;
+        if (scratchEscaped) {
+            return decode();
+        }
+        return FieldNamePool.get(scratch, scratchLength, scratchHash, this);
+    }
+
+    /**
+     * Consumes the next field name and looks it up in the given table.
+     *
+     * @param fieldNames the known field names.
+     * @return the index of the name, or {@link AwsJsonFieldNames#UNKNOWN}.
+     * @throws IOException
+     */
+    int nextName(AwsJsonFieldNames fieldNames) throws IOException {
+        expect(PEEKED_NAME, "FIELD_NAME");
+        readRawString();
+        peeked = PEEKED_NONE;
+        if (scratchEscaped) {
+            return fieldNames.indexOf(decode());
+        }
+        return fieldNames.indexOf(scratch, scratchLength, scratchHash);
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        final int p = peekInternal();
+        final String result;
+        switch (p) {
+            case PEEKED_STRING:
+                readRawString();
+                result = decode();
+                break;
+            case PEEKED_NUMBER:
+                result = readNumber();
+                break;
+            case PEEKED_TRUE:
+                result = "true";
+                break;
+            case PEEKED_FALSE:
+                result = "false";
+                break;
+            case PEEKED_NULL:
+                result = null;
+                break;
+            default:
+                throw syntaxError("Expected a value but was " + tokenName(p));
+        }
+        peeked = PEEKED_NONE;
+        return result;
+    }
+
+    @Override
+    public AwsJsonToken peek() throws IOException {
+        switch (peekInternal()) {
+            case PEEKED_BEGIN_OBJECT:
+                return AwsJsonToken.BEGIN_OBJECT;
+            case PEEKED_END_OBJECT:
+                return AwsJsonToken.END_OBJECT;
+            case PEEKED_BEGIN_ARRAY:
+                return AwsJsonToken.BEGIN_ARRAY;
+            case PEEKED_END_ARRAY:
+                return AwsJsonToken.END_ARRAY;
+            case PEEKED_TRUE:
+            case PEEKED_FALSE:
+                return AwsJsonToken.VALUE_BOOLEAN;
+            case PEEKED_NULL:
+                return AwsJsonToken.VALUE_NULL;
+            case PEEKED_STRING:
+                return AwsJsonToken.VALUE_STRING;
+            case PEEKED_NAME:
+                return AwsJsonToken.FIELD_NAME;
+            case PEEKED_NUMBER:
+                return AwsJsonToken.VALUE_NUMBER;
+            case PEEKED_EOF:
+                return null;
+            default:
+                return AwsJsonToken.UNKNOWN;
+        }
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            final int p = peekInternal();
+            switch (p) {
+                case PEEKED_BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    depth++;
+                    break;
+                case PEEKED_BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    depth++;
+                    break;
+                case PEEKED_END_ARRAY:
+                case PEEKED_END_OBJECT:
+                    stackSize--;
+                    depth--;
+                    break;
+                case PEEKED_NAME:
+                case PEEKED_STRING:
+                    readRawString();
+                    break;
+                case PEEKED_NUMBER:
+                    skipNumber();
+                    break;
+                case PEEKED_EOF:
+                    throw new EOFException("End of input while skipping a value");
+                default:
+                    break;
+            }
+            peeked = PEEKED_NONE;
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = PEEKED_NONE;
+        stack[0] = NONEMPTY_DOCUMENT;
+        stackSize = 1;
+        in.close();
+    }
+
+    private void expect(int expected, String name) throws IOException {
+        final int p = peekInternal();
+        if (p != expected) {
+            throw syntaxError("Expected " + name + " but was " + tokenName(p));
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            final int[] newStack = new int[stackSize * 2];
+            System.arraycopy(stack, 0, newStack, 0, stackSize);
+            stack = newStack;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private int peekInternal() throws IOException {
+        if (peeked == PEEKED_NONE) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    private int doPeek() throws IOException {
+        final int top = stack[stackSize - 1];
+        int c;
+        if (top == EMPTY_ARRAY) {
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+            c = nextNonWhitespace();
+            if (c == ']') {
+                return PEEKED_END_ARRAY;
+            }
+            pos--;
+        } else if (top == NONEMPTY_ARRAY) {
+            c = nextNonWhitespace();
+            if (c == ']') {
+                return PEEKED_END_ARRAY;
+            } else if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+        } else if (top == EMPTY_OBJECT || top == NONEMPTY_OBJECT) {
+            stack[stackSize - 1] = DANGLING_NAME;
+            if (top == NONEMPTY_OBJECT) {
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return PEEKED_END_OBJECT;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+            }
+            c = nextNonWhitespace();
+            if (c == '"') {
+                return PEEKED_NAME;
+            } else if (c == '}' && top == EMPTY_OBJECT) {
+                return PEEKED_END_OBJECT;
+            }
+            throw syntaxError("Expected name");
+        } else if (top == DANGLING_NAME) {
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (top == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            if (nextNonWhitespaceOrEof() == -1) {
+                return PEEKED_EOF;
+            }
+            pos--;
+        } else if (top == NONEMPTY_DOCUMENT) {
+            if (nextNonWhitespaceOrEof() == -1) {
+                return PEEKED_EOF;
+            }
+            throw syntaxError("Expected end of document");
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return PEEKED_BEGIN_OBJECT;
+            case '[':
+                return PEEKED_BEGIN_ARRAY;
+            case '"':
+                return PEEKED_STRING;
+            case 't':
+                readLiteral("rue");
+                return PEEKED_TRUE;
+            case 'f':
+                readLiteral("alse");
+                return PEEKED_FALSE;
+            case 'n':
+                readLiteral("ull");
+                return PEEKED_NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    return PEEKED_NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (pos == limit && !fill()) {
+                throw new EOFException("End of input in literal");
+            }
+            if (buffer[pos++] != rest.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        final int c = nextNonWhitespaceOrEof();
+        if (c == -1) {
+            throw new EOFException("End of input");
+        }
+        return c;
+    }
+
+    private int nextNonWhitespaceOrEof() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            final int c = buffer[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * Reads more bytes into the buffer, keeping any unconsumed ones.
+     *
+     * @return false if the end of the stream has been reached.
+     */
+    private boolean fill() throws IOException {
+        if (pos < limit) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+        } else {
+            limit = 0;
+        }
+        pos = 0;
+        while (limit < buffer.length) {
+            final int read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                break;
+            }
+            if (read > 0) {
+                limit += read;
+                return true;
+            }
+        }
+        return limit > 0;
+    }
+
+    /**
+     * Copies the raw bytes of the string after the opening quote into the
+     * scratch buffer and consumes the closing quote. Escape sequences are
+     * copied as is and decoded later.
+     */
+    private void readRawString() throws IOException {
+        int length = 0;
+        int hash = 0;
+        boolean escaped = false;
+        boolean pendingEscape = false;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw new EOFException("Unterminated string");
+            }
+            int p = pos;
+            final int l = limit;
+            final byte[] b = buffer;
+            if (pendingEscape) {
+                // second byte of an escape sequence split across reads
+                p++;
+                pendingEscape = false;
+            }
+            boolean closed = false;
+            while (p < l) {
+                final byte c = b[p];
+                if (c == '"') {
+                    closed = true;
+                    break;
+                }
+                if (c == '\\') {
+                    escaped = true;
+                    if (p + 1 == l) {
+                        pendingEscape = true;
+                        p++;
+                        break;
+                    }
+                    p += 2;
+                    continue;
+                }
+                hash = HASH_MULTIPLIER * hash + c;
+                p++;
+            }
+            final int count = p - pos;
+            ensureScratch(length, count);
+            System.arraycopy(b, pos, scratch, length, count);
+            length += count;
+            if (closed) {
+                pos = p + 1;
+                break;
+            }
+            pos = p;
+        }
+        scratchLength = length;
+        scratchHash = hash;
+        scratchEscaped = escaped;
+    }
+
+    private void ensureScratch(int length, int count) {
+        if (length + count > scratch.length) {
+            final byte[] newScratch = new byte[Math.max(length + count, scratch.length * 2)];
+            System.arraycopy(scratch, 0, newScratch, 0, length);
+            scratch = newScratch;
+        }
+    }
+
+    /**
+     * Decodes the UTF-8 bytes in the scratch buffer, resolving escape
+     * sequences. Malformed input is replaced with U+FFFD.
+     */
+    private String decode() throws IOException {
+        final byte[] src = scratch;
+        final int length = scratchLength;
+        // never more chars than bytes
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        final char[] dst = chars;
+        int i = 0;
+        int n = 0;
+        while (i < length) {
+            final int b = src[i++];
+            if (b >= 0) {
+                if (b != '\\') {
+                    dst[n++] = (char) b;
+                    continue;
+                }
+                final int e = src[i++];
+                switch (e) {
+                    case 'n':
+                        dst[n++] = '\n';
+                        break;
+                    case 't':
+                        dst[n++] = '\t';
+                        break;
+                    case 'r':
+                        dst[n++] = '\r';
+                        break;
+                    case 'b':
+                        dst[n++] = '\b';
+                        break;
+                    case 'f':
+                        dst[n++] = '\f';
+                        break;
+                    case 'u':
+                        if (i + 4 > length) {
+                            throw syntaxError("Unterminated escape sequence");
+                        }
+                        dst[n++] = (char) parseHex(src, i);
+                        i += 4;
+                        break;
+                    default:
+                        // '"', '\\', '/' and lenient unknown escapes
+                        dst[n++] = (char) e;
+                        break;
+                }
+                continue;
+            }
+            final int lead = b & 0xFF;
+            int codePoint;
+            int extra;
+            if ((lead & TWO_BYTE_MASK) == TWO_BYTE_LEAD) {
+                codePoint = lead & 0x1F;
+                extra = 1;
+            } else if ((lead & THREE_BYTE_MASK) == THREE_BYTE_LEAD) {
+                codePoint = lead & 0x0F;
+                extra = 2;
+            } else if ((lead & FOUR_BYTE_MASK) == FOUR_BYTE_LEAD) {
+                codePoint = lead & 0x07;
+                extra = 3;
+            } else {
+                dst[n++] = REPLACEMENT_CHAR;
+                continue;
+            }
+            if (i + extra > length) {
+                dst[n++] = REPLACEMENT_CHAR;
+                break;
+            }
+            boolean malformed = false;
+            for (int k = 0; k < extra; k++) {
+                final int cont = src[i + k];
+                if ((cont & 0xC0) != 0x80) {
+                    malformed = true;
+                    break;
+                }
+                codePoint = (codePoint << SIX_BITS) | (cont & CONTINUATION_BITS);
+            }
+            if (malformed) {
+                dst[n++] = REPLACEMENT_CHAR;
+                continue;
+            }
+            i += extra;
+            if (codePoint < MIN_SUPPLEMENTARY_CODE_POINT) {
+                dst[n++] = (char) codePoint;
+            } else {
+                codePoint -= MIN_SUPPLEMENTARY_CODE_POINT;
+                dst[n++] = (char) (Character.MIN_HIGH_SURROGATE
+                        + (codePoint >>> HIGH_SURROGATE_SHIFT));
+                dst[n++] = (char) (Character.MIN_LOW_SURROGATE
+                        + (codePoint & ((1 << HIGH_SURROGATE_SHIFT) - 1)));
+            }
+        }
+        return new String(dst, 0, n);
+    }
+
+    private int parseHex(byte[] src, int offset) throws IOException {
+        int result = 0;
+        for (int k = offset; k < offset + 4; k++) {
+            final int digit = Character.digit((char) src[k], HEX_RADIX);
+            if (digit < 0) {
+                throw syntaxError("Invalid escape sequence");
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    private String readNumber() throws IOException {
+        final int length = scanNumber();
+        return new String(chars, 0, length);
+    }
+
+    private void skipNumber() throws IOException {
+        scanNumber();
+    }
+
+    /**
+     * Copies the characters of the number at the current position into the
+     * char scratch buffer.
+     *
+     * @return the number of characters.
+     */
+    private int scanNumber() throws IOException {
+        int n = 0;
+        while (pos < limit || fill()) {
+            final int c = buffer[pos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.'
+                    || c == 'e' || c == 'E') {
+                if (n == chars.length) {
+                    final char[] newChars = new char[n * 2];
+                    System.arraycopy(chars, 0, newChars, 0, n);
+                    chars = newChars;
+                }
+                chars[n++] = (char) c;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return n;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at path depth " + (stackSize - 1));
+    }
+
+    private static String tokenName(int p) {
+        switch (p) {
+            case PEEKED_BEGIN_OBJECT:
+                return "BEGIN_OBJECT";
+            case PEEKED_END_OBJECT:
+                return "END_OBJECT";
+            case PEEKED_BEGIN_ARRAY:
+                return "BEGIN_ARRAY";
+            case PEEKED_END_ARRAY:
+                return "END_ARRAY";
+            case PEEKED_NAME:
+                return "FIELD_NAME";
+            case PEEKED_EOF:
+                return "END_DOCUMENT";
+            default:
+                return "a value";
+        }
+    }
+
+    static boolean equals(byte[] expected, byte[] bytes, int length) {
+        if (expected.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (expected[i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Process-wide pool of decoded field names, so the same name appearing
+     * in every element of a large response is only turned into a string
+     * once. The pool is a fixed size hash table where a new name simply
+     * replaces whatever name occupied its slot, which bounds its memory
+     * even when names are user data such as DynamoDB attribute names.
+     * Entries are immutable, so unsynchronized reads and writes of the
+     * slots are safe; a lost update only costs a decode.
+     */
+    private static final class FieldNamePool {
+        private static final int SIZE = 1024;
+        private static final int MAX_NAME_LENGTH = 64;
+        private static final int SPREAD_SHIFT = 16;
+        private static final Entry[] ENTRIES = new Entry[SIZE];
+
+        private static final class Entry {
+            final byte[] bytes;
+            final int hash;
+            final String name;
+
+            Entry(byte[] bytes, int hash, String name) {
+                this.bytes = bytes;
+                this.hash = hash;
+                this.name = name;
+            }
+        }
+
+        static String get(byte[] bytes, int length, int hash, Utf8JsonReader reader)
+                throws IOException {
+            if (length > MAX_NAME_LENGTH) {
+                return reader.decode();
+            }
+            final int slot = (hash ^ (hash >>> SPREAD_SHIFT)) & (SIZE - 1);
+            final Entry entry = ENTRIES[slot];
+            if (entry != null && entry.hash == hash && Utf8JsonReader.equals(entry.bytes, bytes,
+                    length)) {
+                return entry.name;
+            }
+            final String name = reader.decode();
+            final byte[] copy = new byte[length];
+            System.arraycopy(bytes, 0, copy, 0, length);
+            ENTRIES[slot] = new Entry(copy, hash, name);
+            return name;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CognitoCredentialsProviderTest {
+
+    /**
+     * Provider whose sessions last a configurable time, and can be held up
+     * until the test releases them.
+     */
+    private static class TestProvider extends CognitoCredentialsProvider {
+        final AtomicInteger sessions = new AtomicInteger();
+        volatile long lifetimeMillis = 3600 * 1000L;
+        volatile CountDownLatch release = new CountDownLatch(0);
+        final CountDownLatch refreshed = new CountDownLatch(2);
+
+        TestProvider() {
+            super(EasyMock.createNiceMock(AWSCognitoIdentityProvider.class), null, null,
+                    (AWSSecurityTokenService) null);
+        }
+
+        @Override
+        protected void startSession() {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final int n = sessions.incrementAndGet();
+            sessionCredentials = new BasicSessionCredentials("ak" + n, "sk" + n, "st" + n);
+            setSessionCredentialsExpiration(new Date(System.currentTimeMillis()
+                    + lifetimeMillis));
+            refreshed.countDown();
+        }
+    }
+
+    @Test
+    public void testFreshCredentialsAreReused() {
+        final TestProvider provider = new TestProvider();
+        final AWSSessionCredentials first = provider.getCredentials();
+        assertSame(first, provider.getCredentials());
+        assertEquals(1, provider.sessions.get());
+    }
+
+    @Test
+    public void testRefreshesInBackgroundWithinThreshold() throws Exception {
+        final TestProvider provider = new TestProvider();
+        // within the 500 seconds refresh threshold, but not about to expire
+        provider.lifetimeMillis = 300 * 1000L;
+        final AWSSessionCredentials first = provider.getCredentials();
+        provider.lifetimeMillis = 3600 * 1000L;
+        provider.release = new CountDownLatch(1);
+
+        // callers keep getting the current credentials while the refresh is
+        // held up
+        for (int i = 0; i < 10; i++) {
+            assertSame(first, provider.getCredentials());
+        }
+        provider.release.countDown();
+
+        assertTrue(provider.refreshed.await(5, TimeUnit.SECONDS));
+        final AWSSessionCredentials second = provider.getCredentials();
+        assertEquals("ak2", second.getAWSAccessKeyId());
+        assertEquals(2, provider.sessions.get());
+    }
+
+    @Test
+    public void testWaitsForCredentialsAboutToExpire() {
+        final TestProvider provider = new TestProvider();
+        provider.lifetimeMillis = 30 * 1000L;
+        provider.getCredentials();
+        provider.lifetimeMillis = 3600 * 1000L;
+
+        assertEquals("ak2", provider.getCredentials().getAWSAccessKeyId());
+        assertEquals(2, provider.sessions.get());
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneSession() throws Exception {
+        final TestProvider provider = new TestProvider();
+        provider.release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<AWSSessionCredentials>> futures =
+                    new ArrayList<Future<AWSSessionCredentials>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<AWSSessionCredentials>() {
+                    @Override
+                    public AWSSessionCredentials call() {
+                        return provider.getCredentials();
+                    }
+                }));
+            }
+            provider.release.countDown();
+            for (final Future<AWSSessionCredentials> f : futures) {
+                assertEquals("ak1", f.get(5, TimeUnit.SECONDS).getAWSAccessKeyId());
+            }
+            assertEquals(1, provider.sessions.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClearedCredentialsAreFetchedAgain() {
+        final TestProvider provider = new TestProvider();
+        provider.getCredentials();
+        provider.clearCredentials();
+        assertEquals("ak2", provider.getCredentials().getAWSAccessKeyId());
+    }
+}
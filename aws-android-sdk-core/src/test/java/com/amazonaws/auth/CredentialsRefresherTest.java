@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CredentialsRefresherTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void testRunsRefresh() {
+        final AtomicInteger refreshes = new AtomicInteger();
+        final CredentialsRefresher refresher = new CredentialsRefresher(new Runnable() {
+            @Override
+            public void run() {
+                refreshes.incrementAndGet();
+            }
+        }, DIRECT);
+
+        assertTrue(refresher.refreshAsync());
+        assertTrue(refresher.refreshAsync());
+        assertEquals(2, refreshes.get());
+        assertFalse(refresher.isRunning());
+    }
+
+    @Test
+    public void testSingleRefreshAtATime() {
+        final AtomicInteger refreshes = new AtomicInteger();
+        final Runnable[] pending = new Runnable[1];
+        final CredentialsRefresher refresher = new CredentialsRefresher(new Runnable() {
+            @Override
+            public void run() {
+                refreshes.incrementAndGet();
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                pending[0] = command;
+            }
+        });
+
+        assertTrue(refresher.refreshAsync());
+        assertTrue(refresher.isRunning());
+        assertFalse(refresher.refreshAsync());
+        pending[0].run();
+        assertEquals(1, refreshes.get());
+        assertFalse(refresher.isRunning());
+        assertTrue(refresher.refreshAsync());
+    }
+
+    @Test
+    public void testBacksOffAfterFailure() {
+        final AtomicInteger refreshes = new AtomicInteger();
+        final CredentialsRefresher refresher = new CredentialsRefresher(new Runnable() {
+            @Override
+            public void run() {
+                refreshes.incrementAndGet();
+                throw new IllegalStateException("BOOM");
+            }
+        }, DIRECT);
+
+        assertTrue(refresher.refreshAsync());
+        assertFalse(refresher.isRunning());
+        assertFalse(refresher.refreshAsync());
+        assertEquals(1, refreshes.get());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+public class CryptoPrimitivePoolTest {
+
+    @Test
+    public void testHmacMatchesMac() throws Exception {
+        final byte[] key = "key".getBytes(StringUtils.UTF8);
+        final byte[] data = "The quick brown fox jumps over the lazy dog"
+                .getBytes(StringUtils.UTF8);
+        for (final SigningAlgorithm algorithm : SigningAlgorithm.values()) {
+            final Mac mac = Mac.getInstance(algorithm.toString());
+            mac.init(new SecretKeySpec(key, algorithm.toString()));
+            final byte[] expected = mac.doFinal(data);
+            // run twice so that the second call re-keys the pooled instance
+            assertArrayEquals(expected, CryptoPrimitivePool.hmac(data, key, algorithm));
+            assertArrayEquals(expected, CryptoPrimitivePool.hmac(data, key, algorithm));
+        }
+        assertEquals("f7bc83f430538424b13298e6aa6fb143ef4d59a14946175997479dbc2d1a3cd8",
+                BinaryUtils.toHex(CryptoPrimitivePool.hmac(data, key,
+                        SigningAlgorithm.HmacSHA256)));
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        final byte[] data = "abc".getBytes(StringUtils.UTF8);
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                BinaryUtils.toHex(CryptoPrimitivePool.digest("SHA-256", data)));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72",
+                BinaryUtils.toHex(CryptoPrimitivePool.digest("MD5", data)));
+    }
+
+    @Test
+    public void testBorrowedDigestIsReusedAfterRelease() throws Exception {
+        final MessageDigest first = CryptoPrimitivePool.borrowMessageDigest("SHA-256");
+        first.update((byte) 1);
+        CryptoPrimitivePool.releaseMessageDigest(first);
+
+        final MessageDigest second = CryptoPrimitivePool.borrowMessageDigest("SHA-256");
+        assertSame(first, second);
+        // the pooled instance is reset before it is handed out again
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(), second.digest());
+        CryptoPrimitivePool.releaseMessageDigest(second);
+    }
+
+    @Test
+    public void testNestedBorrowGetsDistinctInstance() throws Exception {
+        final MessageDigest outer = CryptoPrimitivePool.borrowMessageDigest("MD5");
+        final MessageDigest inner = CryptoPrimitivePool.borrowMessageDigest("MD5");
+        assertNotSame(outer, inner);
+        CryptoPrimitivePool.releaseMessageDigest(inner);
+        CryptoPrimitivePool.releaseMessageDigest(outer);
+
+        final Mac outerMac = CryptoPrimitivePool.borrowMac(SigningAlgorithm.HmacSHA1);
+        final Mac innerMac = CryptoPrimitivePool.borrowMac(SigningAlgorithm.HmacSHA1);
+        assertNotSame(outerMac, innerMac);
+        CryptoPrimitivePool.releaseMac(SigningAlgorithm.HmacSHA1, innerMac);
+        CryptoPrimitivePool.releaseMac(SigningAlgorithm.HmacSHA1, outerMac);
+    }
+}
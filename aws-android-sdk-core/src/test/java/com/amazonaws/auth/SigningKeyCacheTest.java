@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.amazonaws.util.BinaryUtils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class SigningKeyCacheTest {
+
+    @Test
+    public void testDerivedKeyMatchesSpec() {
+        // Example from the AWS4 signing documentation
+        final SigningKeyCache cache = new SigningKeyCache(10);
+        final byte[] key = cache.getSigningKey("wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY",
+                "20120215", "us-east-1", "iam");
+        assertEquals("f4780e2d9f65fa895f9c67b32ce1baf0b0d8a43505a000a1a9e090d414db404d",
+                BinaryUtils.toHex(key));
+    }
+
+    @Test
+    public void testHitAndMissCounters() {
+        final SigningKeyCache cache = new SigningKeyCache(10);
+        final byte[] first = cache.getSigningKey("secret", "20190101", "us-east-1", "dynamodb");
+        final byte[] second = cache.getSigningKey("secret", "20190101", "us-east-1", "dynamodb");
+        assertArrayEquals(first, second);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        final byte[] otherSecret = cache.getSigningKey("other", "20190101", "us-east-1",
+                "dynamodb");
+        assertFalse(Arrays.equals(first, otherSecret));
+        cache.getSigningKey("secret", "20190102", "us-east-1", "dynamodb");
+        cache.getSigningKey("secret", "20190101", "us-west-2", "dynamodb");
+        cache.getSigningKey("secret", "20190101", "us-east-1", "kinesis");
+        assertEquals(5, cache.getMissCount());
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final SigningKeyCache cache = new SigningKeyCache(2);
+        cache.getSigningKey("secret", "20190101", "us-east-1", "s3");
+        cache.getSigningKey("secret", "20190101", "us-east-1", "sqs");
+        // touch s3 so that sqs becomes the eldest entry
+        cache.getSigningKey("secret", "20190101", "us-east-1", "s3");
+        cache.getSigningKey("secret", "20190101", "us-east-1", "sns");
+        assertEquals(2, cache.size());
+
+        cache.getSigningKey("secret", "20190101", "us-east-1", "s3");
+        assertEquals(2, cache.getHitCount());
+        cache.getSigningKey("secret", "20190101", "us-east-1", "sqs");
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void testReturnedKeyIsACopy() {
+        final SigningKeyCache cache = new SigningKeyCache(10);
+        final byte[] key = cache.getSigningKey("secret", "20190101", "us-east-1", "s3");
+        final byte[] expected = Arrays.copyOf(key, key.length);
+        key[0] ^= 1;
+        assertArrayEquals(expected,
+                cache.getSigningKey("secret", "20190101", "us-east-1", "s3"));
+    }
+
+    @Test
+    public void testClear() {
+        final SigningKeyCache cache = new SigningKeyCache(10);
+        cache.getSigningKey("secret", "20190101", "us-east-1", "s3");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonPositiveSize() {
+        new SigningKeyCache(0);
+    }
+}
@@ -29,6 +29,7 @@ import com.amazonaws.DefaultRequest;
 import com.amazonaws.Request;
 import com.amazonaws.RequestClientOptions;
 import com.amazonaws.Response;
+import com.amazonaws.async.Callback;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AnonymousAWSCredentials;
 import com.amazonaws.auth.Signer;
@@ -36,6 +37,7 @@ import com.amazonaws.handlers.CredentialsRequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.internal.CRC32MismatchException;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.AdaptiveRateLimiter;
 import com.amazonaws.util.AWSRequestMetrics;
 
 import org.easymock.Capture;
@@ -51,6 +53,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class AmazonHttpClientTest {
     private HttpClient httpClient;
@@ -218,6 +226,184 @@ public class AmazonHttpClientTest {
         EasyMock.verify(httpClient);
     }
 
+    @Test
+    public void testExecuteAsyncRetriesWithoutBlockingCaller() throws Exception {
+        final IOException exception = new IOException("BOOM");
+        final HttpResponse response = HttpResponse.builder()
+                .content(new ByteArrayInputStream(new byte[0]))
+                .statusCode(200)
+                .statusText("OK")
+                .build();
+
+        EasyMock
+                .expect(httpClient.execute(EasyMock.<HttpRequest> anyObject()))
+                .andThrow(exception)
+                .times(2);
+        EasyMock
+                .expect(httpClient.execute(EasyMock.<HttpRequest> anyObject()))
+                .andReturn(response);
+        EasyMock.replay(httpClient);
+
+        final Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+        request.addHeader(HttpHeader.CONTENT_LENGTH, "0");
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+
+        final List<Response<String>> results = new ArrayList<Response<String>>();
+        final CountDownLatch callbackCalled = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Response<String>> future = client.executeAsync(request,
+                    stringResponseHandler("Result"), null, new ExecutionContext(), executor,
+                    new Callback<Response<String>>() {
+                        @Override
+                        public void onResult(Response<String> result) {
+                            results.add(result);
+                            callbackCalled.countDown();
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            Assert.fail("Unexpected error " + e);
+                        }
+                    });
+
+            assertEquals("Result", future.get(10, TimeUnit.SECONDS).getAwsResponse());
+            assertTrue(future.isDone());
+            assertTrue(callbackCalled.await(10, TimeUnit.SECONDS));
+            assertEquals(1, results.size());
+            assertEquals("2/", request.getHeaders().get("aws-sdk-retry").substring(0, 2));
+        } finally {
+            executor.shutdownNow();
+        }
+        EasyMock.verify(httpClient);
+    }
+
+    @Test
+    public void testExecuteAsyncWaitsForRateLimiterWithoutBlockingExecutor() throws Exception {
+        final HttpResponse response = HttpResponse.builder()
+                .content(new ByteArrayInputStream(new byte[0]))
+                .statusCode(200)
+                .statusText("OK")
+                .build();
+        EasyMock
+                .expect(httpClient.execute(EasyMock.<HttpRequest> anyObject()))
+                .andReturn(response);
+        EasyMock.replay(httpClient);
+
+        final ClientConfiguration config = new ClientConfiguration();
+        config.setRateLimiter(new AdaptiveRateLimiter() {
+            @Override
+            public synchronized long reserve() {
+                return 500;
+            }
+
+            @Override
+            protected void sleep(long millis) {
+                Assert.fail("The asynchronous execution must not sleep");
+            }
+        });
+        client = new AmazonHttpClient(config, httpClient);
+
+        final Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+        request.addHeader(HttpHeader.CONTENT_LENGTH, "0");
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final long start = System.currentTimeMillis();
+            final Future<Response<String>> future = client.executeAsync(request,
+                    stringResponseHandler("Result"), null, new ExecutionContext(), executor,
+                    null);
+
+            // the only executor thread stays free while the attempt waits
+            final CountDownLatch otherTaskRan = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    otherTaskRan.countDown();
+                }
+            });
+            assertTrue(otherTaskRan.await(400, TimeUnit.MILLISECONDS));
+
+            assertEquals("Result", future.get(10, TimeUnit.SECONDS).getAwsResponse());
+            assertTrue(System.currentTimeMillis() - start >= 500);
+        } finally {
+            executor.shutdownNow();
+        }
+        EasyMock.verify(httpClient);
+    }
+
+    @Test
+    public void testExecuteAsyncReportsFailure() throws Exception {
+        final IOException exception = new IOException("BOOM");
+
+        EasyMock
+                .expect(httpClient.execute(EasyMock.<HttpRequest> anyObject()))
+                .andThrow(exception)
+                .times(4);
+        EasyMock.replay(httpClient);
+
+        final Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setEndpoint(java.net.URI.create(
+                "http://testsvc.region.amazonaws.com"));
+        request.addHeader(HttpHeader.CONTENT_LENGTH, "0");
+        request.setContent(new ByteArrayInputStream(new byte[0]));
+
+        final List<Exception> errors = new ArrayList<Exception>();
+        final CountDownLatch callbackCalled = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Response<String>> future = client.executeAsync(request,
+                    stringResponseHandler("Result"), null, new ExecutionContext(), executor,
+                    new Callback<Response<String>>() {
+                        @Override
+                        public void onResult(Response<String> result) {
+                            Assert.fail("Unexpected result");
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            errors.add(e);
+                            callbackCalled.countDown();
+                        }
+                    });
+
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                Assert.fail("No exception when request repeatedly fails!");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof AmazonClientException);
+                Assert.assertSame(exception, e.getCause().getCause());
+            }
+            assertTrue(callbackCalled.await(10, TimeUnit.SECONDS));
+            assertEquals(1, errors.size());
+        } finally {
+            executor.shutdownNow();
+        }
+        EasyMock.verify(httpClient);
+    }
+
+    private static HttpResponseHandler<AmazonWebServiceResponse<String>> stringResponseHandler(
+            final String result) {
+        return new HttpResponseHandler<AmazonWebServiceResponse<String>>() {
+            @Override
+            public AmazonWebServiceResponse<String> handle(HttpResponse response) throws Exception {
+                AmazonWebServiceResponse<String> awsResponse = new AmazonWebServiceResponse<String>();
+                awsResponse.setResult(result);
+                return awsResponse;
+            }
+
+            @Override
+            public boolean needsConnectionLeftOpen() {
+                return false;
+            }
+        };
+    }
+
     @Test
     public void testHandleResponse() throws IOException {
 
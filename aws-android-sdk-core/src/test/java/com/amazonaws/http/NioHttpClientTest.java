@@ -0,0 +1,426 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.internal.FileRegionInputStream;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+public class NioHttpClientTest {
+    private static final char[] KEY_STORE_PASSWORD = "changeit".toCharArray();
+
+    private HttpServer server;
+    private URI endpoint;
+    private NioHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = IOUtils.toByteArray(exchange.getRequestBody());
+                if (body.length == 0) {
+                    body = "empty".getBytes(StringUtils.UTF8);
+                }
+                exchange.getResponseHeaders().add("x-method", exchange.getRequestMethod());
+                exchange.getResponseHeaders().add("x-query",
+                        String.valueOf(exchange.getRequestURI().getRawQuery()));
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(200, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.createContext("/chunked", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, 0);
+                final OutputStream out = exchange.getResponseBody();
+                for (int i = 0; i < 3; i++) {
+                    out.write(("part" + i).getBytes(StringUtils.UTF8));
+                    out.flush();
+                }
+                exchange.close();
+            }
+        });
+        server.createContext("/large", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                final byte[] body = new byte[1024 * 1024];
+                exchange.sendResponseHeaders(200, body.length);
+                try {
+                    exchange.getResponseBody().write(body);
+                } catch (final IOException e) {
+                    // the client gave up on the body
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        client = new NioHttpClient(new ClientConfiguration());
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    private HttpRequest request(String method, String path, InputStream content,
+            Map<String, String> headers) {
+        return new HttpRequest(method, endpoint.resolve(path), headers, content);
+    }
+
+    private static String body(HttpResponse response) throws IOException {
+        return IOUtils.toString(response.getContent());
+    }
+
+    @Test
+    public void testConnectionReuse() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            final HttpResponse response = client.execute(request("GET", "/echo?a=b%20c", null,
+                    new HashMap<String, String>()));
+            assertEquals(200, response.getStatusCode());
+            assertEquals("GET", response.getHeaders().get("X-method"));
+            assertEquals("a=b%20c", response.getHeaders().get("X-query"));
+            assertEquals("empty", body(response));
+        }
+        final HttpConnectionPoolStats stats = client.getPoolStats();
+        assertEquals(1, stats.getOpens());
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getAvailable());
+        assertEquals(0, stats.getLeased());
+    }
+
+    @Test
+    public void testFixedLengthBody() throws IOException {
+        final byte[] content = new byte[100 * 1024 + 3];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put(HttpHeader.CONTENT_LENGTH, String.valueOf(content.length));
+        final HttpResponse response = client.execute(request("PUT", "/echo",
+                new ByteArrayInputStream(content), headers));
+        assertEquals(new String(content, StringUtils.UTF8), body(response));
+
+        headers.put(HttpHeader.EXPECT, "100-continue");
+        final HttpResponse continued = client.execute(request("PUT", "/echo",
+                new ByteArrayInputStream(content), headers));
+        assertEquals(new String(content, StringUtils.UTF8), body(continued));
+        assertEquals(1, client.getPoolStats().getOpens());
+    }
+
+    @Test
+    public void testStreamingBody() throws IOException {
+        final HttpRequest request = request("POST", "/echo",
+                new ByteArrayInputStream("streamed".getBytes(StringUtils.UTF8)),
+                new HashMap<String, String>());
+        request.setStreaming(true);
+        assertEquals("streamed", body(client.execute(request)));
+    }
+
+    @Test
+    public void testFileBody() throws IOException {
+        final File file = File.createTempFile("nio", ".txt");
+        file.deleteOnExit();
+        final OutputStream out = new FileOutputStream(file);
+        out.write("skip:file content".getBytes(StringUtils.UTF8));
+        out.close();
+
+        final FileInputStream content = new FileInputStream(file);
+        try {
+            assertEquals(5, content.skip(5));
+            final Map<String, String> headers = new HashMap<String, String>();
+            headers.put(HttpHeader.CONTENT_LENGTH, "12");
+            assertEquals("file content",
+                    body(client.execute(request("PUT", "/echo", content, headers))));
+            assertEquals(-1, content.read());
+        } finally {
+            content.close();
+        }
+    }
+
+    @Test
+    public void testFileRegionBody() throws IOException {
+        final File file = File.createTempFile("nio", ".txt");
+        file.deleteOnExit();
+        final OutputStream out = new FileOutputStream(file);
+        out.write("skip:file region:tail".getBytes(StringUtils.UTF8));
+        out.close();
+
+        final FileRegionInputStream content = new FileRegionInputStream(file, 5, 11);
+        try {
+            final Map<String, String> headers = new HashMap<String, String>();
+            headers.put(HttpHeader.CONTENT_LENGTH, "11");
+            assertEquals("file region",
+                    body(client.execute(request("PUT", "/echo", content, headers))));
+            assertEquals(0, content.getRemaining());
+            assertEquals(-1, content.read());
+        } finally {
+            content.close();
+        }
+    }
+
+    @Test
+    public void testChunkedResponse() throws IOException {
+        final HttpResponse response = client.execute(request("GET", "/chunked", null,
+                new HashMap<String, String>()));
+        assertEquals("part0part1part2", body(response));
+        client.execute(request("GET", "/chunked", null, new HashMap<String, String>()))
+                .getContent().close();
+        assertEquals(1, client.getPoolStats().getOpens());
+    }
+
+    @Test
+    public void testHeadResponse() throws IOException {
+        final HttpResponse response = client.execute(request("HEAD", "/echo", null,
+                new HashMap<String, String>()));
+        assertEquals(200, response.getStatusCode());
+        assertNull(response.getContent());
+        assertEquals(1, client.getPoolStats().getAvailable());
+    }
+
+    @Test
+    public void testUnreadResponseClosesConnection() throws IOException {
+        final HttpResponse response = client.execute(request("GET", "/large", null,
+                new HashMap<String, String>()));
+        final InputStream content = response.getContent();
+        assertTrue(content.read() >= 0);
+        content.close();
+        final HttpConnectionPoolStats stats = client.getPoolStats();
+        assertEquals(0, stats.getAvailable());
+        assertEquals(0, stats.getLeased());
+
+        body(client.execute(request("GET", "/echo", null, new HashMap<String, String>())));
+        assertEquals(2, client.getPoolStats().getOpens());
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        client = new NioHttpClient(new ClientConfiguration().withConnectionMaxIdleMillis(1));
+        body(client.execute(request("GET", "/echo", null, new HashMap<String, String>())));
+        Thread.sleep(10);
+        body(client.execute(request("GET", "/echo", null, new HashMap<String, String>())));
+        final HttpConnectionPoolStats stats = client.getPoolStats();
+        assertEquals(2, stats.getOpens());
+        assertEquals(0, stats.getHits());
+        assertTrue(stats.getIdleEvictions() >= 1);
+    }
+
+    @Test
+    public void testServerClosedConnection() throws IOException {
+        body(client.execute(request("GET", "/echo", null, new HashMap<String, String>())));
+        server.stop(0);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", endpoint.getPort()), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(204, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        assertEquals(204, client.execute(request("GET", "/echo", null,
+                new HashMap<String, String>())).getStatusCode());
+        assertEquals(2, client.getPoolStats().getOpens());
+    }
+
+    @Test
+    public void testSelectedByClientConfiguration() {
+        final ClientConfiguration config = new ClientConfiguration().withNioHttpClient(true);
+        assertTrue(new AmazonHttpClient(config).httpClient instanceof NioHttpClient);
+        assertTrue(new AmazonHttpClient(new ClientConfiguration()).httpClient
+                instanceof UrlHttpClient);
+        final HttpClient custom = new UrlHttpClient(config) {
+        };
+        assertSame(custom, new AmazonHttpClient(config, custom).httpClient);
+        // a UrlHttpClient passed in explicitly is honored as well
+        final HttpClient explicit = new UrlHttpClient(config);
+        assertSame(explicit, new AmazonHttpClient(config, explicit).httpClient);
+        assertTrue(AmazonHttpClient.defaultHttpClient(config) instanceof NioHttpClient);
+        // the NIO client would bypass the proxy
+        config.setProxyHost("proxy.example.com");
+        config.setProxyPort(8080);
+        assertTrue(AmazonHttpClient.defaultHttpClient(config) instanceof UrlHttpClient);
+        assertTrue(new AmazonHttpClient(config).httpClient instanceof UrlHttpClient);
+    }
+
+    @Test
+    public void testHttpsConnectionReuse() throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        final InputStream keyStoreStream = getClass().getResourceAsStream("localhost.jks");
+        try {
+            keyStore.load(keyStoreStream, KEY_STORE_PASSWORD);
+        } finally {
+            keyStoreStream.close();
+        }
+        final KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(
+                KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEY_STORE_PASSWORD);
+        final TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), null, null);
+
+        final SSLServerSocket serverSocket = (SSLServerSocket) sslContext
+                .getServerSocketFactory().createServerSocket(0, 0,
+                        InetAddress.getByName("127.0.0.1"));
+        final Thread serverThread = new Thread(new TlsEchoServer(serverSocket));
+        serverThread.start();
+        client = new NioHttpClient(new ClientConfiguration()
+                .withTrustManager(trustManagers.getTrustManagers()[0]));
+        try {
+            final URI uri = URI.create("https://127.0.0.1:"
+                    + serverSocket.getLocalPort() + "/echo");
+            for (int i = 0; i < 3; i++) {
+                final byte[] content = ("request" + i).getBytes(StringUtils.UTF8);
+                final Map<String, String> headers = new HashMap<String, String>();
+                headers.put("Content-Length", String.valueOf(content.length));
+                final HttpResponse response = client.execute(new HttpRequest("PUT", uri,
+                        headers, new ByteArrayInputStream(content)));
+                assertEquals(200, response.getStatusCode());
+                assertEquals("request" + i, body(response));
+                // leave time for the records the server sends after the response
+                Thread.sleep(50);
+            }
+            final HttpConnectionPoolStats stats = client.getPoolStats();
+            assertEquals(1, stats.getOpens());
+            assertEquals(2, stats.getHits());
+        } finally {
+            client.shutdown();
+            serverSocket.close();
+            serverThread.join();
+        }
+    }
+
+    /**
+     * Echoes the bodies of the requests of each connection, and sends a TLS
+     * record the client doesn't read after each response, as servers do with
+     * session tickets and key updates.
+     */
+    private static class TlsEchoServer implements Runnable {
+        private final SSLServerSocket serverSocket;
+
+        TlsEchoServer(SSLServerSocket serverSocket) {
+            this.serverSocket = serverSocket;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final SSLSocket socket;
+                try {
+                    socket = (SSLSocket) serverSocket.accept();
+                } catch (final IOException e) {
+                    return;
+                }
+                try {
+                    serve(socket);
+                } catch (final IOException e) {
+                    // the client closed the connection
+                } finally {
+                    try {
+                        socket.close();
+                    } catch (final IOException e) {
+                        // ignored
+                    }
+                }
+            }
+        }
+
+        private void serve(SSLSocket socket) throws IOException {
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+            final OutputStream out = socket.getOutputStream();
+            while (true) {
+                int contentLength = 0;
+                String line = readLine(in);
+                if (line == null) {
+                    return;
+                }
+                while (!(line = readLine(in)).isEmpty()) {
+                    if (line.toLowerCase().startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                final byte[] body = new byte[contentLength];
+                in.readFully(body);
+                out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n")
+                        .getBytes(StringUtils.UTF8));
+                out.write(body);
+                out.flush();
+                // a key update with TLS 1.3, a renegotiation request before
+                socket.startHandshake();
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            final StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    return line.length() == 0 ? null : line.toString();
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.auth.AWS4Signer;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsCompact;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+@SuppressWarnings("deprecation")
+public class RequestCompressorTest {
+
+    private static class PutBatchRequest extends AmazonWebServiceRequest {
+    }
+
+    private static class GetItemRequest extends AmazonWebServiceRequest {
+    }
+
+    private static final ClientConfiguration ENABLED = new ClientConfiguration()
+            .withRequestCompressionEnabled(true);
+
+    @Test
+    public void testIsEnabledPerClientOrOperation() {
+        final ClientConfiguration config = new ClientConfiguration();
+        assertFalse(RequestCompressor.isEnabled(config, new PutBatchRequest()));
+
+        config.setRequestCompressionOperations(
+                Collections.<Class<? extends AmazonWebServiceRequest>> singleton(
+                        PutBatchRequest.class));
+        assertTrue(RequestCompressor.isEnabled(config, new PutBatchRequest()));
+        assertFalse(RequestCompressor.isEnabled(config, new GetItemRequest()));
+        assertFalse(RequestCompressor.isEnabled(config, null));
+
+        assertTrue(RequestCompressor.isEnabled(new ClientConfiguration(config)
+                .withRequestCompressionEnabled(true), new GetItemRequest()));
+        assertTrue(RequestCompressor.isEnabled(new ClientConfiguration(config),
+                new PutBatchRequest()));
+    }
+
+    @Test
+    public void testCompressesContent() throws IOException {
+        final byte[] payload = payload(20000);
+        final Request<?> request = contentRequest(payload);
+        final AWSRequestMetricsCompact metrics = new AWSRequestMetricsCompact();
+
+        assertTrue(RequestCompressor.compress(request, null, ENABLED, metrics));
+
+        assertEquals("gzip", request.getHeaders().get("Content-Encoding"));
+        final byte[] compressed = readAll(request.getContent());
+        assertEquals(String.valueOf(compressed.length), request.getHeaders().get("Content-Length"));
+        assertTrue(compressed.length < payload.length);
+        assertArrayEquals(payload, gunzip(compressed));
+        assertEquals(payload.length, metrics.getCounter(Field.RequestBytesBeforeCompression));
+        assertEquals(compressed.length, metrics.getCounter(Field.RequestBytesAfterCompression));
+    }
+
+    @Test
+    public void testSkipsContentBelowThreshold() {
+        final Request<?> request = contentRequest(payload(100));
+        final InputStream content = request.getContent();
+        final AWSRequestMetricsCompact metrics = new AWSRequestMetricsCompact();
+
+        assertFalse(RequestCompressor.compress(request, null, ENABLED, metrics));
+        assertTrue(RequestCompressor.compress(request, null,
+                new ClientConfiguration().withRequestMinCompressionSizeBytes(0), metrics));
+        assertTrue(content != request.getContent());
+    }
+
+    @Test
+    public void testSkipsEncodedAndStreamingContent() {
+        Request<?> request = contentRequest(payload(20000));
+        request.addHeader("Content-Encoding", "aws-chunked");
+        assertFalse(RequestCompressor.compress(request, null, ENABLED,
+                new AWSRequestMetricsCompact()));
+
+        request = contentRequest(payload(20000));
+        request.setStreaming(true);
+        assertFalse(RequestCompressor.compress(request, null, ENABLED,
+                new AWSRequestMetricsCompact()));
+    }
+
+    @Test
+    public void testMovesQueryParametersIntoCompressedBody() throws IOException {
+        final Request<?> request = new DefaultRequest<Object>(new PutBatchRequest(), "test");
+        request.setHttpMethod(HttpMethodName.POST);
+        request.setEndpoint(URI.create("https://test.us-east-1.amazonaws.com"));
+        request.addParameter("Action", "PutMetricData");
+        for (int i = 0; i < 500; i++) {
+            request.addParameter("MetricData.member." + i + ".MetricName", "Latency");
+        }
+
+        assertTrue(RequestCompressor.compress(request, new AWS4Signer(), ENABLED,
+                new AWSRequestMetricsCompact()));
+
+        assertTrue(request.getParameters().isEmpty());
+        assertEquals("application/x-www-form-urlencoded; charset=utf-8",
+                request.getHeaders().get("Content-Type"));
+        final String body = new String(gunzip(readAll(request.getContent())), StringUtils.UTF8);
+        assertTrue(body.startsWith("Action=PutMetricData&MetricData.member.0.MetricName=Latency"));
+    }
+
+    @Test
+    public void testSignerHashesCompressedBody() throws Exception {
+        final Request<?> request = contentRequest(payload(20000));
+        final ExposedSigner signer = new ExposedSigner();
+
+        RequestCompressor.compress(request, signer, ENABLED, new AWSRequestMetricsCompact());
+
+        request.getContent().mark(-1);
+        final byte[] compressed = readAll(request.getContent());
+        request.getContent().reset();
+        final String expected = BinaryUtils.toHex(
+                MessageDigest.getInstance("SHA-256").digest(compressed));
+        assertEquals(expected, signer.contentHash(request));
+    }
+
+    @Test
+    public void testRetriesResendCompressedBody() throws IOException {
+        final List<byte[]> bodies = new ArrayList<byte[]>();
+        final List<String> encodings = new ArrayList<String>();
+        final HttpClient httpClient = new HttpClient() {
+            @Override
+            public HttpResponse execute(HttpRequest request) throws IOException {
+                encodings.add(request.getHeaders().get("Content-Encoding"));
+                bodies.add(readAll(request.getContent()));
+                throw new IOException("BOOM");
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        final AmazonHttpClient client = new AmazonHttpClient(new ClientConfiguration()
+                .withRequestCompressionEnabled(true)
+                .withMaxErrorRetry(1), httpClient);
+        final byte[] payload = payload(20000);
+
+        try {
+            client.execute(contentRequest(payload), null, null, new ExecutionContext());
+            fail("No exception when request repeatedly fails!");
+        } catch (final AmazonClientException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        assertEquals(2, bodies.size());
+        assertEquals("gzip", encodings.get(0));
+        assertEquals("gzip", encodings.get(1));
+        assertArrayEquals(bodies.get(0), bodies.get(1));
+        assertArrayEquals(payload, gunzip(bodies.get(0)));
+    }
+
+    @Test
+    public void testDisabledByDefault() throws IOException {
+        final List<String> encodings = new ArrayList<String>();
+        final HttpClient httpClient = new HttpClient() {
+            @Override
+            public HttpResponse execute(HttpRequest request) throws IOException {
+                encodings.add(request.getHeaders().get("Content-Encoding"));
+                throw new IOException("BOOM");
+            }
+
+            @Override
+            public void shutdown() {
+            }
+        };
+        final AmazonHttpClient client = new AmazonHttpClient(new ClientConfiguration()
+                .withMaxErrorRetry(0), httpClient);
+        try {
+            client.execute(contentRequest(payload(20000)), null, null, new ExecutionContext());
+            fail("No exception when request fails!");
+        } catch (final AmazonClientException e) {
+            assertEquals(1, encodings.size());
+            assertNull(encodings.get(0));
+        }
+    }
+
+    private static class ExposedSigner extends AWS4Signer {
+        String contentHash(Request<?> request) {
+            return calculateContentHash(request);
+        }
+    }
+
+    private static Request<?> contentRequest(byte[] payload) {
+        final Request<?> request = new DefaultRequest<Object>(new PutBatchRequest(), "test");
+        request.setHttpMethod(HttpMethodName.POST);
+        request.setEndpoint(URI.create("https://test.us-east-1.amazonaws.com"));
+        request.addHeader("Content-Length", String.valueOf(payload.length));
+        request.setContent(new ByteArrayInputStream(payload));
+        return request;
+    }
+
+    private static byte[] payload(int size) {
+        final StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            sb.append("{\"Data\":\"record-").append(sb.length() % 97).append("\"},");
+        }
+        return sb.substring(0, size).getBytes(StringUtils.UTF8);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        return readAll(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.event.ProgressListenerCallbackExecutor;
+import com.amazonaws.util.IOUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+public class FileRegionInputStreamTest {
+
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[100 * 1024 + 7];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        file = File.createTempFile("region", ".bin");
+        file.deleteOnExit();
+        final OutputStream out = new FileOutputStream(file);
+        out.write(content);
+        out.close();
+    }
+
+    @Test
+    public void testReadsOnlyTheRegion() throws IOException {
+        final FileRegionInputStream in = new FileRegionInputStream(file, 1000, 5000);
+        try {
+            assertArrayEquals(Arrays.copyOfRange(content, 1000, 6000), IOUtils.toByteArray(in));
+            assertEquals(-1, in.read());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testMarkAndReset() throws IOException {
+        final FileRegionInputStream in = new FileRegionInputStream(file, 10, 100);
+        try {
+            assertEquals(5, in.skip(5));
+            in.mark(0);
+            final byte[] first = new byte[20];
+            assertEquals(20, in.read(first));
+            in.reset();
+            final byte[] second = new byte[20];
+            assertEquals(20, in.read(second));
+            assertArrayEquals(first, second);
+            assertArrayEquals(Arrays.copyOfRange(content, 15, 35), second);
+            assertEquals(75, in.getRemaining());
+            assertEquals(35, in.getFilePosition());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testDigestsDoNotMoveTheStream() throws Exception {
+        final FileRegionInputStream in = new FileRegionInputStream(file, 3, content.length - 3);
+        try {
+            assertEquals(10, in.read(new byte[10]));
+            in.computeDigests("MD5", "SHA-256");
+            final byte[] region = Arrays.copyOfRange(content, 3, content.length);
+            assertArrayEquals(MessageDigest.getInstance("MD5").digest(region),
+                    in.getDigest("MD5"));
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(region),
+                    in.getDigest("SHA-256"));
+            assertEquals(content.length - 13, in.getRemaining());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testAdvanceReportsProgress() throws Exception {
+        final long[] transferred = new long[1];
+        final ProgressListenerCallbackExecutor executor = new ProgressListenerCallbackExecutor(
+                new ProgressListener() {
+                    @Override
+                    public void progressChanged(ProgressEvent progressEvent) {
+                        synchronized (transferred) {
+                            transferred[0] += progressEvent.getBytesTransferred();
+                            transferred.notifyAll();
+                        }
+                    }
+                });
+        final FileRegionInputStream in = new FileRegionInputStream(file, 0, 50000);
+        in.setProgressListener(executor, 8);
+        assertEquals(100, in.read(new byte[100]));
+        in.advance(in.getRemaining());
+        assertEquals(-1, in.read());
+        in.close();
+        synchronized (transferred) {
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (transferred[0] < 50000 && System.currentTimeMillis() < deadline) {
+                transferred.wait(100);
+            }
+        }
+        assertEquals(50000, transferred[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAdvancePastTheEnd() throws IOException {
+        final FileRegionInputStream in = new FileRegionInputStream(file, 0, 10);
+        try {
+            in.advance(11);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsCompact;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class LatencyHistogramMetricCollectorTest {
+
+    private static class PutRecordRequest extends AmazonWebServiceRequest {
+    }
+
+    private static Request<?> execute(AWSRequestMetrics metrics) {
+        final Request<?> request = new DefaultRequest<Void>(new PutRecordRequest(), "Kinesis");
+        request.setAWSRequestMetrics(metrics);
+        metrics.startEvent(Field.ClientExecuteTime);
+        metrics.endEvent(Field.ClientExecuteTime);
+        metrics.getTimingInfo().endTiming();
+        return request;
+    }
+
+    @Test
+    public void testCollect() {
+        final LatencyHistogramMetricCollector collector = new LatencyHistogramMetricCollector();
+        final RequestMetricCollector requests = collector.getRequestMetricCollector();
+        assertFalse(requests.isEnabled());
+        assertTrue(collector.start());
+        assertTrue(requests.isEnabled());
+        assertTrue(requests.isCompactMetricsSupported());
+
+        requests.collectMetrics(execute(new AWSRequestMetricsCompact()),
+                new Response<Object>(null, null));
+        requests.collectMetrics(execute(new AWSRequestMetricsFullSupport()), null);
+
+        final List<LatencyHistogram.Snapshot> snapshots = collector.snapshot();
+        assertEquals(1, snapshots.size());
+        final LatencyHistogram.Snapshot snapshot = snapshots.get(0);
+        assertEquals("Kinesis", snapshot.getServiceName());
+        assertEquals("PutRecord", snapshot.getOperationName());
+        assertEquals(2, snapshot.getCount());
+        assertEquals(1, snapshot.getErrorCount());
+        assertNotNull(collector.getHistogram("Kinesis", "PutRecord"));
+
+        collector.reset();
+        assertTrue(collector.snapshot().isEmpty());
+        assertNull(collector.getHistogram("Kinesis", "PutRecord"));
+        assertTrue(collector.stop());
+        assertFalse(collector.stop());
+    }
+
+    @Test
+    public void testInstalledAtSdkLevel() {
+        final LatencyHistogramMetricCollector collector = new LatencyHistogramMetricCollector();
+        collector.start();
+        AwsSdkMetrics.setMetricCollector(collector);
+        try {
+            assertSame(collector.getRequestMetricCollector(),
+                    AwsSdkMetrics.getRequestMetricCollector());
+        } finally {
+            AwsSdkMetrics.setMetricCollector(null);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram("Service", "Operation");
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1000000L, false);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(100000, snapshot.getMaxMicros());
+        assertEquals(50500.0, snapshot.getMeanMicros(), 0.0);
+        assertWithin(50000, snapshot.getPercentileMicros(50));
+        assertWithin(99000, snapshot.getPercentileMicros(99));
+        assertEquals(100000, snapshot.getPercentileMicros(100));
+        assertEquals(0, new LatencyHistogram("S", "O").snapshot().getPercentileMicros(50));
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long micros = 0; micros < 100000; micros += 7) {
+            final int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || micros > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+        // latencies beyond the range end up in the last bucket
+        final LatencyHistogram histogram = new LatencyHistogram("Service", "Operation");
+        histogram.record(Long.MAX_VALUE, false);
+        assertEquals((1L << 37) - 1, histogram.snapshot().getMaxMicros());
+    }
+
+    @Test
+    public void testOperationName() {
+        assertEquals("PutRecord",
+                LatencyHistogramMetricCollector.operationNameOf(PutRecordRequest.class));
+        assertEquals("Unknown",
+                LatencyHistogramMetricCollector.operationNameOf(AmazonWebServiceRequest.class));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not within 12.5% of " + expected,
+                actual >= expected && actual <= expected * 1.125);
+    }
+}
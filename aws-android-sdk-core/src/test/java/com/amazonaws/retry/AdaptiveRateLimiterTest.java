@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveRateLimiterTest {
+
+    /** Limiter driven by a fake clock; sleeping advances the clock. */
+    private static class TestRateLimiter extends AdaptiveRateLimiter {
+        double now = 1.0;
+        long slept;
+
+        @Override
+        protected double currentTimeSeconds() {
+            return now;
+        }
+
+        @Override
+        protected void sleep(long millis) {
+            slept += millis;
+            now += millis / 1000.0;
+        }
+    }
+
+    @Test
+    public void testDisabledUntilThrottled() {
+        final TestRateLimiter limiter = new TestRateLimiter();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.acquire());
+            limiter.onResponse(false);
+        }
+        assertFalse(limiter.isEnabled());
+        assertEquals(Double.POSITIVE_INFINITY, limiter.getAllowedRate(), 0);
+        assertEquals(0, limiter.getThrottledSendCount());
+    }
+
+    @Test
+    public void testThrottlingReducesAllowedRate() {
+        final TestRateLimiter limiter = new TestRateLimiter();
+        // ten requests per second for a few seconds
+        for (int i = 0; i < 40; i++) {
+            limiter.acquire();
+            limiter.onResponse(false);
+            limiter.now += 0.1;
+        }
+        final double measured = limiter.getMeasuredRate();
+        assertTrue(measured > 5);
+
+        limiter.onResponse(true);
+        assertTrue(limiter.isEnabled());
+        assertEquals(1, limiter.getThrottlingErrorCount());
+        final double reduced = limiter.getAllowedRate();
+        assertTrue(reduced < measured);
+
+        // sends beyond the allowed rate have to wait
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+        }
+        assertTrue(limiter.getThrottledSendCount() > 0);
+        assertTrue(limiter.slept > 0);
+    }
+
+    @Test
+    public void testReserveReturnsDelayWithoutWaiting() {
+        final TestRateLimiter limiter = new TestRateLimiter();
+        for (int i = 0; i < 40; i++) {
+            limiter.onResponse(false);
+            limiter.now += 0.1;
+        }
+        limiter.onResponse(true);
+
+        long delay = 0;
+        for (int i = 0; i < 20 && delay == 0; i++) {
+            delay = limiter.reserve();
+        }
+        assertTrue(delay > 0);
+        assertEquals(0, limiter.slept);
+        assertEquals(1, limiter.getThrottledSendCount());
+
+        // the borrowed token also holds back the next send
+        limiter.now += delay / 1000.0;
+        assertTrue(limiter.reserve() > 0);
+        assertEquals(0, limiter.slept);
+    }
+
+    @Test
+    public void testAllowedRateRecoversAfterThrottling() {
+        final TestRateLimiter limiter = new TestRateLimiter();
+        for (int i = 0; i < 40; i++) {
+            limiter.onResponse(false);
+            limiter.now += 0.1;
+        }
+        limiter.onResponse(true);
+        final double reduced = limiter.getAllowedRate();
+
+        for (int i = 0; i < 100; i++) {
+            limiter.now += 0.1;
+            limiter.onResponse(false);
+        }
+        assertTrue(limiter.getAllowedRate() > reduced);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.retry;
+
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void testRetriesDeniedOnceExhausted() {
+        final RetryBudget budget = new RetryBudget(10, 5, 10);
+        final AmazonServiceException ase = new AmazonServiceException("throttled");
+
+        assertEquals(5, budget.tryAcquire(ase));
+        assertEquals(5, budget.tryAcquire(ase));
+        assertEquals(-1, budget.tryAcquire(ase));
+        assertEquals(0, budget.getAvailableTokens());
+        assertEquals(10, budget.getTokensConsumed());
+        assertEquals(1, budget.getRetriesDenied());
+    }
+
+    @Test
+    public void testIoErrorsCostMore() {
+        final RetryBudget budget = new RetryBudget(15, 5, 10);
+        final AmazonClientException ace = new AmazonClientException("timeout",
+                new SocketTimeoutException());
+
+        assertEquals(10, budget.tryAcquire(ace));
+        assertEquals(-1, budget.tryAcquire(ace));
+        assertEquals(5, budget.tryAcquire(new AmazonClientException("other")));
+    }
+
+    @Test
+    public void testReleaseRefundsUpToCapacity() {
+        final RetryBudget budget = new RetryBudget(10, 5, 10);
+        final int consumed = budget.tryAcquire(new AmazonServiceException("throttled"));
+
+        budget.release(0);
+        assertEquals(6, budget.getAvailableTokens());
+        budget.release(consumed);
+        assertEquals(10, budget.getAvailableTokens());
+        budget.release(consumed);
+        assertEquals(10, budget.getAvailableTokens());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeCapacity() {
+        new RetryBudget(-1, 5, 10);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.metrics.MetricType;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class AWSRequestMetricsCompactTest {
+
+    @Test
+    public void testEvents() throws InterruptedException {
+        final AWSRequestMetricsCompact metrics = new AWSRequestMetricsCompact();
+        assertTrue(metrics.isEnabled());
+        assertEquals(0, metrics.getEventCount(Field.HttpRequestTime));
+
+        metrics.startEvent(Field.HttpRequestTime);
+        Thread.sleep(2);
+        metrics.endEvent(Field.HttpRequestTime);
+        final long first = metrics.getEventTimeNanos(Field.HttpRequestTime);
+        assertTrue(first >= 2000000L);
+
+        metrics.startEvent(Field.HttpRequestTime);
+        metrics.endEvent(Field.HttpRequestTime);
+        assertEquals(2, metrics.getEventCount(Field.HttpRequestTime));
+        assertTrue(metrics.getEventTimeNanos(Field.HttpRequestTime) >= first);
+
+        // ending an event that is not running is ignored
+        metrics.endEvent(Field.HttpRequestTime);
+        assertEquals(2, metrics.getEventCount(Field.HttpRequestTime));
+        assertEquals(0, metrics.getEventCount(Field.RequestSigningTime));
+    }
+
+    @Test
+    public void testCounters() {
+        final AWSRequestMetricsCompact metrics = new AWSRequestMetricsCompact();
+        assertFalse(metrics.isCounterSet(Field.RequestCount));
+        metrics.incrementCounter(Field.RequestCount);
+        metrics.incrementCounter(Field.RequestCount);
+        assertEquals(2, metrics.getCounter(Field.RequestCount));
+        metrics.setCounter(Field.RetryCapacityConsumed, 10);
+        assertEquals(10, metrics.getCounter(Field.RetryCapacityConsumed));
+        assertTrue(metrics.isCounterSet(Field.RetryCapacityConsumed));
+    }
+
+    @Test
+    public void testProperties() {
+        final AWSRequestMetricsCompact metrics = new AWSRequestMetricsCompact();
+        assertNull(metrics.getProperty(Field.StatusCode));
+        metrics.addProperty(Field.StatusCode, 500);
+        metrics.addProperty(Field.StatusCode, 200);
+        assertEquals(Collections.<Object> singletonList(200), metrics.getProperty(Field.StatusCode));
+    }
+
+    @Test
+    public void testOtherMetricsFallBack() {
+        final MetricType custom = new MetricType() {
+            @Override
+            public String name() {
+                return "Custom";
+            }
+        };
+        final AWSRequestMetricsCompact metrics = new AWSRequestMetricsCompact();
+        metrics.addProperty(custom, "a");
+        metrics.addProperty(custom, "b");
+        metrics.addProperty("named", "c");
+        metrics.startEvent(custom);
+        metrics.endEvent(custom);
+        metrics.incrementCounter("counter");
+        assertEquals(2, metrics.getProperty(custom).size());
+        assertEquals(Collections.<Object> singletonList("c"), metrics.getProperty("named"));
+        metrics.log();
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Random;
 
 public class Md5UtilsTest {
 
@@ -57,4 +58,17 @@ public class Md5UtilsTest {
         String b64 = Md5Utils.md5AsBase64(f);
         assertEquals("C09QO463cUzhJAJAaJXPaA==", b64);
     }
+
+    @Test
+    public void testLargeFile() throws Exception {
+        // larger than the direct buffer, and not a multiple of its size
+        byte[] data = new byte[1024 * 1024 + 17];
+        new Random(1).nextBytes(data);
+        File f = File.createTempFile("Md5UtilsTest-", "bin");
+        f.deleteOnExit();
+        FileUtils.writeByteArrayToFile(f, data);
+        assertEquals(Md5Utils.md5AsBase64(data), Md5Utils.md5AsBase64(f));
+        assertEquals(Md5Utils.md5AsBase64(new ByteArrayInputStream(data)),
+                Md5Utils.md5AsBase64(f));
+    }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.util.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.util.StringUtils;
+import com.amazonaws.util.json.JsonUtils.JsonEngine;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+public class Utf8JsonReaderTest {
+    private static final String JSON_STRING = "{\"string\":\"string\","
+            + "\"long\":123,"
+            + "\"double\":-123.45e2,"
+            + "\"null\":null,"
+            + "\"true\":true,"
+            + "\"false\":false,"
+            + "\"encoding\":\"Chlo\u00eb \u20ac \ud83d\ude00\","
+            + "\"escaped\":\"a\\\"b\\\\c\\/d\\n\\u00e9\","
+            + "\"array\":[\"string\",123,null,true,false],"
+            + "\"object\":{\"nested\":[{}, []]}"
+            + "}";
+
+    private static final int[] BUFFER_SIZES = {
+            1, 2, 3, 7, 8192
+    };
+
+    private static Utf8JsonReader reader(String json, int bufferSize) {
+        return new Utf8JsonReader(new ByteArrayInputStream(json.getBytes(StringUtils.UTF8)),
+                bufferSize);
+    }
+
+    @Test
+    public void testReadAcrossBufferBoundaries() throws IOException {
+        for (final int size : BUFFER_SIZES) {
+            final AwsJsonReader reader = reader(JSON_STRING, size);
+            assertSame(AwsJsonToken.BEGIN_OBJECT, reader.peek());
+            reader.beginObject();
+            assertEquals("string", reader.nextName());
+            assertSame(AwsJsonToken.VALUE_STRING, reader.peek());
+            assertEquals("string", reader.nextString());
+            assertEquals("long", reader.nextName());
+            assertSame(AwsJsonToken.VALUE_NUMBER, reader.peek());
+            assertEquals("123", reader.nextString());
+            assertEquals("double", reader.nextName());
+            assertEquals("-123.45e2", reader.nextString());
+            assertEquals("null", reader.nextName());
+            assertSame(AwsJsonToken.VALUE_NULL, reader.peek());
+            assertNull(reader.nextString());
+            assertEquals("true", reader.nextName());
+            assertSame(AwsJsonToken.VALUE_BOOLEAN, reader.peek());
+            assertEquals("true", reader.nextString());
+            assertEquals("false", reader.nextName());
+            assertEquals("false", reader.nextString());
+            assertEquals("encoding", reader.nextName());
+            assertEquals("Chlo\u00eb \u20ac \ud83d\ude00", reader.nextString());
+            assertEquals("escaped", reader.nextName());
+            assertEquals("a\"b\\c/d\n\u00e9", reader.nextString());
+            assertEquals("array", reader.nextName());
+            assertTrue(reader.isContainer());
+            reader.beginArray();
+            assertEquals("string", reader.nextString());
+            assertEquals("123", reader.nextString());
+            assertNull(reader.nextString());
+            assertEquals("true", reader.nextString());
+            assertEquals("false", reader.nextString());
+            assertFalse(reader.hasNext());
+            reader.endArray();
+            assertEquals("object", reader.nextName());
+            reader.skipValue();
+            assertFalse(reader.hasNext());
+            reader.endObject();
+            assertNull(reader.peek());
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testFieldNames() throws IOException {
+        final AwsJsonFieldNames fields = new AwsJsonFieldNames("S", "N", "SS", "\u00e9t\u00e9");
+        final String json = "{\"N\":\"1\",\"x\":[1,{\"S\":2}],\"SS\":[],"
+                + "\"\\u0053\":\"s\",\"\u00e9t\u00e9\":true}";
+        for (final int size : BUFFER_SIZES) {
+            final AwsJsonReader reader = reader(json, size);
+            reader.beginObject();
+            assertEquals(1, fields.nextField(reader));
+            assertEquals("1", reader.nextString());
+            assertEquals(AwsJsonFieldNames.UNKNOWN, fields.nextField(reader));
+            reader.skipValue();
+            assertEquals(2, fields.nextField(reader));
+            reader.skipValue();
+            assertEquals(0, fields.nextField(reader));
+            assertEquals("s", reader.nextString());
+            assertEquals(3, fields.nextField(reader));
+            assertEquals("true", reader.nextString());
+            reader.endObject();
+        }
+    }
+
+    @Test
+    public void testFieldNamesWithOtherEngine() throws IOException {
+        final AwsJsonFieldNames fields = new AwsJsonFieldNames("a", "b");
+        final AwsJsonReader reader = new GsonFactory().getJsonReader(
+                new StringReader("{\"b\":1,\"c\":2}"));
+        reader.beginObject();
+        assertEquals(1, fields.nextField(reader));
+        reader.skipValue();
+        assertEquals(AwsJsonFieldNames.UNKNOWN, fields.nextField(reader));
+        reader.skipValue();
+        reader.endObject();
+        assertEquals("b", fields.name(1));
+        assertEquals(2, fields.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateFieldNames() {
+        new AwsJsonFieldNames("a", "a");
+    }
+
+    @Test
+    public void testPooledFieldNames() throws IOException {
+        final AwsJsonReader reader = reader("[{\"key\":1},{\"key\":2}]", 8192);
+        reader.beginArray();
+        reader.beginObject();
+        final String first = reader.nextName();
+        reader.skipValue();
+        reader.endObject();
+        reader.beginObject();
+        assertSame(first, reader.nextName());
+    }
+
+    @Test
+    public void testEmptyDocument() throws IOException {
+        assertNull(reader("  ", 8192).peek());
+        assertNull(reader("", 8192).peek());
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        final String[] malformed = {
+                "{\"a\" 1}", "{\"a\":1 \"b\":2}", "[1 2]", "{\"a\":tru}", "{\"a\":\"b",
+                "{\"a\":1}}"
+        };
+        for (final String json : malformed) {
+            final AwsJsonReader reader = reader(json, 8192);
+            try {
+                reader.skipValue();
+                reader.peek();
+                fail("Expected an IOException for " + json);
+            } catch (final IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testJsonUtilsEngine() throws IOException {
+        JsonUtils.setJsonEngine(JsonEngine.Utf8);
+        try {
+            final AwsJsonReader reader = JsonUtils.getJsonReader(
+                    new ByteArrayInputStream("{\"k\":\"v\"}".getBytes(StringUtils.UTF8)));
+            assertTrue(reader instanceof Utf8JsonReader);
+            assertEquals("v", JsonUtils.jsonToMap("{\"k\":\"v\"}").get("k"));
+            assertEquals("{\"k\":\"v\"}", JsonUtils.mapToString(JsonUtils.jsonToMap(
+                    "{\"k\":\"v\"}")));
+        } finally {
+            JsonUtils.setJsonEngine(JsonEngine.Gson);
+        }
+    }
+}
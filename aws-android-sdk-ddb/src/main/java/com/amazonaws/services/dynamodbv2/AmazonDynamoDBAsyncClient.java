@@ -15,7 +15,6 @@
 
 package com.amazonaws.services.dynamodbv2;
 
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -29,6 +28,7 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 
 import com.amazonaws.services.dynamodbv2.model.*;
+import com.amazonaws.services.dynamodbv2.model.transform.*;
 
 /**
  * Interface for accessing Amazon DynamoDB asynchronously. <fullname>Amazon
@@ -375,11 +375,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<BatchGetItemResult> batchGetItemAsync(
             final BatchGetItemRequest batchGetItemRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<BatchGetItemResult>() {
-            public BatchGetItemResult call() throws Exception {
-                return batchGetItem(batchGetItemRequest);
-            }
-        });
+        return invokeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                new BatchGetItemResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -483,19 +480,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final BatchGetItemRequest batchGetItemRequest,
             final AsyncHandler<BatchGetItemRequest, BatchGetItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<BatchGetItemResult>() {
-            public BatchGetItemResult call() throws Exception {
-                BatchGetItemResult result = null;
-                try {
-                    result = batchGetItem(batchGetItemRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(batchGetItemRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                new BatchGetItemResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -641,11 +627,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<BatchWriteItemResult> batchWriteItemAsync(
             final BatchWriteItemRequest batchWriteItemRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<BatchWriteItemResult>() {
-            public BatchWriteItemResult call() throws Exception {
-                return batchWriteItem(batchWriteItemRequest);
-            }
-        });
+        return invokeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                new BatchWriteItemResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -792,19 +775,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final BatchWriteItemRequest batchWriteItemRequest,
             final AsyncHandler<BatchWriteItemRequest, BatchWriteItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<BatchWriteItemResult>() {
-            public BatchWriteItemResult call() throws Exception {
-                BatchWriteItemResult result = null;
-                try {
-                    result = batchWriteItem(batchWriteItemRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(batchWriteItemRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                new BatchWriteItemResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -884,11 +856,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<CreateBackupResult> createBackupAsync(
             final CreateBackupRequest createBackupRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<CreateBackupResult>() {
-            public CreateBackupResult call() throws Exception {
-                return createBackup(createBackupRequest);
-            }
-        });
+        return invokeAsync(createBackupRequest, new CreateBackupRequestMarshaller(),
+                new CreateBackupResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -969,19 +938,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final CreateBackupRequest createBackupRequest,
             final AsyncHandler<CreateBackupRequest, CreateBackupResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<CreateBackupResult>() {
-            public CreateBackupResult call() throws Exception {
-                CreateBackupResult result = null;
-                try {
-                    result = createBackup(createBackupRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(createBackupRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(createBackupRequest, new CreateBackupRequestMarshaller(),
+                new CreateBackupResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1067,11 +1025,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<CreateGlobalTableResult> createGlobalTableAsync(
             final CreateGlobalTableRequest createGlobalTableRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<CreateGlobalTableResult>() {
-            public CreateGlobalTableResult call() throws Exception {
-                return createGlobalTable(createGlobalTableRequest);
-            }
-        });
+        return invokeAsync(createGlobalTableRequest, new CreateGlobalTableRequestMarshaller(),
+                new CreateGlobalTableResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -1158,19 +1113,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final CreateGlobalTableRequest createGlobalTableRequest,
             final AsyncHandler<CreateGlobalTableRequest, CreateGlobalTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<CreateGlobalTableResult>() {
-            public CreateGlobalTableResult call() throws Exception {
-                CreateGlobalTableResult result = null;
-                try {
-                    result = createGlobalTable(createGlobalTableRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(createGlobalTableRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(createGlobalTableRequest, new CreateGlobalTableRequestMarshaller(),
+                new CreateGlobalTableResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1218,11 +1162,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<CreateTableResult> createTableAsync(final CreateTableRequest createTableRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<CreateTableResult>() {
-            public CreateTableResult call() throws Exception {
-                return createTable(createTableRequest);
-            }
-        });
+        return invokeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                new CreateTableResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -1271,19 +1212,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<CreateTableResult> createTableAsync(final CreateTableRequest createTableRequest,
             final AsyncHandler<CreateTableRequest, CreateTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<CreateTableResult>() {
-            public CreateTableResult call() throws Exception {
-                CreateTableResult result = null;
-                try {
-                    result = createTable(createTableRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(createTableRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                new CreateTableResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1313,11 +1243,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DeleteBackupResult> deleteBackupAsync(
             final DeleteBackupRequest deleteBackupRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<DeleteBackupResult>() {
-            public DeleteBackupResult call() throws Exception {
-                return deleteBackup(deleteBackupRequest);
-            }
-        });
+        return invokeAsync(deleteBackupRequest, new DeleteBackupRequestMarshaller(),
+                new DeleteBackupResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -1348,19 +1275,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DeleteBackupRequest deleteBackupRequest,
             final AsyncHandler<DeleteBackupRequest, DeleteBackupResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DeleteBackupResult>() {
-            public DeleteBackupResult call() throws Exception {
-                DeleteBackupResult result = null;
-                try {
-                    result = deleteBackup(deleteBackupRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(deleteBackupRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(deleteBackupRequest, new DeleteBackupRequestMarshaller(),
+                new DeleteBackupResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1405,11 +1321,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<DeleteItemResult> deleteItemAsync(final DeleteItemRequest deleteItemRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DeleteItemResult>() {
-            public DeleteItemResult call() throws Exception {
-                return deleteItem(deleteItemRequest);
-            }
-        });
+        return invokeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                new DeleteItemResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -1455,19 +1368,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DeleteItemResult> deleteItemAsync(final DeleteItemRequest deleteItemRequest,
             final AsyncHandler<DeleteItemRequest, DeleteItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DeleteItemResult>() {
-            public DeleteItemResult call() throws Exception {
-                DeleteItemResult result = null;
-                try {
-                    result = deleteItem(deleteItemRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(deleteItemRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                new DeleteItemResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1521,11 +1423,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<DeleteTableResult> deleteTableAsync(final DeleteTableRequest deleteTableRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DeleteTableResult>() {
-            public DeleteTableResult call() throws Exception {
-                return deleteTable(deleteTableRequest);
-            }
-        });
+        return invokeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                new DeleteTableResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -1580,19 +1479,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DeleteTableResult> deleteTableAsync(final DeleteTableRequest deleteTableRequest,
             final AsyncHandler<DeleteTableRequest, DeleteTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DeleteTableResult>() {
-            public DeleteTableResult call() throws Exception {
-                DeleteTableResult result = null;
-                try {
-                    result = deleteTable(deleteTableRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(deleteTableRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                new DeleteTableResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1620,11 +1508,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeBackupResult> describeBackupAsync(
             final DescribeBackupRequest describeBackupRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<DescribeBackupResult>() {
-            public DescribeBackupResult call() throws Exception {
-                return describeBackup(describeBackupRequest);
-            }
-        });
+        return invokeAsync(describeBackupRequest, new DescribeBackupRequestMarshaller(),
+                new DescribeBackupResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -1653,19 +1538,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeBackupRequest describeBackupRequest,
             final AsyncHandler<DescribeBackupRequest, DescribeBackupResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeBackupResult>() {
-            public DescribeBackupResult call() throws Exception {
-                DescribeBackupResult result = null;
-                try {
-                    result = describeBackup(describeBackupRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(describeBackupRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(describeBackupRequest, new DescribeBackupRequestMarshaller(),
+                new DescribeBackupResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1708,11 +1582,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeContinuousBackupsResult> describeContinuousBackupsAsync(
             final DescribeContinuousBackupsRequest describeContinuousBackupsRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeContinuousBackupsResult>() {
-            public DescribeContinuousBackupsResult call() throws Exception {
-                return describeContinuousBackups(describeContinuousBackupsRequest);
-            }
-        });
+        return invokeAsync(describeContinuousBackupsRequest,
+                new DescribeContinuousBackupsRequestMarshaller(),
+                new DescribeContinuousBackupsResultJsonUnmarshaller(),
+                executorService, null);
     }
 
     /**
@@ -1756,19 +1629,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeContinuousBackupsRequest describeContinuousBackupsRequest,
             final AsyncHandler<DescribeContinuousBackupsRequest, DescribeContinuousBackupsResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeContinuousBackupsResult>() {
-            public DescribeContinuousBackupsResult call() throws Exception {
-                DescribeContinuousBackupsResult result = null;
-                try {
-                    result = describeContinuousBackups(describeContinuousBackupsRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(describeContinuousBackupsRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(describeContinuousBackupsRequest,
+                new DescribeContinuousBackupsRequestMarshaller(),
+                new DescribeContinuousBackupsResultJsonUnmarshaller(),
+                executorService, asyncHandler);
     }
 
     /**
@@ -1786,11 +1650,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeEndpointsResult> describeEndpointsAsync(
             final DescribeEndpointsRequest describeEndpointsRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<DescribeEndpointsResult>() {
-            public DescribeEndpointsResult call() throws Exception {
-                return describeEndpoints(describeEndpointsRequest);
-            }
-        });
+        return invokeAsync(describeEndpointsRequest, new DescribeEndpointsRequestMarshaller(),
+                new DescribeEndpointsResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -1809,19 +1670,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeEndpointsRequest describeEndpointsRequest,
             final AsyncHandler<DescribeEndpointsRequest, DescribeEndpointsResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeEndpointsResult>() {
-            public DescribeEndpointsResult call() throws Exception {
-                DescribeEndpointsResult result = null;
-                try {
-                    result = describeEndpoints(describeEndpointsRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(describeEndpointsRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(describeEndpointsRequest, new DescribeEndpointsRequestMarshaller(),
+                new DescribeEndpointsResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1846,11 +1696,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeGlobalTableResult> describeGlobalTableAsync(
             final DescribeGlobalTableRequest describeGlobalTableRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeGlobalTableResult>() {
-            public DescribeGlobalTableResult call() throws Exception {
-                return describeGlobalTable(describeGlobalTableRequest);
-            }
-        });
+        return invokeAsync(describeGlobalTableRequest, new DescribeGlobalTableRequestMarshaller(),
+                new DescribeGlobalTableResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -1876,19 +1723,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeGlobalTableRequest describeGlobalTableRequest,
             final AsyncHandler<DescribeGlobalTableRequest, DescribeGlobalTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeGlobalTableResult>() {
-            public DescribeGlobalTableResult call() throws Exception {
-                DescribeGlobalTableResult result = null;
-                try {
-                    result = describeGlobalTable(describeGlobalTableRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(describeGlobalTableRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(describeGlobalTableRequest, new DescribeGlobalTableRequestMarshaller(),
+                new DescribeGlobalTableResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -1913,11 +1749,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeGlobalTableSettingsResult> describeGlobalTableSettingsAsync(
             final DescribeGlobalTableSettingsRequest describeGlobalTableSettingsRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeGlobalTableSettingsResult>() {
-            public DescribeGlobalTableSettingsResult call() throws Exception {
-                return describeGlobalTableSettings(describeGlobalTableSettingsRequest);
-            }
-        });
+        return invokeAsync(describeGlobalTableSettingsRequest,
+                new DescribeGlobalTableSettingsRequestMarshaller(),
+                new DescribeGlobalTableSettingsResultJsonUnmarshaller(),
+                executorService, null);
     }
 
     /**
@@ -1943,19 +1778,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeGlobalTableSettingsRequest describeGlobalTableSettingsRequest,
             final AsyncHandler<DescribeGlobalTableSettingsRequest, DescribeGlobalTableSettingsResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeGlobalTableSettingsResult>() {
-            public DescribeGlobalTableSettingsResult call() throws Exception {
-                DescribeGlobalTableSettingsResult result = null;
-                try {
-                    result = describeGlobalTableSettings(describeGlobalTableSettingsRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(describeGlobalTableSettingsRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(describeGlobalTableSettingsRequest,
+                new DescribeGlobalTableSettingsRequestMarshaller(),
+                new DescribeGlobalTableSettingsResultJsonUnmarshaller(),
+                executorService, asyncHandler);
     }
 
     /**
@@ -2082,11 +1908,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeLimitsResult> describeLimitsAsync(
             final DescribeLimitsRequest describeLimitsRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<DescribeLimitsResult>() {
-            public DescribeLimitsResult call() throws Exception {
-                return describeLimits(describeLimitsRequest);
-            }
-        });
+        return invokeAsync(describeLimitsRequest, new DescribeLimitsRequestMarshaller(),
+                new DescribeLimitsResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -2214,19 +2037,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeLimitsRequest describeLimitsRequest,
             final AsyncHandler<DescribeLimitsRequest, DescribeLimitsResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeLimitsResult>() {
-            public DescribeLimitsResult call() throws Exception {
-                DescribeLimitsResult result = null;
-                try {
-                    result = describeLimits(describeLimitsRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(describeLimitsRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(describeLimitsRequest, new DescribeLimitsRequestMarshaller(),
+                new DescribeLimitsResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -2265,11 +2077,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeTableResult> describeTableAsync(
             final DescribeTableRequest describeTableRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<DescribeTableResult>() {
-            public DescribeTableResult call() throws Exception {
-                return describeTable(describeTableRequest);
-            }
-        });
+        return invokeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                new DescribeTableResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -2309,19 +2118,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeTableRequest describeTableRequest,
             final AsyncHandler<DescribeTableRequest, DescribeTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeTableResult>() {
-            public DescribeTableResult call() throws Exception {
-                DescribeTableResult result = null;
-                try {
-                    result = describeTable(describeTableRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(describeTableRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                new DescribeTableResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -2347,11 +2145,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<DescribeTimeToLiveResult> describeTimeToLiveAsync(
             final DescribeTimeToLiveRequest describeTimeToLiveRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeTimeToLiveResult>() {
-            public DescribeTimeToLiveResult call() throws Exception {
-                return describeTimeToLive(describeTimeToLiveRequest);
-            }
-        });
+        return invokeAsync(describeTimeToLiveRequest, new DescribeTimeToLiveRequestMarshaller(),
+                new DescribeTimeToLiveResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -2378,19 +2173,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final DescribeTimeToLiveRequest describeTimeToLiveRequest,
             final AsyncHandler<DescribeTimeToLiveRequest, DescribeTimeToLiveResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<DescribeTimeToLiveResult>() {
-            public DescribeTimeToLiveResult call() throws Exception {
-                DescribeTimeToLiveResult result = null;
-                try {
-                    result = describeTimeToLive(describeTimeToLiveRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(describeTimeToLiveRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(describeTimeToLiveRequest, new DescribeTimeToLiveRequestMarshaller(),
+                new DescribeTimeToLiveResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -2426,11 +2210,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<GetItemResult> getItemAsync(final GetItemRequest getItemRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<GetItemResult>() {
-            public GetItemResult call() throws Exception {
-                return getItem(getItemRequest);
-            }
-        });
+        return invokeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                new GetItemResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -2467,19 +2248,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<GetItemResult> getItemAsync(final GetItemRequest getItemRequest,
             final AsyncHandler<GetItemRequest, GetItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<GetItemResult>() {
-            public GetItemResult call() throws Exception {
-                GetItemResult result = null;
-                try {
-                    result = getItem(getItemRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(getItemRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                new GetItemResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -2513,11 +2283,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<ListBackupsResult> listBackupsAsync(final ListBackupsRequest listBackupsRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListBackupsResult>() {
-            public ListBackupsResult call() throws Exception {
-                return listBackups(listBackupsRequest);
-            }
-        });
+        return invokeAsync(listBackupsRequest, new ListBackupsRequestMarshaller(),
+                new ListBackupsResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -2552,19 +2319,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<ListBackupsResult> listBackupsAsync(final ListBackupsRequest listBackupsRequest,
             final AsyncHandler<ListBackupsRequest, ListBackupsResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListBackupsResult>() {
-            public ListBackupsResult call() throws Exception {
-                ListBackupsResult result = null;
-                try {
-                    result = listBackups(listBackupsRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(listBackupsRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(listBackupsRequest, new ListBackupsRequestMarshaller(),
+                new ListBackupsResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -2587,11 +2343,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<ListGlobalTablesResult> listGlobalTablesAsync(
             final ListGlobalTablesRequest listGlobalTablesRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<ListGlobalTablesResult>() {
-            public ListGlobalTablesResult call() throws Exception {
-                return listGlobalTables(listGlobalTablesRequest);
-            }
-        });
+        return invokeAsync(listGlobalTablesRequest, new ListGlobalTablesRequestMarshaller(),
+                new ListGlobalTablesResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -2615,19 +2368,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final ListGlobalTablesRequest listGlobalTablesRequest,
             final AsyncHandler<ListGlobalTablesRequest, ListGlobalTablesResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListGlobalTablesResult>() {
-            public ListGlobalTablesResult call() throws Exception {
-                ListGlobalTablesResult result = null;
-                try {
-                    result = listGlobalTables(listGlobalTablesRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(listGlobalTablesRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(listGlobalTablesRequest, new ListGlobalTablesRequestMarshaller(),
+                new ListGlobalTablesResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -2653,11 +2395,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<ListTablesResult> listTablesAsync(final ListTablesRequest listTablesRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListTablesResult>() {
-            public ListTablesResult call() throws Exception {
-                return listTables(listTablesRequest);
-            }
-        });
+        return invokeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                new ListTablesResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -2684,19 +2423,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<ListTablesResult> listTablesAsync(final ListTablesRequest listTablesRequest,
             final AsyncHandler<ListTablesRequest, ListTablesResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListTablesResult>() {
-            public ListTablesResult call() throws Exception {
-                ListTablesResult result = null;
-                try {
-                    result = listTables(listTablesRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(listTablesRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                new ListTablesResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -2727,11 +2455,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<ListTagsOfResourceResult> listTagsOfResourceAsync(
             final ListTagsOfResourceRequest listTagsOfResourceRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListTagsOfResourceResult>() {
-            public ListTagsOfResourceResult call() throws Exception {
-                return listTagsOfResource(listTagsOfResourceRequest);
-            }
-        });
+        return invokeAsync(listTagsOfResourceRequest, new ListTagsOfResourceRequestMarshaller(),
+                new ListTagsOfResourceResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -2763,19 +2488,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final ListTagsOfResourceRequest listTagsOfResourceRequest,
             final AsyncHandler<ListTagsOfResourceRequest, ListTagsOfResourceResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ListTagsOfResourceResult>() {
-            public ListTagsOfResourceResult call() throws Exception {
-                ListTagsOfResourceResult result = null;
-                try {
-                    result = listTagsOfResource(listTagsOfResourceRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(listTagsOfResourceRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(listTagsOfResourceRequest, new ListTagsOfResourceRequestMarshaller(),
+                new ListTagsOfResourceResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -2906,11 +2620,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<PutItemResult> putItemAsync(final PutItemRequest putItemRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<PutItemResult>() {
-            public PutItemResult call() throws Exception {
-                return putItem(putItemRequest);
-            }
-        });
+        return invokeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                new PutItemResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -3042,19 +2753,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<PutItemResult> putItemAsync(final PutItemRequest putItemRequest,
             final AsyncHandler<PutItemRequest, PutItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<PutItemResult>() {
-            public PutItemResult call() throws Exception {
-                PutItemResult result = null;
-                try {
-                    result = putItem(putItemRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(putItemRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                new PutItemResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -3150,11 +2850,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<QueryResult> queryAsync(final QueryRequest queryRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<QueryResult>() {
-            public QueryResult call() throws Exception {
-                return query(queryRequest);
-            }
-        });
+        return invokeAsync(queryRequest, new QueryRequestMarshaller(),
+                new QueryResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -3251,19 +2948,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<QueryResult> queryAsync(final QueryRequest queryRequest,
             final AsyncHandler<QueryRequest, QueryResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<QueryResult>() {
-            public QueryResult call() throws Exception {
-                QueryResult result = null;
-                try {
-                    result = query(queryRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(queryRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(queryRequest, new QueryRequestMarshaller(),
+                new QueryResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -3333,11 +3019,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<RestoreTableFromBackupResult> restoreTableFromBackupAsync(
             final RestoreTableFromBackupRequest restoreTableFromBackupRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<RestoreTableFromBackupResult>() {
-            public RestoreTableFromBackupResult call() throws Exception {
-                return restoreTableFromBackup(restoreTableFromBackupRequest);
-            }
-        });
+        return invokeAsync(restoreTableFromBackupRequest,
+                new RestoreTableFromBackupRequestMarshaller(),
+                new RestoreTableFromBackupResultJsonUnmarshaller(),
+                executorService, null);
     }
 
     /**
@@ -3408,19 +3093,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final RestoreTableFromBackupRequest restoreTableFromBackupRequest,
             final AsyncHandler<RestoreTableFromBackupRequest, RestoreTableFromBackupResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<RestoreTableFromBackupResult>() {
-            public RestoreTableFromBackupResult call() throws Exception {
-                RestoreTableFromBackupResult result = null;
-                try {
-                    result = restoreTableFromBackup(restoreTableFromBackupRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(restoreTableFromBackupRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(restoreTableFromBackupRequest,
+                new RestoreTableFromBackupRequestMarshaller(),
+                new RestoreTableFromBackupResultJsonUnmarshaller(),
+                executorService, asyncHandler);
     }
 
     /**
@@ -3530,11 +3206,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<RestoreTableToPointInTimeResult> restoreTableToPointInTimeAsync(
             final RestoreTableToPointInTimeRequest restoreTableToPointInTimeRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<RestoreTableToPointInTimeResult>() {
-            public RestoreTableToPointInTimeResult call() throws Exception {
-                return restoreTableToPointInTime(restoreTableToPointInTimeRequest);
-            }
-        });
+        return invokeAsync(restoreTableToPointInTimeRequest,
+                new RestoreTableToPointInTimeRequestMarshaller(),
+                new RestoreTableToPointInTimeResultJsonUnmarshaller(),
+                executorService, null);
     }
 
     /**
@@ -3645,19 +3320,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final RestoreTableToPointInTimeRequest restoreTableToPointInTimeRequest,
             final AsyncHandler<RestoreTableToPointInTimeRequest, RestoreTableToPointInTimeResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<RestoreTableToPointInTimeResult>() {
-            public RestoreTableToPointInTimeResult call() throws Exception {
-                RestoreTableToPointInTimeResult result = null;
-                try {
-                    result = restoreTableToPointInTime(restoreTableToPointInTimeRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(restoreTableToPointInTimeRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(restoreTableToPointInTimeRequest,
+                new RestoreTableToPointInTimeRequestMarshaller(),
+                new RestoreTableToPointInTimeResultJsonUnmarshaller(),
+                executorService, asyncHandler);
     }
 
     /**
@@ -3721,11 +3387,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<ScanResult> scanAsync(final ScanRequest scanRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ScanResult>() {
-            public ScanResult call() throws Exception {
-                return scan(scanRequest);
-            }
-        });
+        return invokeAsync(scanRequest, new ScanRequestMarshaller(),
+                new ScanResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -3790,19 +3453,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<ScanResult> scanAsync(final ScanRequest scanRequest,
             final AsyncHandler<ScanRequest, ScanResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<ScanResult>() {
-            public ScanResult call() throws Exception {
-                ScanResult result = null;
-                try {
-                    result = scan(scanRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(scanRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(scanRequest, new ScanRequestMarshaller(),
+                new ScanResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -3835,12 +3487,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<Void> tagResourceAsync(final TagResourceRequest tagResourceRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                tagResource(tagResourceRequest);
-                return null;
-            }
-        });
+        return invokeAsync(tagResourceRequest, new TagResourceRequestMarshaller(),
+                null, executorService, null);
     }
 
     /**
@@ -3874,19 +3522,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<Void> tagResourceAsync(final TagResourceRequest tagResourceRequest,
             final AsyncHandler<TagResourceRequest, Void> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                Void result = null;
-                try {
-                    tagResource(tagResourceRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(tagResourceRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(tagResourceRequest, new TagResourceRequestMarshaller(),
+                null, executorService, asyncHandler);
     }
 
     /**
@@ -3917,12 +3554,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<Void> untagResourceAsync(final UntagResourceRequest untagResourceRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                untagResource(untagResourceRequest);
-                return null;
-            }
-        });
+        return invokeAsync(untagResourceRequest, new UntagResourceRequestMarshaller(),
+                null, executorService, null);
     }
 
     /**
@@ -3954,19 +3587,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<Void> untagResourceAsync(final UntagResourceRequest untagResourceRequest,
             final AsyncHandler<UntagResourceRequest, Void> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<Void>() {
-            public Void call() throws Exception {
-                Void result = null;
-                try {
-                    untagResource(untagResourceRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(untagResourceRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(untagResourceRequest, new UntagResourceRequestMarshaller(),
+                null, executorService, asyncHandler);
     }
 
     /**
@@ -4009,11 +3631,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<UpdateContinuousBackupsResult> updateContinuousBackupsAsync(
             final UpdateContinuousBackupsRequest updateContinuousBackupsRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateContinuousBackupsResult>() {
-            public UpdateContinuousBackupsResult call() throws Exception {
-                return updateContinuousBackups(updateContinuousBackupsRequest);
-            }
-        });
+        return invokeAsync(updateContinuousBackupsRequest,
+                new UpdateContinuousBackupsRequestMarshaller(),
+                new UpdateContinuousBackupsResultJsonUnmarshaller(),
+                executorService, null);
     }
 
     /**
@@ -4057,19 +3678,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final UpdateContinuousBackupsRequest updateContinuousBackupsRequest,
             final AsyncHandler<UpdateContinuousBackupsRequest, UpdateContinuousBackupsResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateContinuousBackupsResult>() {
-            public UpdateContinuousBackupsResult call() throws Exception {
-                UpdateContinuousBackupsResult result = null;
-                try {
-                    result = updateContinuousBackups(updateContinuousBackupsRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(updateContinuousBackupsRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(updateContinuousBackupsRequest,
+                new UpdateContinuousBackupsRequestMarshaller(),
+                new UpdateContinuousBackupsResultJsonUnmarshaller(),
+                executorService, asyncHandler);
     }
 
     /**
@@ -4130,11 +3742,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<UpdateGlobalTableResult> updateGlobalTableAsync(
             final UpdateGlobalTableRequest updateGlobalTableRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<UpdateGlobalTableResult>() {
-            public UpdateGlobalTableResult call() throws Exception {
-                return updateGlobalTable(updateGlobalTableRequest);
-            }
-        });
+        return invokeAsync(updateGlobalTableRequest, new UpdateGlobalTableRequestMarshaller(),
+                new UpdateGlobalTableResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -4196,19 +3805,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final UpdateGlobalTableRequest updateGlobalTableRequest,
             final AsyncHandler<UpdateGlobalTableRequest, UpdateGlobalTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateGlobalTableResult>() {
-            public UpdateGlobalTableResult call() throws Exception {
-                UpdateGlobalTableResult result = null;
-                try {
-                    result = updateGlobalTable(updateGlobalTableRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(updateGlobalTableRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(updateGlobalTableRequest, new UpdateGlobalTableRequestMarshaller(),
+                new UpdateGlobalTableResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -4237,11 +3835,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<UpdateGlobalTableSettingsResult> updateGlobalTableSettingsAsync(
             final UpdateGlobalTableSettingsRequest updateGlobalTableSettingsRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateGlobalTableSettingsResult>() {
-            public UpdateGlobalTableSettingsResult call() throws Exception {
-                return updateGlobalTableSettings(updateGlobalTableSettingsRequest);
-            }
-        });
+        return invokeAsync(updateGlobalTableSettingsRequest,
+                new UpdateGlobalTableSettingsRequestMarshaller(),
+                new UpdateGlobalTableSettingsResultJsonUnmarshaller(),
+                executorService, null);
     }
 
     /**
@@ -4271,19 +3868,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final UpdateGlobalTableSettingsRequest updateGlobalTableSettingsRequest,
             final AsyncHandler<UpdateGlobalTableSettingsRequest, UpdateGlobalTableSettingsResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateGlobalTableSettingsResult>() {
-            public UpdateGlobalTableSettingsResult call() throws Exception {
-                UpdateGlobalTableSettingsResult result = null;
-                try {
-                    result = updateGlobalTableSettings(updateGlobalTableSettingsRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(updateGlobalTableSettingsRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(updateGlobalTableSettingsRequest,
+                new UpdateGlobalTableSettingsRequestMarshaller(),
+                new UpdateGlobalTableSettingsResultJsonUnmarshaller(),
+                executorService, asyncHandler);
     }
 
     /**
@@ -4320,11 +3908,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<UpdateItemResult> updateItemAsync(final UpdateItemRequest updateItemRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateItemResult>() {
-            public UpdateItemResult call() throws Exception {
-                return updateItem(updateItemRequest);
-            }
-        });
+        return invokeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                new UpdateItemResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -4362,19 +3947,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<UpdateItemResult> updateItemAsync(final UpdateItemRequest updateItemRequest,
             final AsyncHandler<UpdateItemRequest, UpdateItemResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateItemResult>() {
-            public UpdateItemResult call() throws Exception {
-                UpdateItemResult result = null;
-                try {
-                    result = updateItem(updateItemRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(updateItemRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                new UpdateItemResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -4437,11 +4011,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
      */
     public Future<UpdateTableResult> updateTableAsync(final UpdateTableRequest updateTableRequest)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateTableResult>() {
-            public UpdateTableResult call() throws Exception {
-                return updateTable(updateTableRequest);
-            }
-        });
+        return invokeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                new UpdateTableResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -4505,19 +4076,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<UpdateTableResult> updateTableAsync(final UpdateTableRequest updateTableRequest,
             final AsyncHandler<UpdateTableRequest, UpdateTableResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateTableResult>() {
-            public UpdateTableResult call() throws Exception {
-                UpdateTableResult result = null;
-                try {
-                    result = updateTable(updateTableRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(updateTableRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                new UpdateTableResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
     /**
@@ -4585,11 +4145,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
     public Future<UpdateTimeToLiveResult> updateTimeToLiveAsync(
             final UpdateTimeToLiveRequest updateTimeToLiveRequest) throws AmazonServiceException,
             AmazonClientException {
-        return executorService.submit(new Callable<UpdateTimeToLiveResult>() {
-            public UpdateTimeToLiveResult call() throws Exception {
-                return updateTimeToLive(updateTimeToLiveRequest);
-            }
-        });
+        return invokeAsync(updateTimeToLiveRequest, new UpdateTimeToLiveRequestMarshaller(),
+                new UpdateTimeToLiveResultJsonUnmarshaller(), executorService, null);
     }
 
     /**
@@ -4658,19 +4215,8 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient implements A
             final UpdateTimeToLiveRequest updateTimeToLiveRequest,
             final AsyncHandler<UpdateTimeToLiveRequest, UpdateTimeToLiveResult> asyncHandler)
             throws AmazonServiceException, AmazonClientException {
-        return executorService.submit(new Callable<UpdateTimeToLiveResult>() {
-            public UpdateTimeToLiveResult call() throws Exception {
-                UpdateTimeToLiveResult result = null;
-                try {
-                    result = updateTimeToLive(updateTimeToLiveRequest);
-                } catch (Exception ex) {
-                    asyncHandler.onError(ex);
-                    throw ex;
-                }
-                asyncHandler.onSuccess(updateTimeToLiveRequest, result);
-                return result;
-            }
-        });
+        return invokeAsync(updateTimeToLiveRequest, new UpdateTimeToLiveRequestMarshaller(),
+                new UpdateTimeToLiveResultJsonUnmarshaller(), executorService, asyncHandler);
     }
 
 }
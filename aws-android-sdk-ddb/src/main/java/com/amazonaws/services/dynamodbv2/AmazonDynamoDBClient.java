@@ -16,8 +16,11 @@
 package com.amazonaws.services.dynamodbv2;
 
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import com.amazonaws.*;
+import com.amazonaws.async.*;
 import com.amazonaws.auth.*;
 import com.amazonaws.handlers.*;
 import com.amazonaws.http.*;
@@ -220,7 +223,7 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements Amaz
      */
     public AmazonDynamoDBClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -5190,6 +5193,117 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements Amaz
     private <X, Y extends AmazonWebServiceRequest> Response<X> invoke(Request<Y> request,
             HttpResponseHandler<AmazonWebServiceResponse<X>> responseHandler,
             ExecutionContext executionContext) {
+        prepareRequest(request, executionContext);
+        JsonErrorResponseHandler errorResponseHandler = new JsonErrorResponseHandler(
+                jsonErrorUnmarshallers);
+        Response<X> result = client.execute(request, responseHandler,
+                errorResponseHandler, executionContext);
+        return result;
+    }
+
+    /**
+     * Sends the request with {@link AmazonHttpClient#executeAsync}. The
+     * request is marshalled on the executor and every attempt runs as a task
+     * on it; no thread is held while waiting to retry.
+     *
+     * @param originalRequest the request to send.
+     * @param marshaller the marshaller of the request.
+     * @param unmarshaller the unmarshaller of the result, or null if the
+     *            operation has no result.
+     * @param executor the executor the request is sent on.
+     * @param asyncHandler the handler notified once the request completes;
+     *            may be null.
+     * @return a future holding the result of the request.
+     */
+    <X, Y extends AmazonWebServiceRequest> Future<X> invokeAsync(final Y originalRequest,
+            final Marshaller<Request<Y>, Y> marshaller,
+            final Unmarshaller<X, JsonUnmarshallerContext> unmarshaller,
+            final Executor executor,
+            final AsyncHandler<Y, X> asyncHandler) {
+        final ResultFuture<X> future = new ResultFuture<X>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    // cancelled before it was sent
+                    return;
+                }
+                final ExecutionContext executionContext = createExecutionContext(originalRequest);
+                final AWSRequestMetrics awsRequestMetrics = executionContext
+                        .getAwsRequestMetrics();
+                awsRequestMetrics.startEvent(Field.ClientExecuteTime);
+                Request<Y> request = null;
+                try {
+                    awsRequestMetrics.startEvent(Field.RequestMarshallTime);
+                    try {
+                        request = marshaller.marshall(originalRequest);
+                        // Binds the request metrics to the current request.
+                        request.setAWSRequestMetrics(awsRequestMetrics);
+                    } finally {
+                        awsRequestMetrics.endEvent(Field.RequestMarshallTime);
+                    }
+                    prepareRequest(request, executionContext);
+                } catch (Exception e) {
+                    awsRequestMetrics.endEvent(Field.ClientExecuteTime);
+                    endClientExecution(awsRequestMetrics, request, null,
+                            LOGGING_AWS_REQUEST_METRIC);
+                    completeAsync(future, asyncHandler, originalRequest, null, e);
+                    return;
+                }
+
+                final Request<Y> sentRequest = request;
+                future.cancelWith(client.executeAsync(request,
+                        new JsonResponseHandler<X>(unmarshaller),
+                        new JsonErrorResponseHandler(jsonErrorUnmarshallers),
+                        executionContext, executor, new Callback<Response<X>>() {
+                            @Override
+                            public void onResult(Response<X> response) {
+                                awsRequestMetrics.endEvent(Field.ClientExecuteTime);
+                                endClientExecution(awsRequestMetrics, sentRequest, response,
+                                        LOGGING_AWS_REQUEST_METRIC);
+                                completeAsync(future, asyncHandler, originalRequest,
+                                        response.getAwsResponse(), null);
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                awsRequestMetrics.endEvent(Field.ClientExecuteTime);
+                                endClientExecution(awsRequestMetrics, sentRequest, null,
+                                        LOGGING_AWS_REQUEST_METRIC);
+                                completeAsync(future, asyncHandler, originalRequest, null, e);
+                            }
+                        }));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Notifies the handler, if any, then completes the future of an
+     * asynchronous request.
+     */
+    private static <X, Y extends AmazonWebServiceRequest> void completeAsync(
+            ResultFuture<X> future, AsyncHandler<Y, X> asyncHandler, Y originalRequest,
+            X result, Exception e) {
+        try {
+            if (asyncHandler == null) {
+                return;
+            }
+            if (e == null) {
+                asyncHandler.onSuccess(originalRequest, result);
+            } else {
+                asyncHandler.onError(e);
+            }
+        } finally {
+            future.complete(result, e);
+        }
+    }
+
+    /**
+     * Points the request to the endpoint of the client and sets the
+     * credentials it is signed with.
+     */
+    private void prepareRequest(Request<?> request, ExecutionContext executionContext) {
         request.setEndpoint(endpoint);
         request.setTimeOffset(timeOffset);
 
@@ -5208,10 +5322,5 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements Amaz
         }
 
         executionContext.setCredentials(credentials);
-        JsonErrorResponseHandler errorResponseHandler = new JsonErrorResponseHandler(
-                jsonErrorUnmarshallers);
-        Response<X> result = client.execute(request, responseHandler,
-                errorResponseHandler, executionContext);
-        return result;
     }
 }
@@ -18,6 +18,7 @@ package com.amazonaws.services.dynamodbv2.model.transform;
 import com.amazonaws.services.dynamodbv2.model.*;
 import com.amazonaws.transform.SimpleTypeJsonUnmarshallers.*;
 import com.amazonaws.transform.*;
+import com.amazonaws.util.json.AwsJsonFieldNames;
 import com.amazonaws.util.json.AwsJsonReader;
 
 /**
@@ -26,6 +27,19 @@ import com.amazonaws.util.json.AwsJsonReader;
 class AttributeValueJsonUnmarshaller implements
         Unmarshaller<AttributeValue, JsonUnmarshallerContext> {
 
+    private static final int S = 0;
+    private static final int N = 1;
+    private static final int B = 2;
+    private static final int SS = 3;
+    private static final int NS = 4;
+    private static final int BS = 5;
+    private static final int M = 6;
+    private static final int L = 7;
+    private static final int NULL = 8;
+    private static final int BOOL = 9;
+    private static final AwsJsonFieldNames FIELDS = new AwsJsonFieldNames(
+            "S", "N", "B", "SS", "NS", "BS", "M", "L", "NULL", "BOOL");
+
     public AttributeValue unmarshall(JsonUnmarshallerContext context) throws Exception {
         AwsJsonReader reader = context.getReader();
         if (!reader.isContainer()) {
@@ -35,49 +49,60 @@ class AttributeValueJsonUnmarshaller implements
         AttributeValue attributeValue = new AttributeValue();
         reader.beginObject();
         while (reader.hasNext()) {
-            String name = reader.nextName();
-            if (name.equals("S")) {
-                attributeValue.setS(StringJsonUnmarshaller.getInstance()
-                        .unmarshall(context));
-            } else if (name.equals("N")) {
-                attributeValue.setN(StringJsonUnmarshaller.getInstance()
-                        .unmarshall(context));
-            } else if (name.equals("B")) {
-                attributeValue.setB(ByteBufferJsonUnmarshaller.getInstance()
-                        .unmarshall(context));
-            } else if (name.equals("SS")) {
-                attributeValue.setSS(new ListUnmarshaller<String>(StringJsonUnmarshaller
-                        .getInstance()
-                        )
-                                .unmarshall(context));
-            } else if (name.equals("NS")) {
-                attributeValue.setNS(new ListUnmarshaller<String>(StringJsonUnmarshaller
-                        .getInstance()
-                        )
-                                .unmarshall(context));
-            } else if (name.equals("BS")) {
-                attributeValue.setBS(new ListUnmarshaller<java.nio.ByteBuffer>(
-                        ByteBufferJsonUnmarshaller.getInstance()
-                        )
-                                .unmarshall(context));
-            } else if (name.equals("M")) {
-                attributeValue.setM(new MapUnmarshaller<AttributeValue>(
-                        AttributeValueJsonUnmarshaller.getInstance()
-                        )
-                                .unmarshall(context));
-            } else if (name.equals("L")) {
-                attributeValue.setL(new ListUnmarshaller<AttributeValue>(
-                        AttributeValueJsonUnmarshaller.getInstance()
-                        )
-                                .unmarshall(context));
-            } else if (name.equals("NULL")) {
-                attributeValue.setNULL(BooleanJsonUnmarshaller.getInstance()
-                        .unmarshall(context));
-            } else if (name.equals("BOOL")) {
-                attributeValue.setBOOL(BooleanJsonUnmarshaller.getInstance()
-                        .unmarshall(context));
-            } else {
-                reader.skipValue();
+            switch (FIELDS.nextField(reader)) {
+                case S:
+                    attributeValue.setS(StringJsonUnmarshaller.getInstance()
+                            .unmarshall(context));
+                    break;
+                case N:
+                    attributeValue.setN(StringJsonUnmarshaller.getInstance()
+                            .unmarshall(context));
+                    break;
+                case B:
+                    attributeValue.setB(ByteBufferJsonUnmarshaller.getInstance()
+                            .unmarshall(context));
+                    break;
+                case SS:
+                    attributeValue.setSS(new ListUnmarshaller<String>(StringJsonUnmarshaller
+                            .getInstance()
+                            )
+                                    .unmarshall(context));
+                    break;
+                case NS:
+                    attributeValue.setNS(new ListUnmarshaller<String>(StringJsonUnmarshaller
+                            .getInstance()
+                            )
+                                    .unmarshall(context));
+                    break;
+                case BS:
+                    attributeValue.setBS(new ListUnmarshaller<java.nio.ByteBuffer>(
+                            ByteBufferJsonUnmarshaller.getInstance()
+                            )
+                                    .unmarshall(context));
+                    break;
+                case M:
+                    attributeValue.setM(new MapUnmarshaller<AttributeValue>(
+                            AttributeValueJsonUnmarshaller.getInstance()
+                            )
+                                    .unmarshall(context));
+                    break;
+                case L:
+                    attributeValue.setL(new ListUnmarshaller<AttributeValue>(
+                            AttributeValueJsonUnmarshaller.getInstance()
+                            )
+                                    .unmarshall(context));
+                    break;
+                case NULL:
+                    attributeValue.setNULL(BooleanJsonUnmarshaller.getInstance()
+                            .unmarshall(context));
+                    break;
+                case BOOL:
+                    attributeValue.setBOOL(BooleanJsonUnmarshaller.getInstance()
+                            .unmarshall(context));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
             }
         }
         reader.endObject();
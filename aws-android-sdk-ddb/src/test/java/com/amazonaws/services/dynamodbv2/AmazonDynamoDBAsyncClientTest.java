@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.dynamodbv2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.util.StringUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AmazonDynamoDBAsyncClientTest {
+    private static final String ITEM = "{\"Item\":{\"id\":{\"S\":\"1\"}}}";
+    private static final String INTERNAL_ERROR =
+            "{\"__type\":\"com.amazonaws.dynamodb.v20120810#InternalServerError\","
+                    + "\"message\":\"boom\"}";
+    private static final String VALIDATION_ERROR =
+            "{\"__type\":\"com.amazon.coral.validate#ValidationException\","
+                    + "\"message\":\"invalid key\"}";
+
+    /* Status and body of the responses to send, in order; the last one repeats. */
+    private final List<Integer> statuses = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<String> bodies = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger tasks = new AtomicInteger();
+    private HttpServer server;
+    private ThreadPoolExecutor executor;
+    private AmazonDynamoDBAsyncClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                final int i = Math.min(requestCount.getAndIncrement(), statuses.size() - 1);
+                final byte[] body = bodies.get(i).getBytes(StringUtils.UTF8);
+                exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.0");
+                exchange.sendResponseHeaders(statuses.get(i), body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        // counts the tasks run for each request
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            public void execute(Runnable command) {
+                tasks.incrementAndGet();
+                super.execute(command);
+            }
+        };
+        client = new AmazonDynamoDBAsyncClient(new BasicAWSCredentials("access", "secret"),
+                new ClientConfiguration(), executor);
+        client.setEndpoint("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    private void respond(int status, String body) {
+        statuses.add(status);
+        bodies.add(body);
+    }
+
+    private static GetItemRequest getItemRequest() {
+        return new GetItemRequest().withTableName("table")
+                .addKeyEntry("id", new AttributeValue().withS("1"));
+    }
+
+    @Test
+    public void testRetriedRequestRunsEachAttemptAsATask() throws Exception {
+        respond(500, INTERNAL_ERROR);
+        respond(200, ITEM);
+        final RecordingHandler handler = new RecordingHandler();
+
+        final GetItemRequest request = getItemRequest();
+        final Future<GetItemResult> future = client.getItemAsync(request, handler);
+        final GetItemResult result = future.get(10, TimeUnit.SECONDS);
+
+        assertEquals("1", result.getItem().get("id").getS());
+        assertEquals(2, requestCount.get());
+        // marshalling, then one task per attempt; the back-off held no thread
+        assertEquals(3, tasks.get());
+        assertEquals(1, handler.successes.size());
+        assertSame(result, handler.successes.get(0));
+        assertEquals(0, handler.errors.size());
+    }
+
+    @Test
+    public void testServiceErrorIsReportedToHandlerAndFuture() throws Exception {
+        respond(400, VALIDATION_ERROR);
+        final RecordingHandler handler = new RecordingHandler();
+
+        final Future<GetItemResult> future = client.getItemAsync(getItemRequest(), handler);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the service error");
+        } catch (final ExecutionException e) {
+            final AmazonServiceException ase = (AmazonServiceException) e.getCause();
+            assertEquals("ValidationException", ase.getErrorCode());
+            assertEquals(400, ase.getStatusCode());
+        }
+        assertEquals(1, requestCount.get());
+        assertEquals(0, handler.successes.size());
+        assertEquals(1, handler.errors.size());
+    }
+
+    private static class RecordingHandler
+            implements AsyncHandler<GetItemRequest, GetItemResult> {
+        final List<GetItemResult> successes =
+                Collections.synchronizedList(new ArrayList<GetItemResult>());
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+
+        @Override
+        public void onSuccess(GetItemRequest request, GetItemResult result) {
+            successes.add(result);
+        }
+
+        @Override
+        public void onError(Exception exception) {
+            errors.add(exception);
+        }
+    }
+}
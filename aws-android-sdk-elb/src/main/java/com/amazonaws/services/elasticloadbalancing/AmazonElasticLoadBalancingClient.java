@@ -238,7 +238,7 @@ public class AmazonElasticLoadBalancingClient extends AmazonWebServiceClient imp
      */
     public AmazonElasticLoadBalancingClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -6,16 +6,15 @@ import com.amazonaws.auth.AWSSessionCredentials;
 import com.amazonaws.auth.AnonymousAWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.BasicSessionCredentials;
+import com.amazonaws.auth.CryptoPrimitivePool;
 import com.amazonaws.auth.SigningAlgorithm;
+import com.amazonaws.auth.SigningKeyCache;
 import com.amazonaws.regions.Region;
 import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.DateUtils;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.security.MessageDigest;
 import java.util.Date;
 
 import static com.amazonaws.util.StringUtils.UTF8;
@@ -28,10 +27,6 @@ class AWSIotWebSocketUrlSigner {
 
     /** Constant defining the algorithm specifier in SigV4 parameters. */
     private static final String ALGORITHM = "AWS4-HMAC-SHA256";
-    /** Constant defining the key prefix string in SigV4 parameters. */
-    private static final String KEY_PREFIX = "AWS4";
-    /** Constant defining the terminator string in SigV4 parameters. */
-    private static final String TERMINATOR = "aws4_request";
     /** Short date format pattern used in SigV4 parameters. */
     private static final String DATE_PATTERN = "yyyyMMdd";
     /** ISO 8601 date + time format pattern used in SigV4 signature parameters. */
@@ -142,12 +137,10 @@ class AWSIotWebSocketUrlSigner {
      */
     private byte[] getSigningKey(String dateStamp, String regionName, String serviceName, AWSCredentials credentials)
     {
-        // AWS4 uses a series of derived keys, formed by hashing different pieces of data
-        byte[] signingSecret = (KEY_PREFIX + credentials.getAWSSecretKey()).getBytes();
-        byte[] signingDate = sign(dateStamp, signingSecret, SigningAlgorithm.HmacSHA256);
-        byte[] signingRegion = sign(regionName, signingDate, SigningAlgorithm.HmacSHA256);
-        byte[] signingService = sign(serviceName, signingRegion, SigningAlgorithm.HmacSHA256);
-        return sign(TERMINATOR, signingService, SigningAlgorithm.HmacSHA256);
+        // AWS4 uses a series of derived keys, formed by hashing different pieces of data.
+        // The derivation is shared with the core signers through the signing key cache.
+        return SigningKeyCache.getDefault().getSigningKey(credentials.getAWSSecretKey(),
+                dateStamp, regionName, serviceName);
     }
 
     /**
@@ -215,9 +208,7 @@ class AWSIotWebSocketUrlSigner {
      */
     byte[] hash(String text) {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(text.getBytes(UTF8));
-            return md.digest();
+            return CryptoPrimitivePool.digest("SHA-256", text.getBytes(UTF8));
         } catch (Exception e) {
             throw new AmazonClientException("Unable to compute hash while signing request: "
                     + e.getMessage(), e);
@@ -254,9 +245,7 @@ class AWSIotWebSocketUrlSigner {
      */
     byte[] sign(byte[] data, byte[] key, SigningAlgorithm algorithm) {
         try {
-            Mac mac = Mac.getInstance(algorithm.toString());
-            mac.init(new SecretKeySpec(key, algorithm.toString()));
-            return mac.doFinal(data);
+            return CryptoPrimitivePool.hmac(data, key, algorithm);
         } catch (Exception e) {
             throw new AmazonClientException("Unable to calculate a request signature: "
                     + e.getMessage(), e);
@@ -24,7 +24,6 @@ import com.amazonaws.logging.Log;
 import com.amazonaws.logging.LogFactory;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -60,6 +59,34 @@ public abstract class AbstractKinesisRecorder {
      */
     protected abstract RecordSender getRecordSender();
 
+    /**
+     * Returns the maximum number of saved records read into a batch.
+     *
+     * @return the maximum number of records per batch
+     */
+    int getMaxRecordsPerBatch() {
+        return MAX_RECORDS_PER_BATCH;
+    }
+
+    /**
+     * Returns the maximum size of a batch, the sum of the lengths of its
+     * records plus {@link #getBatchRecordOverhead()} per record.
+     *
+     * @return the maximum size in bytes of a batch
+     */
+    int getMaxBatchSize() {
+        return MAX_BATCH_RECORDS_SIZE_BYTES;
+    }
+
+    /**
+     * Returns the bytes a record adds to the size of a batch besides its data.
+     *
+     * @return the overhead in bytes of a record
+     */
+    int getBatchRecordOverhead() {
+        return 0;
+    }
+
     /**
      * Creates a {@link AbstractKinesisRecorder}.
      *
@@ -88,7 +115,9 @@ public abstract class AbstractKinesisRecorder {
     /**
      * Saves a record to local storage to be sent later. The record will be
      * submitted to the streamName provided with a randomly generated partition
-     * key to ensure equal distribution across shards. Note: Since operation
+     * key to ensure equal distribution across shards. Depending on the flush
+     * policy of the {@link KinesisRecorderConfig}, the record may be buffered
+     * in memory before it is written. Note: Since operation
      * involves file I/O it is recommended not to call this method on the main
      * thread to ensure responsive applications.
      *
@@ -97,7 +126,7 @@ public abstract class AbstractKinesisRecorder {
      */
     public void saveRecord(byte[] data, String streamName) {
         try {
-            recordStore.put(FileRecordParser.asString(streamName, data));
+            recordStore.put(streamName, data);
         } catch (final IOException e) {
             throw new AmazonClientException("Error saving record", e);
         }
@@ -108,9 +137,12 @@ public abstract class AbstractKinesisRecorder {
      * successfully sent will be deleted from the device. Requests that fail due
      * to the device being offline will stop the submission process and be kept.
      * Requests that fail due to other reasons (such as the request being
-     * invalid) will be deleted. Note: Since KinesisRecorder uses synchronous
-     * methods to make calls to Amazon Kinesis, do not call submitAll() on the
-     * main thread of your application.
+     * invalid) will be deleted. The saved records are grouped into a batch per
+     * stream, and up to {@link KinesisRecorderConfig#getMaxConcurrentBatches()}
+     * batches are sent at once; the records of a stream are sent in the order
+     * they were saved. Note: Since KinesisRecorder uses synchronous methods to
+     * make calls to Amazon Kinesis, do not call submitAll() on the main thread
+     * of your application.
      *
      * @throws AmazonClientException Thrown if there was an unrecoverable error
      *             during submission. Note: If the request appears to be
@@ -118,94 +150,13 @@ public abstract class AbstractKinesisRecorder {
      *             to be valid, it will be kept.
      */
     public synchronized void submitAllRecords() {
-        final RecordSender sender = getRecordSender();
         final RecordIterator iterator = recordStore.iterator();
-        final List<byte[]> data = new ArrayList<byte[]>(MAX_RECORDS_PER_BATCH);
-        int retry = 0;
+        final BatchSubmitter submitter = new BatchSubmitter(this, getRecordSender(), iterator,
+                getMaxRecordsPerBatch(), getMaxBatchSize(), getBatchRecordOverhead(),
+                config.getMaxConcurrentBatches(), MAX_RETRY_COUNT);
         int count = 0;
-        boolean unknownErrorRetried = false;
         try {
-            while (iterator.hasNext() && retry < MAX_RETRY_COUNT) {
-                final String streamName = nextBatch(iterator, data, MAX_RECORDS_PER_BATCH,
-                        MAX_BATCH_RECORDS_SIZE_BYTES);
-                if (streamName == null || data.isEmpty()) {
-                    break;
-                }
-
-                try {
-
-                    List<byte[]> failures = null;
-                    try {
-                        failures = sender.sendBatch(streamName, data);
-                    } catch (AmazonClientException ace) {
-                        if (!unknownErrorRetried
-                                && ace.getMessage() != null
-                                && ace.getMessage().contains("Unable to unmarshall error response")) {
-                            // Retry once for unforeseen error, possible kinesis error without shape
-                            unknownErrorRetried = true;
-                            failures = data;
-                        } else {
-                            throw ace;
-                        }
-                    }
-
-                    final int successCount = data.size() - failures.size();
-                    count += successCount;
-
-                    /**
-                     * We hold off on removing records until we are sure that we
-                     * have successfully made the request. We would prefer to
-                     * send duplicates than to lose records. This is still not a
-                     * perfect solution as there is a chance for loss between
-                     * removing the read records and re-saving the failed
-                     * records.
-                     * https://github.com/aws/aws-sdk-android/issues/225 If this
-                     * errors it will throw an IOException. We don't wrap it so
-                     * it's handled separately from network errors which will be
-                     * wrapped by an AmazonClientException.
-                     */
-                    iterator.removeReadRecords();
-
-                    if (successCount == 0) {
-                        // no record went through, increase retry count.
-                        retry++;
-                    }
-                    if (!failures.isEmpty()) {
-                        for (final byte[] bytes : failures) {
-                            saveRecord(bytes, streamName);
-                        }
-                    }
-
-                } catch (final AmazonClientException ace) {
-                    if (sender.isRecoverable(ace)) {
-                        LOGGER.error(
-                                "ServiceException in submit all, the values of the data inside the requests appears valid.  The request will be kept",
-                                ace);
-                    } else {
-
-                        // Data is dead and should be added to dead letter queue
-                        try {
-                            this.config.getDeadLetterListener().onRecordsDropped(streamName, data);
-                        } catch (Exception e) {
-                            LOGGER.error("DeadLetterListener onRecordsDropped has thrown an exception (user code)", e);
-                        }
-
-                        try {
-                            iterator.removeReadRecords();
-                        } catch (final IOException e) {
-                            throw new AmazonClientException("Failed to drop bad records.", e);
-                        }
-                        // We have reason to believe the values in the request
-                        // is invalid and cannot be sent or recovered.
-                        LOGGER.error(
-                                "ServiceException in submit all, the last request is presumed to be the cause and will be dropped",
-                                ace);
-                    }
-                    throw ace;
-                } catch (final IOException e) {
-                    throw new AmazonClientException("Failed to remove read records", e);
-                }
-            }
+            count = submitter.submit();
         } finally {
             LOGGER.debug(String.format("submitAllRecords sent %d records", count));
             try {
@@ -236,17 +187,15 @@ public abstract class AbstractKinesisRecorder {
         int count = 0;
         final FileRecordParser frp = new FileRecordParser();
         while (iterator.hasNext() && count < maxCount && size < maxSize) {
-            final String line = iterator.peek();
-            if (line == null || line.isEmpty()) {
-                iterator.next();
-                continue;
-            }
-            // parse a line. Skip in case of corrupted data
+            // read a record. Skip in case of corrupted data
             try {
-                frp.parse(line);
+                if (!iterator.peekRecord(frp)) {
+                    iterator.skip();
+                    continue;
+                }
             } catch (final Exception e) {
                 LOGGER.warn("Failed to read line. Skip.", e);
-                iterator.next();
+                iterator.skip();
                 continue;
             }
 
@@ -257,7 +206,7 @@ public abstract class AbstractKinesisRecorder {
                 count++;
                 size += frp.bytes.length;
                 lastStreamName = frp.streamName;
-                iterator.next();
+                iterator.skip();
             } else {
                 break;
             }
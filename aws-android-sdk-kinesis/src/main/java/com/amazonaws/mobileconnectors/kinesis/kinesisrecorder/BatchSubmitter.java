@@ -0,0 +1,335 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.logging.Log;
+import com.amazonaws.logging.LogFactory;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.FileRecordStore.RecordIterator;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.FileRecordStore.RecordPosition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Submits the saved records of a recorder in batches. The log is read once,
+ * and the records are grouped into a batch per stream, which is sent when it
+ * is full or the end of the log is reached. Up to a number of batches are
+ * sent concurrently, while the next ones are read; a stream has one batch in
+ * flight at a time, so that its records are sent in order. It's not thread
+ * safe.
+ * <p>
+ * As the batches of different streams complete out of order, the records are
+ * removed up to the first record of the first batch that isn't resolved,
+ * that is sent, saved again for a retry or dropped. The records of a batch
+ * that is kept are sent again by the next submission, along with the ones of
+ * later batches that were sent already: records may be sent twice, but are
+ * never lost.
+ */
+class BatchSubmitter {
+    private static final Log LOGGER = LogFactory.getLog(BatchSubmitter.class);
+
+    private final AbstractKinesisRecorder recorder;
+    private final RecordSender sender;
+    private final RecordIterator iterator;
+    private final int maxCount;
+    private final int maxSize;
+    private final int recordOverhead;
+    private final int maxConcurrentBatches;
+    private final int maxRetryCount;
+
+    private final FileRecordParser record = new FileRecordParser();
+    /** The batches being filled, by stream name. */
+    private final Map<String, Batch> filling = new LinkedHashMap<String, Batch>();
+    /** The batches that aren't resolved, in the order of their records. */
+    private final LinkedList<Batch> unresolved = new LinkedList<Batch>();
+    /** The streams with a batch in flight. */
+    private final Set<String> sending = new HashSet<String>();
+    private CompletionService<Batch> completionService;
+    private int inFlight;
+    private RecordPosition removedBefore;
+
+    private int count;
+    private int retry;
+    private boolean unknownErrorRetried;
+    private RuntimeException error;
+
+    /**
+     * @param recorder the recorder saving the records to retry
+     * @param sender the sender of the batches
+     * @param iterator the iterator of the saved records
+     * @param maxCount the maximum number of records of a batch
+     * @param maxSize the maximum size of a batch, the sum of the lengths of
+     *            its records plus the overhead of each
+     * @param recordOverhead the bytes a record adds to a batch besides its
+     *            data
+     * @param maxConcurrentBatches the number of batches sent at once
+     * @param maxRetryCount the number of batches sending no record at all
+     *            after which the submission stops
+     */
+    BatchSubmitter(AbstractKinesisRecorder recorder, RecordSender sender,
+            RecordIterator iterator, int maxCount, int maxSize, int recordOverhead,
+            int maxConcurrentBatches, int maxRetryCount) {
+        this.recorder = recorder;
+        this.sender = sender;
+        this.iterator = iterator;
+        this.maxCount = maxCount;
+        this.maxSize = maxSize;
+        this.recordOverhead = recordOverhead;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.maxRetryCount = maxRetryCount;
+    }
+
+    /**
+     * Submits the records.
+     *
+     * @return the number of records sent
+     * @throws AmazonClientException the first error of a batch, once the
+     *             batches in flight completed
+     */
+    int submit() {
+        final ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentBatches);
+        completionService = new ExecutorCompletionService<Batch>(executor);
+        try {
+            while (!isStopped()) {
+                if (readRecord()) {
+                    continue;
+                }
+                // the end of the log, for now: failed records may be saved
+                // again once the batches in flight complete
+                if (!filling.isEmpty()) {
+                    dispatch(filling.values().iterator().next());
+                } else if (inFlight > 0) {
+                    complete();
+                } else {
+                    break;
+                }
+            }
+            while (inFlight > 0) {
+                complete();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (error != null) {
+            throw error;
+        }
+        return count;
+    }
+
+    private boolean isStopped() {
+        return error != null || retry >= maxRetryCount;
+    }
+
+    /*
+     * Reads the next record into the batch of its stream, sending the batch
+     * first if the record doesn't fit. Returns false at the end of the log.
+     */
+    private boolean readRecord() {
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        // parse a record. Skip in case of corrupted data
+        try {
+            if (!iterator.peekRecord(record)) {
+                iterator.skip();
+                return true;
+            }
+        } catch (final Exception e) {
+            LOGGER.warn("Failed to read line. Skip.", e);
+            iterator.skip();
+            return true;
+        }
+
+        final int size = record.bytes.length + recordOverhead;
+        Batch batch = filling.get(record.streamName);
+        if (batch != null && (batch.data.size() >= maxCount || batch.size + size > maxSize)) {
+            dispatch(batch);
+            batch = null;
+        }
+        if (batch == null) {
+            batch = new Batch(record.streamName, iterator.getReadPosition());
+            filling.put(record.streamName, batch);
+            unresolved.add(batch);
+        }
+        batch.data.add(record.bytes);
+        batch.size += size;
+        iterator.skip();
+        return true;
+    }
+
+    /*
+     * Sends a batch once fewer than the maximum number of batches, and none
+     * of its stream, are in flight. The batch is kept if the submission stops
+     * in the meantime.
+     */
+    private void dispatch(final Batch batch) {
+        filling.remove(batch.streamName);
+        while (!isStopped()
+                && (inFlight >= maxConcurrentBatches || sending.contains(batch.streamName))) {
+            complete();
+        }
+        if (isStopped()) {
+            return;
+        }
+        sending.add(batch.streamName);
+        inFlight++;
+        completionService.submit(new Callable<Batch>() {
+            @Override
+            public Batch call() {
+                try {
+                    batch.failures = sender.sendBatch(batch.streamName, batch.data);
+                } catch (final RuntimeException e) {
+                    batch.exception = e;
+                }
+                return batch;
+            }
+        });
+    }
+
+    /* Waits for a batch in flight to complete, and resolves it. */
+    private void complete() {
+        final Batch batch;
+        try {
+            batch = completionService.take().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while submitting records", e);
+        } catch (final ExecutionException e) {
+            // the task catches the exceptions of the sender
+            throw new AmazonClientException("Failed to submit records", e.getCause());
+        }
+        inFlight--;
+        sending.remove(batch.streamName);
+
+        List<byte[]> failures = batch.failures;
+        RuntimeException exception = batch.exception;
+        if (exception != null && !unknownErrorRetried
+                && exception.getMessage() != null
+                && exception.getMessage().contains("Unable to unmarshall error response")) {
+            // Retry once for unforeseen error, possible kinesis error without shape
+            unknownErrorRetried = true;
+            failures = batch.data;
+            exception = null;
+        }
+
+        if (exception == null) {
+            final int successCount = batch.data.size() - failures.size();
+            count += successCount;
+            if (successCount == 0) {
+                // no record went through, increase retry count.
+                retry++;
+            }
+            batch.resolved = true;
+            try {
+                for (final byte[] bytes : failures) {
+                    recorder.saveRecord(bytes, batch.streamName);
+                }
+            } catch (final RuntimeException e) {
+                fail(e);
+            }
+        } else if (exception instanceof AmazonClientException
+                && sender.isRecoverable((AmazonClientException) exception)) {
+            LOGGER.error(
+                    "ServiceException in submit all, the values of the data inside the requests appears valid.  The request will be kept",
+                    exception);
+            fail(exception);
+        } else if (exception instanceof AmazonClientException) {
+            // Data is dead and should be added to dead letter queue
+            try {
+                recorder.config.getDeadLetterListener().onRecordsDropped(batch.streamName,
+                        batch.data);
+            } catch (final Exception e) {
+                LOGGER.error("DeadLetterListener onRecordsDropped has thrown an exception (user code)", e);
+            }
+            batch.resolved = true;
+            // We have reason to believe the values in the request
+            // is invalid and cannot be sent or recovered.
+            LOGGER.error(
+                    "ServiceException in submit all, the last request is presumed to be the cause and will be dropped",
+                    exception);
+            fail(exception);
+        } else {
+            fail(exception);
+        }
+        removeResolvedRecords();
+    }
+
+    private void fail(RuntimeException e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    /*
+     * Removes the records before the first unresolved batch, or all records
+     * read if every batch is resolved.
+     */
+    private void removeResolvedRecords() {
+        while (!unresolved.isEmpty() && unresolved.getFirst().resolved) {
+            unresolved.removeFirst();
+        }
+        final RecordPosition position = unresolved.isEmpty() ? iterator.getReadPosition()
+                : unresolved.getFirst().start;
+        if (position.equals(removedBefore)) {
+            return;
+        }
+        /**
+         * We hold off on removing records until we are sure that we have
+         * successfully made the request. We would prefer to send duplicates
+         * than to lose records. This is still not a perfect solution as there
+         * is a chance for loss between removing the read records and
+         * re-saving the failed records.
+         * https://github.com/aws/aws-sdk-android/issues/225
+         */
+        try {
+            iterator.removeRecordsBefore(position);
+        } catch (final IOException e) {
+            throw new AmazonClientException("Failed to remove read records", e);
+        }
+        removedBefore = position;
+    }
+
+    /* The records of a stream sent in a request. */
+    private static final class Batch {
+        private final String streamName;
+        /** The position of the first record. */
+        private final RecordPosition start;
+        private final List<byte[]> data = new ArrayList<byte[]>();
+        private int size;
+        /** The results, written by the sending thread. */
+        private List<byte[]> failures;
+        private RuntimeException exception;
+        private boolean resolved;
+
+        Batch(String streamName, RecordPosition start) {
+            this.streamName = streamName;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import com.amazonaws.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The binary format of the segments of a {@link FileRecordStore}. A segment
+ * starts with a header, the bytes "KREC" followed by the version of the
+ * format, and holds a sequence of frames. A frame is a type byte, the length
+ * of its payload as a 4-byte big-endian integer, the payload, and the CRC32
+ * of all of them, so that a frame torn by a crash or corrupted on disk is
+ * detected rather than misread. There are three types of frames:
+ * <ul>
+ * <li>a record frame, the id of the stream of the record as a variable-length
+ * integer followed by the data of the record;</li>
+ * <li>a stream frame, an id followed by the UTF-8 name of the stream it
+ * stands for in the rest of the segment. It is written before the first
+ * record of the stream in every segment, so that a segment can be read on
+ * its own;</li>
+ * <li>a line frame, the UTF-8 bytes of a record saved as a string.</li>
+ * </ul>
+ * Compared to the lines of Base64-encoded data of the text format, a record
+ * takes about a third less space, and reading it requires no decoding.
+ */
+final class FileRecordFormat {
+
+    /** The length of the segment header. */
+    static final int HEADER_LENGTH = 5;
+    /** The bytes a frame takes besides its payload. */
+    static final int FRAME_OVERHEAD = 9;
+
+    static final byte TYPE_RECORD = 1;
+    static final byte TYPE_STREAM = 2;
+    static final byte TYPE_LINE = 3;
+
+    /** {@link FrameReader#next()} read a frame. */
+    static final int FRAME = 0;
+    /** {@link FrameReader#next()} reached the end of the segment. */
+    static final int END = 1;
+    /** {@link FrameReader#next()} found a torn or corrupt frame. */
+    static final int CORRUPT = 2;
+
+    private static final byte[] MAGIC = {
+            'K', 'R', 'E', 'C'
+    };
+    private static final byte VERSION = 1;
+    private static final int LENGTH_BYTES = 4;
+    private static final int CRC_BYTES = 4;
+    private static final int MAX_VAR_INT_BYTES = 5;
+    private static final int INITIAL_PAYLOAD_BUFFER_SIZE = 16 * 1024;
+    private static final int BYTE_MASK = 0xff;
+    private static final int VAR_INT_MASK = 0x7f;
+    private static final int VAR_INT_MORE = 0x80;
+    private static final int VAR_INT_SHIFT = 7;
+    private static final int BITS_PER_BYTE = 8;
+
+    private FileRecordFormat() {
+    }
+
+    /**
+     * Writes the header that starts a segment.
+     *
+     * @param out the stream of the segment
+     * @throws IOException if the header can't be written
+     */
+    static void writeHeader(OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    /**
+     * Returns whether the bytes start with the header of a segment.
+     *
+     * @param bytes the first bytes of a file
+     * @param length the number of bytes read
+     * @return true if the file is a segment of this format
+     */
+    static boolean isHeader(byte[] bytes, int length) {
+        if (length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return bytes[MAGIC.length] == VERSION;
+    }
+
+    /**
+     * Returns the number of bytes a frame takes.
+     *
+     * @param id the stream id of the frame, or -1 for a line frame
+     * @param dataLength the length of the data of the frame
+     * @return the length of the frame
+     */
+    static int frameLength(int id, int dataLength) {
+        return FRAME_OVERHEAD + (id < 0 ? 0 : varIntLength(id)) + dataLength;
+    }
+
+    /**
+     * Writes a frame.
+     *
+     * @param out the stream of the segment
+     * @param type the type of the frame
+     * @param id the stream id of the frame, or -1 for a line frame
+     * @param data the data of the frame
+     * @throws IOException if the frame can't be written
+     */
+    static void writeFrame(OutputStream out, byte type, int id, byte[] data)
+            throws IOException {
+        final int idLength = id < 0 ? 0 : varIntLength(id);
+        final byte[] head = new byte[1 + LENGTH_BYTES + idLength];
+        head[0] = type;
+        writeInt(head, 1, idLength + data.length);
+        if (id >= 0) {
+            int value = id;
+            int i = 1 + LENGTH_BYTES;
+            while (value > VAR_INT_MASK) {
+                head[i++] = (byte) ((value & VAR_INT_MASK) | VAR_INT_MORE);
+                value >>>= VAR_INT_SHIFT;
+            }
+            head[i] = (byte) value;
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(head, 0, head.length);
+        crc.update(data, 0, data.length);
+        final byte[] tail = new byte[CRC_BYTES];
+        writeInt(tail, 0, (int) crc.getValue());
+        out.write(head);
+        out.write(data);
+        out.write(tail);
+    }
+
+    private static int varIntLength(int value) {
+        int length = 1;
+        int v = value >>> VAR_INT_SHIFT;
+        while (v != 0) {
+            length++;
+            v >>>= VAR_INT_SHIFT;
+        }
+        return length;
+    }
+
+    private static void writeInt(byte[] b, int off, int value) {
+        for (int i = LENGTH_BYTES - 1; i >= 0; i--) {
+            b[off + i] = (byte) (value >>> ((LENGTH_BYTES - 1 - i) * BITS_PER_BYTE));
+        }
+    }
+
+    private static int readInt(byte[] b, int off) {
+        int value = 0;
+        for (int i = 0; i < LENGTH_BYTES; i++) {
+            value = (value << BITS_PER_BYTE) | (b[off + i] & BYTE_MASK);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the frames of a segment. It's not thread safe.
+     */
+    static final class FrameReader {
+        private final InputStream in;
+        private final CRC32 crc = new CRC32();
+        private final byte[] head = new byte[1 + LENGTH_BYTES];
+        private final byte[] tail = new byte[CRC_BYTES];
+        private byte[] payload = new byte[0];
+
+        private byte type;
+        private int payloadLength;
+        private int id;
+        private int dataOffset;
+
+        /**
+         * @param in the stream of the segment, positioned at its start
+         */
+        FrameReader(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Reads the header of the segment.
+         *
+         * @return true if the segment is of this format
+         * @throws IOException if the segment can't be read
+         */
+        boolean readHeader() throws IOException {
+            final byte[] header = new byte[HEADER_LENGTH];
+            return isHeader(header, readFully(header, 0, HEADER_LENGTH));
+        }
+
+        /**
+         * Reads the next frame.
+         *
+         * @return {@link #FRAME} if a frame was read, {@link #END} at the end
+         *         of the segment, or {@link #CORRUPT} if the rest of the
+         *         segment can't be read
+         * @throws IOException if the segment can't be read
+         */
+        int next() throws IOException {
+            final int first = in.read();
+            if (first == -1) {
+                return END;
+            }
+            head[0] = (byte) first;
+            if (readFully(head, 1, LENGTH_BYTES) < LENGTH_BYTES) {
+                return CORRUPT;
+            }
+            final int length = readInt(head, 1);
+            if (length < 0 || !readPayload(length)
+                    || readFully(tail, 0, CRC_BYTES) < CRC_BYTES) {
+                return CORRUPT;
+            }
+            crc.reset();
+            crc.update(head, 0, head.length);
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != readInt(tail, 0)) {
+                return CORRUPT;
+            }
+            type = head[0];
+            payloadLength = length;
+            id = -1;
+            dataOffset = 0;
+            if (type == TYPE_RECORD || type == TYPE_STREAM) {
+                return readId() ? FRAME : CORRUPT;
+            }
+            return FRAME;
+        }
+
+        /*
+         * Reads the payload, growing the buffer as the bytes arrive so that a
+         * corrupt length doesn't allocate more than the segment holds.
+         */
+        private boolean readPayload(int length) throws IOException {
+            if (payload.length < Math.min(length, INITIAL_PAYLOAD_BUFFER_SIZE)) {
+                payload = new byte[Math.min(length, INITIAL_PAYLOAD_BUFFER_SIZE)];
+            }
+            int read = 0;
+            while (read < length) {
+                if (read == payload.length) {
+                    payload = Arrays.copyOf(payload,
+                            (int) Math.min(length, 2L * payload.length));
+                }
+                final int n = in.read(payload, read, Math.min(payload.length, length) - read);
+                if (n == -1) {
+                    return false;
+                }
+                read += n;
+            }
+            return true;
+        }
+
+        private boolean readId() {
+            int value = 0;
+            for (int i = 0; i < MAX_VAR_INT_BYTES && i < payloadLength; i++) {
+                final int b = payload[i] & BYTE_MASK;
+                value |= (b & VAR_INT_MASK) << (VAR_INT_SHIFT * i);
+                if ((b & VAR_INT_MORE) == 0) {
+                    id = value;
+                    dataOffset = i + 1;
+                    return value >= 0;
+                }
+            }
+            return false;
+        }
+
+        private int readFully(byte[] b, int off, int len) throws IOException {
+            int read = 0;
+            while (read < len) {
+                final int n = in.read(b, off + read, len - read);
+                if (n == -1) {
+                    break;
+                }
+                read += n;
+            }
+            return read;
+        }
+
+        /** Returns the type of the frame read. */
+        byte getType() {
+            return type;
+        }
+
+        /** Returns the stream id of the frame read, or -1 for a line frame. */
+        int getId() {
+            return id;
+        }
+
+        /** Returns the number of bytes the frame read takes. */
+        int getFrameLength() {
+            return FRAME_OVERHEAD + payloadLength;
+        }
+
+        /** Returns a copy of the data of the frame read. */
+        byte[] getData() {
+            return Arrays.copyOfRange(payload, dataOffset, payloadLength);
+        }
+
+        /** Returns the data of the frame read as a string. */
+        String getText() {
+            return new String(payload, dataOffset, payloadLength - dataOffset,
+                    StringUtils.UTF8);
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -15,43 +15,104 @@
 
 package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
 
-
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.util.StringUtils;
 
 import com.amazonaws.logging.Log;
 import com.amazonaws.logging.LogFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The FileRecordStore is responsible for recording Kinesis PutRecordRequests to
- * the Android disk. Currently it stores each request as a JSON object
- * representing it's properties. One request per line.
+ * the Android disk. The records are stored in the binary frames of
+ * {@link FileRecordFormat}, with the name of their stream, or as strings.
+ * <p>
+ * The records are kept in a log of segment files, named after the record file
+ * with an increasing index, of about {@link #DEFAULT_SEGMENT_SIZE} bytes
+ * each. Records are only appended to the last segment, and a new segment is
+ * started when it is full. Removing the records read by an iterator persists
+ * a checkpoint, the segment and offset of the first unread record, and
+ * deletes the segments before it, so that acknowledging a batch never
+ * rewrites the records left. A record file written by a previous version is
+ * taken over as a segment, and segments of lines written by a previous
+ * version are converted to frames when the store is opened.
+ * <p>
+ * The last segment is kept open for appending. Saved records are buffered in
+ * memory and written together once {@code flushRecordCount} records are
+ * pending or the oldest of them has waited {@code flushIntervalMillis},
+ * whichever comes first, and before records are read. See
+ * {@link KinesisRecorderConfig#withFlushRecordCount(int)}.
  */
 class FileRecordStore {
     private static final Log LOGGER = LogFactory.getLog(FileRecordStore.class);
-    private final ReentrantLock accessLock = new ReentrantLock(true);
 
-    /** The file the requests are stored in. **/
-    private File recordFile;
+    /** The size a segment grows to before a new one is started. */
+    static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String SEGMENT_INDEX_FORMAT = "%010d";
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    /** Writes the records buffered for longer than the flush interval. */
+    private static ScheduledExecutorService flushExecutor;
+
+    private final ReentrantLock accessLock = new ReentrantLock(true);
 
     /** The FileManager used for interacting with the FS. **/
     private final FileManager fileManager;
 
     private final String recordFileName;
     private final long maxStorageSize;
+    private final long segmentSize;
+    private final int flushRecordCount;
+    private final long flushIntervalMillis;
+    private final boolean syncOnFlush;
+
+    /** The directory the segments are stored in. **/
+    private File recordsDirectory;
+
+    /** The index of the first segment; all segments up to the last exist. **/
+    private long firstSegment;
+    /** The index of the segment records are appended to. **/
+    private long lastSegment;
+    /** The length of the last segment. **/
+    private long lastSegmentLength;
+    /** The total length of the segments. **/
+    private long totalLength;
+    /** The offset in the first segment of the first unread record. **/
+    private long checkpointOffset;
+
+    /** The ids of the stream names defined in the last segment. **/
+    private final Map<String, Integer> streamIds = new HashMap<String, Integer>();
+
+    /** The stream appending to the last segment, or null if not open. **/
+    private FileOutputStream writer;
+    /** The records buffered for the next write. **/
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int pendingCount;
+    private boolean flushScheduled;
 
     /**
      * Creates the FileRecordStore.
@@ -62,137 +123,681 @@ class FileRecordStore {
      * @param maxStorageSize Maximum storage size in bytes
      */
     public FileRecordStore(File workDirectory, String recordFileName, long maxStorageSize) {
+        this(workDirectory, recordFileName, maxStorageSize, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates the FileRecordStore.
+     *
+     * @param workDirectory The directory to use to store requests in
+     * @param recordFileName Name of the record file
+     * @param maxStorageSize Maximum storage size in bytes
+     * @param segmentSize The size a segment grows to before a new one is
+     *            started
+     */
+    FileRecordStore(File workDirectory, String recordFileName, long maxStorageSize,
+            long segmentSize) {
+        this(workDirectory, recordFileName, maxStorageSize, segmentSize, 1, 0, false);
+    }
+
+    /**
+     * Creates the FileRecordStore with the storage limit and the flush
+     * policy of the config.
+     *
+     * @param workDirectory The directory to use to store requests in
+     * @param recordFileName Name of the record file
+     * @param config The configuration of the recorder
+     */
+    FileRecordStore(File workDirectory, String recordFileName, KinesisRecorderConfig config) {
+        this(workDirectory, recordFileName, config.getMaxStorageSize(), DEFAULT_SEGMENT_SIZE,
+                config.getFlushRecordCount(), config.getFlushIntervalMillis(),
+                config.isSyncOnFlush());
+    }
+
+    /**
+     * Creates the FileRecordStore.
+     *
+     * @param workDirectory The directory to use to store requests in
+     * @param recordFileName Name of the record file
+     * @param maxStorageSize Maximum storage size in bytes
+     * @param segmentSize The size a segment grows to before a new one is
+     *            started
+     * @param flushRecordCount The number of records buffered before they
+     *            are written
+     * @param flushIntervalMillis The time a record may stay buffered, or 0
+     *            for no limit other than the record count
+     * @param syncOnFlush Whether to sync the segment to the device after
+     *            every write
+     */
+    FileRecordStore(File workDirectory, String recordFileName, long maxStorageSize,
+            long segmentSize, int flushRecordCount, long flushIntervalMillis,
+            boolean syncOnFlush) {
         this.fileManager = new FileManager(workDirectory);
         this.recordFileName = recordFileName;
         this.maxStorageSize = maxStorageSize;
+        this.segmentSize = segmentSize;
+        this.flushRecordCount = Math.max(1, flushRecordCount);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.syncOnFlush = syncOnFlush;
         try {
-            tryCreateRecordsFile();
+            open();
         } catch (final IOException ioe) {
             throw new AmazonClientException("Failed to create file store", ioe);
         }
     }
 
+    /**
+     * Returns whether a record store, or a record file of a previous version,
+     * exists in the directory.
+     *
+     * @param workDirectory The directory of the record store
+     * @param recordFileName Name of the record file
+     * @return true if there are files of the record store
+     */
+    static boolean exists(File workDirectory, String recordFileName) {
+        final File recordsDir = new File(workDirectory, Constants.RECORDS_DIRECTORY);
+        if (new File(recordsDir, recordFileName).isFile()) {
+            return true;
+        }
+        final File[] files = recordsDir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (segmentIndex(recordFileName, file.getName()) >= 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Saves a record as a string.
+     *
+     * @param record the record
+     * @return false if the record would exceed the maximum storage size
+     * @throws IOException if the record can't be written
+     */
     public boolean put(final String record) throws IOException {
+        return put(FileRecordFormat.TYPE_LINE, null, record.getBytes(StringUtils.UTF8));
+    }
+
+    /**
+     * Saves a record for a stream.
+     *
+     * @param streamName the name of the stream of the record
+     * @param data the data of the record
+     * @return false if the record would exceed the maximum storage size
+     * @throws IOException if the record can't be written
+     */
+    public boolean put(final String streamName, final byte[] data) throws IOException {
+        return put(FileRecordFormat.TYPE_RECORD, streamName, data);
+    }
+
+    private boolean put(byte type, String streamName, byte[] data) throws IOException {
         boolean success = false;
-        BufferedWriter writer = null;
         accessLock.lock();
         try {
-            writer = tryInitializeWriter();
-            if (recordFile.length() + record.getBytes(StringUtils.UTF8).length <= maxStorageSize) {
-                writer.write(record);
-                writer.newLine();
-                writer.flush();
-                success = true;
-            }
+            success = append(type, streamName, data);
         } finally {
-            if (writer != null) {
-                writer.close();
-            }
             accessLock.unlock();
         }
 
         return success;
     }
 
-    public long getFileSize() {
-        return recordFile == null ? 0 : recordFile.length();
+    /**
+     * Writes the buffered records to the last segment.
+     *
+     * @throws IOException if the records can't be written
+     */
+    public void flush() throws IOException {
+        accessLock.lock();
+        try {
+            flushPending();
+        } finally {
+            accessLock.unlock();
+        }
     }
 
-    private void tryCreateRecordsFile() throws IOException {
-        if (recordFile != null && recordFile.exists()) {
-            return;
+    /**
+     * Writes the buffered records and closes the last segment. The store
+     * opens it again when needed.
+     *
+     * @throws IOException if the records can't be written
+     */
+    public void close() throws IOException {
+        accessLock.lock();
+        try {
+            flushPending();
+            closeWriter();
+        } finally {
+            accessLock.unlock();
         }
+    }
 
-        synchronized (this) {
-            if (recordFile != null && recordFile.exists()) {
-                return;
+    /**
+     * Returns the number of bytes of the records that haven't been removed,
+     * including the buffered ones. The records read from the first segment
+     * stay on disk until the segment is deleted as a whole.
+     *
+     * @return the number of bytes of the records left
+     */
+    public long getFileSize() {
+        accessLock.lock();
+        try {
+            return totalLength - checkpointOffset;
+        } finally {
+            accessLock.unlock();
+        }
+    }
+
+    /*
+     * Buffers the frame of a record for the last segment, preceded by the
+     * segment header and the definition of its stream name where needed,
+     * and writes the buffer out when the flush policy says so. Returns false
+     * if the record would exceed the maximum storage size.
+     */
+    private boolean append(byte type, String streamName, byte[] data) throws IOException {
+        final boolean roll = lastSegmentLength > 0
+                && lastSegmentLength + FileRecordFormat.FRAME_OVERHEAD + data.length > segmentSize;
+        final Integer knownId = roll || streamName == null ? null : streamIds.get(streamName);
+        int id = -1;
+        byte[] name = null;
+        if (streamName != null) {
+            id = knownId != null ? knownId : (roll ? 0 : streamIds.size());
+            if (knownId == null) {
+                name = streamName.getBytes(StringUtils.UTF8);
             }
+        }
+        long length = FileRecordFormat.frameLength(id, data.length);
+        if (name != null) {
+            length += FileRecordFormat.frameLength(id, name.length);
+        }
+        if (roll || lastSegmentLength == 0) {
+            length += FileRecordFormat.HEADER_LENGTH;
+        }
+        if (totalLength - checkpointOffset + length > maxStorageSize) {
+            return false;
+        }
 
-            final File recordDir = fileManager.createDirectory(
-                    Constants.RECORDS_DIRECTORY);
-            recordFile = fileManager.createFile(new File(
-                    recordDir, recordFileName));
+        if (roll) {
+            flushPending();
+            startNewSegment();
         }
+        if (lastSegmentLength == 0) {
+            FileRecordFormat.writeHeader(pending);
+        }
+        if (name != null) {
+            FileRecordFormat.writeFrame(pending, FileRecordFormat.TYPE_STREAM, id, name);
+            streamIds.put(streamName, id);
+        }
+        FileRecordFormat.writeFrame(pending, type, id, data);
+        pendingCount++;
+        lastSegmentLength += length;
+        totalLength += length;
+        if (pendingCount >= flushRecordCount) {
+            flushPending();
+        } else if (flushIntervalMillis > 0 && !flushScheduled) {
+            scheduleFlush();
+        }
+        return true;
     }
 
-    private BufferedWriter tryInitializeWriter() throws IOException {
-        BufferedWriter writer = null;
-        tryCreateRecordsFile();
-        final OutputStream stream = fileManager.newOutputStream(recordFile, true);
-        writer = new BufferedWriter(new OutputStreamWriter(stream, StringUtils.UTF8));
+    /* Moves the appending to a new segment; the buffer must be empty. */
+    private void startNewSegment() throws IOException {
+        closeWriter();
+        lastSegment++;
+        lastSegmentLength = 0;
+        streamIds.clear();
+    }
 
-        return writer;
+    /* Writes the buffered records with a single write. */
+    private void flushPending() throws IOException {
+        if (pendingCount == 0) {
+            return;
+        }
+        if (writer == null) {
+            ensureRecordsDirectory();
+            writer = new FileOutputStream(segmentFile(lastSegment), true);
+        }
+        pending.writeTo(writer);
+        if (syncOnFlush) {
+            writer.getFD().sync();
+        }
+        pending.reset();
+        pendingCount = 0;
     }
 
-    private File deleteAllRecords() throws IOException {
-        final File recordsDir = fileManager.createDirectory(
-                Constants.RECORDS_DIRECTORY);
+    /* Drops the buffered records, which were removed before being written. */
+    private void discardPending() {
+        pending.reset();
+        pendingCount = 0;
+    }
 
-        recordFile.delete();
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            final FileOutputStream out = writer;
+            writer = null;
+            out.close();
+        }
+    }
 
-        recordFile = fileManager.createFile(new File(
-                recordsDir, recordFileName));
-        return recordFile;
+    private void scheduleFlush() {
+        flushScheduled = true;
+        getFlushExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                accessLock.lock();
+                try {
+                    flushScheduled = false;
+                    flushPending();
+                } catch (final IOException e) {
+                    LOGGER.error("Failed to write buffered records", e);
+                } finally {
+                    accessLock.unlock();
+                }
+            }
+        }, flushIntervalMillis, TimeUnit.MILLISECONDS);
     }
 
-    private File deleteReadRecords(final int lineNumber) throws IOException {
-        // Write all records after line number to a temporary file
-        final File recordsDir = fileManager.createDirectory(
-                Constants.RECORDS_DIRECTORY);
+    private static synchronized ScheduledExecutorService getFlushExecutor() {
+        if (flushExecutor == null) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "KinesisRecorderFlush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return flushExecutor;
+    }
 
-        File tempRecordsFile = null;
-        final File tempFile = new File(
-                recordsDir, recordFileName + ".tmp");
-        if (tempFile.exists()) {
-            if (!tempFile.delete()) {
-                throw new IOException("Failed to delete previous temp file");
+    /*
+     * Recovers the state of the log from the segments and the checkpoint on
+     * disk, taking over the record file of a previous version.
+     */
+    private void open() throws IOException {
+        ensureRecordsDirectory();
+        long first = Long.MAX_VALUE;
+        long last = -1;
+        final File[] files = recordsDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final long index = segmentIndex(recordFileName, file.getName());
+                if (index >= 0) {
+                    first = Math.min(first, index);
+                    last = Math.max(last, index);
+                }
             }
         }
-        tempRecordsFile = fileManager.createFile(tempFile);
+        final long[] checkpoint = readCheckpoint();
+        final File legacyFile = new File(recordsDirectory, recordFileName);
+        if (legacyFile.isFile()) {
+            // the records of the previous version come after all others
+            last = Math.max(last + 1, checkpoint == null ? 0 : checkpoint[0] + 1);
+            if (!legacyFile.renameTo(segmentFile(last))) {
+                throw new IOException("Failed to take over the record file " + legacyFile);
+            }
+            first = Math.min(first, last);
+        }
+        if (last < 0) {
+            // keep the indexes increasing past the checkpoint
+            last = checkpoint == null ? 0 : Math.max(0, checkpoint[0]);
+            first = last;
+        }
 
-        if (tempRecordsFile != null && recordFile.exists() && tempRecordsFile.exists()) {
-            BufferedReader reader = null;
-            PrintWriter writer = null;
-            try {
-                reader = new BufferedReader(new InputStreamReader(new FileInputStream(recordFile),
-                        StringUtils.UTF8));
-                writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(
-                        tempRecordsFile, true), StringUtils.UTF8));
-
-                String line = null;
-                int currentLineNumber = 0;
-                while ((line = reader.readLine()) != null) {
-                    currentLineNumber++;
-                    if (currentLineNumber > lineNumber) {
-                        writer.println(line);
-                        writer.flush();
-                    }
+        long checkpointSegment = first;
+        checkpointOffset = 0;
+        if (checkpoint != null && checkpoint[0] >= first) {
+            checkpointSegment = checkpoint[0];
+            checkpointOffset = checkpoint[1];
+        }
+        for (long i = first; i < Math.min(checkpointSegment, last + 1); i++) {
+            deleteSegment(i);
+        }
+        if (checkpointSegment > last) {
+            // all records were read
+            last = checkpointSegment;
+            checkpointOffset = 0;
+        }
+        firstSegment = checkpointSegment;
+        lastSegment = last;
+
+        for (long i = firstSegment; i <= lastSegment; i++) {
+            convertLines(i);
+        }
+        recoverLastSegment();
+        totalLength = 0;
+        for (long i = firstSegment; i <= lastSegment; i++) {
+            totalLength += segmentFile(i).length();
+        }
+        checkpointOffset = Math.min(checkpointOffset, segmentFile(firstSegment).length());
+    }
+
+    /*
+     * Converts a segment of lines, written by a previous version, to frames.
+     * Lines of a stream name and Base64-encoded data become record frames,
+     * other lines line frames. The checkpoint of the first segment is moved
+     * to its start before the converted segment replaces it: a crash in
+     * between makes the lines read already be read again rather than the
+     * checkpoint point into the middle of a frame.
+     */
+    private void convertLines(long index) throws IOException {
+        final File segment = segmentFile(index);
+        if (!segment.isFile() || segment.length() == 0 || isFrameSegment(segment)) {
+            return;
+        }
+        final File tempFile = new File(recordsDirectory, segment.getName() + TEMP_SUFFIX);
+        final long start = index == firstSegment ? checkpointOffset : 0;
+        final InputStream in = new BufferedInputStream(fileManager.newInputStream(segment),
+                BUFFER_SIZE);
+        final OutputStream out = new BufferedOutputStream(
+                fileManager.newOutputStream(tempFile, false), BUFFER_SIZE);
+        try {
+            skipFully(in, start);
+            FileRecordFormat.writeHeader(out);
+            final Map<String, Integer> ids = new HashMap<String, Integer>();
+            final FileRecordParser parser = new FileRecordParser();
+            final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            do {
+                b = in.read();
+                if (b != -1 && b != NEW_LINE) {
+                    line.write(b);
+                    continue;
                 }
-            } finally {
-                if (writer != null) {
-                    writer.close();
+                final String record = decodeLine(line);
+                line.reset();
+                if (record.isEmpty()) {
+                    continue;
                 }
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (final IOException e) {
-                        LOGGER.error("failed to close reader", e);
+                if (isRecordLine(record, parser)) {
+                    Integer id = ids.get(parser.streamName);
+                    if (id == null) {
+                        id = ids.size();
+                        ids.put(parser.streamName, id);
+                        FileRecordFormat.writeFrame(out, FileRecordFormat.TYPE_STREAM, id,
+                                parser.streamName.getBytes(StringUtils.UTF8));
                     }
+                    FileRecordFormat.writeFrame(out, FileRecordFormat.TYPE_RECORD, id,
+                            parser.bytes);
+                } else {
+                    FileRecordFormat.writeFrame(out, FileRecordFormat.TYPE_LINE, -1,
+                            record.getBytes(StringUtils.UTF8));
                 }
+            } while (b != -1);
+        } finally {
+            in.close();
+            out.close();
+        }
+        if (index == firstSegment && checkpointOffset > 0) {
+            writeCheckpoint(index, 0);
+            checkpointOffset = 0;
+        }
+        if (!tempFile.renameTo(segment)) {
+            fileManager.deleteFile(segment);
+            if (!tempFile.renameTo(segment)) {
+                throw new IOException("Failed to convert the records of " + segment.getName());
+            }
+        }
+    }
 
-                if (!recordFile.delete() || !tempRecordsFile.renameTo(recordFile)) {
-                    throw new IOException(
-                            "Failed to delete read records and persist unread records");
+    /*
+     * Returns whether the line is a record saved by a previous version, which
+     * is only the case if the record converts back to the very same line.
+     */
+    private static boolean isRecordLine(String line, FileRecordParser parser) {
+        try {
+            parser.parse(line);
+        } catch (final RuntimeException e) {
+            return false;
+        }
+        return FileRecordParser.asString(parser.streamName, parser.bytes).equals(line);
+    }
+
+    private boolean isFrameSegment(File segment) throws IOException {
+        final InputStream in = fileManager.newInputStream(segment);
+        try {
+            return new FileRecordFormat.FrameReader(in).readHeader();
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * Reads the stream names defined in the last segment and truncates a
+     * frame torn by a crash, so that the next record is appended right after
+     * the last complete one.
+     */
+    private void recoverLastSegment() throws IOException {
+        streamIds.clear();
+        final File segment = segmentFile(lastSegment);
+        final long length = segment.length();
+        if (length == 0) {
+            lastSegmentLength = 0;
+            return;
+        }
+        long valid = 0;
+        final FileRecordFormat.FrameReader frames = new FileRecordFormat.FrameReader(
+                new BufferedInputStream(fileManager.newInputStream(segment), BUFFER_SIZE));
+        try {
+            if (frames.readHeader()) {
+                valid = FileRecordFormat.HEADER_LENGTH;
+                while (frames.next() == FileRecordFormat.FRAME) {
+                    valid += frames.getFrameLength();
+                    if (frames.getType() == FileRecordFormat.TYPE_STREAM) {
+                        streamIds.put(frames.getText(), frames.getId());
+                    }
                 }
             }
+        } finally {
+            frames.close();
+        }
+        if (valid < length) {
+            LOGGER.warn("Dropping " + (length - valid) + " bytes of a torn record from "
+                    + segment.getName());
+            final RandomAccessFile file = new RandomAccessFile(segment, "rw");
+            try {
+                file.setLength(valid);
+            } finally {
+                file.close();
+            }
+            if (valid == 0) {
+                streamIds.clear();
+            }
+        }
+        lastSegmentLength = valid;
+    }
 
-            if (tempFile.exists()) {
-                if (!tempFile.delete()) {
-                    LOGGER.error("Failed to delete temp file");
+    /*
+     * Persists the checkpoint at the given position and deletes the segments
+     * before it. A checkpoint at the end of a segment moves to the start of
+     * the next one, so that the segment can be deleted too.
+     */
+    private void checkpoint(long segment, long offset) throws IOException {
+        flushPending();
+        long s = segment;
+        long o = offset;
+        if (o > 0 && o >= segmentFile(s).length()) {
+            if (s == lastSegment) {
+                startNewSegment();
+            }
+            s++;
+            o = 0;
+        }
+        writeCheckpoint(s, o);
+        for (long i = firstSegment; i < s; i++) {
+            totalLength -= segmentFile(i).length();
+            deleteSegment(i);
+        }
+        firstSegment = s;
+        checkpointOffset = o;
+    }
+
+    private File deleteAllRecords() throws IOException {
+        discardPending();
+        closeWriter();
+        for (long i = firstSegment; i <= lastSegment; i++) {
+            deleteSegment(i);
+        }
+        startNewSegment();
+        totalLength = 0;
+        writeCheckpoint(lastSegment, 0);
+        firstSegment = lastSegment;
+        checkpointOffset = 0;
+        return segmentFile(lastSegment);
+    }
+
+    private long[] readCheckpoint() {
+        final File file = new File(recordsDirectory, recordFileName + CHECKPOINT_SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(fileManager.newInputStream(file),
+                    StringUtils.UTF8));
+            final String line = reader.readLine();
+            final String[] parts = line == null ? new String[0] : line.trim().split(" ");
+            if (parts.length != 2) {
+                LOGGER.warn("Ignoring invalid checkpoint " + line);
+                return null;
+            }
+            return new long[] {
+                    Long.parseLong(parts[0]), Long.parseLong(parts[1])
+            };
+        } catch (final NumberFormatException e) {
+            LOGGER.warn("Ignoring invalid checkpoint", e);
+            return null;
+        } catch (final IOException e) {
+            LOGGER.warn("Failed to read checkpoint", e);
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final IOException e) {
+                    LOGGER.error("failed to close reader", e);
                 }
             }
         }
-        return recordFile;
+    }
+
+    /* Replaces the checkpoint file by renaming a new one over it. */
+    private void writeCheckpoint(long segment, long offset) throws IOException {
+        ensureRecordsDirectory();
+        final File file = new File(recordsDirectory, recordFileName + CHECKPOINT_SUFFIX);
+        final File tempFile = new File(recordsDirectory,
+                recordFileName + CHECKPOINT_SUFFIX + TEMP_SUFFIX);
+        final OutputStream out = fileManager.newOutputStream(tempFile, false);
+        try {
+            out.write((segment + " " + offset + "\n").getBytes(StringUtils.UTF8));
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            // renaming over an existing file fails on some file systems
+            fileManager.deleteFile(file);
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to persist the read checkpoint");
+            }
+        }
+    }
+
+    /* Returns the line without its trailing carriage return, if any. */
+    private static String decodeLine(ByteArrayOutputStream bytes) {
+        final byte[] b = bytes.toByteArray();
+        int length = b.length;
+        if (length > 0 && b[length - 1] == CARRIAGE_RETURN) {
+            length--;
+        }
+        return new String(b, 0, length, StringUtils.UTF8);
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            final long n = in.skip(count - skipped);
+            if (n <= 0) {
+                break;
+            }
+            skipped += n;
+        }
+    }
+
+    private void deleteSegment(long index) {
+        final File segment = segmentFile(index);
+        if (segment.exists() && !segment.delete()) {
+            LOGGER.error("Failed to delete segment " + segment.getName());
+        }
+    }
+
+    private File segmentFile(long index) {
+        return new File(recordsDirectory, recordFileName + "."
+                + String.format(Locale.US, SEGMENT_INDEX_FORMAT, index));
+    }
+
+    /*
+     * Returns the index of the segment with the given file name, or -1 if the
+     * file isn't a segment of the record file.
+     */
+    private static long segmentIndex(String recordFileName, String fileName) {
+        if (!fileName.startsWith(recordFileName + ".")) {
+            return -1;
+        }
+        final String index = fileName.substring(recordFileName.length() + 1);
+        if (index.isEmpty()) {
+            return -1;
+        }
+        for (int i = 0; i < index.length(); i++) {
+            if (!Character.isDigit(index.charAt(i))) {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(index);
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void ensureRecordsDirectory() throws IOException {
+        if (recordsDirectory != null && recordsDirectory.isDirectory()) {
+            return;
+        }
+        recordsDirectory = fileManager.createDirectory(Constants.RECORDS_DIRECTORY);
+        if (recordsDirectory == null) {
+            throw new IOException("Failed to create the records directory");
+        }
+    }
+
+    /**
+     * The position of a record in the log, the segment and the offset in it.
+     */
+    static final class RecordPosition {
+        private final long segment;
+        private final long offset;
+
+        private RecordPosition(long segment, long offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RecordPosition)) {
+                return false;
+            }
+            final RecordPosition other = (RecordPosition) o;
+            return segment == other.segment && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (segment * 31 + offset);
+        }
     }
 
     public RecordIterator iterator() {
@@ -200,74 +805,187 @@ class FileRecordStore {
 
     }
 
+    /**
+     * Iterates over the records from the checkpoint on. Records appended
+     * while iterating are read as well. A record saved for a stream is
+     * returned as a string by {@link #next()}, in the format of
+     * {@link FileRecordParser#asString(String, byte[])}; use
+     * {@link #peekRecord(FileRecordParser)} and {@link #skip()} to read it
+     * without encoding it.
+     */
     public class RecordIterator implements java.util.Iterator<String> {
-        int linesRead = 0;
-        String nextBuffer = null;
-        BufferedReader reader = null;
-        boolean isEndOfFile = false;
+        /** The position after the last record returned by next(). **/
+        private long readSegment = -1;
+        private long readOffset;
+        /** The position of the stream. **/
+        private long streamSegment;
+        private long streamOffset;
+        private FileRecordFormat.FrameReader frames;
+        /** The stream names defined in the segment being read. **/
+        private final Map<Integer, String> streamNames = new HashMap<Integer, String>();
 
-        private boolean tryOpenReader() throws FileNotFoundException {
-            if (reader != null) {
+        /** Whether the next record has been read. **/
+        private boolean buffered;
+        /** The stream name of the next record, or null if it's a string. **/
+        private String nextStreamName;
+        private byte[] nextData;
+        private String nextString;
+
+        /*
+         * Reads the next record into the buffer unless a record is buffered
+         * already. Returns false at the end of the log.
+         */
+        private boolean tryBuffer() throws IOException {
+            if (buffered) {
                 return true;
             }
+            flushPending();
+            initReadPosition();
+            if (frames == null) {
+                streamSegment = readSegment;
+                streamOffset = readOffset;
+            }
+            while (streamSegment <= lastSegment) {
+                if (frames == null && !openSegment()) {
+                    if (streamSegment == lastSegment) {
+                        return false;
+                    }
+                    moveToNextSegment();
+                    continue;
+                }
+                final int result = frames.next();
+                if (result == FileRecordFormat.FRAME) {
+                    streamOffset += frames.getFrameLength();
+                    if (bufferFrame()) {
+                        return true;
+                    }
+                } else if (result == FileRecordFormat.END) {
+                    if (streamSegment == lastSegment) {
+                        // a frame is appended as a whole under the lock, so
+                        // the next one is read once it has been written
+                        return false;
+                    }
+                    moveToNextSegment();
+                } else {
+                    LOGGER.warn("Skipping the corrupt records at offset " + streamOffset
+                            + " of " + segmentFile(streamSegment).getName());
+                    if (streamSegment == lastSegment) {
+                        // append past the corrupt frame in a segment of its own
+                        flushPending();
+                        startNewSegment();
+                    }
+                    moveToNextSegment();
+                }
+            }
+            return false;
+        }
+
+        private void initReadPosition() throws IOException {
+            if (readSegment < 0) {
+                readSegment = firstSegment;
+                readOffset = checkpointOffset;
+            }
+            if (readSegment < firstSegment) {
+                // the records were removed through another iterator
+                resetReader();
+                readSegment = firstSegment;
+                readOffset = checkpointOffset;
+            }
+        }
 
-            if (!isEndOfFile) {
-                InputStreamReader streamReader = null;
-                streamReader = new InputStreamReader(fileManager.newInputStream(recordFile),
-                        StringUtils.UTF8);
+        /*
+         * Opens the segment of the stream position, reading the stream names
+         * defined before the position. Returns false if the segment is
+         * missing or empty.
+         */
+        private boolean openSegment() throws IOException {
+            final File segment = segmentFile(streamSegment);
+            if (!segment.isFile() || segment.length() == 0) {
+                return false;
+            }
+            frames = new FileRecordFormat.FrameReader(new BufferedInputStream(
+                    fileManager.newInputStream(segment), BUFFER_SIZE));
+            streamNames.clear();
+            if (!frames.readHeader()) {
+                LOGGER.warn("Skipping segment of unknown format " + segment.getName());
+                tryCloseReader();
+                return false;
+            }
+            final long position = Math.max(streamOffset, FileRecordFormat.HEADER_LENGTH);
+            streamOffset = FileRecordFormat.HEADER_LENGTH;
+            while (streamOffset < position && frames.next() == FileRecordFormat.FRAME) {
+                streamOffset += frames.getFrameLength();
+                if (frames.getType() == FileRecordFormat.TYPE_STREAM) {
+                    streamNames.put(frames.getId(), frames.getText());
+                }
+            }
+            return true;
+        }
 
-                if (streamReader != null) {
-                    reader = new BufferedReader(streamReader);
+        /*
+         * Buffers the record of the frame read. Returns false if the frame
+         * isn't a record.
+         */
+        private boolean bufferFrame() {
+            switch (frames.getType()) {
+                case FileRecordFormat.TYPE_STREAM:
+                    streamNames.put(frames.getId(), frames.getText());
+                    return false;
+                case FileRecordFormat.TYPE_RECORD:
+                    final String streamName = streamNames.get(frames.getId());
+                    if (streamName == null) {
+                        LOGGER.warn("Skipping record of undefined stream " + frames.getId());
+                        return false;
+                    }
+                    nextStreamName = streamName;
+                    nextData = frames.getData();
+                    nextString = null;
+                    buffered = true;
                     return true;
-                }
+                case FileRecordFormat.TYPE_LINE:
+                    nextStreamName = null;
+                    nextData = null;
+                    nextString = frames.getText();
+                    buffered = true;
+                    return true;
+                default:
+                    // a frame of a later version
+                    return false;
             }
-            return false;
+        }
+
+        private void moveToNextSegment() throws IOException {
+            tryCloseReader();
+            streamSegment++;
+            streamOffset = 0;
         }
 
         private void tryCloseReader() throws IOException {
-            if (reader != null) {
-                reader.close();
-                reader = null;
+            if (frames != null) {
+                frames.close();
+                frames = null;
             }
         }
 
+        private String bufferedString() {
+            if (nextString == null) {
+                nextString = FileRecordParser.asString(nextStreamName, nextData);
+            }
+            return nextString;
+        }
+
+        private void clearBuffer() {
+            buffered = false;
+            nextStreamName = null;
+            nextData = null;
+            nextString = null;
+        }
+
         @Override
         public boolean hasNext() {
-            boolean hasNext = false;
             accessLock.lock();
             try {
-                // If there is something already buffered then there is a
-                // next
-                if (nextBuffer != null) {
-                    hasNext = true;
-                } else {
-                    if (!tryOpenReader()) {
-                        return hasNext;
-                    }
-                    // Nothing was previously buffered so try to read one
-                    // more line
-                    boolean found = false;
-                    while (!found) {
-                        try {
-                            nextBuffer = reader.readLine();
-                            found = true;
-                        } catch (final IOException e) {
-                            nextBuffer = null;
-                            found = true;
-                        }
-                    }
-                    if (nextBuffer != null) {
-                        // There was at least one more line so there is a
-                        // next
-                        hasNext = true;
-                    } else {
-                        // The next line was null so it should be the end of
-                        // the file. Try to close the reader
-                        isEndOfFile = true;
-                        tryCloseReader();
-                    }
-                }
-                return hasNext;
+                return tryBuffer();
             } catch (final FileNotFoundException fnfe) {
                 throw new AmazonClientException("Cannot find records file", fnfe);
             } catch (final IOException ioe) {
@@ -279,39 +997,14 @@ class FileRecordStore {
 
         @Override
         public String next() {
-            String next = null;
             accessLock.lock();
             try {
-                if (nextBuffer != null) {
-                    next = nextBuffer;
-                    linesRead++;
-                    nextBuffer = null;
-                } else {
-                    if (!tryOpenReader()) {
-                        return next;
-                    }
-                    boolean found = false;
-                    while (!found) {
-                        try {
-                            next = reader.readLine();
-                            found = true;
-                        } catch (final IOException e) {
-                            next = null;
-                            found = true;
-                        }
-                    }
-                    if (next != null) {
-                        linesRead++;
-                    } else {
-                        isEndOfFile = true;
-                        tryCloseReader();
-                    }
+                if (!hasNext()) {
+                    return null;
                 }
+                final String next = bufferedString();
+                skip();
                 return next;
-            } catch (final FileNotFoundException e) {
-                throw new AmazonClientException("Cannot find records file", e);
-            } catch (final IOException ioe) {
-                throw new AmazonClientException("IO Error", ioe);
             } finally {
                 accessLock.unlock();
             }
@@ -320,8 +1013,53 @@ class FileRecordStore {
         public String peek() {
             accessLock.lock();
             try {
-                hasNext();
-                return nextBuffer;
+                return hasNext() ? bufferedString() : null;
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        /**
+         * Reads the next record into the parser without moving past it. A
+         * record saved as a string is parsed.
+         *
+         * @param record the parser to hold the stream name and data
+         * @return false if there is no next record or it's an empty string
+         * @throws IllegalArgumentException if the record is a string that
+         *             can't be parsed
+         */
+        boolean peekRecord(FileRecordParser record) {
+            accessLock.lock();
+            try {
+                if (!hasNext()) {
+                    return false;
+                }
+                if (nextStreamName == null) {
+                    if (nextString.isEmpty()) {
+                        return false;
+                    }
+                    record.parse(nextString);
+                } else {
+                    record.streamName = nextStreamName;
+                    record.bytes = nextData;
+                }
+                return true;
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        /**
+         * Moves past the next record without returning it.
+         */
+        void skip() {
+            accessLock.lock();
+            try {
+                if (hasNext()) {
+                    clearBuffer();
+                    readSegment = streamSegment;
+                    readOffset = streamOffset;
+                }
             } finally {
                 accessLock.unlock();
             }
@@ -333,16 +1071,60 @@ class FileRecordStore {
                     "The remove() operation is not supported for this iterator");
         }
 
+        /**
+         * Removes the records returned by next() so far.
+         *
+         * @throws IOException if the checkpoint can't be persisted
+         */
         public void removeReadRecords() throws IOException {
             accessLock.lock();
             try {
-                deleteReadRecords(linesRead);
+                if (readSegment >= firstSegment) {
+                    checkpoint(readSegment, readOffset);
+                }
                 resetReader();
             } finally {
                 accessLock.unlock();
             }
         }
 
+        /**
+         * Returns the position after the last record returned by next() or
+         * skipped.
+         *
+         * @return the read position
+         */
+        RecordPosition getReadPosition() {
+            accessLock.lock();
+            try {
+                initReadPosition();
+                return new RecordPosition(readSegment, readOffset);
+            } catch (final IOException ioe) {
+                throw new AmazonClientException("IO Error", ioe);
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
+        /**
+         * Removes the records before a position returned by
+         * {@link #getReadPosition()}. Unlike {@link #removeReadRecords()},
+         * the iterator keeps its position.
+         *
+         * @param position a read position of this iterator
+         * @throws IOException if the checkpoint can't be persisted
+         */
+        void removeRecordsBefore(RecordPosition position) throws IOException {
+            accessLock.lock();
+            try {
+                if (position.segment >= firstSegment) {
+                    checkpoint(position.segment, position.offset);
+                }
+            } finally {
+                accessLock.unlock();
+            }
+        }
+
         public void removeAllRecords() throws IOException {
             accessLock.lock();
             try {
@@ -355,13 +1137,18 @@ class FileRecordStore {
 
         private void resetReader() throws IOException {
             tryCloseReader();
-            linesRead = 0;
-            nextBuffer = null;
-            isEndOfFile = false;
+            readSegment = -1;
+            readOffset = 0;
+            clearBuffer();
         }
 
         public void close() throws IOException {
-            tryCloseReader();
+            accessLock.lock();
+            try {
+                tryCloseReader();
+            } finally {
+                accessLock.unlock();
+            }
         }
     }
 }
@@ -111,6 +111,14 @@ public class KinesisFirehoseRecorder extends AbstractKinesisRecorder {
      * Valid stream name pattern.
      */
     private static final Pattern STREAM_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_.-]{1,64}");
+    /**
+     * Maximum number of records in a PutRecordBatch request.
+     */
+    private static final int MAX_RECORDS_PER_REQUEST = 500;
+    /**
+     * Maximum size of a PutRecordBatch request.
+     */
+    private static final int MAX_REQUEST_SIZE_BYTES = 4 * 1024 * 1024;
 
     private FirehoseRecordSender sender;
 
@@ -160,8 +168,7 @@ public class KinesisFirehoseRecorder extends AbstractKinesisRecorder {
      */
     public KinesisFirehoseRecorder(File directory, Regions region,
             AWSCredentialsProvider credentialsProvider, KinesisRecorderConfig config) {
-        super(new FileRecordStore(directory, RECORD_FILE_NAME,
-                config.getMaxStorageSize()), config);
+        super(new FileRecordStore(directory, RECORD_FILE_NAME, config), config);
 
         AmazonKinesisFirehose client = new AmazonKinesisFirehoseClient(credentialsProvider,
                 config.getClientConfiguration());
@@ -188,6 +195,16 @@ public class KinesisFirehoseRecorder extends AbstractKinesisRecorder {
         return sender;
     }
 
+    @Override
+    int getMaxRecordsPerBatch() {
+        return MAX_RECORDS_PER_REQUEST;
+    }
+
+    @Override
+    int getMaxBatchSize() {
+        return MAX_REQUEST_SIZE_BYTES;
+    }
+
     @Override
     public void saveRecord(byte[] data, String streamName) {
         if (streamName == null || !STREAM_NAME_PATTERN.matcher(streamName).matches()) {
@@ -21,6 +21,7 @@ import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.kinesis.AmazonKinesis;
 import com.amazonaws.services.kinesis.AmazonKinesisClient;
+import com.amazonaws.util.StringUtils;
 import com.amazonaws.util.VersionInfoUtils;
 
 import com.amazonaws.logging.Log;
@@ -30,6 +31,7 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.UUID;
 import java.util.regex.Pattern;
 
 /**
@@ -97,6 +99,26 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
      * Valid stream name pattern.
      */
     private static final Pattern STREAM_NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_.-]{1,128}");
+    /**
+     * Maximum number of saved records per batch when they are aggregated.
+     * They take a fraction of the Kinesis records of a request, and the size
+     * limit of a batch still applies.
+     */
+    private static final int MAX_AGGREGATED_RECORDS_PER_BATCH = 8192;
+    /**
+     * Maximum number of records in a PutRecords request.
+     */
+    private static final int MAX_RECORDS_PER_REQUEST = 500;
+    /**
+     * Maximum size of a PutRecords request, the data and partition keys of its
+     * records.
+     */
+    private static final int MAX_REQUEST_SIZE_BYTES = 5 * 1024 * 1024;
+    /**
+     * Maximum number of bytes a saved record adds to an aggregated record
+     * besides its data.
+     */
+    private static final int MAX_AGGREGATION_RECORD_OVERHEAD = 10;
 
     private final KinesisStreamRecordSender sender;
 
@@ -143,8 +165,7 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
      */
     public KinesisRecorder(File directory, Regions region,
             AWSCredentialsProvider credentialsProvider, KinesisRecorderConfig config) {
-        super(new FileRecordStore(directory, RECORD_FILE_NAME,
-                config.getMaxStorageSize()), config);
+        super(new FileRecordStore(directory, RECORD_FILE_NAME, config), config);
 
         if (directory == null || credentialsProvider == null || region == null || config == null) {
             throw new IllegalArgumentException(
@@ -154,7 +175,8 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
         final AmazonKinesis client = new AmazonKinesisClient(credentialsProvider,
                 config.getClientConfiguration());
         client.setRegion(Region.getRegion(region));
-        sender = new KinesisStreamRecordSender(client, USER_AGENT, config.getPartitionKey());
+        sender = new KinesisStreamRecordSender(client, USER_AGENT, config.getPartitionKey(),
+                config.isAggregationEnabled() ? config.getMaxAggregatedRecordSize() : 0);
 
         checkUpgrade(directory);
     }
@@ -174,10 +196,8 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
     }
 
     private void checkUpgrade(final File directory) {
-        final File recordsDir = new File(directory, Constants.RECORDS_DIRECTORY);
-        final File oldRecordsFile = new File(recordsDir, Constants.RECORDS_FILE_NAME);
         // if the records file exists, run upgrade in a background thread
-        if (oldRecordsFile.isFile()) {
+        if (FileRecordStore.exists(directory, Constants.RECORDS_FILE_NAME)) {
             new Thread(new Runnable() {
                 @Override
                 public void run() {
@@ -195,9 +215,7 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
      */
     void upgrade(File directory) {
         synchronized (KinesisRecorder.this) {
-            final File recordsDir = new File(directory, Constants.RECORDS_DIRECTORY);
-            final File oldRecordsFile = new File(recordsDir, Constants.RECORDS_FILE_NAME);
-            if (!oldRecordsFile.isFile()) {
+            if (!FileRecordStore.exists(directory, Constants.RECORDS_FILE_NAME)) {
                 return;
             }
 
@@ -216,11 +234,11 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
                 }
             }
             try {
+                iterator.removeAllRecords();
                 iterator.close();
             } catch (final IOException e) {
                 LOGGER.debug("caught exception", e);
             }
-            oldRecordsFile.delete();
         }
     }
 
@@ -229,6 +247,56 @@ public class KinesisRecorder extends AbstractKinesisRecorder {
         return sender;
     }
 
+    @Override
+    int getMaxRecordsPerBatch() {
+        return getAggregatedContentSize() > 0 ? MAX_AGGREGATED_RECORDS_PER_BATCH
+                : MAX_RECORDS_PER_REQUEST;
+    }
+
+    @Override
+    int getMaxBatchSize() {
+        final int contentSize = getAggregatedContentSize();
+        if (contentSize <= 0) {
+            return MAX_REQUEST_SIZE_BYTES;
+        }
+        // The records are packed greedily, so two aggregated records in a row
+        // hold more than the content size: a batch of 249 times the content
+        // size takes at most 499 Kinesis records, each adding a partition key
+        // and the base of an aggregated record.
+        final String partitionKey = getPartitionKey();
+        final int entryOverhead = RecordAggregator.getBaseSize(partitionKey)
+                + partitionKey.getBytes(StringUtils.UTF8).length;
+        return Math.min(MAX_REQUEST_SIZE_BYTES - MAX_RECORDS_PER_REQUEST * entryOverhead,
+                (MAX_RECORDS_PER_REQUEST - 1) / 2 * contentSize);
+    }
+
+    @Override
+    int getBatchRecordOverhead() {
+        return getAggregatedContentSize() > 0 ? MAX_AGGREGATION_RECORD_OVERHEAD
+                : getPartitionKey().getBytes(StringUtils.UTF8).length;
+    }
+
+    /*
+     * Returns the bytes of an aggregated record left for the saved records,
+     * or 0 if they are sent on their own.
+     */
+    private int getAggregatedContentSize() {
+        if (!sender.isAggregating()) {
+            return 0;
+        }
+        return Math.max(0, sender.getMaxAggregatedRecordSize()
+                - RecordAggregator.getBaseSize(getPartitionKey()));
+    }
+
+    /*
+     * Returns the partition key of the records, or one as long as the random
+     * ones the sender generates.
+     */
+    private String getPartitionKey() {
+        final String partitionKey = config.getPartitionKey();
+        return StringUtils.isBlank(partitionKey) ? UUID.randomUUID().toString() : partitionKey;
+    }
+
     @Override
     public void saveRecord(byte[] data, String streamName) {
         if (streamName == null || !STREAM_NAME_PATTERN.matcher(streamName).matches()) {
@@ -24,10 +24,24 @@ import com.amazonaws.ClientConfiguration;
 public class KinesisRecorderConfig {
 
     private static final long DEFAUT_MAX_STORAGE_SIZE = 1024 * 1024 * 5L;
+    /** The default maximum aggregated record size, the one of the KPL. */
+    private static final int DEFAULT_MAX_AGGREGATED_RECORD_SIZE = 50 * 1024;
+    /**
+     * The limit of a Kinesis record, 1 MiB for the data and the partition
+     * key, less the longest partition key.
+     */
+    private static final int MAX_AGGREGATED_RECORD_SIZE = 1024 * 1024 - 256;
+    private static final int DEFAULT_MAX_CONCURRENT_BATCHES = 4;
     private long maxStorageSize = DEFAUT_MAX_STORAGE_SIZE;
     private final ClientConfiguration clientConfiguration;
     private String partitionKey;
     private DeadLetterListener mDeadLetterListener;
+    private int flushRecordCount = 1;
+    private long flushIntervalMillis;
+    private boolean syncOnFlush;
+    private boolean aggregation;
+    private int maxAggregatedRecordSize = DEFAULT_MAX_AGGREGATED_RECORD_SIZE;
+    private int maxConcurrentBatches = DEFAULT_MAX_CONCURRENT_BATCHES;
 
     /**
      * Construct an instance of KinesisRecorderConfig which has default values
@@ -61,6 +75,12 @@ public class KinesisRecorderConfig {
         this.maxStorageSize = other.getMaxStorageSize();
         this.clientConfiguration = new ClientConfiguration(other.getClientConfiguration());
         this.partitionKey = other.partitionKey;
+        this.flushRecordCount = other.getFlushRecordCount();
+        this.flushIntervalMillis = other.getFlushIntervalMillis();
+        this.syncOnFlush = other.isSyncOnFlush();
+        this.aggregation = other.isAggregationEnabled();
+        this.maxAggregatedRecordSize = other.getMaxAggregatedRecordSize();
+        this.maxConcurrentBatches = other.getMaxConcurrentBatches();
     }
 
     /**
@@ -94,6 +114,147 @@ public class KinesisRecorderConfig {
         return this.maxStorageSize;
     }
 
+    /**
+     * Sets the number of saved records that are buffered in memory and
+     * written to disk together. The default of 1 writes every record as it
+     * is saved. Buffered records are lost if the process dies before they
+     * are written; see {@link #withFlushIntervalMillis(long)} to bound how
+     * long that can be.
+     *
+     * @param flushRecordCount the number of records written together.
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withFlushRecordCount(int flushRecordCount) {
+        if (flushRecordCount < 1) {
+            throw new IllegalArgumentException("flushRecordCount must be at least 1");
+        }
+        this.flushRecordCount = flushRecordCount;
+        return this;
+    }
+
+    /**
+     * @return The number of saved records that are written to disk together.
+     */
+    public int getFlushRecordCount() {
+        return flushRecordCount;
+    }
+
+    /**
+     * Sets the longest time in milliseconds a saved record stays buffered in
+     * memory before it is written to disk, even if fewer records than the
+     * flush record count were saved. The default of 0 sets no time limit.
+     *
+     * @param flushIntervalMillis the time in milliseconds, or 0.
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withFlushIntervalMillis(long flushIntervalMillis) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("flushIntervalMillis can't be negative");
+        }
+        this.flushIntervalMillis = flushIntervalMillis;
+        return this;
+    }
+
+    /**
+     * @return The longest time in milliseconds a saved record stays buffered
+     *         in memory, or 0 for no limit.
+     */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * Sets whether every write of saved records is synced to the storage
+     * device, so that the records survive a power loss. Disabled by default.
+     *
+     * @param syncOnFlush whether to sync every write.
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withSyncOnFlush(boolean syncOnFlush) {
+        this.syncOnFlush = syncOnFlush;
+        return this;
+    }
+
+    /**
+     * @return Whether every write of saved records is synced to the storage
+     *         device.
+     */
+    public boolean isSyncOnFlush() {
+        return syncOnFlush;
+    }
+
+    /**
+     * Sets whether the {@link KinesisRecorder} packs saved records into
+     * aggregated records of the Kinesis Producer Library (KPL) format before
+     * sending them, so that many small records take a single Kinesis record.
+     * Consumers must de-aggregate the records, which the Kinesis Client
+     * Library does; see {@link RecordAggregator}. Disabled by default. It has
+     * no effect on the {@link KinesisFirehoseRecorder}.
+     *
+     * @param aggregation whether to aggregate records.
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withAggregation(boolean aggregation) {
+        this.aggregation = aggregation;
+        return this;
+    }
+
+    /**
+     * @return Whether saved records are packed into aggregated records.
+     */
+    public boolean isAggregationEnabled() {
+        return aggregation;
+    }
+
+    /**
+     * Sets the maximum size in bytes of an aggregated record. The default is
+     * 50 KiB, the default of the KPL; larger aggregated records spread over
+     * fewer shards. A record larger than this is sent on its own.
+     *
+     * @param maxAggregatedRecordSize the maximum size, up to 1 MiB less 256
+     *            bytes for the partition key.
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withMaxAggregatedRecordSize(int maxAggregatedRecordSize) {
+        if (maxAggregatedRecordSize < 1
+                || maxAggregatedRecordSize > MAX_AGGREGATED_RECORD_SIZE) {
+            throw new IllegalArgumentException("maxAggregatedRecordSize must be between 1 and "
+                    + MAX_AGGREGATED_RECORD_SIZE);
+        }
+        this.maxAggregatedRecordSize = maxAggregatedRecordSize;
+        return this;
+    }
+
+    /**
+     * @return The maximum size in bytes of an aggregated record.
+     */
+    public int getMaxAggregatedRecordSize() {
+        return maxAggregatedRecordSize;
+    }
+
+    /**
+     * Sets the maximum number of batches sent at once when submitting the
+     * saved records. The default is 4; the batches of a stream are always sent
+     * one after the other.
+     *
+     * @param maxConcurrentBatches the maximum number of batches, at least 1.
+     * @return This class for chaining
+     */
+    public KinesisRecorderConfig withMaxConcurrentBatches(int maxConcurrentBatches) {
+        if (maxConcurrentBatches < 1) {
+            throw new IllegalArgumentException("maxConcurrentBatches must be at least 1");
+        }
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        return this;
+    }
+
+    /**
+     * @return The maximum number of batches sent at once.
+     */
+    public int getMaxConcurrentBatches() {
+        return maxConcurrentBatches;
+    }
+
     /**
      * Returns the {@link DeadLetterListener} that will respond to records being dropped.
      * @return the {@link DeadLetterListener} that will respond to records being dropped.
@@ -31,13 +31,16 @@ import java.util.List;
 import java.util.UUID;
 
 /**
- * A implementation of {@link RecordSender} for Amazon Kinesis.
+ * A implementation of {@link RecordSender} for Amazon Kinesis. With
+ * aggregation, consecutive records are packed into Kinesis records of up to
+ * the maximum aggregated record size with {@link RecordAggregator}.
  */
 class KinesisStreamRecordSender implements RecordSender {
 
     private final AmazonKinesis client;
     private final String userAgent;
     private final String partitionKey;
+    private final int maxAggregatedRecordSize;
 
     /**
      * Constructs a {@link KinesisStreamRecordSender}.
@@ -54,13 +57,45 @@ class KinesisStreamRecordSender implements RecordSender {
      *
      * @param client an {@link AmazonKinesis} client
      * @param userAgent user agent string to be set in each request
-     * @param config the Kinesis recorder config.
+     * @param partitionKey the partition key of the records, or null for a
+     *            random one per record
      */
     public KinesisStreamRecordSender(AmazonKinesis client, String userAgent,
             String partitionKey) {
+        this(client, userAgent, partitionKey, 0);
+    }
+
+    /**
+     * Constructs a {@link KinesisStreamRecordSender}.
+     *
+     * @param client an {@link AmazonKinesis} client
+     * @param userAgent user agent string to be set in each request
+     * @param partitionKey the partition key of the records, or null for a
+     *            random one per record
+     * @param maxAggregatedRecordSize the maximum size of an aggregated record,
+     *            or 0 to send every record on its own
+     */
+    public KinesisStreamRecordSender(AmazonKinesis client, String userAgent,
+            String partitionKey, int maxAggregatedRecordSize) {
         this.client = client;
         this.userAgent = userAgent;
         this.partitionKey = partitionKey;
+        this.maxAggregatedRecordSize = maxAggregatedRecordSize;
+    }
+
+    /**
+     * @return whether records are packed into aggregated records.
+     */
+    boolean isAggregating() {
+        return maxAggregatedRecordSize > 0;
+    }
+
+    /**
+     * @return the maximum size of an aggregated record, or 0 if records are
+     *         sent on their own.
+     */
+    int getMaxAggregatedRecordSize() {
+        return maxAggregatedRecordSize;
     }
 
     @Override
@@ -72,13 +107,21 @@ class KinesisStreamRecordSender implements RecordSender {
         final PutRecordsRequest request = new PutRecordsRequest();
         request.setStreamName(streamName);
         final List<PutRecordsRequestEntry> records = new ArrayList<PutRecordsRequestEntry>(data.size());
-        for (final byte[] d : data) {
+        // the records packed into each Kinesis record
+        final List<List<byte[]>> packed = new ArrayList<List<byte[]>>(data.size());
+        int start = 0;
+        while (start < data.size()) {
             final String partKey = StringUtils.isBlank(this.partitionKey)
                     ? UUID.randomUUID().toString() : this.partitionKey;
+            final int end = isAggregating() ? aggregationEnd(data, start, partKey) : start + 1;
+            final List<byte[]> group = data.subList(start, end);
             final PutRecordsRequestEntry r = new PutRecordsRequestEntry();
-            r.setData(ByteBuffer.wrap(d));
+            r.setData(ByteBuffer.wrap(group.size() == 1 ? group.get(0)
+                    : RecordAggregator.aggregate(partKey, group)));
             r.setPartitionKey(partKey);
             records.add(r);
+            packed.add(group);
+            start = end;
         }
         request.setRecords(records);
         request.getRequestClientOptions().appendUserAgent(userAgent);
@@ -90,13 +133,32 @@ class KinesisStreamRecordSender implements RecordSender {
         for (int i = 0; i < size; i++) {
             if (result.getRecords().get(i).getErrorCode() != null) {
                 // always retry failed record
-                failures.add(data.get(i));
+                failures.addAll(packed.get(i));
             }
         }
 
         return failures;
     }
 
+    /*
+     * Returns the end of the records from start on that fit into an
+     * aggregated record. A record too large to be aggregated is sent on its
+     * own.
+     */
+    private int aggregationEnd(List<byte[]> data, int start, String partKey) {
+        int size = RecordAggregator.getBaseSize(partKey);
+        int end = start;
+        while (end < data.size()) {
+            final int recordSize = RecordAggregator.getRecordSize(data.get(end).length);
+            if (end > start && size + recordSize > maxAggregatedRecordSize) {
+                break;
+            }
+            size += recordSize;
+            end++;
+        }
+        return end;
+    }
+
     @Override
     public boolean isRecoverable(AmazonClientException ace) {
         if (ace instanceof AmazonServiceException) {
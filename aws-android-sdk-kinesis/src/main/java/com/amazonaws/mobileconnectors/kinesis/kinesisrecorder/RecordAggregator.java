@@ -0,0 +1,315 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Packs records into the aggregated record format of the Amazon Kinesis
+ * Producer Library (KPL), and unpacks them. An aggregated record is the magic
+ * bytes 0xF3 0x89 0x9A 0xC2, followed by an {@code AggregatedRecord} protobuf
+ * message and the MD5 of the message:
+ *
+ * <pre>
+ * message AggregatedRecord {
+ *     repeated string partition_key_table = 1;
+ *     repeated string explicit_hash_key_table = 2;
+ *     repeated Record records = 3;
+ * }
+ *
+ * message Record {
+ *     required uint64 partition_key_index = 1;
+ *     optional uint64 explicit_hash_key_index = 2;
+ *     required bytes data = 3;
+ *     repeated Tag tags = 4;
+ * }
+ * </pre>
+ *
+ * The Kinesis Client Library unpacks aggregated records for its consumers;
+ * {@link #deaggregate(byte[])} does the same for other consumers.
+ */
+public final class RecordAggregator {
+
+    private static final byte[] MAGIC = {
+            (byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2
+    };
+    private static final int MD5_LENGTH = 16;
+
+    private static final int PARTITION_KEY_TABLE_FIELD = 1;
+    private static final int EXPLICIT_HASH_KEY_TABLE_FIELD = 2;
+    private static final int RECORDS_FIELD = 3;
+    private static final int PARTITION_KEY_INDEX_FIELD = 1;
+    private static final int DATA_FIELD = 3;
+
+    private static final int WIRE_TYPE_VARINT = 0;
+    private static final int WIRE_TYPE_FIXED64 = 1;
+    private static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_TYPE_FIXED32 = 5;
+    private static final int WIRE_TYPE_BITS = 3;
+    private static final int WIRE_TYPE_MASK = 0x7;
+    private static final int FIXED64_LENGTH = 8;
+    private static final int FIXED32_LENGTH = 4;
+
+    private static final int VAR_INT_MASK = 0x7f;
+    private static final int VAR_INT_MORE = 0x80;
+    private static final int VAR_INT_SHIFT = 7;
+    private static final int MAX_VAR_INT_SHIFT = 63;
+
+    private RecordAggregator() {
+    }
+
+    /**
+     * Returns the size of an aggregated record with the given partition key
+     * and no records.
+     *
+     * @param partitionKey the partition key of the records
+     * @return the size in bytes
+     */
+    static int getBaseSize(String partitionKey) {
+        return MAGIC.length + lengthDelimitedSize(partitionKey.getBytes(StringUtils.UTF8).length)
+                + MD5_LENGTH;
+    }
+
+    /**
+     * Returns the number of bytes a record adds to an aggregated record.
+     *
+     * @param dataLength the length of the data of the record
+     * @return the size in bytes
+     */
+    static int getRecordSize(int dataLength) {
+        return lengthDelimitedSize(recordMessageSize(dataLength));
+    }
+
+    /**
+     * Packs records that share a partition key into an aggregated record.
+     *
+     * @param partitionKey the partition key of the records
+     * @param records the data of the records
+     * @return the aggregated record
+     */
+    public static byte[] aggregate(String partitionKey, List<byte[]> records) {
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        final byte[] key = partitionKey.getBytes(StringUtils.UTF8);
+        writeTag(message, PARTITION_KEY_TABLE_FIELD, WIRE_TYPE_LENGTH_DELIMITED);
+        writeVarInt(message, key.length);
+        message.write(key, 0, key.length);
+        for (final byte[] data : records) {
+            writeTag(message, RECORDS_FIELD, WIRE_TYPE_LENGTH_DELIMITED);
+            writeVarInt(message, recordMessageSize(data.length));
+            // every record refers to the only partition key
+            writeTag(message, PARTITION_KEY_INDEX_FIELD, WIRE_TYPE_VARINT);
+            writeVarInt(message, 0);
+            writeTag(message, DATA_FIELD, WIRE_TYPE_LENGTH_DELIMITED);
+            writeVarInt(message, data.length);
+            message.write(data, 0, data.length);
+        }
+        final byte[] body = message.toByteArray();
+        final byte[] md5 = Md5Utils.computeMD5Hash(body);
+        final byte[] aggregated = new byte[MAGIC.length + body.length + MD5_LENGTH];
+        System.arraycopy(MAGIC, 0, aggregated, 0, MAGIC.length);
+        System.arraycopy(body, 0, aggregated, MAGIC.length, body.length);
+        System.arraycopy(md5, 0, aggregated, MAGIC.length + body.length, MD5_LENGTH);
+        return aggregated;
+    }
+
+    /**
+     * Returns whether the data is an aggregated record, that is it starts
+     * with the magic bytes and ends with the MD5 of the message in between.
+     *
+     * @param data the data of a Kinesis record
+     * @return true if the record is an aggregated record
+     */
+    public static boolean isAggregated(byte[] data) {
+        if (data == null || data.length < MAGIC.length + MD5_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        final byte[] body = Arrays.copyOfRange(data, MAGIC.length, data.length - MD5_LENGTH);
+        final byte[] md5 = Arrays.copyOfRange(data, data.length - MD5_LENGTH, data.length);
+        return MessageDigest.isEqual(md5, Md5Utils.computeMD5Hash(body));
+    }
+
+    /**
+     * Unpacks the records of an aggregated record. Like the Kinesis Client
+     * Library, data that isn't a well-formed aggregated record is returned as
+     * a single record.
+     *
+     * @param data the data of a Kinesis record
+     * @return the data of the records packed in it
+     */
+    public static List<byte[]> deaggregate(byte[] data) {
+        if (!isAggregated(data)) {
+            return Collections.singletonList(data);
+        }
+        try {
+            return parse(data, MAGIC.length, data.length - MD5_LENGTH);
+        } catch (final IllegalArgumentException e) {
+            return Collections.singletonList(data);
+        }
+    }
+
+    private static List<byte[]> parse(byte[] b, int start, int end) {
+        final List<byte[]> records = new ArrayList<byte[]>();
+        final int[] pos = {
+                start
+        };
+        int partitionKeys = 0;
+        final List<Long> keyIndexes = new ArrayList<Long>();
+        while (pos[0] < end) {
+            final long tag = readVarInt(b, pos, end);
+            final int field = (int) (tag >>> WIRE_TYPE_BITS);
+            final int wireType = (int) (tag & WIRE_TYPE_MASK);
+            if (field == PARTITION_KEY_TABLE_FIELD && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                skipLengthDelimited(b, pos, end);
+                partitionKeys++;
+            } else if (field == RECORDS_FIELD && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                final int length = readLength(b, pos, end);
+                final int recordEnd = pos[0] + length;
+                byte[] recordData = null;
+                Long keyIndex = null;
+                while (pos[0] < recordEnd) {
+                    final long recordTag = readVarInt(b, pos, recordEnd);
+                    final int recordField = (int) (recordTag >>> WIRE_TYPE_BITS);
+                    final int recordWireType = (int) (recordTag & WIRE_TYPE_MASK);
+                    if (recordField == PARTITION_KEY_INDEX_FIELD
+                            && recordWireType == WIRE_TYPE_VARINT) {
+                        keyIndex = readVarInt(b, pos, recordEnd);
+                    } else if (recordField == DATA_FIELD
+                            && recordWireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                        final int dataLength = readLength(b, pos, recordEnd);
+                        recordData = Arrays.copyOfRange(b, pos[0], pos[0] + dataLength);
+                        pos[0] += dataLength;
+                    } else {
+                        skipField(b, pos, recordEnd, recordWireType);
+                    }
+                }
+                if (recordData == null || keyIndex == null) {
+                    throw new IllegalArgumentException("Record without data or partition key");
+                }
+                records.add(recordData);
+                keyIndexes.add(keyIndex);
+            } else if (field == EXPLICIT_HASH_KEY_TABLE_FIELD
+                    && wireType == WIRE_TYPE_LENGTH_DELIMITED) {
+                skipLengthDelimited(b, pos, end);
+            } else {
+                skipField(b, pos, end, wireType);
+            }
+        }
+        for (final Long keyIndex : keyIndexes) {
+            if (keyIndex < 0 || keyIndex >= partitionKeys) {
+                throw new IllegalArgumentException("Invalid partition key index " + keyIndex);
+            }
+        }
+        return records;
+    }
+
+    private static void skipField(byte[] b, int[] pos, int end, int wireType) {
+        switch (wireType) {
+            case WIRE_TYPE_VARINT:
+                readVarInt(b, pos, end);
+                break;
+            case WIRE_TYPE_FIXED64:
+                skip(pos, end, FIXED64_LENGTH);
+                break;
+            case WIRE_TYPE_LENGTH_DELIMITED:
+                skipLengthDelimited(b, pos, end);
+                break;
+            case WIRE_TYPE_FIXED32:
+                skip(pos, end, FIXED32_LENGTH);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported wire type " + wireType);
+        }
+    }
+
+    private static void skipLengthDelimited(byte[] b, int[] pos, int end) {
+        skip(pos, end, readLength(b, pos, end));
+    }
+
+    private static void skip(int[] pos, int end, int length) {
+        if (length > end - pos[0]) {
+            throw new IllegalArgumentException("Truncated field");
+        }
+        pos[0] += length;
+    }
+
+    private static int readLength(byte[] b, int[] pos, int end) {
+        final long length = readVarInt(b, pos, end);
+        if (length < 0 || length > end - pos[0]) {
+            throw new IllegalArgumentException("Invalid length " + length);
+        }
+        return (int) length;
+    }
+
+    private static long readVarInt(byte[] b, int[] pos, int end) {
+        long value = 0;
+        for (int shift = 0; shift <= MAX_VAR_INT_SHIFT; shift += VAR_INT_SHIFT) {
+            if (pos[0] >= end) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            final int next = b[pos[0]++];
+            value |= (long) (next & VAR_INT_MASK) << shift;
+            if ((next & VAR_INT_MORE) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int recordMessageSize(int dataLength) {
+        // the partition key index 0, then the data
+        return 2 + lengthDelimitedSize(dataLength);
+    }
+
+    private static int lengthDelimitedSize(int length) {
+        return 1 + varIntSize(length) + length;
+    }
+
+    private static int varIntSize(long value) {
+        int size = 1;
+        long v = value >>> VAR_INT_SHIFT;
+        while (v != 0) {
+            size++;
+            v >>>= VAR_INT_SHIFT;
+        }
+        return size;
+    }
+
+    private static void writeTag(ByteArrayOutputStream out, int field, int wireType) {
+        writeVarInt(out, (field << WIRE_TYPE_BITS) | wireType);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, long value) {
+        long v = value;
+        while ((v & ~VAR_INT_MASK) != 0) {
+            out.write((int) ((v & VAR_INT_MASK) | VAR_INT_MORE));
+            v >>>= VAR_INT_SHIFT;
+        }
+        out.write((int) v);
+    }
+}
@@ -209,7 +209,7 @@ public class AmazonKinesisFirehoseClient extends AmazonWebServiceClient implemen
      */
     public AmazonKinesisFirehoseClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
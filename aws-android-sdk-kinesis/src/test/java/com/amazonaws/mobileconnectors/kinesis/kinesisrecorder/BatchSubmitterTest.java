@@ -0,0 +1,253 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.mobileconnectors.kinesis.kinesisrecorder.FileRecordStore.RecordIterator;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BatchSubmitterTest {
+    private static final int MAX_RETRY_COUNT = 3;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private FileRecordStore recordStore;
+    private TestRecorder recorder;
+    private TestSender sender;
+
+    static class TestRecorder extends AbstractKinesisRecorder {
+        TestRecorder(FileRecordStore recordStore, KinesisRecorderConfig config) {
+            super(recordStore, config);
+        }
+
+        @Override
+        protected RecordSender getRecordSender() {
+            return null;
+        }
+    }
+
+    /* Records the batches, and the batches sent at once. */
+    static class TestSender implements RecordSender {
+        final List<String> streams = new ArrayList<String>();
+        final Map<String, List<String>> sent = new HashMap<String, List<String>>();
+        final Set<String> failingStreams = new HashSet<String>();
+        final Set<String> sending = new HashSet<String>();
+        int maxSending;
+        boolean streamSentTwiceAtOnce;
+
+        @Override
+        public List<byte[]> sendBatch(String streamName, List<byte[]> data) {
+            synchronized (this) {
+                streamSentTwiceAtOnce |= !sending.add(streamName);
+                maxSending = Math.max(maxSending, sending.size());
+            }
+            try {
+                Thread.sleep(10);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                sending.remove(streamName);
+                if (failingStreams.contains(streamName)) {
+                    throw new AmazonClientException("Unable to execute HTTP request");
+                }
+                streams.add(streamName);
+                if (!sent.containsKey(streamName)) {
+                    sent.put(streamName, new ArrayList<String>());
+                }
+                for (final byte[] bytes : data) {
+                    sent.get(streamName).add(new String(bytes, StringUtils.UTF8));
+                }
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isRecoverable(AmazonClientException ace) {
+            return true;
+        }
+    }
+
+    @Before
+    public void setup() throws IOException {
+        final KinesisRecorderConfig config = new KinesisRecorderConfig();
+        recordStore = new FileRecordStore(temp.newFolder(), "records", config.getMaxStorageSize());
+        recorder = new TestRecorder(recordStore, config);
+        sender = new TestSender();
+    }
+
+    @Test
+    public void testRecordsAreGroupedByStream() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            for (final String stream : new String[] {"a", "b", "c"}) {
+                recorder.saveRecord(stream + i, stream);
+            }
+        }
+
+        assertEquals(30, submit(100, 1024, 0, 2));
+        assertEquals("a batch per stream", 3, sender.streams.size());
+        for (final String stream : new String[] {"a", "b", "c"}) {
+            final List<String> records = sender.sent.get(stream);
+            assertEquals(10, records.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals("records in order", stream + i, records.get(i));
+            }
+        }
+        assertEquals("records removed", 0, recordStore.getFileSize());
+    }
+
+    @Test
+    public void testBatchesAreFilledUpToTheLimits() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            recorder.saveRecord("record" + i, "a");
+        }
+
+        // 7 bytes plus 3 per record: 3 records per batch
+        assertEquals(10, submit(100, 30, 3, 1));
+        assertEquals(4, sender.streams.size());
+        assertEquals(10, sender.sent.get("a").size());
+
+        setup();
+        for (int i = 0; i < 10; i++) {
+            recorder.saveRecord("record" + i, "a");
+        }
+        assertEquals(10, submit(4, 1024, 0, 1));
+        assertEquals(3, sender.streams.size());
+    }
+
+    @Test
+    public void testBatchesAreSentConcurrently() throws IOException {
+        for (int i = 0; i < 48; i++) {
+            final String stream = "stream" + (i % 8);
+            recorder.saveRecord(stream + "-" + i, stream);
+        }
+
+        assertEquals(48, submit(2, 1024, 0, 3));
+        assertEquals(24, sender.streams.size());
+        assertTrue("at most 3 batches at once", sender.maxSending <= 3);
+        assertTrue("batches sent at once", sender.maxSending > 1);
+        assertFalse("one batch of a stream at once", sender.streamSentTwiceAtOnce);
+        for (int s = 0; s < 8; s++) {
+            final List<String> records = sender.sent.get("stream" + s);
+            assertEquals(6, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals("records in order", "stream" + s + "-" + (s + 8 * i),
+                        records.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsOfFailedBatchAreKept() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            recorder.saveRecord("b" + i, "b");
+        }
+        for (int i = 0; i < 5; i++) {
+            recorder.saveRecord("a" + i, "a");
+        }
+        sender.failingStreams.add("a");
+
+        try {
+            submit(100, 1024, 0, 2);
+            fail("the error of the batch is thrown");
+        } catch (final AmazonClientException e) {
+            assertEquals("Unable to execute HTTP request", e.getMessage());
+        }
+        assertEquals(5, sender.sent.get("b").size());
+
+        // only the records of the failed batch are left
+        final RecordIterator iterator = recordStore.iterator();
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertEquals("a", parse(iterator.next()).streamName);
+            }
+            assertFalse(iterator.hasNext());
+        } finally {
+            iterator.close();
+        }
+    }
+
+    @Test
+    public void testFailedRecordsAreSavedAgain() throws IOException {
+        recorder.saveRecord("a0", "a");
+        recorder.saveRecord("a1", "a");
+        final RecordSender failingSender = new TestSender() {
+            @Override
+            public List<byte[]> sendBatch(String streamName, List<byte[]> data) {
+                super.sendBatch(streamName, data);
+                // the last record always fails
+                return data.subList(data.size() - 1, data.size());
+            }
+        };
+
+        final RecordIterator iterator = recordStore.iterator();
+        final BatchSubmitter submitter = new BatchSubmitter(recorder, failingSender, iterator,
+                100, 1024, 0, 2, MAX_RETRY_COUNT);
+        try {
+            // the first batch sends a0, the next ones fail until the retries
+            // are exhausted
+            assertEquals(1, submitter.submit());
+        } finally {
+            iterator.close();
+        }
+        assertEquals(MAX_RETRY_COUNT + 1, ((TestSender) failingSender).streams.size());
+
+        final RecordIterator left = recordStore.iterator();
+        try {
+            assertEquals("a1", new String(parse(left.next()).bytes, StringUtils.UTF8));
+            assertFalse(left.hasNext());
+        } finally {
+            left.close();
+        }
+    }
+
+    private int submit(int maxCount, int maxSize, int recordOverhead, int maxConcurrentBatches)
+            throws IOException {
+        final RecordIterator iterator = recordStore.iterator();
+        try {
+            return new BatchSubmitter(recorder, sender, iterator, maxCount, maxSize,
+                    recordOverhead, maxConcurrentBatches, MAX_RETRY_COUNT).submit();
+        } finally {
+            iterator.close();
+        }
+    }
+
+    private static FileRecordParser parse(String line) {
+        final FileRecordParser parser = new FileRecordParser();
+        parser.parse(line);
+        return parser;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class FileRecordFormatTest {
+
+    @Test
+    public void testFramesAreReadBack() throws IOException {
+        final byte[] data = new byte[100000];
+        Arrays.fill(data, (byte) 7);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileRecordFormat.writeHeader(out);
+        FileRecordFormat.writeFrame(out, FileRecordFormat.TYPE_STREAM, 300,
+                "stream".getBytes(StringUtils.UTF8));
+        FileRecordFormat.writeFrame(out, FileRecordFormat.TYPE_RECORD, 300, data);
+        FileRecordFormat.writeFrame(out, FileRecordFormat.TYPE_LINE, -1,
+                "line".getBytes(StringUtils.UTF8));
+        assertEquals(FileRecordFormat.HEADER_LENGTH + FileRecordFormat.frameLength(300, 6)
+                + FileRecordFormat.frameLength(300, data.length)
+                + FileRecordFormat.frameLength(-1, 4), out.size());
+
+        final FileRecordFormat.FrameReader reader = new FileRecordFormat.FrameReader(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(reader.readHeader());
+        assertEquals(FileRecordFormat.FRAME, reader.next());
+        assertEquals(FileRecordFormat.TYPE_STREAM, reader.getType());
+        assertEquals(300, reader.getId());
+        assertEquals("stream", reader.getText());
+        assertEquals(FileRecordFormat.FRAME, reader.next());
+        assertEquals(FileRecordFormat.TYPE_RECORD, reader.getType());
+        assertEquals(300, reader.getId());
+        assertArrayEquals(data, reader.getData());
+        assertEquals(FileRecordFormat.frameLength(300, data.length), reader.getFrameLength());
+        assertEquals(FileRecordFormat.FRAME, reader.next());
+        assertEquals(FileRecordFormat.TYPE_LINE, reader.getType());
+        assertEquals(-1, reader.getId());
+        assertEquals("line", reader.getText());
+        assertEquals(FileRecordFormat.END, reader.next());
+    }
+
+    @Test
+    public void testCorruptFrameIsDetected() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileRecordFormat.writeFrame(out, FileRecordFormat.TYPE_RECORD, 0, new byte[] {
+                1, 2, 3
+        });
+        final byte[] frame = out.toByteArray();
+        frame[frame.length - 5] ^= 1;
+        assertEquals(FileRecordFormat.CORRUPT, new FileRecordFormat.FrameReader(
+                new ByteArrayInputStream(frame)).next());
+
+        // a torn frame
+        assertEquals(FileRecordFormat.CORRUPT, new FileRecordFormat.FrameReader(
+                new ByteArrayInputStream(Arrays.copyOf(out.toByteArray(), 8))).next());
+    }
+
+    @Test
+    public void testLinesAreNotFrameSegments() throws IOException {
+        final FileRecordFormat.FrameReader reader = new FileRecordFormat.FrameReader(
+                new ByteArrayInputStream("stream,AAEC\n".getBytes(StringUtils.UTF8)));
+        assertFalse(reader.readHeader());
+    }
+}
@@ -15,6 +15,7 @@
 
 package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -29,25 +30,32 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
 public class FileRecordStoreTest {
 
     private static final File TEST_DIRECTORY = new File("FileRecordStoreTest");
     private static final String RECORDER_FILE_NAME = Constants.RECORDS_FILE_NAME;
     private static final long MAX_STORAGE_SIZE = 1024 * 1024 * 5L;
+    private static final int HEADER = FileRecordFormat.HEADER_LENGTH;
+    /** The length of the frame of "record0" to "record9". */
+    private static final int RECORD_FRAME = FileRecordFormat.frameLength(-1, 7);
 
     @Before
     public void setup() {
@@ -71,7 +79,6 @@ public class FileRecordStoreTest {
     @Test
     public void testFileRecordStore_putIterateAndRemove() throws IOException {
 
-        FileManager fileManager = new FileManager(TEST_DIRECTORY);
         FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
                 RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
 
@@ -98,7 +105,7 @@ public class FileRecordStoreTest {
             // If we read 5 events remove the 5 last read events
             if (counter % 5 == 0) {
                 iter.removeReadRecords();
-                assertSame(getNumberOfLinesInFile(fileManager), (10 - counter));
+                assertSame(getNumberOfRecords(recordStore), (10 - counter));
             }
         }
 
@@ -121,7 +128,7 @@ public class FileRecordStoreTest {
             assertSame(Integer.valueOf(nextRecord), counter);
         }
         iter.removeReadRecords();
-        assertSame(getNumberOfLinesInFile(fileManager), 0);
+        assertSame(getNumberOfRecords(recordStore), 0);
 
         // Try getting a new iterator while the store is empty and verify
         // that hasNext is false
@@ -155,6 +162,267 @@ public class FileRecordStoreTest {
 
     }
 
+    @Test
+    public void testSegmentsAreDeletedOnceRead() throws IOException {
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, 50);
+        for (int i = 0; i < 100; i++) {
+            recordStore.put("record" + i);
+        }
+        final int allSegments = getNumberOfSegments();
+        assertTrue(allSegments > 10);
+        assertEquals(allSegments * HEADER + getFramesLength(0, 100), recordStore.getFileSize());
+
+        final RecordIterator iter = recordStore.iterator();
+        for (int i = 0; i < 50; i++) {
+            assertEquals("record" + i, iter.next());
+        }
+        iter.removeReadRecords();
+        final int segmentsLeft = getNumberOfSegments();
+        assertTrue(segmentsLeft <= allSegments / 2 + 1);
+        assertEquals(segmentsLeft * HEADER + getFramesLength(50, 100),
+                recordStore.getFileSize());
+
+        // a new store resumes from the persisted checkpoint
+        final FileRecordStore reopened = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, 50);
+        final List<String> records = readAll(reopened);
+        assertEquals(50, records.size());
+        assertEquals("record50", records.get(0));
+        assertEquals("record99", records.get(49));
+        assertEquals(segmentsLeft * HEADER + getFramesLength(50, 100), reopened.getFileSize());
+
+        final RecordIterator all = reopened.iterator();
+        while (all.next() != null) {
+            continue;
+        }
+        all.removeReadRecords();
+        assertEquals(0, reopened.getFileSize());
+        assertEquals(0, getNumberOfSegments());
+
+        reopened.put("after");
+        assertEquals(1, getNumberOfRecords(reopened));
+        assertEquals("after", readAll(new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, 50)).get(0));
+    }
+
+    @Test
+    public void testRecordsAppendedWhileIteratingAreRead() throws IOException {
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, 20);
+        recordStore.put("first");
+        final RecordIterator iter = recordStore.iterator();
+        assertEquals("first", iter.next());
+        assertFalse(iter.hasNext());
+        recordStore.put("second");
+        recordStore.put("third record");
+        assertEquals("second", iter.next());
+        assertEquals("third record", iter.next());
+        assertNull(iter.next());
+        iter.close();
+    }
+
+    @Test
+    public void testRecordsAreWrittenTogether() throws IOException {
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, FileRecordStore.DEFAULT_SEGMENT_SIZE, 5, 0,
+                false);
+        for (int i = 0; i < 4; i++) {
+            recordStore.put("record" + i);
+        }
+        assertEquals(0, getSegmentBytes());
+        assertEquals(HEADER + 4 * RECORD_FRAME, recordStore.getFileSize());
+
+        recordStore.put("record4");
+        assertEquals(HEADER + 5 * RECORD_FRAME, getSegmentBytes());
+
+        recordStore.put("record5");
+        assertEquals(HEADER + 5 * RECORD_FRAME, getSegmentBytes());
+        // reading writes the buffered records first
+        assertEquals(6, getNumberOfRecords(recordStore));
+        assertEquals(HEADER + 6 * RECORD_FRAME, getSegmentBytes());
+
+        recordStore.put("record6");
+        recordStore.close();
+        assertEquals(HEADER + 7 * RECORD_FRAME, getSegmentBytes());
+        assertEquals(7, getNumberOfRecords(new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE)));
+    }
+
+    @Test
+    public void testBufferedRecordsAreWrittenAfterFlushInterval() throws Exception {
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, FileRecordStore.DEFAULT_SEGMENT_SIZE, 100,
+                50, true);
+        recordStore.put("record0");
+        recordStore.put("record1");
+        assertEquals(0, getSegmentBytes());
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (getSegmentBytes() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(HEADER + 2 * RECORD_FRAME, getSegmentBytes());
+    }
+
+    @Test
+    public void testRemoveAllRecordsDropsBufferedRecords() throws IOException {
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, FileRecordStore.DEFAULT_SEGMENT_SIZE, 10, 0,
+                false);
+        recordStore.put("record0");
+        recordStore.iterator().removeAllRecords();
+        assertEquals(0, recordStore.getFileSize());
+        recordStore.put("record1");
+        recordStore.flush();
+        assertEquals(HEADER + RECORD_FRAME, getSegmentBytes());
+        assertEquals("record1", readAll(recordStore).get(0));
+    }
+
+    @Test
+    public void testRecordFileOfPreviousVersionIsTakenOver() throws IOException {
+        final File recordsDirectory = new File(TEST_DIRECTORY, Constants.RECORDS_DIRECTORY);
+        recordsDirectory.mkdirs();
+        final OutputStream out = new FileOutputStream(new File(recordsDirectory,
+                RECORDER_FILE_NAME));
+        out.write("old1\nold2\r\nold3".getBytes(StringUtils.UTF8));
+        out.close();
+        assertTrue(FileRecordStore.exists(TEST_DIRECTORY, RECORDER_FILE_NAME));
+
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        assertFalse(new File(recordsDirectory, RECORDER_FILE_NAME).exists());
+        recordStore.put("new");
+        final List<String> records = readAll(recordStore);
+        assertEquals(4, records.size());
+        assertEquals("old1", records.get(0));
+        assertEquals("old2", records.get(1));
+        assertEquals("old3", records.get(2));
+        assertEquals("new", records.get(3));
+
+        recordStore.iterator().removeAllRecords();
+        assertFalse(FileRecordStore.exists(TEST_DIRECTORY, RECORDER_FILE_NAME));
+    }
+
+    @Test
+    public void testRecordsOfStreamsAreReadBack() throws IOException {
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, 1024);
+        final Random random = new Random(7);
+        final List<byte[]> saved = new ArrayList<byte[]>();
+        long textLength = 0;
+        for (int i = 0; i < 30; i++) {
+            final byte[] data = new byte[100 + i];
+            random.nextBytes(data);
+            saved.add(data);
+            final String streamName = i % 3 == 0 ? "stream-a" : "stream-b";
+            assertTrue(recordStore.put(streamName, data));
+            textLength += FileRecordParser.asString(streamName, data).length() + 1;
+        }
+        assertTrue(getNumberOfSegments() > 2);
+        assertTrue(recordStore.getFileSize() < textLength * 4 / 5);
+
+        // the stream names of the last segment are known after reopening
+        final FileRecordStore reopened = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE, 1024);
+        saved.add(new byte[] {
+                1, 2, 3
+        });
+        reopened.put("stream-b", saved.get(30));
+
+        final RecordIterator iter = reopened.iterator();
+        final FileRecordParser record = new FileRecordParser();
+        for (int i = 0; i < 31; i++) {
+            assertTrue(iter.peekRecord(record));
+            assertEquals(i % 3 == 0 && i < 30 ? "stream-a" : "stream-b", record.streamName);
+            assertArrayEquals(saved.get(i), record.bytes);
+            if (i % 2 == 0) {
+                iter.skip();
+            } else {
+                assertEquals(FileRecordParser.asString(record.streamName, record.bytes),
+                        iter.next());
+            }
+        }
+        assertFalse(iter.peekRecord(record));
+        iter.close();
+    }
+
+    @Test
+    public void testSegmentsOfLinesAreConverted() throws IOException {
+        final File recordsDirectory = new File(TEST_DIRECTORY, Constants.RECORDS_DIRECTORY);
+        recordsDirectory.mkdirs();
+        final byte[] data = "some data".getBytes(StringUtils.UTF8);
+        final String line = FileRecordParser.asString("stream", data);
+        final String json = "{\"streamName\":\"stream\",\"data\":\"c29tZQ==\"}";
+        final File segment = new File(recordsDirectory, RECORDER_FILE_NAME + ".0000000003");
+        final OutputStream out = new FileOutputStream(segment);
+        out.write(("read\n" + line + "\n" + json + "\n\n" + line + "\r\n")
+                .getBytes(StringUtils.UTF8));
+        out.close();
+        final OutputStream checkpoint = new FileOutputStream(new File(recordsDirectory,
+                RECORDER_FILE_NAME + ".checkpoint"));
+        checkpoint.write("3 5\n".getBytes(StringUtils.UTF8));
+        checkpoint.close();
+
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        final InputStream in = new FileInputStream(segment);
+        assertTrue(new FileRecordFormat.FrameReader(in).readHeader());
+        in.close();
+
+        final RecordIterator iter = recordStore.iterator();
+        final FileRecordParser record = new FileRecordParser();
+        assertTrue(iter.peekRecord(record));
+        assertEquals("stream", record.streamName);
+        assertArrayEquals(data, record.bytes);
+        assertEquals(line, iter.next());
+        assertEquals(json, iter.next());
+        assertEquals(line, iter.next());
+        assertNull(iter.next());
+        iter.removeReadRecords();
+        assertEquals(0, recordStore.getFileSize());
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+        final FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        recordStore.put("stream", new byte[] {
+                1
+        });
+        recordStore.put("stream", new byte[] {
+                2
+        });
+        recordStore.close();
+        final File segment = new File(new File(TEST_DIRECTORY, Constants.RECORDS_DIRECTORY),
+                RECORDER_FILE_NAME + ".0000000000");
+        final long length = segment.length();
+        final OutputStream out = new FileOutputStream(segment, true);
+        out.write(new byte[] {
+                FileRecordFormat.TYPE_RECORD, 0, 0, 0, 9, 0, 3
+        });
+        out.close();
+
+        final FileRecordStore reopened = new FileRecordStore(TEST_DIRECTORY,
+                RECORDER_FILE_NAME, MAX_STORAGE_SIZE);
+        assertEquals(length, segment.length());
+        reopened.put("stream", new byte[] {
+                4
+        });
+        final RecordIterator iter = reopened.iterator();
+        final FileRecordParser record = new FileRecordParser();
+        final byte[] expected = {
+                1, 2, 4
+        };
+        for (final byte b : expected) {
+            assertTrue(iter.peekRecord(record));
+            assertArrayEquals(new byte[] {
+                    b
+            }, record.bytes);
+            iter.skip();
+        }
+        assertFalse(iter.hasNext());
+    }
+
     @Test
     public void
             testWhenRecordssFileIsMissingAndRecordssDirectoryIsReadOnly_error() throws IOException {
@@ -189,19 +457,21 @@ public class FileRecordStoreTest {
         File recordsFile = null;
 
         FileManager fileManager = new FileManager(TEST_DIRECTORY);
+        // room for the header and ten frames of nine bytes
+        final long maxStorageSize = HEADER + 10 * FileRecordFormat.frameLength(-1, 9);
         FileRecordStore recordStore = new FileRecordStore(TEST_DIRECTORY,
-                RECORDER_FILE_NAME, 100L);
+                RECORDER_FILE_NAME, maxStorageSize);
 
         recordsDirectory = fileManager.getDirectory(Constants.RECORDS_DIRECTORY);
         recordsFile = new File(recordsDirectory, Constants.RECORDS_FILE_NAME);
 
         for (int i = 0; i < 10; i++) {
-            recordStore.put("ten bytes");
+            assertTrue(recordStore.put("ten bytes"));
         }
-        assertSame(recordsFile.length(), 100L);
+        assertEquals(maxStorageSize, recordStore.getFileSize());
 
-        recordStore.put("0123456789");
-        assertSame(recordsFile.length(), 100L);
+        assertFalse(recordStore.put("0123456789"));
+        assertEquals(maxStorageSize, recordStore.getFileSize());
 
     }
 
@@ -324,28 +594,55 @@ public class FileRecordStoreTest {
         }
     }
 
-    private int getNumberOfLinesInFile(final FileManager fileManager) throws NumberFormatException,
-            IOException {
-        BufferedReader reader = getRecordsFileReader(fileManager);
+    private int getNumberOfRecords(final FileRecordStore recordStore) throws IOException {
+        final RecordIterator iter = recordStore.iterator();
         int counter = 0;
-        while (reader.readLine() != null) {
+        while (iter.hasNext()) {
+            iter.next();
             counter++;
         }
+        iter.close();
         return counter;
     }
 
-    private BufferedReader getRecordsFileReader(final FileManager fileManager) {
-        InputStreamReader streamReader = null;
-        try {
-            streamReader = new InputStreamReader(
-                    fileManager.newInputStream(Constants.RECORDS_DIRECTORY + File.separator
-                            + Constants.RECORDS_FILE_NAME), StringUtils.UTF8);
-        } catch (FileNotFoundException e) {
+    private List<String> readAll(final FileRecordStore recordStore) throws IOException {
+        final List<String> records = new LinkedList<String>();
+        final RecordIterator iter = recordStore.iterator();
+        while (iter.hasNext()) {
+            records.add(iter.next());
+        }
+        iter.close();
+        return records;
+    }
+
+    /* Returns the length of the frames of "record" + i for i in [from, to). */
+    private static long getFramesLength(int from, int to) {
+        long length = 0;
+        for (int i = from; i < to; i++) {
+            length += FileRecordFormat.frameLength(-1, ("record" + i).length());
+        }
+        return length;
+    }
+
+    private long getSegmentBytes() {
+        final File[] files = new File(TEST_DIRECTORY, Constants.RECORDS_DIRECTORY).listFiles();
+        long bytes = 0;
+        for (final File file : files) {
+            if (file.getName().matches(Pattern.quote(RECORDER_FILE_NAME) + "\\.\\d+")) {
+                bytes += file.length();
+            }
         }
+        return bytes;
+    }
 
-        if (streamReader != null) {
-            return new BufferedReader(streamReader);
+    private int getNumberOfSegments() {
+        final File[] files = new File(TEST_DIRECTORY, Constants.RECORDS_DIRECTORY).listFiles();
+        int counter = 0;
+        for (final File file : files) {
+            if (file.getName().matches(Pattern.quote(RECORDER_FILE_NAME) + "\\.\\d+")) {
+                counter++;
+            }
         }
-        return null;
+        return counter;
     }
 }
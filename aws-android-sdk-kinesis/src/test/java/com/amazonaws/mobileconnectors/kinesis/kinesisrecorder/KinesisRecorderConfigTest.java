@@ -16,6 +16,8 @@
 package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.ClientConfiguration;
 
@@ -58,11 +60,20 @@ public class KinesisRecorderConfigTest {
     public void copyConstructor() {
         KinesisRecorderConfig kConfig = new KinesisRecorderConfig();
         kConfig.withMaxStorageSize(5);
+        kConfig.withFlushRecordCount(20).withFlushIntervalMillis(500).withSyncOnFlush(true)
+                .withAggregation(true).withMaxAggregatedRecordSize(100 * 1024)
+                .withMaxConcurrentBatches(2);
 
         KinesisRecorderConfig copiedConfig = new KinesisRecorderConfig(kConfig);
 
         assertEquals(kConfig.getMaxStorageSize(),
                 copiedConfig.getMaxStorageSize());
+        assertEquals(20, copiedConfig.getFlushRecordCount());
+        assertEquals(500, copiedConfig.getFlushIntervalMillis());
+        assertTrue(copiedConfig.isSyncOnFlush());
+        assertTrue(copiedConfig.isAggregationEnabled());
+        assertEquals(100 * 1024, copiedConfig.getMaxAggregatedRecordSize());
+        assertEquals(2, copiedConfig.getMaxConcurrentBatches());
 
     }
 
@@ -72,6 +83,23 @@ public class KinesisRecorderConfigTest {
         KinesisRecorderConfig kConfig = new KinesisRecorderConfig();
         kConfig.withMaxStorageSize(100);
         assertEquals(kConfig.getMaxStorageSize(), 100);
+
+        assertEquals(1, kConfig.getFlushRecordCount());
+        assertEquals(0, kConfig.getFlushIntervalMillis());
+        assertFalse(kConfig.isSyncOnFlush());
+        kConfig.withFlushRecordCount(50).withFlushIntervalMillis(200);
+        assertEquals(50, kConfig.getFlushRecordCount());
+        assertEquals(200, kConfig.getFlushIntervalMillis());
+
+        assertFalse(kConfig.isAggregationEnabled());
+        assertEquals(50 * 1024, kConfig.getMaxAggregatedRecordSize());
+        kConfig.withAggregation(true).withMaxAggregatedRecordSize(1000);
+        assertTrue(kConfig.isAggregationEnabled());
+        assertEquals(1000, kConfig.getMaxAggregatedRecordSize());
+
+        assertEquals(4, kConfig.getMaxConcurrentBatches());
+        kConfig.withMaxConcurrentBatches(8);
+        assertEquals(8, kConfig.getMaxConcurrentBatches());
     }
 
 }
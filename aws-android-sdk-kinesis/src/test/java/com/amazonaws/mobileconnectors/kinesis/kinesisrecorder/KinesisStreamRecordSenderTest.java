@@ -17,6 +17,7 @@ package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 
@@ -140,6 +141,60 @@ public class KinesisStreamRecordSenderTest {
         }
     }
 
+    @Test
+    public void testSendBatchWithAggregation() {
+        sender = new KinesisStreamRecordSender(client, USER_AGENT, null, 1024);
+        String streamName = "stream";
+        int count = 100;
+
+        // create data, ten records fit into an aggregated record
+        List<byte[]> data = new ArrayList<byte[]>();
+        for (int i = 0; i < count; i++) {
+            data.add(new byte[90]);
+        }
+        data.add(new byte[2000]);
+        data.add(new byte[10]);
+
+        // fail the second aggregated record
+        PutRecordsResult result = new PutRecordsResult();
+        List<PutRecordsResultEntry> entries = new ArrayList<PutRecordsResultEntry>();
+        result.setFailedRecordCount(1);
+        for (int i = 0; i < 12; i++) {
+            PutRecordsResultEntry entry = new PutRecordsResultEntry();
+            if (i == 1) {
+                entry.setErrorCode("ServiceUnavailable");
+            } else {
+                entry.setSequenceNumber("record_id_" + i);
+            }
+            entries.add(entry);
+        }
+        result.setRecords(entries);
+        Mockito.when(client.putRecords(any(PutRecordsRequest.class))).thenReturn(result);
+        List<byte[]> failures = sender.sendBatch(streamName, data);
+
+        ArgumentCaptor<PutRecordsRequest> argument = ArgumentCaptor
+                .forClass(PutRecordsRequest.class);
+        Mockito.verify(client).putRecords(argument.capture());
+        final List<PutRecordsRequestEntry> records = argument.getValue().getRecords();
+        assertEquals(12, records.size());
+        int deaggregated = 0;
+        for (int i = 0; i < 10; i++) {
+            final byte[] aggregated = records.get(i).getData().array();
+            assertTrue(aggregated.length <= 1024);
+            assertTrue(RecordAggregator.isAggregated(aggregated));
+            deaggregated += RecordAggregator.deaggregate(aggregated).size();
+        }
+        assertEquals(count, deaggregated);
+        // too large to aggregate with others, and alone
+        assertEquals(2000, records.get(10).getData().array().length);
+        assertEquals(10, records.get(11).getData().array().length);
+
+        assertEquals(10, failures.size());
+        for (int i = 0; i < failures.size(); i++) {
+            assertSame(data.get(10 + i), failures.get(i));
+        }
+    }
+
     @Test(expected = AmazonClientException.class)
     public void testSendBatchException() {
         String streamName = "stream";
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.kinesis.kinesisrecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RecordAggregatorTest {
+
+    @Test
+    public void testAggregatedRecordFormat() {
+        final byte[] aggregated = RecordAggregator.aggregate("pk",
+                Collections.singletonList("a".getBytes(StringUtils.UTF8)));
+        final byte[] message = {
+                // partition_key_table: "pk"
+                0x0A, 0x02, 'p', 'k',
+                // records: partition_key_index 0, data "a"
+                0x1A, 0x05, 0x08, 0x00, 0x1A, 0x01, 'a'
+        };
+        final byte[] md5 = Md5Utils.computeMD5Hash(message);
+        assertEquals(4 + message.length + md5.length, aggregated.length);
+        assertArrayEquals(new byte[] {
+                (byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2
+        }, Arrays.copyOfRange(aggregated, 0, 4));
+        assertArrayEquals(message, Arrays.copyOfRange(aggregated, 4, 4 + message.length));
+        assertArrayEquals(md5, Arrays.copyOfRange(aggregated, 4 + message.length,
+                aggregated.length));
+        assertEquals(RecordAggregator.getBaseSize("pk") + RecordAggregator.getRecordSize(1),
+                aggregated.length);
+    }
+
+    @Test
+    public void testDeaggregate() {
+        final List<byte[]> records = new ArrayList<byte[]>();
+        for (int i = 0; i < 100; i++) {
+            final byte[] data = new byte[i * 10];
+            Arrays.fill(data, (byte) i);
+            records.add(data);
+        }
+        final byte[] aggregated = RecordAggregator.aggregate("partition", records);
+        int size = RecordAggregator.getBaseSize("partition");
+        for (final byte[] data : records) {
+            size += RecordAggregator.getRecordSize(data.length);
+        }
+        assertEquals(size, aggregated.length);
+        assertTrue(RecordAggregator.isAggregated(aggregated));
+
+        final List<byte[]> deaggregated = RecordAggregator.deaggregate(aggregated);
+        assertEquals(records.size(), deaggregated.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertArrayEquals(records.get(i), deaggregated.get(i));
+        }
+    }
+
+    @Test
+    public void testRecordsThatAreNotAggregatedAreReturnedAsIs() {
+        final byte[] plain = "plain".getBytes(StringUtils.UTF8);
+        assertFalse(RecordAggregator.isAggregated(plain));
+        assertSame(plain, RecordAggregator.deaggregate(plain).get(0));
+
+        final byte[] corrupt = RecordAggregator.aggregate("pk",
+                Collections.singletonList(plain));
+        corrupt[10] ^= 1;
+        assertFalse(RecordAggregator.isAggregated(corrupt));
+        assertSame(corrupt, RecordAggregator.deaggregate(corrupt).get(0));
+    }
+}
@@ -201,7 +201,7 @@ public class AWSKinesisVideoClient extends AmazonWebServiceClient implements AWS
      */
     public AWSKinesisVideoClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -220,7 +220,7 @@ public class AmazonLexRuntimeClient extends AmazonWebServiceClient implements Am
      */
     public AmazonLexRuntimeClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
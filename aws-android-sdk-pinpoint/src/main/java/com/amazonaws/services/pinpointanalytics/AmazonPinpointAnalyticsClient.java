@@ -204,7 +204,7 @@ public class AmazonPinpointAnalyticsClient extends AmazonWebServiceClient implem
      */
     public AmazonPinpointAnalyticsClient(AWSCredentialsProvider awsCredentialsProvider,
             ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
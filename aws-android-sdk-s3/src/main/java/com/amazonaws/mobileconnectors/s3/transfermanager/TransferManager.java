@@ -35,11 +35,15 @@ import com.amazonaws.mobileconnectors.s3.transfermanager.internal.CopyImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.CopyMonitor;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.DownloadImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.DownloadMonitor;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipartDownloadCallable;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileDownloadImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileTransferMonitor;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.MultipleFileUploadImpl;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.S3ProgressListener;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.S3ProgressListenerChain;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.SmallFileUploadCallable;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.SmallFileUploadImpl;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.SmallFileUploadMonitor;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.TransferManagerUtils;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.TransferProgressUpdatingListener;
 import com.amazonaws.mobileconnectors.s3.transfermanager.internal.TransferStateChangeListener;
@@ -82,6 +86,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -165,6 +170,13 @@ public class TransferManager {
 
     private static final Log log = LogFactory.getLog(TransferManager.class);
 
+    /**
+     * The number of byte ranges of a download, or small files of an upload,
+     * that are transferred at once when the size of the thread pool is not
+     * known.
+     */
+    private static final int DEFAULT_POOL_CONCURRENCY = 10;
+
     /**
      * Constructs a new <code>TransferManager</code> and Amazon S3 client using
      * the credentials from <code>DefaultAWSCredentialsProviderChain</code>
@@ -637,7 +649,8 @@ public class TransferManager {
                 listenerChain);
         getObjectRequest.setGeneralProgressListener(listeners);
         final GetObjectMetadataRequest getObjectMetadataRequest = new GetObjectMetadataRequest(
-                getObjectRequest.getBucketName(), getObjectRequest.getKey());
+                getObjectRequest.getBucketName(), getObjectRequest.getKey(),
+                getObjectRequest.getVersionId());
 
         if (getObjectRequest.getSSECustomerKey() != null) {
             getObjectMetadataRequest.setSSECustomerKey(getObjectRequest.getSSECustomerKey());
@@ -661,9 +674,11 @@ public class TransferManager {
         long totalBytesToDownload = lastByte - startingByte + 1;
         transferProgress.setTotalBytesToTransfer(totalBytesToDownload);
 
+        long fileOffset = 0;
         if (resumeExistingDownload) {
             if (file.exists()) {
                 final long numberOfBytesRead = file.length();
+                fileOffset = numberOfBytesRead;
                 startingByte = startingByte + numberOfBytesRead;
                 getObjectRequest.setRange(startingByte, lastByte);
                 transferProgress.updateProgress(Math.min(numberOfBytesRead,
@@ -678,13 +693,54 @@ public class TransferManager {
         }
 
         final CountDownLatch latch = new CountDownLatch(1);
-        final Future<?> future = submitDownloadTask(getObjectRequest, file,
-                resumeExistingDownload, latch, download);
+        final Future<?> future;
+        if (isMultipartDownload(getObjectRequest, totalBytesToDownload)) {
+            final MultipartDownloadCallable multipartDownload = new MultipartDownloadCallable(s3,
+                    threadPool, getPoolConcurrency(), download, getObjectRequest,
+                    objectMetadata, file, fileOffset, startingByte, lastByte,
+                    configuration.getDownloadPartSize(), latch);
+            download.setMultipartDownload(multipartDownload);
+            future = threadPool.submit(multipartDownload);
+        } else {
+            future = submitDownloadTask(getObjectRequest, file,
+                    resumeExistingDownload, latch, download);
+        }
         download.setMonitor(new DownloadMonitor(download, future));
         latch.countDown();
         return download;
     }
 
+    /**
+     * Returns whether the download is split into byte ranges that are
+     * downloaded in parallel. The ranges are only downloaded while the object
+     * keeps the ETag it has when the download starts, so downloads with their
+     * own constraints use a single request, as do decrypted downloads.
+     */
+    private boolean isMultipartDownload(GetObjectRequest getObjectRequest,
+            long totalBytesToDownload) {
+        return configuration.isMultipartDownloadEnabled()
+                && configuration.getDownloadPartSize() > 0
+                && totalBytesToDownload > configuration.getDownloadPartSize()
+                && !(s3 instanceof AmazonS3EncryptionClient)
+                && getObjectRequest.getPartNumber() == null
+                && getObjectRequest.getMatchingETagConstraints().isEmpty()
+                && getObjectRequest.getNonmatchingETagConstraints().isEmpty()
+                && getObjectRequest.getModifiedSinceConstraint() == null
+                && getObjectRequest.getUnmodifiedSinceConstraint() == null;
+    }
+
+    /**
+     * Returns the number of byte ranges of a download, or small files of an
+     * upload, that are transferred at once, which is bounded by the size of
+     * the thread pool when it is known.
+     */
+    private int getPoolConcurrency() {
+        if (threadPool instanceof ThreadPoolExecutor) {
+            return Math.max(1, ((ThreadPoolExecutor) threadPool).getMaximumPoolSize());
+        }
+        return DEFAULT_POOL_CONCURRENCY;
+    }
+
     private Future<?> submitDownloadTask(
             final GetObjectRequest getObjectRequest, final File file,
             final boolean resumeExistingDownload,
@@ -990,6 +1046,8 @@ public class TransferManager {
                 progress, additionalListeners);
 
         final List<UploadImpl> uploads = new LinkedList<UploadImpl>();
+        final List<PutObjectRequest> smallFileRequests = new ArrayList<PutObjectRequest>();
+        long smallFilesSize = 0;
         final MultipleFileUploadImpl multipleFileUpload = new MultipleFileUploadImpl("Uploading etc",
                 progress, additionalListeners, virtualDirectoryKeyPrefix, bucketName, uploads);
         multipleFileUpload.setMonitor(new MultipleFileTransferMonitor(multipleFileUpload, uploads));
@@ -1032,18 +1090,28 @@ public class TransferManager {
                         metadataProvider.provideObjectMetadata(f, metadata);
                     }
 
+                    final PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName,
+                            virtualDirectoryKeyPrefix + key, f).withMetadata(metadata);
+                    if (isSmallFileUpload(f)) {
+                        smallFilesSize += f.length();
+                        smallFileRequests.add(putObjectRequest);
+                        continue;
+                    }
+
                     // All the single-file uploads share the same
                     // MultipleFileTransferProgressUpdatingListener and
                     // MultipleFileTransferStateChangeListener
                     uploads.add((UploadImpl) doUpload(
-                            (PutObjectRequest) new PutObjectRequest(bucketName,
-                                    virtualDirectoryKeyPrefix + key, f)
-                                    .withMetadata(metadata)
+                            (PutObjectRequest) putObjectRequest
                                     .withGeneralProgressListener(
                                             listener),
                             transferListener, null, null));
                 }
             }
+            if (!smallFileRequests.isEmpty()) {
+                uploads.add(doSmallFileUpload(bucketName, virtualDirectoryKeyPrefix,
+                        smallFileRequests, smallFilesSize, listener, transferListener));
+            }
             progress.setTotalBytesToTransfer(totalSize);
         }
 
@@ -1054,6 +1122,54 @@ public class TransferManager {
         return multipleFileUpload;
     }
 
+    /**
+     * Returns whether a file of a multiple file upload is uploaded together
+     * with the other small files.
+     */
+    private boolean isSmallFileUpload(File file) {
+        final long threshold = configuration.getSmallFileUploadThreshold();
+        final long length = file.length();
+        return threshold > 0
+                && length <= threshold
+                && length < configuration.getMultipartUploadThreshold();
+    }
+
+    /**
+     * Schedules the upload of the small files of a multiple file upload, each
+     * with a single PutObject request, as one sub-transfer.
+     */
+    private SmallFileUploadImpl doSmallFileUpload(String bucketName, String keyPrefix,
+            List<PutObjectRequest> requests, long totalSize, ProgressListener listener,
+            TransferStateChangeListener stateListener) {
+        final TransferProgress transferProgress = new TransferProgress();
+        transferProgress.setTotalBytesToTransfer(totalSize);
+        final S3ProgressListenerChain listenerChain = new S3ProgressListenerChain(
+                new TransferProgressUpdatingListener(transferProgress), listener);
+        final SmallFileUploadImpl upload = new SmallFileUploadImpl("Uploading "
+                + requests.size() + " files to " + bucketName + "/" + keyPrefix,
+                transferProgress, listenerChain, stateListener, bucketName, keyPrefix);
+
+        for (final PutObjectRequest request : requests) {
+            appendSingleObjectUserAgent(request);
+            final ObjectMetadata metadata = request.getMetadata();
+            metadata.setContentLength(request.getFile().length());
+            if (metadata.getContentType() == null) {
+                metadata.setContentType(Mimetypes.getInstance().getMimetype(request.getFile()));
+            }
+            request.setGeneralProgressListener(listenerChain);
+        }
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final int concurrency = Math.max(1, Math.min(
+                configuration.getMaxSmallFileUploadsInFlight(), getPoolConcurrency()));
+        final SmallFileUploadCallable callable = new SmallFileUploadCallable(s3, threadPool,
+                concurrency, upload, requests, latch);
+        upload.setCallable(callable);
+        upload.setMonitor(new SmallFileUploadMonitor(upload, threadPool.submit(callable)));
+        latch.countDown();
+        return upload;
+    }
+
     /**
      * Lists files in the directory given and adds them to the result list
      * passed in, optionally adding subdirectories recursively.
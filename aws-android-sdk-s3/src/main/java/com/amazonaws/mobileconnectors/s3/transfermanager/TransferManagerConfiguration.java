@@ -47,6 +47,12 @@ public class TransferManagerConfiguration {
     /** Default minimum size of each part for multi-part copy. */
     private static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
 
+    /** Default size of the byte ranges of a multipart download. */
+    private static final long DEFAULT_DOWNLOAD_PART_SIZE = 8 * MB;
+
+    /** Default maximum number of small files of an upload in flight. */
+    private static final int DEFAULT_MAX_SMALL_FILE_UPLOADS_IN_FLIGHT = 10;
+
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
      * will cause multipart uploads to be split into a larger number of smaller
@@ -85,6 +91,34 @@ public class TransferManagerConfiguration {
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
 
+    /**
+     * Whether downloads larger than the download part size are split into byte
+     * ranges that are downloaded in parallel.
+     */
+    private boolean multipartDownloadEnabled = false;
+
+    /**
+     * The size in bytes of the byte ranges of a multipart download.
+     */
+    private long downloadPartSize = DEFAULT_DOWNLOAD_PART_SIZE;
+
+    /**
+     * Whether the number of parts of a multipart upload in flight adapts to
+     * the measured throughput.
+     */
+    private boolean adaptiveUploadEnabled = false;
+
+    /**
+     * The size in bytes at or under which the files of a multiple file upload
+     * are uploaded together; zero to upload every file on its own.
+     */
+    private long smallFileUploadThreshold = 0;
+
+    /**
+     * The maximum number of small files of a multiple file upload in flight.
+     */
+    private int maxSmallFileUploadsInFlight = DEFAULT_MAX_SMALL_FILE_UPLOADS_IN_FLIGHT;
+
     /**
      * Returns the minimum part size for upload parts. Decreasing the minimum
      * part size causes multipart uploads to be split into a larger number of
@@ -192,4 +226,128 @@ public class TransferManagerConfiguration {
     public void setMultipartCopyThreshold(long multipartCopyThreshold) {
         this.multipartCopyThreshold = multipartCopyThreshold;
     }
+
+    /**
+     * Returns whether downloads larger than the download part size are split
+     * into byte ranges that are downloaded in parallel.
+     *
+     * @return True if multipart downloads are enabled.
+     */
+    public boolean isMultipartDownloadEnabled() {
+        return multipartDownloadEnabled;
+    }
+
+    /**
+     * Sets whether downloads larger than the download part size are split into
+     * byte ranges that are downloaded in parallel on the thread pool of the
+     * transfer manager, each range written at its offset in the file. A paused
+     * multipart download keeps the ranges downloaded in order from the start,
+     * so it resumes like any other download. Downloads from an
+     * {@link com.amazonaws.services.s3.AmazonS3EncryptionClient} always use a
+     * single request. Disabled by default.
+     *
+     * @param multipartDownloadEnabled True to enable multipart downloads.
+     */
+    public void setMultipartDownloadEnabled(boolean multipartDownloadEnabled) {
+        this.multipartDownloadEnabled = multipartDownloadEnabled;
+    }
+
+    /**
+     * Returns the size in bytes of the byte ranges of a multipart download.
+     *
+     * @return The size in bytes of the byte ranges of a multipart download.
+     */
+    public long getDownloadPartSize() {
+        return downloadPartSize;
+    }
+
+    /**
+     * Sets the size in bytes of the byte ranges of a multipart download.
+     * Smaller ranges spread a download over more connections at the cost of
+     * more requests.
+     *
+     * @param downloadPartSize The size in bytes of the byte ranges of a
+     *            multipart download.
+     */
+    public void setDownloadPartSize(long downloadPartSize) {
+        this.downloadPartSize = downloadPartSize;
+    }
+
+    /**
+     * Returns whether the number of parts of a multipart upload in flight
+     * adapts to the measured throughput.
+     *
+     * @return True if adaptive uploads are enabled.
+     */
+    public boolean isAdaptiveUploadEnabled() {
+        return adaptiveUploadEnabled;
+    }
+
+    /**
+     * Sets whether the number of parts of a multipart upload in flight adapts
+     * to the measured throughput, instead of submitting all the parts to the
+     * thread pool at once. An adaptive upload starts with two parts in
+     * flight, adds one for every round of parts that complete without slowing
+     * down, up to the size of the thread pool, and halves them when a part
+     * fails or the time per byte of the parts doubles. The part size stays
+     * fixed, so that paused uploads resume at the same part boundaries.
+     * Disabled by default.
+     *
+     * @param adaptiveUploadEnabled True to enable adaptive uploads.
+     */
+    public void setAdaptiveUploadEnabled(boolean adaptiveUploadEnabled) {
+        this.adaptiveUploadEnabled = adaptiveUploadEnabled;
+    }
+
+    /**
+     * Returns the size in bytes at or under which the files of a directory or
+     * file list upload are uploaded together, as a single sub-transfer.
+     *
+     * @return The size threshold in bytes for small files, or zero if every
+     *         file is uploaded on its own.
+     */
+    public long getSmallFileUploadThreshold() {
+        return smallFileUploadThreshold;
+    }
+
+    /**
+     * Sets the size in bytes at or under which the files of a directory or
+     * file list upload are uploaded together. Each small file is uploaded
+     * with a single PutObject request, without the multipart upload decision
+     * and the monitor of an individual upload; the small files share one
+     * sub-transfer, which tracks their progress and state as a whole. Up to
+     * {@link #getMaxSmallFileUploadsInFlight()} of them are uploaded at once,
+     * bounded by the size of the thread pool. The small files can't be
+     * paused, and the first one that fails stops the others and fails the
+     * sub-transfer. Files at or above the multipart upload threshold are
+     * always uploaded on their own. Zero, the default, disables it.
+     *
+     * @param smallFileUploadThreshold The size threshold in bytes for small
+     *            files, or zero to upload every file on its own.
+     */
+    public void setSmallFileUploadThreshold(long smallFileUploadThreshold) {
+        this.smallFileUploadThreshold = smallFileUploadThreshold;
+    }
+
+    /**
+     * Returns the maximum number of small files of a directory or file list
+     * upload in flight at once.
+     *
+     * @return The maximum number of small files in flight.
+     */
+    public int getMaxSmallFileUploadsInFlight() {
+        return maxSmallFileUploadsInFlight;
+    }
+
+    /**
+     * Sets the maximum number of small files of a directory or file list
+     * upload in flight at once. The number is also bounded by the size of
+     * the thread pool of the transfer manager. Defaults to 10.
+     *
+     * @param maxSmallFileUploadsInFlight The maximum number of small files in
+     *            flight.
+     */
+    public void setMaxSmallFileUploadsInFlight(int maxSmallFileUploadsInFlight) {
+        this.maxSmallFileUploadsInFlight = maxSmallFileUploadsInFlight;
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes a number of items on the calling thread and on helpers submitted
+ * to the thread pool of the transfer manager, all claiming items from the same
+ * counter. The number of items in flight is bounded by the maximum
+ * concurrency, the work makes progress even when the pool is busy, and helpers
+ * that have not started by the time all items are claimed are cancelled
+ * rather than waited for. The first item that fails stops the others.
+ */
+class BoundedHelpers {
+
+    /**
+     * The work of the items.
+     */
+    interface Worker {
+        /**
+         * @return true if no more items should be claimed.
+         */
+        boolean isStopped();
+
+        /**
+         * Processes an item.
+         *
+         * @param index The index of the item.
+         */
+        void process(int index);
+
+        /**
+         * Called when an item fails; it should stop the other items.
+         *
+         * @param index The index of the item.
+         * @param t The failure.
+         */
+        void failed(int index, Throwable t);
+    }
+
+    private final int itemCount;
+    private final Worker worker;
+    private final AtomicInteger nextItem = new AtomicInteger();
+
+    /**
+     * @param itemCount The number of items.
+     * @param worker The work of the items.
+     */
+    BoundedHelpers(int itemCount, Worker worker) {
+        this.itemCount = itemCount;
+        this.worker = worker;
+    }
+
+    /**
+     * Processes the items, and returns once the items claimed are processed
+     * or the worker is stopped.
+     *
+     * @param threadPool The pool the helpers are submitted to.
+     * @param maxConcurrency The maximum number of items processed at once.
+     */
+    void run(ExecutorService threadPool, int maxConcurrency) {
+        final List<Helper> helpers = new ArrayList<Helper>();
+        final int helperCount = Math.min(maxConcurrency, itemCount) - 1;
+        for (int i = 0; i < helperCount; i++) {
+            final Helper helper = new Helper();
+            helper.future = threadPool.submit(helper);
+            helpers.add(helper);
+        }
+        processItems();
+        for (final Helper helper : helpers) {
+            helper.cancelOrAwait();
+        }
+    }
+
+    private void processItems() {
+        while (!worker.isStopped()) {
+            final int index = nextItem.getAndIncrement();
+            if (index >= itemCount) {
+                return;
+            }
+            try {
+                worker.process(index);
+            } catch (final Throwable t) {
+                worker.failed(index, t);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Processes items on the thread pool alongside the calling thread.
+     */
+    private class Helper implements Runnable {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Future<?> future;
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                processItems();
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Cancels the helper if it has not started, as it would find no item
+         * left, or waits for it to finish its items otherwise.
+         */
+        void cancelOrAwait() {
+            if (claimed.compareAndSet(false, true)) {
+                future.cancel(false);
+                return;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    finished.await();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
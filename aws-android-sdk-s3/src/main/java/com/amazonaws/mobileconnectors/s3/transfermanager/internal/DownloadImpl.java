@@ -37,6 +37,12 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     private final PersistableDownload persistableDownload;
 
+    /**
+     * The parallel download of byte ranges, or null if the object is
+     * downloaded with a single request.
+     */
+    private volatile MultipartDownloadCallable multipartDownload;
+
     public DownloadImpl(String description, TransferProgress transferProgress,
             ProgressListenerChain progressListenerChain, S3Object s3Object,
             TransferStateChangeListener listener,
@@ -86,9 +92,10 @@ public class DownloadImpl extends AbstractTransfer implements Download {
     @Override
     public synchronized void abort() throws IOException {
 
+        stopMultipartDownload(false);
         this.monitor.getFuture().cancel(true);
 
-        if (s3Object != null) {
+        if (s3Object != null && s3Object.getObjectContent() != null) {
             s3Object.getObjectContent().abort();
         }
         setState(TransferState.Canceled);
@@ -101,6 +108,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     public synchronized void abortWithoutNotifyingStateChangeListener() throws IOException {
 
+        stopMultipartDownload(false);
         this.monitor.getFuture().cancel(true);
 
         synchronized (this) {
@@ -108,6 +116,37 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         }
     }
 
+    /**
+     * Set the parallel download of the byte ranges of the object, which is
+     * stopped when the download is paused or canceled.
+     *
+     * @param multipartDownload the parallel download.
+     */
+    public void setMultipartDownload(MultipartDownloadCallable multipartDownload) {
+        this.multipartDownload = multipartDownload;
+    }
+
+    /**
+     * Stops the parallel download of byte ranges, if any. It is stopped before
+     * the future is canceled, so that a range interrupted while it is written
+     * is not taken for a failure.
+     *
+     * @param wait true to wait for the file to only hold the ranges downloaded
+     *            in order from the start, so that the download can be resumed.
+     *            Must not be true while holding the lock of this download.
+     */
+    private void stopMultipartDownload(boolean wait) {
+        final MultipartDownloadCallable callable = multipartDownload;
+        if (callable == null) {
+            return;
+        }
+        if (wait) {
+            callable.stopAndWait();
+        } else {
+            callable.stop();
+        }
+    }
+
     /**
      * Set the S3 object to download.
      */
@@ -153,6 +192,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
     public PersistableDownload pause() throws PauseException {
         boolean forceCancel = true;
         TransferState currentState = getState();
+        stopMultipartDownload(true);
         this.monitor.getFuture().cancel(true);
 
         if (persistableDownload == null) {
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer.TransferState;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.ServiceUtils;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+import com.amazonaws.logging.Log;
+import com.amazonaws.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Downloads an object to a file in byte ranges that are fetched in parallel on
+ * the thread pool of the transfer manager. Each range is written at its offset
+ * in the file.
+ * <p>
+ * The ranges are downloaded by {@link BoundedHelpers}, on the thread of the
+ * callable and on helpers it submits, so the download makes progress even
+ * when the pool is busy. When the download is paused, canceled
+ * or fails, the file is truncated to the ranges downloaded in order from the
+ * start, so that it can be resumed from its length like a download with a
+ * single request.
+ */
+public class MultipartDownloadCallable implements Callable<Object> {
+    private static final Log log = LogFactory.getLog(MultipartDownloadCallable.class);
+
+    private final AmazonS3 s3;
+    private final ExecutorService threadPool;
+    private final int maxConcurrency;
+    private final DownloadImpl download;
+    private final GetObjectRequest getObjectRequest;
+    private final ObjectMetadata objectMetadata;
+    private final File file;
+    private final long fileOffset;
+    private final long startingByte;
+    private final long lastByte;
+    private final long partSize;
+    private final int partCount;
+    private final CountDownLatch latch;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile boolean stopped;
+
+    /* All guarded by this. */
+    private final boolean[] completed;
+    private final Set<S3Object> inFlight = new HashSet<S3Object>();
+    private boolean started;
+    private Throwable failure;
+
+    /**
+     * @param s3 The client to download with.
+     * @param threadPool The thread pool of the transfer manager.
+     * @param maxConcurrency The maximum number of ranges downloaded at once.
+     * @param download The download.
+     * @param getObjectRequest The request the requests of the ranges are
+     *            copied from.
+     * @param objectMetadata The metadata of the object. The ranges are only
+     *            downloaded while the object keeps its ETag.
+     * @param file The file to download to.
+     * @param fileOffset The position in the file of the first byte to
+     *            download. The file is truncated when zero, otherwise the
+     *            download resumes after the bytes already in the file.
+     * @param startingByte The position in the object of the first byte to
+     *            download.
+     * @param lastByte The position in the object of the last byte to
+     *            download.
+     * @param partSize The size of the ranges.
+     * @param latch The latch to wait for before starting.
+     */
+    public MultipartDownloadCallable(AmazonS3 s3, ExecutorService threadPool,
+            int maxConcurrency, DownloadImpl download, GetObjectRequest getObjectRequest,
+            ObjectMetadata objectMetadata, File file, long fileOffset, long startingByte,
+            long lastByte, long partSize, CountDownLatch latch) {
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.maxConcurrency = maxConcurrency;
+        this.download = download;
+        this.getObjectRequest = getObjectRequest;
+        this.objectMetadata = objectMetadata;
+        this.file = file;
+        this.fileOffset = fileOffset;
+        this.startingByte = startingByte;
+        this.lastByte = lastByte;
+        this.partSize = partSize;
+        this.partCount = (int) ((lastByte - startingByte + partSize) / partSize);
+        this.completed = new boolean[partCount];
+        this.latch = latch;
+    }
+
+    @Override
+    public Object call() throws Exception {
+        latch.await();
+        synchronized (this) {
+            if (stopped) {
+                return null;
+            }
+            started = true;
+        }
+        try {
+            download.setState(TransferState.InProgress);
+            prepareFile();
+
+            new BoundedHelpers(partCount, new PartWorker()).run(threadPool, maxConcurrency);
+
+            final Throwable t;
+            synchronized (this) {
+                t = failure;
+            }
+            if (t != null || stopped) {
+                truncateToCompletedRanges();
+            }
+            if (t instanceof Exception) {
+                throw (Exception) t;
+            } else if (t != null) {
+                throw (Error) t;
+            }
+            if (stopped) {
+                // paused or canceled, like a download with a single request
+                if (download.getState() != TransferState.Canceled) {
+                    download.setState(TransferState.Canceled);
+                }
+                return null;
+            }
+
+            final S3Object s3Object = new S3Object();
+            s3Object.setBucketName(getObjectRequest.getBucketName());
+            s3Object.setKey(getObjectRequest.getKey());
+            s3Object.setObjectMetadata(objectMetadata);
+            download.setS3Object(s3Object);
+            download.setState(TransferState.Completed);
+            return true;
+        } catch (final Throwable t) {
+            // Downloads aren't allowed to move from canceled to failed
+            if (download.getState() != TransferState.Canceled) {
+                download.setState(TransferState.Failed);
+            }
+            if (t instanceof Exception) {
+                throw (Exception) t;
+            } else {
+                throw (Error) t;
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Stops downloading ranges, aborts the ranges in progress and waits for the
+     * file to be truncated to the ranges downloaded in order from the start.
+     */
+    public void stopAndWait() {
+        if (!stop()) {
+            return;
+        }
+        try {
+            done.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops downloading ranges and aborts the ranges in progress, without
+     * waiting.
+     *
+     * @return true if the download had started.
+     */
+    public boolean stop() {
+        final List<S3Object> objects;
+        final boolean wasStarted;
+        synchronized (this) {
+            stopped = true;
+            wasStarted = started;
+            objects = new ArrayList<S3Object>(inFlight);
+        }
+        abortAll(objects);
+        return wasStarted;
+    }
+
+    private boolean downloadPart(int part) {
+        final long rangeStart = startingByte + part * partSize;
+        final long rangeLast = Math.min(rangeStart + partSize - 1, lastByte);
+        final GetObjectRequest request = (GetObjectRequest) getObjectRequest.clone();
+        request.setRange(rangeStart, rangeLast);
+        if (objectMetadata.getETag() != null) {
+            // fail rather than mix ranges of different versions of the object
+            request.setMatchingETagConstraints(Collections.singletonList(objectMetadata.getETag()));
+        }
+
+        final S3Object s3Object = s3.getObject(request);
+        if (s3Object == null) {
+            throw new AmazonClientException("The object " + request.getKey()
+                    + " was modified during the download");
+        }
+        synchronized (this) {
+            if (!stopped) {
+                inFlight.add(s3Object);
+            }
+        }
+        if (stopped) {
+            s3Object.getObjectContent().abort();
+            return false;
+        }
+        try {
+            ServiceUtils.downloadObjectToFileRegion(s3Object, file,
+                    fileOffset + rangeStart - startingByte);
+            return true;
+        } finally {
+            synchronized (this) {
+                inFlight.remove(s3Object);
+            }
+        }
+    }
+
+    private void prepareFile() throws IOException {
+        final File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+        if (fileOffset == 0) {
+            setLengthAtMost(0);
+        }
+    }
+
+    private void truncateToCompletedRanges() throws IOException {
+        int prefix = 0;
+        synchronized (this) {
+            while (prefix < partCount && completed[prefix]) {
+                prefix++;
+            }
+        }
+        setLengthAtMost(fileOffset + Math.min(prefix * partSize, lastByte - startingByte + 1));
+    }
+
+    private void setLengthAtMost(long length) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            if (randomAccessFile.length() > length) {
+                randomAccessFile.setLength(length);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void abortAll(List<S3Object> objects) {
+        for (final S3Object s3Object : objects) {
+            s3Object.getObjectContent().abort();
+        }
+    }
+
+    /**
+     * Downloads the ranges claimed by the callable and its helpers.
+     */
+    private class PartWorker implements BoundedHelpers.Worker {
+        @Override
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        @Override
+        public void process(int part) {
+            if (downloadPart(part)) {
+                synchronized (MultipartDownloadCallable.this) {
+                    completed[part] = true;
+                }
+            }
+        }
+
+        @Override
+        public void failed(int part, Throwable t) {
+            synchronized (MultipartDownloadCallable.this) {
+                // ranges aborted or interrupted by a pause or cancel are not
+                // failures
+                if (stopped) {
+                    return;
+                }
+                if (failure == null) {
+                    log.debug("Failed to download range " + part + " of "
+                            + getObjectRequest.getKey(), t);
+                    failure = t;
+                }
+            }
+            stop();
+        }
+    }
+}
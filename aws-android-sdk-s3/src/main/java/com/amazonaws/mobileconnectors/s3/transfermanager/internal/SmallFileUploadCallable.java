@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer.TransferState;
+import com.amazonaws.mobileconnectors.s3.transfermanager.model.UploadResult;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import com.amazonaws.logging.Log;
+import com.amazonaws.logging.LogFactory;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Uploads the small files of a multiple file upload, each with a single
+ * PutObject request, on the thread pool of the transfer manager.
+ * <p>
+ * Like the ranges of a {@link MultipartDownloadCallable}, the files are
+ * uploaded by {@link BoundedHelpers}, so the number of requests in flight is
+ * bounded. The first file that fails stops the others.
+ */
+public class SmallFileUploadCallable implements Callable<UploadResult> {
+    private static final Log log = LogFactory.getLog(SmallFileUploadCallable.class);
+
+    private final AmazonS3 s3;
+    private final ExecutorService threadPool;
+    private final int maxConcurrency;
+    private final SmallFileUploadImpl upload;
+    private final List<PutObjectRequest> requests;
+    private final CountDownLatch latch;
+
+    private volatile boolean stopped;
+
+    /* All guarded by this. */
+    private boolean started;
+    private Throwable failure;
+
+    /**
+     * @param s3 The client to upload with.
+     * @param threadPool The thread pool of the transfer manager.
+     * @param maxConcurrency The maximum number of files uploaded at once.
+     * @param upload The upload of the small files.
+     * @param requests The requests of the small files.
+     * @param latch The latch to wait for before starting.
+     */
+    public SmallFileUploadCallable(AmazonS3 s3, ExecutorService threadPool,
+            int maxConcurrency, SmallFileUploadImpl upload, List<PutObjectRequest> requests,
+            CountDownLatch latch) {
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.maxConcurrency = maxConcurrency;
+        this.upload = upload;
+        this.requests = requests;
+        this.latch = latch;
+    }
+
+    @Override
+    public UploadResult call() throws Exception {
+        latch.await();
+        synchronized (this) {
+            if (stopped) {
+                return null;
+            }
+            started = true;
+        }
+        try {
+            upload.setState(TransferState.InProgress);
+
+            new BoundedHelpers(requests.size(), new FileWorker()).run(threadPool,
+                    maxConcurrency);
+
+            final Throwable t;
+            synchronized (this) {
+                t = failure;
+            }
+            if (t instanceof Exception) {
+                throw (Exception) t;
+            } else if (t != null) {
+                throw (Error) t;
+            }
+            if (stopped) {
+                return null;
+            }
+
+            final UploadResult result = new UploadResult();
+            result.setBucketName(upload.getBucketName());
+            result.setKey(upload.getKeyPrefix());
+            upload.setState(TransferState.Completed);
+            return result;
+        } catch (final Throwable t) {
+            // Uploads aren't allowed to move from canceled to failed
+            if (upload.getState() != TransferState.Canceled) {
+                upload.setState(TransferState.Failed);
+            }
+            if (t instanceof Exception) {
+                throw (Exception) t;
+            } else {
+                throw (Error) t;
+            }
+        }
+    }
+
+    /**
+     * Stops uploading files. The files in flight finish uploading.
+     *
+     * @return true if the upload had started.
+     */
+    public synchronized boolean stop() {
+        stopped = true;
+        return started;
+    }
+
+    /**
+     * Uploads the files claimed by the callable and its helpers.
+     */
+    private class FileWorker implements BoundedHelpers.Worker {
+        @Override
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        @Override
+        public void process(int index) {
+            s3.putObject(requests.get(index));
+        }
+
+        @Override
+        public void failed(int index, Throwable t) {
+            synchronized (SmallFileUploadCallable.this) {
+                if (failure == null && !stopped) {
+                    log.debug("Failed to upload " + requests.get(index).getKey(), t);
+                    failure = t;
+                }
+            }
+            stop();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import com.amazonaws.event.ProgressListenerChain;
+import com.amazonaws.mobileconnectors.s3.transfermanager.PauseResult;
+import com.amazonaws.mobileconnectors.s3.transfermanager.PauseStatus;
+import com.amazonaws.mobileconnectors.s3.transfermanager.PersistableUpload;
+import com.amazonaws.mobileconnectors.s3.transfermanager.TransferProgress;
+import com.amazonaws.mobileconnectors.s3.transfermanager.exception.PauseException;
+
+/**
+ * The upload of the small files of a multiple file upload, as a single
+ * sub-transfer. The small files can't be paused; pausing it with
+ * forceCancelTransfers set cancels the files not yet uploaded. Its upload
+ * result holds the bucket name and the key prefix of the multiple file
+ * upload.
+ */
+public class SmallFileUploadImpl extends UploadImpl {
+
+    private final String bucketName;
+    private final String keyPrefix;
+    private volatile SmallFileUploadCallable callable;
+
+    public SmallFileUploadImpl(String description, TransferProgress transferProgress,
+            ProgressListenerChain progressListenerChain, TransferStateChangeListener listener,
+            String bucketName, String keyPrefix) {
+        super(description, transferProgress, progressListenerChain, listener);
+        this.bucketName = bucketName;
+        this.keyPrefix = keyPrefix;
+    }
+
+    /**
+     * Returns the name of the bucket to which the files are uploaded.
+     */
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    /**
+     * Returns the key prefix of the virtual directory being uploaded to.
+     */
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    /**
+     * Sets the callable uploading the files.
+     *
+     * @param callable the callable uploading the files.
+     */
+    public void setCallable(SmallFileUploadCallable callable) {
+        this.callable = callable;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.amazonaws.mobileconnectors.s3.transfermanager.Upload#pause()
+     */
+    @Override
+    public PersistableUpload pause() throws PauseException {
+        throw new PauseException(tryPause(true).getPauseStatus());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see
+     * com.amazonaws.mobileconnectors.s3.transfermanager.Upload#tryPause(boolean
+     * )
+     */
+    @Override
+    public PauseResult<PersistableUpload> tryPause(boolean forceCancelTransfers) {
+        final PauseStatus pauseStatus = TransferManagerUtils.determinePauseStatus(getState(),
+                forceCancelTransfers);
+        if (forceCancelTransfers) {
+            abort();
+        }
+        return new PauseResult<PersistableUpload>(pauseStatus);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see com.amazonaws.mobileconnectors.s3.transfermanager.Upload#abort()
+     */
+    @Override
+    public void abort() {
+        final SmallFileUploadCallable c = callable;
+        if (c != null) {
+            c.stop();
+        }
+        if (!isDone()) {
+            setState(TransferState.Canceled);
+        }
+    }
+}
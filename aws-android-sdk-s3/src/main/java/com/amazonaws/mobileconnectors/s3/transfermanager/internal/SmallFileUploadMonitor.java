@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager.internal;
+
+import java.util.concurrent.Future;
+
+public class SmallFileUploadMonitor implements TransferMonitor {
+
+    private final Future<?> future;
+    private final SmallFileUploadImpl upload;
+
+    public SmallFileUploadMonitor(SmallFileUploadImpl upload, Future<?> future) {
+        this.upload = upload;
+        this.future = future;
+    }
+
+    @Override
+    public Future<?> getFuture() {
+        return future;
+    }
+
+    @Override
+    public boolean isDone() {
+        return upload.isDone();
+    }
+}
@@ -26,6 +26,7 @@ import com.amazonaws.mobileconnectors.s3.transfermanager.TransferProgress;
 import com.amazonaws.mobileconnectors.s3.transfermanager.model.UploadResult;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3EncryptionClient;
+import com.amazonaws.services.s3.internal.AdaptiveUploadController;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
@@ -47,12 +48,19 @@ import com.amazonaws.logging.LogFactory;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class UploadCallable implements Callable<UploadResult> {
     private final AmazonS3 s3;
@@ -75,6 +83,19 @@ public class UploadCallable implements Callable<UploadResult> {
 
     private PersistableUpload persistableUpload;
 
+    /** Default maximum parts in flight when the pool size isn't known. */
+    private static final int DEFAULT_UPLOAD_CONCURRENCY = 10;
+
+    /**
+     * Controls the parts in flight of an adaptive upload, null otherwise.
+     */
+    private AdaptiveUploadController adaptiveUploadController;
+
+    /**
+     * Parts of an adaptive upload waiting to be submitted to the thread pool.
+     */
+    private final Queue<AdaptivePartTask> pendingParts = new LinkedList<AdaptivePartTask>();
+
     public UploadCallable(TransferManager transferManager,
             ExecutorService threadPool, UploadImpl upload,
             PutObjectRequest putObjectRequest,
@@ -279,12 +300,21 @@ public class UploadCallable implements Callable<UploadResult> {
 
     /**
      * Submits a callable for each part to upload to our thread pool and records
-     * its corresponding Future.
+     * its corresponding Future. When adaptive uploads are enabled, the parts
+     * are submitted as the {@link AdaptiveUploadController} allows more parts
+     * in flight, from the completion of the previous parts, so that no thread
+     * of the pool waits for them.
      */
     private void uploadPartsInParallel(UploadPartRequestFactory requestFactory,
             String uploadId) {
 
         Map<Integer, PartSummary> partNumbers = identifyExistingPartsForResume(uploadId);
+        if (configuration.isAdaptiveUploadEnabled()) {
+            // The part size stays fixed so that a paused upload resumes at
+            // the same part boundaries.
+            adaptiveUploadController = new AdaptiveUploadController(getMaxUploadConcurrency(),
+                    requestFactory.getPartSize(), requestFactory.getPartSize());
+        }
 
         while (requestFactory.hasMoreRequests()) {
             if (threadPool.isShutdown())
@@ -297,7 +327,98 @@ public class UploadCallable implements Callable<UploadResult> {
                 transferProgress.updateProgress(summary.getSize());
                 continue;
             }
-            futures.add(threadPool.submit(new UploadPartCallable(s3, request)));
+            if (adaptiveUploadController == null) {
+                futures.add(threadPool.submit(new UploadPartCallable(s3, request)));
+            } else {
+                final AdaptivePartTask task = new AdaptivePartTask(
+                        new UploadPartCallable(s3, request), request.getPartSize());
+                futures.add(task);
+                synchronized (pendingParts) {
+                    pendingParts.add(task);
+                }
+            }
+        }
+        if (adaptiveUploadController != null) {
+            submitPendingParts();
+        }
+    }
+
+    /**
+     * Submits waiting parts of an adaptive upload while the controller allows
+     * more parts in flight.
+     */
+    private void submitPendingParts() {
+        while (true) {
+            final AdaptivePartTask task;
+            synchronized (pendingParts) {
+                if (pendingParts.isEmpty() || !adaptiveUploadController.tryAcquire()) {
+                    return;
+                }
+                task = pendingParts.remove();
+                task.permitHeld.set(true);
+            }
+            if (task.isDone()) {
+                // canceled while waiting
+                task.releasePermit();
+                continue;
+            }
+            try {
+                threadPool.execute(task);
+            } catch (final RejectedExecutionException e) {
+                task.cancel(false);
+                task.releasePermit();
+            }
+        }
+    }
+
+    private int getMaxUploadConcurrency() {
+        if (threadPool instanceof ThreadPoolExecutor) {
+            return Math.max(1, ((ThreadPoolExecutor) threadPool).getMaximumPoolSize());
+        }
+        return DEFAULT_UPLOAD_CONCURRENCY;
+    }
+
+    /**
+     * A part of an adaptive upload, which reports its outcome to the
+     * controller and submits the next waiting parts when it's done.
+     */
+    private final class AdaptivePartTask extends FutureTask<PartETag> {
+        private final long partSize;
+        private final AtomicBoolean permitHeld = new AtomicBoolean();
+        private volatile long startNanos;
+
+        AdaptivePartTask(UploadPartCallable callable, long partSize) {
+            super(callable);
+            this.partSize = partSize;
+        }
+
+        @Override
+        public void run() {
+            startNanos = System.nanoTime();
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            if (startNanos != 0 && !isCancelled()) {
+                try {
+                    get();
+                    adaptiveUploadController.onPartCompleted(partSize,
+                            System.nanoTime() - startNanos);
+                } catch (final ExecutionException e) {
+                    adaptiveUploadController.onPartFailed();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            releasePermit();
+            submitPendingParts();
+        }
+
+        void releasePermit() {
+            if (permitHeld.compareAndSet(true, false)) {
+                adaptiveUploadController.release();
+            }
         }
     }
 
@@ -55,6 +55,13 @@ public class UploadPartRequestFactory {
         this.sseCustomerKey = putObjectRequest.getSSECustomerKey();
     }
 
+    /**
+     * @return the size of the parts, except the last one.
+     */
+    public long getPartSize() {
+        return optimalPartSize;
+    }
+
     public synchronized boolean hasMoreRequests() {
         return (remainingBytes > 0);
     }
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2015-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.ServiceUtils;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+
+import com.amazonaws.logging.Log;
+import com.amazonaws.logging.LogFactory;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+/**
+ * Downloads one byte range of a multipart download and writes it at its
+ * offset in the file.
+ */
+class DownloadPartTask implements Callable<Boolean> {
+    private static final Log LOGGER = LogFactory.getLog(DownloadPartTask.class);
+
+    private final DownloadTask.DownloadPartTaskMetadata downloadPartTaskMetadata;
+    private final DownloadPartTaskProgressListener progressListener;
+    private final TransferRecord range;
+    private final AmazonS3 s3;
+    private final TransferDBUtil dbUtil;
+
+    public DownloadPartTask(DownloadTask.DownloadPartTaskMetadata downloadPartTaskMetadata,
+                            DownloadTask.DownloadTaskProgressListener downloadTaskProgressListener,
+                            TransferRecord range,
+                            AmazonS3 s3,
+                            TransferDBUtil dbUtil) {
+        this.downloadPartTaskMetadata = downloadPartTaskMetadata;
+        this.progressListener = new DownloadPartTaskProgressListener(downloadTaskProgressListener);
+        this.range = range;
+        this.s3 = s3;
+        this.dbUtil = dbUtil;
+    }
+
+    /*
+     * Runs part download task and returns whether successfully downloaded.
+     */
+    @Override
+    public Boolean call() throws Exception {
+        try {
+            downloadPartTaskMetadata.state = TransferState.IN_PROGRESS;
+            final GetObjectRequest getObjectRequest = new GetObjectRequest(range.bucketName,
+                    range.key);
+            getObjectRequest.setRange(range.rangeStart, range.rangeLast);
+            if (range.eTag != null) {
+                // fail rather than mix ranges of different versions of the object
+                getObjectRequest.setMatchingETagConstraints(Collections.singletonList(range.eTag));
+            }
+            TransferUtility.appendMultipartTransferServiceUserAgentString(getObjectRequest);
+            getObjectRequest.setGeneralProgressListener(progressListener);
+
+            final S3Object object = s3.getObject(getObjectRequest);
+            if (object == null) {
+                throw new AmazonClientException("The object " + range.key
+                        + " was modified during the download");
+            }
+            ServiceUtils.downloadObjectToFileRegion(object, new File(range.file),
+                    range.rangeStart);
+            downloadPartTaskMetadata.state = TransferState.PART_COMPLETED;
+            dbUtil.updateState(range.id, TransferState.PART_COMPLETED);
+            return true;
+        } catch (final Exception e) {
+            LOGGER.error("Download part interrupted: " + e);
+            // discard the bytes of the part from the progress of the download
+            final ProgressEvent resetEvent = new ProgressEvent(0);
+            resetEvent.setEventCode(ProgressEvent.RESET_EVENT_CODE);
+            progressListener.progressChanged(resetEvent);
+
+            // Check if network is not connected, set the state to WAITING_FOR_NETWORK.
+            try {
+                if (TransferNetworkLossHandler.getInstance() != null &&
+                    !TransferNetworkLossHandler.getInstance().isNetworkConnected()) {
+                    LOGGER.info("Thread: [" + Thread.currentThread().getId() + "]: Network wasn't available.");
+                    /*
+                     * Network connection is being interrupted. Moving the TransferState
+                     * to WAITING_FOR_NETWORK till the network availability resumes.
+                     */
+                    downloadPartTaskMetadata.state = TransferState.WAITING_FOR_NETWORK;
+                    dbUtil.updateState(range.id, TransferState.WAITING_FOR_NETWORK);
+                    LOGGER.info("Network Connection Interrupted: " +
+                            "Moving the TransferState to WAITING_FOR_NETWORK");
+                    return false;
+                }
+            } catch (TransferUtilityException transferUtilityException) {
+                LOGGER.error("TransferUtilityException: [" + transferUtilityException + "]");
+            }
+
+            // In other cases, set the transfer state to FAILED.
+            downloadPartTaskMetadata.state = TransferState.FAILED;
+            dbUtil.updateState(range.id, TransferState.FAILED);
+            LOGGER.error("Encountered error downloading part ", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Progress Listener for a part
+     */
+    private class DownloadPartTaskProgressListener implements ProgressListener {
+
+        private DownloadTask.DownloadTaskProgressListener downloadTaskProgressListener;
+
+        private long bytesTransferredSoFar;
+
+        public DownloadPartTaskProgressListener(DownloadTask.DownloadTaskProgressListener progressListener) {
+            this.downloadTaskProgressListener = progressListener;
+        }
+
+        @Override
+        public synchronized void progressChanged(ProgressEvent progressEvent) {
+            if (ProgressEvent.RESET_EVENT_CODE == progressEvent.getEventCode()) {
+                // Reset will discard what's been transferred
+                bytesTransferredSoFar = 0;
+            } else {
+                bytesTransferredSoFar += progressEvent.getBytesTransferred();
+            }
+            this.downloadTaskProgressListener
+                    .onProgressChanged(DownloadPartTask.this.range.partNumber,
+                        bytesTransferredSoFar);
+        }
+    }
+}
@@ -20,9 +20,13 @@ import com.amazonaws.event.ProgressEvent;
 import com.amazonaws.event.ProgressListener;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 
+import android.content.ContentValues;
+
 import com.amazonaws.logging.Log;
 import com.amazonaws.logging.LogFactory;
 
@@ -32,12 +36,24 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * Performs download operation and returns a Boolean value indicating whether
  * the file has been downloaded successfully.
+ *
+ * When multipart downloads are enabled in the {@link TransferUtilityOptions}
+ * of the transfer, an object larger than the download part size is split into
+ * byte ranges. A record is saved per range and a thread is created per range
+ * and submitted to the thread pool, so a resumed download only fetches the
+ * ranges that have not completed.
  */
 class DownloadTask implements Callable<Boolean> {
 
@@ -46,20 +62,28 @@ class DownloadTask implements Callable<Boolean> {
 
     private final AmazonS3 s3;
     private final TransferRecord download;
+    private final TransferDBUtil dbUtil;
     private final TransferStatusUpdater updater;
 
+    Map<Integer, DownloadPartTaskMetadata> downloadPartTasks;
+
     /**
      * Constructs a DownloadTask with the given download info and S3 client.
      *
      * @param download A TransferRecord object storing all the information of the
      *                 download
      * @param s3       Low-level S3 client
+     * @param dbUtil   the TransferDBUtil that saves the byte ranges of a
+     *                 multipart download
      * @param updater  status updater
      */
-    public DownloadTask(TransferRecord download, AmazonS3 s3, TransferStatusUpdater updater) {
+    public DownloadTask(TransferRecord download, AmazonS3 s3, TransferDBUtil dbUtil,
+            TransferStatusUpdater updater) {
         this.download = download;
         this.s3 = s3;
+        this.dbUtil = dbUtil;
         this.updater = updater;
+        this.downloadPartTasks = new HashMap<Integer, DownloadPartTaskMetadata>();
     }
 
     /**
@@ -84,6 +108,15 @@ class DownloadTask implements Callable<Boolean> {
         ProgressListener progressListener = updater.newProgressListener(download.id);
 
         try {
+            if (download.transferUtilityOptions != null
+                    && download.transferUtilityOptions.isMultipartDownloadEnabled()) {
+                final List<TransferRecord> ranges = prepareDownloadRanges(
+                        download.transferUtilityOptions.getDownloadPartSize());
+                if (ranges != null) {
+                    return downloadMultipartAndWaitForCompletion(ranges);
+                }
+            }
+
             getObjectRequest = new GetObjectRequest(download.bucketName, download.key);
             TransferUtility.appendTransferServiceUserAgentString(getObjectRequest);
             final File file = new File(download.file);
@@ -162,6 +195,163 @@ class DownloadTask implements Callable<Boolean> {
         }
     }
 
+    /**
+     * Returns the byte ranges of a multipart download that have not been
+     * downloaded yet. They are created on the first run, after the file has
+     * been allocated to the size of the object.
+     *
+     * @param partSize The size of the ranges.
+     * @return The ranges to download, or null if the object is downloaded
+     *         with a single request.
+     */
+    private List<TransferRecord> prepareDownloadRanges(long partSize) throws IOException {
+        final File file = new File(download.file);
+        final List<TransferRecord> ranges = dbUtil.queryDownloadRangesFromDB(download.id);
+        if (!ranges.isEmpty()) {
+            if (file.length() == download.bytesTotal) {
+                final List<TransferRecord> remaining = new ArrayList<TransferRecord>();
+                for (final TransferRecord range : ranges) {
+                    if (!TransferState.PART_COMPLETED.equals(range.state)) {
+                        remaining.add(range);
+                    }
+                }
+                return remaining;
+            }
+            // the file has been removed or truncated since, start over
+            LOGGER.info("Restarting multipart download " + download.id);
+            dbUtil.deleteDownloadRangeRecords(download.id);
+            if (!file.delete() && file.exists()) {
+                throw new IOException("Unable to delete " + file.getAbsolutePath());
+            }
+        } else if (file.length() > 0) {
+            // resume a download that was started with a single request
+            return null;
+        }
+
+        final GetObjectMetadataRequest getObjectMetadataRequest = new GetObjectMetadataRequest(
+                download.bucketName, download.key);
+        TransferUtility.appendMultipartTransferServiceUserAgentString(getObjectMetadataRequest);
+        final ObjectMetadata metadata = s3.getObjectMetadata(getObjectMetadataRequest);
+        final long bytesTotal = metadata.getContentLength();
+        if (bytesTotal <= partSize) {
+            return null;
+        }
+
+        final File parentDirectory = file.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(bytesTotal);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        download.eTag = metadata.getETag();
+        download.bytesTotal = bytesTotal;
+        dbUtil.updateETag(download.id, download.eTag);
+        dbUtil.updateBytesTotalForDownload(download.id, bytesTotal);
+
+        final int partCount = (int) ((bytesTotal + partSize - 1) / partSize);
+        final ContentValues[] valuesArray = new ContentValues[partCount];
+        for (int i = 0; i < partCount; i++) {
+            final long rangeStart = i * partSize;
+            final long rangeLast = Math.min(rangeStart + partSize, bytesTotal) - 1;
+            valuesArray[i] = dbUtil.generateContentValuesForDownloadRange(download, i + 1,
+                    rangeStart, rangeLast);
+        }
+        if (!dbUtil.bulkInsertDownloadRangeRecords(download.id, valuesArray)) {
+            throw new AmazonClientException("Unable to save the ranges of download "
+                    + download.id);
+        }
+        return dbUtil.queryDownloadRangesFromDB(download.id);
+    }
+
+    private Boolean downloadMultipartAndWaitForCompletion(List<TransferRecord> ranges) {
+        final long bytesAlreadyTransferred = dbUtil.queryBytesTransferredByMainUploadId(download.id);
+        if (bytesAlreadyTransferred > 0) {
+            LOGGER.info(String.format("Resume transfer %d from %d bytes",
+                    download.id, bytesAlreadyTransferred));
+        }
+        final DownloadTaskProgressListener downloadTaskProgressListener =
+                new DownloadTaskProgressListener(bytesAlreadyTransferred);
+        updater.updateProgress(download.id, bytesAlreadyTransferred, download.bytesTotal, false);
+
+        LOGGER.info("Multipart download " + download.id + " in " + ranges.size() + " parts.");
+        for (final TransferRecord range : ranges) {
+            final DownloadPartTaskMetadata downloadPartTaskMetadata = new DownloadPartTaskMetadata();
+            downloadPartTaskMetadata.bytesTransferredSoFar = 0;
+            downloadPartTaskMetadata.state = TransferState.WAITING;
+            downloadPartTasks.put(range.partNumber, downloadPartTaskMetadata);
+        }
+        // the parts report progress through the map, so it is filled first
+        for (final TransferRecord range : ranges) {
+            final DownloadPartTaskMetadata downloadPartTaskMetadata =
+                    downloadPartTasks.get(range.partNumber);
+            downloadPartTaskMetadata.downloadPartTask = TransferThreadPool.submitTask(
+                    new DownloadPartTask(downloadPartTaskMetadata, downloadTaskProgressListener,
+                            range, s3, dbUtil));
+        }
+
+        try {
+            boolean isSuccess = true;
+            for (final DownloadPartTaskMetadata task : downloadPartTasks.values()) {
+                // DownloadPartTask returns false when it waits for network
+                final boolean b = task.downloadPartTask.get();
+                isSuccess &= b;
+            }
+            if (!isSuccess) {
+                if (dbUtil.checkWaitingForNetworkPartRequestsFromDB(download.id)) {
+                    LOGGER.info("Network Connection Interrupted: Transfer " + download.id
+                            + " waits for network");
+                    updater.updateState(download.id, TransferState.WAITING_FOR_NETWORK);
+                }
+                return false;
+            }
+        } catch (final Exception e) {
+            LOGGER.error("Download resulted in an exception. " + e);
+
+            /*
+             * Future.get() will catch InterruptedException, but it's not a
+             * failure, it may be caused by a pause operation from applications.
+             * Cancel all the on-going part tasks.
+             */
+            for (final DownloadPartTaskMetadata task : downloadPartTasks.values()) {
+                task.downloadPartTask.cancel(true);
+            }
+
+            if (TransferState.CANCELED.equals(download.state) ||
+                TransferState.PAUSED.equals(download.state)) {
+                LOGGER.info("Transfer is " + download.state);
+                return false;
+            }
+
+            for (final DownloadPartTaskMetadata task : downloadPartTasks.values()) {
+                if (TransferState.WAITING_FOR_NETWORK.equals(task.state)) {
+                    LOGGER.info("Individual part is WAITING_FOR_NETWORK.");
+                    updater.updateState(download.id, TransferState.WAITING_FOR_NETWORK);
+                    return false;
+                }
+            }
+
+            if (RetryUtils.isInterrupted(e)) {
+                LOGGER.info("Transfer is interrupted. " + e);
+                return false;
+            }
+
+            LOGGER.error("Error encountered during multipart download: " + download.id
+                    + " due to " + e.getMessage(), e);
+            updater.throwError(download.id, e);
+            updater.updateState(download.id, TransferState.FAILED);
+            return false;
+        }
+
+        updater.updateProgress(download.id, download.bytesTotal, download.bytesTotal, true);
+        updater.updateState(download.id, TransferState.COMPLETED);
+        return true;
+    }
+
     /**
      * Writes stream data into a file.
      *
@@ -208,4 +398,59 @@ class DownloadTask implements Callable<Boolean> {
             }
         }
     }
+
+    class DownloadTaskProgressListener implements ProgressListener {
+
+        // The bytes of the ranges downloaded before this run.
+        private final long bytesAlreadyTransferred;
+
+        // This variable tracks the previously reported total bytes transferred.
+        private long prevTotalBytesTransferredOfAllParts;
+
+        DownloadTaskProgressListener(long bytesAlreadyTransferred) {
+            this.bytesAlreadyTransferred = bytesAlreadyTransferred;
+            this.prevTotalBytesTransferredOfAllParts = bytesAlreadyTransferred;
+        }
+
+        @Override
+        public void progressChanged(final ProgressEvent progressEvent) {
+            // No-op
+        }
+
+        public synchronized void onProgressChanged(final int partNum,
+            final long bytesTransferredSoFarForPartNum) {
+            DownloadPartTaskMetadata partNumTask = downloadPartTasks.get(partNum);
+            if (partNumTask == null) {
+                LOGGER.info("Update received for unknown part. Ignoring.");
+                return;
+            }
+
+            partNumTask.bytesTransferredSoFar = bytesTransferredSoFarForPartNum;
+
+            long totalBytesTransferredOfAllParts = bytesAlreadyTransferred;
+            for (Map.Entry<Integer, DownloadPartTaskMetadata> part : downloadPartTasks.entrySet()) {
+                totalBytesTransferredOfAllParts += part.getValue().bytesTransferredSoFar;
+            }
+
+            if (totalBytesTransferredOfAllParts > prevTotalBytesTransferredOfAllParts) {
+                updater.updateProgress(DownloadTask.this.download.id,
+                    totalBytesTransferredOfAllParts,
+                    DownloadTask.this.download.bytesTotal,
+                    true);
+                prevTotalBytesTransferredOfAllParts = totalBytesTransferredOfAllParts;
+            }
+        }
+    }
+
+    // This class represents the state being tracked per byte range
+    class DownloadPartTaskMetadata {
+        // The future task that runs DownloadPartTask to download a range
+        Future<Boolean> downloadPartTask;
+
+        // number of bytes transferred so far for this range
+        long bytesTransferredSoFar;
+
+        // state of the transfer
+        volatile TransferState state;
+    }
 }
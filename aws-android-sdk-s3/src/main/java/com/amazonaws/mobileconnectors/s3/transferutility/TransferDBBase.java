@@ -238,7 +238,39 @@ class TransferDBBase {
     }
 
     /**
-     * @param uri The Uri of a table.
+     * Updates records by id in a single transaction.
+     *
+     * @param valuesArray The values to update, each with the id of its
+     *            record.
+     * @return Number of rows updated.
+     */
+    public synchronized int bulkUpdate(ContentValues[] valuesArray) {
+        int rowsUpdated = 0;
+        ensureDatabaseOpen();
+        try {
+            database.beginTransaction();
+            for (final ContentValues values : valuesArray) {
+                final Integer id = values.getAsInteger(TransferTable.COLUMN_ID);
+                rowsUpdated += database.update(TransferTable.TABLE_TRANSFER, values,
+                        TransferTable.COLUMN_ID + "=" + id, null);
+            }
+            database.setTransactionSuccessful();
+        } catch (final Exception e) {
+            LOGGER.error("bulkUpdate error : ", e);
+            rowsUpdated = 0;
+        } finally {
+            database.endTransaction();
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Inserts records in a single transaction. With the Uri of the table, the
+     * first values are inserted as the main record of a multipart transfer
+     * and the others as its parts. With the part Uri of an existing transfer,
+     * all values are inserted as parts of that transfer.
+     *
+     * @param uri The Uri of a table, or the part Uri of a transfer.
      * @param valuesArray A array of values to insert.
      * @return The mainUploadId of the multipart transfer records
      */
@@ -263,6 +295,22 @@ class TransferDBBase {
                     database.endTransaction();
                 }
                 break;
+            case TRANSFER_PART:
+                mainUploadId = Integer.parseInt(uri.getLastPathSegment());
+                try {
+                    database.beginTransaction();
+                    for (final ContentValues values : valuesArray) {
+                        values.put(TransferTable.COLUMN_MAIN_UPLOAD_ID, mainUploadId);
+                        database.insertOrThrow(TransferTable.TABLE_TRANSFER, null, values);
+                    }
+                    database.setTransactionSuccessful();
+                } catch (final Exception e) {
+                    LOGGER.error("bulkInsert error : ", e);
+                    mainUploadId = 0;
+                } finally {
+                    database.endTransaction();
+                }
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
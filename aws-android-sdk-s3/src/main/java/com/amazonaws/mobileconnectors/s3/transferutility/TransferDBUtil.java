@@ -34,6 +34,7 @@ import com.google.gson.Gson;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Provides methods to conveniently perform database operations.
@@ -197,6 +198,28 @@ class TransferDBUtil {
         return transferDBBase.update(getRecordUri(id), values, null, null);
     }
 
+    /**
+     * Updates the current bytes of several transfer records in a single
+     * transaction.
+     *
+     * @param bytesById The bytes currently transferred, by transfer id.
+     * @return Number of rows updated.
+     */
+    public int updateBytesTransferred(Map<Integer, Long> bytesById) {
+        if (bytesById.isEmpty()) {
+            return 0;
+        }
+        final ContentValues[] valuesArray = new ContentValues[bytesById.size()];
+        int i = 0;
+        for (final Map.Entry<Integer, Long> entry : bytesById.entrySet()) {
+            final ContentValues values = new ContentValues();
+            values.put(TransferTable.COLUMN_ID, entry.getKey());
+            values.put(TransferTable.COLUMN_BYTES_CURRENT, entry.getValue());
+            valuesArray[i++] = values;
+        }
+        return transferDBBase.bulkUpdate(valuesArray);
+    }
+
     /**
      * Updates the total bytes of a download record.
      *
@@ -282,6 +305,19 @@ class TransferDBUtil {
         return transferDBBase.update(getRecordUri(id), values, null, null);
     }
 
+    /**
+     * Updates the measured throughput of the transfer record.
+     *
+     * @param id The id of the transfer.
+     * @param bytesPerSecond The throughput of the transfer in bytes per second.
+     * @return Number of rows updated.
+     */
+    public int updateSpeed(int id, long bytesPerSecond) {
+        final ContentValues values = new ContentValues();
+        values.put(TransferTable.COLUMN_SPEED, bytesPerSecond);
+        return transferDBBase.update(getRecordUri(id), values, null, null);
+    }
+
     /**
      * Updates states of all transfer records which are "running" and "waiting"
      * to "network disconnect"
@@ -638,6 +674,59 @@ class TransferDBUtil {
         return list;
     }
 
+    /**
+     * Queries the byte range records of a multipart download.
+     *
+     * @param mainDownloadId The id of the multipart download
+     * @return A list of the range records, in part number order
+     */
+    List<TransferRecord> queryDownloadRangesFromDB(int mainDownloadId) {
+        final List<TransferRecord> ranges = new ArrayList<TransferRecord>();
+        Cursor c = null;
+        try {
+            c = transferDBBase.query(getPartUri(mainDownloadId), null, null, null,
+                    TransferTable.COLUMN_PART_NUM);
+            while (c.moveToNext()) {
+                final TransferRecord range = new TransferRecord(
+                        c.getInt(c.getColumnIndexOrThrow(TransferTable.COLUMN_ID)));
+                range.updateFromDB(c);
+                ranges.add(range);
+            }
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Inserts the byte range records of a multipart download in a single
+     * transaction.
+     *
+     * @param mainDownloadId The id of the multipart download
+     * @param valuesArray The values of the ranges
+     * @return true if the ranges were inserted.
+     */
+    public boolean bulkInsertDownloadRangeRecords(int mainDownloadId, ContentValues[] valuesArray) {
+        return transferDBBase.bulkInsert(getPartUri(mainDownloadId), valuesArray) != 0;
+    }
+
+    /**
+     * Deletes the byte range records of a multipart download.
+     *
+     * @param mainDownloadId The id of the multipart download
+     * @return Number of rows deleted.
+     */
+    public int deleteDownloadRangeRecords(int mainDownloadId) {
+        return transferDBBase.delete(getContentUri(),
+                TransferTable.COLUMN_MAIN_UPLOAD_ID + "=? and " + TransferTable.COLUMN_PART_NUM
+                        + ">0",
+                new String[] {
+                        String.valueOf(mainDownloadId)
+                });
+    }
+
     /**
      * Queries waiting for network partUpload tasks of a multipart upload and returns
      * true if one such partUpload tasks
@@ -735,6 +824,36 @@ class TransferDBUtil {
         return values;
     }
 
+    /**
+     * Generates a ContentValues object to insert into the database for a byte
+     * range of a multipart download. The range is inclusive.
+     *
+     * @param download The multipart download.
+     * @param partNumber The part number of this range, starting from 1.
+     * @param rangeStart The position of the first byte of the range.
+     * @param rangeLast The position of the last byte of the range.
+     * @return The ContentValues object generated.
+     */
+    public ContentValues generateContentValuesForDownloadRange(TransferRecord download,
+            int partNumber, long rangeStart, long rangeLast) {
+        final ContentValues values = new ContentValues();
+        values.put(TransferTable.COLUMN_TYPE, TransferType.DOWNLOAD.toString());
+        values.put(TransferTable.COLUMN_STATE, TransferState.WAITING.toString());
+        values.put(TransferTable.COLUMN_BUCKET_NAME, download.bucketName);
+        values.put(TransferTable.COLUMN_KEY, download.key);
+        values.put(TransferTable.COLUMN_FILE, download.file);
+        values.put(TransferTable.COLUMN_BYTES_CURRENT, 0L);
+        values.put(TransferTable.COLUMN_BYTES_TOTAL, rangeLast - rangeStart + 1);
+        values.put(TransferTable.COLUMN_IS_MULTIPART, 1);
+        values.put(TransferTable.COLUMN_PART_NUM, partNumber);
+        values.put(TransferTable.COLUMN_FILE_OFFSET, rangeStart);
+        values.put(TransferTable.COLUMN_DATA_RANGE_START, rangeStart);
+        values.put(TransferTable.COLUMN_DATA_RANGE_LAST, rangeLast);
+        values.put(TransferTable.COLUMN_ETAG, download.eTag);
+        values.put(TransferTable.COLUMN_IS_ENCRYPTED, 0);
+        return values;
+    }
+
     /**
      * Adds mappings to a ContentValues object for the data in the passed in
      * ObjectMetadata
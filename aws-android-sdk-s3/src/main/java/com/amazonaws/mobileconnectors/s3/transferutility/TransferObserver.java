@@ -55,6 +55,7 @@ public class TransferObserver {
     private String key;
     private long bytesTotal;
     private long bytesTransferred;
+    private long speed;
     private TransferState transferState;
     private String filePath;
 
@@ -139,6 +140,7 @@ public class TransferObserver {
         bytesTotal = c.getLong(c.getColumnIndexOrThrow(TransferTable.COLUMN_BYTES_TOTAL));
         bytesTransferred = c.getLong(c
                 .getColumnIndexOrThrow(TransferTable.COLUMN_BYTES_CURRENT));
+        speed = c.getLong(c.getColumnIndexOrThrow(TransferTable.COLUMN_SPEED));
         transferState = TransferState.getState(c.getString(c
                 .getColumnIndexOrThrow(TransferTable.COLUMN_STATE)));
         filePath = c.getString(c.getColumnIndexOrThrow(TransferTable.COLUMN_FILE));
@@ -223,6 +225,19 @@ public class TransferObserver {
         return bytesTransferred;
     }
 
+    /**
+     * Gets the throughput of the transfer, measured over the parts of a
+     * multipart upload completed since the transfer last started or resumed.
+     * Unlike the progress, it isn't pushed to the observer; call
+     * {@link #refresh()} to read the latest value.
+     *
+     * @return The throughput in bytes per second, or 0 if it hasn't been
+     *         measured.
+     */
+    public long getSpeed() {
+        return speed;
+    }
+
     /**
      * Gets the state of the transfer task.
      *
@@ -281,6 +296,7 @@ public class TransferObserver {
                 ", key='" + key + '\'' +
                 ", bytesTotal=" + bytesTotal +
                 ", bytesTransferred=" + bytesTransferred +
+                ", speed=" + speed +
                 ", transferState=" + transferState +
                 ", filePath='" + filePath + '\'' +
                 '}';
@@ -214,6 +214,9 @@ public class TransferService extends Service {
             LOGGER.warn("Exception trying to de-register the network receiver");
         }
 
+        // save the progress kept in memory
+        TransferStatusUpdater.getInstance(this).persistProgress();
+
         super.onDestroy();
     }
 
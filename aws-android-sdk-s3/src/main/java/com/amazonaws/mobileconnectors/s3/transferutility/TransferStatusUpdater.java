@@ -31,11 +31,23 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A class that tracks active transfers. It has a static map that holds weak
  * references of {@link TransferListener}.
+ * <p>
+ * Progress updates are kept in memory and written to the database together,
+ * in a single transaction, at most once per progress persist interval, and
+ * whenever the state of a transfer changes. Progress notifications are
+ * throttled per transfer by a separate interval. State updates of different
+ * transfers don't wait for each other. The progress of a transfer is written
+ * under the same lock as its state, so that an older progress never
+ * overwrites the bytes saved along with a newer state.
  */
 class TransferStatusUpdater {
     private static final Log LOGGER = LogFactory.getLog(TransferStatusUpdater.class);
@@ -48,6 +60,11 @@ class TransferStatusUpdater {
                     TransferState.PENDING_PAUSE,
                     TransferState.PENDING_NETWORK_DISCONNECT));
 
+    /**
+     * Number of locks the state updates are striped over.
+     */
+    private static final int STATE_LOCK_STRIPES = 16;
+
     /**
      * A map of listeners.
      */
@@ -58,15 +75,44 @@ class TransferStatusUpdater {
      */
     private final Map<Integer, TransferRecord> transfers;
 
+    /**
+     * Bytes transferred not written to the database yet, by transfer id.
+     */
+    private final ConcurrentHashMap<Integer, Long> unsavedProgress =
+            new ConcurrentHashMap<Integer, Long>();
+
+    /**
+     * Time of the last progress notification, by transfer id.
+     */
+    private final ConcurrentHashMap<Integer, Long> lastNotified =
+            new ConcurrentHashMap<Integer, Long>();
+
+    /**
+     * Time the unsaved progress was last written to the database.
+     */
+    private final AtomicLong lastPersisted = new AtomicLong();
+
+    /**
+     * Locks serializing the state and progress writes of a transfer, by id.
+     */
+    private final ReentrantLock[] stateLocks = new ReentrantLock[STATE_LOCK_STRIPES];
+
+    private volatile long progressPersistInterval =
+            TransferUtilityOptions.getDefaultProgressPersistInterval();
+
+    private volatile long progressNotificationInterval;
+
+    private boolean progressIntervalsSet;
+
     /**
      * Database util to update transfer status.
      */
     private static TransferDBUtil dbUtil;
     
     /**
-     * The handler of main thread that runs callbacks.
+     * Runs the listener callbacks, normally on the main thread.
      */
-    private final Handler mainHandler;
+    private final Executor callbackExecutor;
 
     /**
      * The Singleton instance.
@@ -79,9 +125,27 @@ class TransferStatusUpdater {
      * the object of the updater.
      */
     TransferStatusUpdater(TransferDBUtil dbUtilInstance) {
+        this(dbUtilInstance, new Executor() {
+            private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+            @Override
+            public void execute(Runnable command) {
+                mainHandler.post(command);
+            }
+        });
+    }
+
+    /**
+     * Creates an updater that runs the listener callbacks on the given
+     * executor instead of the main thread; used in tests.
+     */
+    TransferStatusUpdater(TransferDBUtil dbUtilInstance, Executor callbackExecutor) {
         dbUtil = dbUtilInstance;
-        mainHandler = new Handler(Looper.getMainLooper());
-        transfers = new HashMap<Integer, TransferRecord>();
+        this.callbackExecutor = callbackExecutor;
+        transfers = new ConcurrentHashMap<Integer, TransferRecord>();
+        for (int i = 0; i < stateLocks.length; i++) {
+            stateLocks[i] = new ReentrantLock();
+        }
     }
 
     /**
@@ -98,12 +162,34 @@ class TransferStatusUpdater {
         return transferStatusUpdater;
     }
 
+    /**
+     * Sets how often progress is written to the database and notified to the
+     * listeners. The intervals apply to all the transfers of the process, and
+     * only the first call sets them; like the thread pool size, they are
+     * taken from the options of the first {@link TransferUtility} built.
+     *
+     * @param persistInterval minimum milliseconds between writes of the
+     *            progress of the transfers, 0 to write every update
+     * @param notificationInterval minimum milliseconds between progress
+     *            notifications of a transfer, 0 to notify every update
+     */
+    synchronized void setProgressIntervals(long persistInterval, long notificationInterval) {
+        if (progressIntervalsSet) {
+            LOGGER.debug("Progress intervals are already set, ignoring " + persistInterval
+                    + "ms and " + notificationInterval + "ms");
+            return;
+        }
+        progressIntervalsSet = true;
+        progressPersistInterval = persistInterval;
+        progressNotificationInterval = notificationInterval;
+    }
+
     /**
      * Gets all active transfers.
      *
      * @return an unmodifiable map of transfers
      */
-    synchronized Map<Integer, TransferRecord> getTransfers() {
+    Map<Integer, TransferRecord> getTransfers() {
         return Collections.unmodifiableMap(transfers);
     }
 
@@ -112,7 +198,7 @@ class TransferStatusUpdater {
      *
      * @param transfer a transfer object
      */
-    synchronized void addTransfer(TransferRecord transfer) {
+    void addTransfer(TransferRecord transfer) {
         transfers.put(transfer.id, transfer);
     }
 
@@ -122,7 +208,7 @@ class TransferStatusUpdater {
      * @param id id of the transfer
      * @return transfer if exists, null otherwise
      */
-    synchronized TransferRecord getTransfer(int id) {
+    TransferRecord getTransfer(int id) {
         return transfers.get(id);
     }
 
@@ -131,11 +217,13 @@ class TransferStatusUpdater {
      *
      * @param id id of the transfer to remove
      */
-    synchronized void removeTransfer(int id) {
+    void removeTransfer(int id) {
         synchronized (LISTENERS) {
             LISTENERS.remove(id);
         }
         transfers.remove(id);
+        lastNotified.remove(id);
+        persistProgress(id);
     }
     
     /**
@@ -143,7 +231,8 @@ class TransferStatusUpdater {
      *
      * @param id id of the transfer to remove
      */
-    synchronized void removeTransferRecordFromDB(final int id) {
+    void removeTransferRecordFromDB(final int id) {
+        unsavedProgress.remove(id);
         S3ClientReference.remove(id);
         dbUtil.deleteTransferRecords(id);
     }
@@ -164,10 +253,22 @@ class TransferStatusUpdater {
      * @param id id of the transfer to update
      * @param newState new state
      */
-    synchronized void updateState(final int id, final TransferState newState) {
+    void updateState(final int id, final TransferState newState) {
+        final ReentrantLock lock = stateLocks[stripe(id)];
+        lock.lock();
+        try {
+            updateStateLocked(id, newState);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void updateStateLocked(final int id, final TransferState newState) {
         boolean shouldNotNotify = STATES_NOT_TO_NOTIFY.contains(newState);
         final TransferRecord transfer = transfers.get(id);
         if (transfer == null) {
+            // save the progress along with the state
+            persistProgress(id);
             // still wants to save state
             if (dbUtil.updateState(id, newState) == 0) {
                 LOGGER.warn("Failed to update the status of transfer " + id);
@@ -175,6 +276,8 @@ class TransferStatusUpdater {
         } else {
             shouldNotNotify |= newState.equals(transfer.state);
             transfer.state = newState;
+            // the record carries the latest progress
+            unsavedProgress.remove(id);
             // save to database
             if (dbUtil.updateTransferRecord(transfer) == 0) {
                 LOGGER.warn("Failed to update the status of transfer " + id);
@@ -199,7 +302,7 @@ class TransferStatusUpdater {
 
             // invoke TransferListener callback on main thread
             for (final TransferListener l : list) {
-                mainHandler.post(new Runnable() {
+                callbackExecutor.execute(new Runnable() {
                     @Override
                     public void run() {
                         l.onStateChanged(id, newState);
@@ -218,17 +321,20 @@ class TransferStatusUpdater {
     }
 
     /**
-     * Updates the transfer progress of a transfer. It will trigger
+     * Updates the transfer progress of a transfer. The progress is written to
+     * the database along with that of the other transfers once the progress
+     * persist interval has elapsed. It will trigger
      * {@link TransferListener#onProgressChanged(int, long, long)} of associated
-     * LISTENERS if the update exceeds either time threshold.
+     * LISTENERS if the progress notification interval has elapsed for the
+     * transfer, or if the transfer is complete.
      *
      * @param id id of the transfer
      * @param bytesCurrent current transferred bytes
      * @param bytesTotal total bytes
      */
-    synchronized void updateProgress(final int id, 
-        final long bytesCurrent, 
-        final long bytesTotal, 
+    void updateProgress(final int id,
+        final long bytesCurrent,
+        final long bytesTotal,
         final boolean notifyListener) {
 
         final TransferRecord transfer = transfers.get(id);
@@ -239,9 +345,17 @@ class TransferStatusUpdater {
 
         // update bytes transferred so that the transfer observer may pick it
         // up.
-        dbUtil.updateBytesTransferred(id, bytesCurrent);
+        unsavedProgress.put(id, bytesCurrent);
+        final long now = System.currentTimeMillis();
+        final long persisted = lastPersisted.get();
+        if (progressPersistInterval <= 0) {
+            persistProgress(id);
+        } else if (now - persisted >= progressPersistInterval
+                && lastPersisted.compareAndSet(persisted, now)) {
+            persistProgress();
+        }
 
-        if (!notifyListener) {
+        if (!notifyListener || !shouldNotify(id, bytesCurrent, bytesTotal, now)) {
             return;
         }
 
@@ -254,7 +368,7 @@ class TransferStatusUpdater {
 
             for (final TransferListener l : list) {
                 // invoke on main thread
-                mainHandler.post(new Runnable() {
+                callbackExecutor.execute(new Runnable() {
                     @Override
                     public void run() {
                         l.onProgressChanged(id, bytesCurrent, bytesTotal);
@@ -264,6 +378,88 @@ class TransferStatusUpdater {
         }
     }
 
+    /**
+     * Writes the unsaved progress of all transfers to the database. The state
+     * locks of the transfers are held, in order, while their progress is read
+     * and written, so that a state update can't save newer bytes in between.
+     */
+    void persistProgress() {
+        if (unsavedProgress.isEmpty()) {
+            return;
+        }
+        final boolean[] locked = new boolean[stateLocks.length];
+        for (final Integer id : unsavedProgress.keySet()) {
+            locked[stripe(id)] = true;
+        }
+        for (int i = 0; i < stateLocks.length; i++) {
+            if (locked[i]) {
+                stateLocks[i].lock();
+            }
+        }
+        try {
+            final Map<Integer, Long> progress = new HashMap<Integer, Long>();
+            for (final Map.Entry<Integer, Long> entry : unsavedProgress.entrySet()) {
+                // transfers added since are written next time
+                if (locked[stripe(entry.getKey())]) {
+                    progress.put(entry.getKey(), entry.getValue());
+                }
+            }
+            dbUtil.updateBytesTransferred(progress);
+            for (final Map.Entry<Integer, Long> entry : progress.entrySet()) {
+                // keep what was updated in the meantime
+                unsavedProgress.remove(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            for (int i = stateLocks.length - 1; i >= 0; i--) {
+                if (locked[i]) {
+                    stateLocks[i].unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the unsaved progress of a transfer to the database.
+     */
+    private void persistProgress(int id) {
+        final ReentrantLock lock = stateLocks[stripe(id)];
+        lock.lock();
+        try {
+            final Long bytesCurrent = unsavedProgress.get(id);
+            if (bytesCurrent != null) {
+                dbUtil.updateBytesTransferred(id, bytesCurrent);
+                unsavedProgress.remove(id, bytesCurrent);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stripe(int id) {
+        return (id & Integer.MAX_VALUE) % stateLocks.length;
+    }
+
+    /*
+     * Whether the progress is worth notifying: the notification interval has
+     * elapsed since the last notification of the transfer, or it completes
+     * the transfer.
+     */
+    private boolean shouldNotify(int id, long bytesCurrent, long bytesTotal, long now) {
+        final long interval = progressNotificationInterval;
+        if (interval <= 0) {
+            return true;
+        }
+        if (bytesCurrent >= bytesTotal) {
+            lastNotified.put(id, now);
+            return true;
+        }
+        final Long last = lastNotified.get(id);
+        if (last == null) {
+            return lastNotified.putIfAbsent(id, now) == null;
+        }
+        return now - last >= interval && lastNotified.replace(id, last, now);
+    }
+
     /**
      * Throws an error to transfer. It triggers
      * {@link TransferListener#onError(int, Exception)} of associated LISTENERS.
@@ -281,7 +477,7 @@ class TransferStatusUpdater {
 
             for (final TransferListener l : list) {
                 // invoke on main thread
-                mainHandler.post(new Runnable() {
+                callbackExecutor.execute(new Runnable() {
                     @Override
                     public void run() {
                         l.onError(id, e);
@@ -294,11 +490,13 @@ class TransferStatusUpdater {
     /**
      * Clears all transfers, LISTENERS, etc.
      */
-    synchronized void clear() {
+    void clear() {
         synchronized (LISTENERS) {
             LISTENERS.clear();
         }
         transfers.clear();
+        lastNotified.clear();
+        persistProgress();
     }
 
     /**
@@ -392,7 +590,7 @@ class TransferStatusUpdater {
      * @param id id of the transfer
      * @return a progress listener
      */
-    synchronized ProgressListener newProgressListener(int id) {
+    ProgressListener newProgressListener(int id) {
         final TransferRecord transfer = getTransfer(id);
         if (transfer == null) {
             LOGGER.info("TransferStatusUpdater doesn't track the transfer: " + id);
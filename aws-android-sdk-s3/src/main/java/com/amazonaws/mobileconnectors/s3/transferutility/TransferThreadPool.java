@@ -24,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 
 import com.amazonaws.logging.Log;
 import com.amazonaws.logging.LogFactory;
+import com.amazonaws.services.s3.internal.AdaptiveUploadController;
 
 class TransferThreadPool {
     
@@ -31,6 +32,7 @@ class TransferThreadPool {
 
     private static ExecutorService executorMainTask;
     private static ExecutorService executorPartTask;
+    private static AdaptiveUploadController adaptiveUploadController;
 
     static synchronized void init(final int transferThreadPoolSize) {
         LOGGER.debug("Initializing the thread pool of size: " + transferThreadPoolSize);
@@ -43,11 +45,27 @@ class TransferThreadPool {
         if (executorPartTask == null) {
             executorPartTask = buildExecutor(poolSize);
         }
+        if (adaptiveUploadController == null) {
+            adaptiveUploadController = new AdaptiveUploadController(poolSize,
+                    TransferUtility.MINIMUM_UPLOAD_PART_SIZE,
+                    TransferUtility.MAXIMUM_ADAPTIVE_UPLOAD_PART_SIZE);
+        }
+    }
+
+    /**
+     * Returns the controller of the upload parts in flight on the part thread
+     * pool, shared by all the adaptive multipart uploads.
+     *
+     * @return the adaptive upload controller.
+     */
+    static synchronized AdaptiveUploadController getAdaptiveUploadController() {
+        init(TransferUtilityOptions.getDefaultThreadPoolSize());
+        return adaptiveUploadController;
     }
 
     public static <T> Future<T> submitTask(Callable<T> c) {
         init(TransferUtilityOptions.getDefaultThreadPoolSize());
-        if (c instanceof UploadPartTask) {
+        if (c instanceof UploadPartTask || c instanceof DownloadPartTask) {
             return executorPartTask.submit(c);
         } else {
             return executorMainTask.submit(c);
@@ -63,6 +81,9 @@ class TransferThreadPool {
             shutdown(executorMainTask);
             executorMainTask = null;
         }
+        synchronized (TransferThreadPool.class) {
+            adaptiveUploadController = null;
+        }
     }
 
     private static final int WAIT_TIME = 250;
@@ -137,6 +137,11 @@ public class TransferUtility {
      */
     static final int MINIMUM_UPLOAD_PART_SIZE = 5 * MB;
 
+    /**
+     * Largest part size adaptive multipart uploads grow their parts to.
+     */
+    static final long MAXIMUM_ADAPTIVE_UPLOAD_PART_SIZE = 8L * MINIMUM_UPLOAD_PART_SIZE;
+
     private static String userAgentFromConfig = "";
 
     private static void setUserAgentFromConfig(String userAgent) {
@@ -303,6 +308,8 @@ public class TransferUtility {
         this.transferUtilityOptions = tuOptions;
         this.dbUtil = new TransferDBUtil(context.getApplicationContext());
         this.updater = TransferStatusUpdater.getInstance(context.getApplicationContext());
+        this.updater.setProgressIntervals(this.transferUtilityOptions.getProgressPersistInterval(),
+                this.transferUtilityOptions.getProgressNotificationInterval());
         TransferThreadPool.init(this.transferUtilityOptions.getTransferThreadPoolSize());
         this.connManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
     }
@@ -324,6 +331,8 @@ public class TransferUtility {
         this.transferUtilityOptions = new TransferUtilityOptions();
         this.dbUtil = new TransferDBUtil(context.getApplicationContext());
         this.updater = TransferStatusUpdater.getInstance(context.getApplicationContext());
+        this.updater.setProgressIntervals(this.transferUtilityOptions.getProgressPersistInterval(),
+                this.transferUtilityOptions.getProgressNotificationInterval());
         TransferThreadPool.init(this.transferUtilityOptions.getTransferThreadPoolSize());
         this.connManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
     }
@@ -712,7 +721,11 @@ public class TransferUtility {
         long remainingLenth = file.length();
         double partSize = (double) remainingLenth / (double) MAXIMUM_UPLOAD_PARTS;
         partSize = Math.ceil(partSize);
-        final long optimalPartSize = (long) Math.max(partSize, MINIMUM_UPLOAD_PART_SIZE);
+        long optimalPartSize = (long) Math.max(partSize, MINIMUM_UPLOAD_PART_SIZE);
+        if (transferUtilityOptions.isAdaptiveUploadEnabled()) {
+            optimalPartSize = Math.max(optimalPartSize,
+                    TransferThreadPool.getAdaptiveUploadController().getPartSize());
+        }
         long fileOffset = 0;
         int partNumber = 1;
 
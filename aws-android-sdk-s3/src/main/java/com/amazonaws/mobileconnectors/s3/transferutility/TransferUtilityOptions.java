@@ -49,6 +49,27 @@ public class TransferUtilityOptions implements Serializable {
      */
     private static final int MILLIS_IN_MINUTE = 60 * 1000;
 
+    /**
+     * Bytes in a megabyte.
+     */
+    private static final int BYTES_IN_MB = 1024 * 1024;
+
+    /**
+     * Default size of the byte ranges of a multipart download.
+     */
+    private static final long DEFAULT_DOWNLOAD_PART_SIZE = 8 * BYTES_IN_MB;
+
+    /**
+     * Minimum size of the byte ranges of a multipart download.
+     */
+    static final long MINIMUM_DOWNLOAD_PART_SIZE = BYTES_IN_MB;
+
+    /**
+     * Default interval between writes of the progress of the transfers to
+     * the database, in milliseconds.
+     */
+    private static final long DEFAULT_PROGRESS_PERSIST_INTERVAL = 1000;
+
     /**
      * TransferService checks for the transfers that are waiting or in progress
      * and restarts the transfer for every time interval in milliseconds.
@@ -68,6 +89,35 @@ public class TransferUtilityOptions implements Serializable {
      * Type of connection to use for transfers.
      */
     private TransferNetworkConnectionType transferNetworkConnectionType;
+
+    /**
+     * Whether objects larger than the download part size are downloaded in
+     * byte ranges, concurrently.
+     */
+    private boolean multipartDownloadEnabled;
+
+    /**
+     * Size in bytes of the byte ranges of a multipart download.
+     */
+    private long downloadPartSize;
+
+    /**
+     * Whether the parts of multipart uploads in flight, and the size of the
+     * parts of new uploads, adapt to the measured throughput.
+     */
+    private boolean adaptiveUploadEnabled;
+
+    /**
+     * Minimum interval between writes of the progress of the transfers to
+     * the database, in milliseconds.
+     */
+    private long progressPersistInterval;
+
+    /**
+     * Minimum interval between progress notifications of a transfer, in
+     * milliseconds.
+     */
+    private long progressNotificationInterval;
     
     /**
      * Constructor that sets the options to the
@@ -78,6 +128,11 @@ public class TransferUtilityOptions implements Serializable {
         this.transferServiceCheckTimeInterval = getDefaultCheckTimeInterval();
         this.transferThreadPoolSize = getDefaultThreadPoolSize();
         this.transferNetworkConnectionType = getDefaultTransferNetworkConnectionType();
+        this.multipartDownloadEnabled = false;
+        this.downloadPartSize = getDefaultDownloadPartSize();
+        this.adaptiveUploadEnabled = false;
+        this.progressPersistInterval = getDefaultProgressPersistInterval();
+        this.progressNotificationInterval = 0;
     }
 
     /**
@@ -93,6 +148,11 @@ public class TransferUtilityOptions implements Serializable {
         this.transferServiceCheckTimeInterval = getDefaultCheckTimeInterval();
         this.transferThreadPoolSize = transferThreadPoolSize;
         this.transferNetworkConnectionType = transferNetworkConnectionType;
+        this.multipartDownloadEnabled = false;
+        this.downloadPartSize = getDefaultDownloadPartSize();
+        this.adaptiveUploadEnabled = false;
+        this.progressPersistInterval = getDefaultProgressPersistInterval();
+        this.progressNotificationInterval = 0;
     }
 
     /**
@@ -153,6 +213,139 @@ public class TransferUtilityOptions implements Serializable {
         return transferNetworkConnectionType;
     }
 
+    /**
+     * Retrieve whether multipart downloads are enabled.
+     *
+     * @return true if objects larger than the download part size are
+     *         downloaded in byte ranges, concurrently.
+     */
+    public boolean isMultipartDownloadEnabled() {
+        return multipartDownloadEnabled;
+    }
+
+    /**
+     * Enable or disable multipart downloads. When enabled, a download of an
+     * object larger than the download part size is split into byte ranges that
+     * are fetched concurrently on the transfer thread pool and written at
+     * their offsets in the file. The completion of every range is saved, so a
+     * resumed download only fetches the missing ranges. Disabled by default.
+     *
+     * @param multipartDownloadEnabled true to enable multipart downloads.
+     */
+    public void setMultipartDownloadEnabled(final boolean multipartDownloadEnabled) {
+        this.multipartDownloadEnabled = multipartDownloadEnabled;
+    }
+
+    /**
+     * Retrieve the size of the byte ranges of a multipart download.
+     *
+     * @return the downloadPartSize in bytes
+     */
+    public long getDownloadPartSize() {
+        return downloadPartSize;
+    }
+
+    /**
+     * Set the size of the byte ranges of a multipart download. If it's less
+     * than 1 MB, then set the default value.
+     *
+     * @param downloadPartSize the downloadPartSize in bytes to set
+     */
+    public void setDownloadPartSize(final long downloadPartSize) {
+        if (downloadPartSize < MINIMUM_DOWNLOAD_PART_SIZE) {
+            this.downloadPartSize = getDefaultDownloadPartSize();
+        } else {
+            this.downloadPartSize = downloadPartSize;
+        }
+    }
+
+    /**
+     * Retrieve whether adaptive multipart uploads are enabled.
+     *
+     * @return true if the upload concurrency and part size adapt to the
+     *         measured throughput.
+     */
+    public boolean isAdaptiveUploadEnabled() {
+        return adaptiveUploadEnabled;
+    }
+
+    /**
+     * Enable or disable adaptive multipart uploads. When enabled, the parts
+     * of multipart uploads are not all submitted to the thread pool at once.
+     * The number of parts in flight starts at two, grows by one for every
+     * round of parts that complete without slowing down, and halves when a
+     * part fails or the time per byte of the parts doubles. Once all part
+     * threads are in use, uploads started afterwards use larger parts; failures
+     * shrink them again, down to the minimum part size. The measured
+     * throughput of a transfer is available from
+     * {@link TransferObserver#getSpeed()}. Disabled by default.
+     *
+     * @param adaptiveUploadEnabled true to enable adaptive multipart uploads.
+     */
+    public void setAdaptiveUploadEnabled(final boolean adaptiveUploadEnabled) {
+        this.adaptiveUploadEnabled = adaptiveUploadEnabled;
+    }
+
+    /**
+     * Retrieve the minimum interval between writes of the progress of the
+     * transfers to the database.
+     *
+     * @return the progressPersistInterval in milliseconds
+     */
+    public long getProgressPersistInterval() {
+        return progressPersistInterval;
+    }
+
+    /**
+     * Set the minimum interval between writes of the progress of the
+     * transfers to the database. The progress of all the transfers is kept in
+     * memory and written in a single transaction once the interval has
+     * elapsed, and whenever the state of a transfer changes. In between, the
+     * progress read by {@link TransferObserver#refresh()} may lag behind that
+     * passed to the listeners. 0 writes every progress update. If it's
+     * negative, then set the default value of 1 second.
+     * <p>
+     * The interval applies to all the transfers of the process and is taken
+     * from the options of the first {@link TransferUtility} built; the
+     * options of later ones don't change it.
+     *
+     * @param progressPersistInterval the progressPersistInterval in
+     *            milliseconds to set
+     */
+    public void setProgressPersistInterval(final long progressPersistInterval) {
+        if (progressPersistInterval < 0) {
+            this.progressPersistInterval = getDefaultProgressPersistInterval();
+        } else {
+            this.progressPersistInterval = progressPersistInterval;
+        }
+    }
+
+    /**
+     * Retrieve the minimum interval between progress notifications of a
+     * transfer.
+     *
+     * @return the progressNotificationInterval in milliseconds
+     */
+    public long getProgressNotificationInterval() {
+        return progressNotificationInterval;
+    }
+
+    /**
+     * Set the minimum interval between calls to
+     * {@link TransferListener#onProgressChanged(int, long, long)} for a
+     * transfer. Updates in between are dropped, except the one that completes
+     * the transfer. 0, the default, notifies every progress update.
+     * <p>
+     * Like the progress persist interval, it applies to all the transfers of
+     * the process and is taken from the first {@link TransferUtility} built.
+     *
+     * @param progressNotificationInterval the progressNotificationInterval
+     *            in milliseconds to set
+     */
+    public void setProgressNotificationInterval(final long progressNotificationInterval) {
+        this.progressNotificationInterval = Math.max(0, progressNotificationInterval);
+    }
+
     /**
      * Return the default thread pool size.
      * 
@@ -183,4 +376,23 @@ public class TransferUtilityOptions implements Serializable {
     static TransferNetworkConnectionType getDefaultTransferNetworkConnectionType() {
         return TransferNetworkConnectionType.ANY;
     }
+
+    /**
+     * Return the default size of the byte ranges of a multipart download.
+     *
+     * @return The default download part size in bytes.
+     */
+    static long getDefaultDownloadPartSize() {
+        return DEFAULT_DOWNLOAD_PART_SIZE;
+    }
+
+    /**
+     * Return the default interval between writes of the progress of the
+     * transfers to the database.
+     *
+     * @return The default progress persist interval in milliseconds.
+     */
+    static long getDefaultProgressPersistInterval() {
+        return DEFAULT_PROGRESS_PERSIST_INTERVAL;
+    }
 }
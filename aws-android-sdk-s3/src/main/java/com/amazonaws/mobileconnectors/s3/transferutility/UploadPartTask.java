@@ -18,7 +18,9 @@ package com.amazonaws.mobileconnectors.s3.transferutility;
 
 import com.amazonaws.event.ProgressEvent;
 import com.amazonaws.event.ProgressListener;
+import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.AdaptiveUploadController;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.UploadPartResult;
 
@@ -36,17 +38,33 @@ class UploadPartTask implements Callable<Boolean> {
     private final UploadPartRequest uploadPartRequest;
     private final AmazonS3 s3;
     private final TransferDBUtil dbUtil;
+    private final AdaptiveUploadController controller;
 
     public UploadPartTask(UploadTask.UploadPartTaskMetadata uploadPartTaskMetadata,
                           UploadTask.UploadTaskProgressListener uploadTaskProgressListener,
                           UploadPartRequest uploadPartRequest,
                           AmazonS3 s3,
                           TransferDBUtil dbUtil) {
+        this(uploadPartTaskMetadata, uploadTaskProgressListener, uploadPartRequest, s3, dbUtil,
+                null);
+    }
+
+    /**
+     * @param controller the controller the part holds a permit of, or null if
+     *            the upload isn't adaptive.
+     */
+    public UploadPartTask(UploadTask.UploadPartTaskMetadata uploadPartTaskMetadata,
+                          UploadTask.UploadTaskProgressListener uploadTaskProgressListener,
+                          UploadPartRequest uploadPartRequest,
+                          AmazonS3 s3,
+                          TransferDBUtil dbUtil,
+                          AdaptiveUploadController controller) {
         this.uploadPartTaskMetadata = uploadPartTaskMetadata;
         this.uploadTaskProgressListener = uploadTaskProgressListener;
         this.uploadPartRequest = uploadPartRequest;
         this.s3 = s3;
         this.dbUtil = dbUtil;
+        this.controller = controller;
     }
 
     /*
@@ -54,6 +72,7 @@ class UploadPartTask implements Callable<Boolean> {
      */
     @Override
     public Boolean call() throws Exception {
+        final long startNanos = System.nanoTime();
         try {
             uploadPartTaskMetadata.state = TransferState.IN_PROGRESS;
             uploadPartRequest.setGeneralProgressListener(new UploadPartTaskProgressListener(uploadTaskProgressListener));
@@ -61,9 +80,17 @@ class UploadPartTask implements Callable<Boolean> {
             uploadPartTaskMetadata.state = TransferState.PART_COMPLETED;
             dbUtil.updateState(uploadPartRequest.getId(), TransferState.PART_COMPLETED);
             dbUtil.updateETag(uploadPartRequest.getId(), putPartResult.getETag());
+            if (controller != null) {
+                controller.onPartCompleted(uploadPartRequest.getPartSize(),
+                        System.nanoTime() - startNanos);
+            }
+            uploadTaskProgressListener.onPartCompleted(uploadPartRequest.getPartSize());
             return true;
         } catch (final Exception e) {
             LOGGER.error("Upload part interrupted: " + e);
+            if (controller != null && !RetryUtils.isInterrupted(e)) {
+                controller.onPartFailed();
+            }
             ProgressEvent resetEvent = new ProgressEvent(0);
             resetEvent.setEventCode(ProgressEvent.RESET_EVENT_CODE);
             uploadTaskProgressListener.progressChanged(new ProgressEvent(0));
@@ -92,6 +119,8 @@ class UploadPartTask implements Callable<Boolean> {
             dbUtil.updateState(uploadPartRequest.getId(), TransferState.FAILED);
             LOGGER.error("Encountered error uploading part ", e);
             throw e;
+        } finally {
+            uploadPartTaskMetadata.releasePermit(controller);
         }
     }
 
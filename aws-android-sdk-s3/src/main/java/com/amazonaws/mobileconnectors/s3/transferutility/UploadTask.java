@@ -21,6 +21,7 @@ import com.amazonaws.event.ProgressListener;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.internal.AdaptiveUploadController;
 import com.amazonaws.services.s3.model.CannedAccessControlList;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
@@ -44,8 +45,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * When an upload transfer is requested through TransferUtility,
@@ -53,7 +56,9 @@ import java.util.concurrent.Future;
  * single-part uploads (<= 5MB) and multi-part uploads (> 5MB).
  *
  * For multi-part uploads, a thread is created per part (5MB)
- * and submitted to the thread pool.
+ * and submitted to the thread pool. When adaptive uploads are enabled in the
+ * {@link TransferUtilityOptions}, a part is only submitted once the shared
+ * {@link AdaptiveUploadController} allows another part in flight.
  */
 class UploadTask implements Callable<Boolean> {
 
@@ -61,6 +66,7 @@ class UploadTask implements Callable<Boolean> {
     private static final String OBJECT_TAGS_DELIMITER = "&";
     private static final String OBJECT_TAG_KEY_VALUE_SEPARATOR = "=";
     private static final String REQUESTER_PAYS = "requester";
+    private static final double NANOS_IN_SECOND = 1e9;
 
     private final AmazonS3 s3;
     private final TransferRecord upload;
@@ -78,7 +84,7 @@ class UploadTask implements Callable<Boolean> {
         this.s3 = s3;
         this.dbUtil = dbUtil;
         this.updater = updater;
-        this.uploadPartTasks = new HashMap<Integer, UploadPartTaskMetadata>();
+        this.uploadPartTasks = new ConcurrentHashMap<Integer, UploadPartTaskMetadata>();
     }
 
     /*
@@ -152,19 +158,34 @@ class UploadTask implements Callable<Boolean> {
         requestList = dbUtil.getNonCompletedPartRequestsFromDB(upload.id,
                 upload.multipartId);
         LOGGER.info("Multipart upload " + upload.id + " in " + requestList.size() + " parts.");
-        for (final UploadPartRequest request : requestList) {
-            TransferUtility.appendMultipartTransferServiceUserAgentString(request);
-
-            UploadPartTaskMetadata uploadPartTaskMetadata = new UploadPartTaskMetadata();
-            uploadPartTaskMetadata.uploadPartRequest = request;
-            uploadPartTaskMetadata.bytesTransferredSoFar = 0;
-            uploadPartTaskMetadata.state = TransferState.WAITING;
-            uploadPartTasks.put(request.getPartNumber(), uploadPartTaskMetadata);
-            uploadPartTaskMetadata.uploadPartTask = TransferThreadPool.submitTask(
-                    new UploadPartTask(uploadPartTaskMetadata, uploadTaskProgressListener, request, s3, dbUtil));
-        }
+        final AdaptiveUploadController controller = upload.transferUtilityOptions != null
+                && upload.transferUtilityOptions.isAdaptiveUploadEnabled()
+                ? TransferThreadPool.getAdaptiveUploadController() : null;
 
         try {
+            for (final UploadPartRequest request : requestList) {
+                TransferUtility.appendMultipartTransferServiceUserAgentString(request);
+
+                UploadPartTaskMetadata uploadPartTaskMetadata = new UploadPartTaskMetadata();
+                uploadPartTaskMetadata.uploadPartRequest = request;
+                uploadPartTaskMetadata.bytesTransferredSoFar = 0;
+                uploadPartTaskMetadata.state = TransferState.WAITING;
+                if (controller != null) {
+                    // waits until another part is allowed in flight
+                    controller.acquire();
+                    uploadPartTaskMetadata.permitHeld.set(true);
+                    if (hasFailedPart()) {
+                        // the remaining parts are uploaded when resumed
+                        uploadPartTaskMetadata.releasePermit(controller);
+                        break;
+                    }
+                }
+                uploadPartTasks.put(request.getPartNumber(), uploadPartTaskMetadata);
+                uploadPartTaskMetadata.uploadPartTask = TransferThreadPool.submitTask(
+                        new UploadPartTask(uploadPartTaskMetadata, uploadTaskProgressListener,
+                                request, s3, dbUtil, controller));
+            }
+
             boolean isSuccess = true;
             /*
              * Future.get() will block the current thread until the method
@@ -195,7 +216,11 @@ class UploadTask implements Callable<Boolean> {
              * Cancel all the on-going part tasks.
              */
             for (final UploadPartTaskMetadata task : uploadPartTasks.values()) {
-                task.uploadPartTask.cancel(true);
+                if (task.uploadPartTask != null) {
+                    task.uploadPartTask.cancel(true);
+                }
+                // parts cancelled before they ran never give their permit back
+                task.releasePermit(controller);
             }
 
             // If the thread that is executing the transfer is interrupted
@@ -247,6 +272,19 @@ class UploadTask implements Callable<Boolean> {
         }
     }
 
+    /**
+     * @return true if a submitted part has failed or is waiting for network.
+     */
+    private boolean hasFailedPart() {
+        for (final UploadPartTaskMetadata task : uploadPartTasks.values()) {
+            if (TransferState.FAILED.equals(task.state)
+                    || TransferState.WAITING_FOR_NETWORK.equals(task.state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Boolean uploadSinglePartAndWaitForCompletion() {
         final PutObjectRequest putObjectRequest = createPutObjectRequest(upload);
         final ProgressListener progressListener = updater.newProgressListener(upload.id);
@@ -453,6 +491,10 @@ class UploadTask implements Callable<Boolean> {
         // This variable tracks the previously reported total bytes transferred.
         private long prevTotalBytesTransferredOfAllParts;
 
+        // The bytes of the parts completed since the task started.
+        private long bytesOfCompletedParts;
+        private final long startNanos = System.nanoTime();
+
         UploadTaskProgressListener(TransferRecord upload) {
             this.prevTotalBytesTransferredOfAllParts = upload.bytesCurrent;
         }
@@ -490,6 +532,20 @@ class UploadTask implements Callable<Boolean> {
                 prevTotalBytesTransferredOfAllParts = totalBytesTransferredOfAllParts;
             }
         }
+
+        /**
+         * Records the throughput of the transfer when a part completes.
+         *
+         * @param partSize the size of the completed part.
+         */
+        public synchronized void onPartCompleted(final long partSize) {
+            bytesOfCompletedParts += partSize;
+            final long elapsed = System.nanoTime() - startNanos;
+            if (elapsed > 0) {
+                dbUtil.updateSpeed(UploadTask.this.upload.id,
+                        (long) (bytesOfCompletedParts * NANOS_IN_SECOND / elapsed));
+            }
+        }
     }
 
     // This class represents the state being tracked per part
@@ -504,6 +560,15 @@ class UploadTask implements Callable<Boolean> {
         long bytesTransferredSoFar;
 
         // state of the transfer
-        TransferState state;
+        volatile TransferState state;
+
+        // whether the part holds a permit of the adaptive upload controller
+        final AtomicBoolean permitHeld = new AtomicBoolean();
+
+        void releasePermit(AdaptiveUploadController controller) {
+            if (controller != null && permitHeld.compareAndSet(true, false)) {
+                controller.release();
+            }
+        }
     }
 }
@@ -304,6 +304,36 @@ public interface AmazonS3 extends S3DirectSpi {
     public ObjectListing listObjects(ListObjectsRequest listObjectsRequest)
             throws AmazonClientException, AmazonServiceException;
 
+    /**
+     * <p>
+     * Lists the objects in the specified bucket like
+     * {@link #listObjects(ListObjectsRequest)}, but passes each object
+     * summary to the given listener as the response is parsed instead of
+     * collecting them in the returned listing, so that the memory used doesn't
+     * grow with the number of keys of a page.
+     * </p>
+     * <p>
+     * The returned listing has no object summaries. It still has the common
+     * prefixes, and when it is truncated, its next marker is set to continue
+     * the listing with another request.
+     * </p>
+     *
+     * @param listObjectsRequest The request object containing all options for
+     *            listing the objects in a specified bucket.
+     * @param listener The listener of the object summaries, called on the
+     *            calling thread; null to collect them in the listing.
+     * @return A listing of the objects in the specified bucket, without the
+     *         object summaries.
+     * @throws AmazonClientException If any errors are encountered in the client
+     *             while making the request or handling the response, including
+     *             exceptions thrown by the listener.
+     * @throws AmazonServiceException If any errors occurred in Amazon S3 while
+     *             processing the request.
+     */
+    public ObjectListing listObjects(ListObjectsRequest listObjectsRequest,
+            S3ObjectSummaryListener listener)
+            throws AmazonClientException, AmazonServiceException;
+
     public ListObjectsV2Result listObjectsV2(String bucketName) throws AmazonClientException,
             AmazonServiceException;
 
@@ -3501,6 +3531,32 @@ public interface AmazonS3 extends S3DirectSpi {
     public URL generatePresignedUrl(GeneratePresignedUrlRequest generatePresignedUrlRequest)
             throws AmazonClientException;
 
+    /**
+     * <p>
+     * Returns pre-signed URLs for many keys of a bucket, all sharing the other
+     * parameters of a request: HTTP method, expiration date, response
+     * headers, and so on.
+     * </p>
+     * <p>
+     * The URLs are the same as those returned by
+     * {@link AmazonS3#generatePresignedUrl(GeneratePresignedUrlRequest)} for
+     * each key. With AWS Signature Version 4, the request, credentials, date
+     * and signing key are prepared once for all the keys, which makes this
+     * much cheaper than pre-signing each URL separately.
+     * </p>
+     *
+     * @param generatePresignedUrlRequest The request object containing the
+     *            options shared by the pre-signed URLs. Its key is ignored.
+     * @param keys The keys of the objects to pre-sign URLs for.
+     * @return The pre-signed URLs, in the order of the keys.
+     * @throws AmazonClientException If there were any problems pre-signing the
+     *             requests for the Amazon S3 resources.
+     * @see AmazonS3#generatePresignedUrl(GeneratePresignedUrlRequest)
+     */
+    public List<URL> generatePresignedUrls(
+            GeneratePresignedUrlRequest generatePresignedUrlRequest, List<String> keys)
+            throws AmazonClientException;
+
     /**
      * Initiates a multipart upload and returns an InitiateMultipartUploadResult
      * which contains an upload ID. This upload ID associates all the parts in
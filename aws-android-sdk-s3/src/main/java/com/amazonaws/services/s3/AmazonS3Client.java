@@ -45,11 +45,12 @@ import com.amazonaws.event.ProgressListenerCallbackExecutor;
 import com.amazonaws.event.ProgressReportingInputStream;
 import com.amazonaws.handlers.HandlerChainFactory;
 import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.AmazonHttpClient;
 import com.amazonaws.http.ExecutionContext;
 import com.amazonaws.http.HttpClient;
 import com.amazonaws.http.HttpMethodName;
 import com.amazonaws.http.HttpResponseHandler;
-import com.amazonaws.http.UrlHttpClient;
+import com.amazonaws.internal.FileRegionInputStream;
 import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
@@ -64,7 +65,6 @@ import com.amazonaws.services.s3.internal.DeleteObjectTaggingHeaderHandler;
 import com.amazonaws.services.s3.internal.DeleteObjectsResponse;
 import com.amazonaws.services.s3.internal.DigestValidationInputStream;
 import com.amazonaws.services.s3.internal.GetObjectTaggingResponseHeaderHandler;
-import com.amazonaws.services.s3.internal.InputSubstream;
 import com.amazonaws.services.s3.internal.MD5DigestCalculatingInputStream;
 import com.amazonaws.services.s3.internal.ObjectExpirationHeaderHandler;
 import com.amazonaws.services.s3.internal.RepeatableFileInputStream;
@@ -129,6 +129,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -358,7 +359,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
     @Deprecated
     public AmazonS3Client(AWSCredentialsProvider credentialsProvider,
                           ClientConfiguration clientConfiguration) {
-        this(credentialsProvider, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(credentialsProvider, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -377,7 +378,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
     public AmazonS3Client(AWSCredentialsProvider credentialsProvider,
                           ClientConfiguration clientConfiguration,
                           RequestMetricCollector requestMetricCollector) {
-        super(clientConfiguration, new UrlHttpClient(clientConfiguration),
+        super(clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration),
                 requestMetricCollector);
         this.awsCredentialsProvider = credentialsProvider;
         init();
@@ -482,7 +483,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
     public AmazonS3Client(AWSCredentials awsCredentials,
                           com.amazonaws.regions.Region region,
                           ClientConfiguration clientConfiguration) {
-        this(awsCredentials, region, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentials, region, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -527,7 +528,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
     public AmazonS3Client(AWSCredentialsProvider awsCredentialsProvider,
                           com.amazonaws.regions.Region region,
                           ClientConfiguration clientConfiguration) {
-        this(awsCredentialsProvider, region, clientConfiguration, new UrlHttpClient(clientConfiguration));
+        this(awsCredentialsProvider, region, clientConfiguration, AmazonHttpClient.defaultHttpClient(clientConfiguration));
     }
 
     /**
@@ -849,6 +850,13 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
     @Override
     public ObjectListing listObjects(ListObjectsRequest listObjectsRequest)
             throws AmazonClientException, AmazonServiceException {
+        return listObjects(listObjectsRequest, null);
+    }
+
+    @Override
+    public ObjectListing listObjects(ListObjectsRequest listObjectsRequest,
+            S3ObjectSummaryListener listener)
+            throws AmazonClientException, AmazonServiceException {
         assertParameterNotNull(listObjectsRequest.getBucketName(),
                 "The bucket name parameter must be specified when listing objects in a bucket");
 
@@ -876,7 +884,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                 listObjectsRequest.getMaxKeys().intValue() >= 0) {
             request.addParameter("max-keys", listObjectsRequest.getMaxKeys().toString());
         }
-        return invoke(request, new Unmarshallers.ListObjectsUnmarshaller(shouldSDKDecodeResponse),
+        return invoke(request,
+                new Unmarshallers.ListObjectsUnmarshaller(shouldSDKDecodeResponse, listener),
                 listObjectsRequest.getBucketName(), null);
     }
 
@@ -1819,7 +1828,15 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
             // Always set the content length, even if it's already set
             metadata.setContentLength(file.length());
 
-            final boolean calculateMD5 = metadata.getContentMD5() == null;
+            /*
+             * Reading the file once more just for the Content-MD5 header can
+             * be skipped: the MD5 is then calculated while the file is sent
+             * and validated against the returned ETag, which isn't the MD5
+             * of the data with SSE-KMS.
+             */
+            final boolean calculateMD5 = metadata.getContentMD5() == null
+                    && !(clientOptions.isSinglePassChecksumEnabled()
+                            && putObjectRequest.getSSEAwsKeyManagementParams() == null);
 
             // Only set the content type if it hasn't already been set
             if (metadata.getContentType() == null) {
@@ -1974,7 +1991,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
             contentMd5 = BinaryUtils.toBase64(md5DigestStream.getMd5Digest());
         }
 
-        if (returnedMetadata != null && contentMd5 != null && !skipContentMd5Check) {
+        if (returnedMetadata != null && contentMd5 != null && !skipContentMd5Check
+                && !ServiceUtils.skipMd5CheckPerResponse(returnedMetadata)) {
             final byte[] clientSideHash = BinaryUtils.fromBase64(contentMd5);
             final byte[] serverSideHash = BinaryUtils.fromHex(returnedMetadata.getETag());
 
@@ -3432,8 +3450,103 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
 
         final String bucketName = generatePresignedUrlRequest.getBucketName();
         final String key = generatePresignedUrlRequest.getKey();
+        assertValidPresignedUrlRequest(generatePresignedUrlRequest);
 
-        assertParameterNotNull(bucketName,
+        final Request<GeneratePresignedUrlRequest> request = createPresignedUrlRequest(
+                generatePresignedUrlRequest, key);
+        return presignUrl(request, createSigner(request, bucketName, key),
+                generatePresignedUrlRequest, key);
+    }
+
+    private URL presignUrl(Request<GeneratePresignedUrlRequest> request, Signer signer,
+            GeneratePresignedUrlRequest generatePresignedUrlRequest, String key) {
+        if (signer instanceof Presigner) {
+            // If we have a signer which knows how to presign requests,
+            // delegate directly to it.
+            ((Presigner) signer).presignRequest(
+                    request,
+                    awsCredentialsProvider.getCredentials(),
+                    generatePresignedUrlRequest.getExpiration()
+            );
+        } else {
+            // Otherwise use the default presigning method, which is hardcoded
+            // to use QueryStringSigner.
+            presignRequest(
+                    request,
+                    generatePresignedUrlRequest.getMethod(),
+                    generatePresignedUrlRequest.getBucketName(),
+                    key,
+                    generatePresignedUrlRequest.getExpiration(),
+                    null);
+        }
+
+        // Remove the leading slash (if any) in the resource-path
+        return ServiceUtils.convertRequestToUrl(request, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see
+     * com.amazonaws.services.s3.AmazonS3#generatePresignedUrls(com.amazonaws
+     * .services.s3.model.GeneratePresignedUrlRequest, java.util.List)
+     */
+    @Override
+    public List<URL> generatePresignedUrls(
+            GeneratePresignedUrlRequest generatePresignedUrlRequest, List<String> keys)
+            throws AmazonClientException {
+        assertParameterNotNull(generatePresignedUrlRequest,
+                "The request parameter must be specified when generating pre-signed URLs");
+        assertParameterNotNull(keys,
+                "The keys parameter must be specified when generating pre-signed URLs");
+        assertValidPresignedUrlRequest(generatePresignedUrlRequest);
+
+        final List<URL> urls = new ArrayList<URL>(keys.size());
+        if (keys.isEmpty()) {
+            return urls;
+        }
+        final String bucketName = generatePresignedUrlRequest.getBucketName();
+        final String firstKey = keys.get(0);
+        final Request<GeneratePresignedUrlRequest> request = createPresignedUrlRequest(
+                generatePresignedUrlRequest, firstKey);
+        final Signer signer = createSigner(request, bucketName, firstKey);
+        if (!(signer instanceof AWSS3V4Signer)) {
+            // Signature Version 2 signs the resource path up front; there is
+            // nothing to share between the keys.
+            urls.add(presignUrl(request, signer, generatePresignedUrlRequest, firstKey));
+            for (final String key : keys.subList(1, keys.size())) {
+                final Request<GeneratePresignedUrlRequest> keyRequest =
+                        createPresignedUrlRequest(generatePresignedUrlRequest, key);
+                urls.add(presignUrl(keyRequest, createSigner(keyRequest, bucketName, key),
+                        generatePresignedUrlRequest, key));
+            }
+            return urls;
+        }
+
+        final AWSS3V4Signer sigV4Signer = (AWSS3V4Signer) signer;
+        final AWSCredentials credentials = awsCredentialsProvider.getCredentials();
+        sigV4Signer.presignRequest(request, credentials,
+                generatePresignedUrlRequest.getExpiration());
+        urls.add(ServiceUtils.convertRequestToUrl(request, true));
+
+        final AWSS3V4Signer.ResourcePathPresigner presigner = sigV4Signer
+                .newResourcePathPresigner(request, credentials);
+        final boolean virtualAddressing = shouldUseVirtualAddressing(request.getEndpoint(),
+                bucketName);
+        for (final String key : keys.subList(1, keys.size())) {
+            request.setResourcePath(virtualAddressing
+                    ? getHostStyleResourcePath(key)
+                    : getPathStyleResourcePath(bucketName, key));
+            if (presigner != null) {
+                presigner.presign(request);
+            }
+            urls.add(ServiceUtils.convertRequestToUrl(request, true));
+        }
+        return urls;
+    }
+
+    private void assertValidPresignedUrlRequest(
+            GeneratePresignedUrlRequest generatePresignedUrlRequest) {
+        assertParameterNotNull(generatePresignedUrlRequest.getBucketName(),
                 "The bucket name parameter must be specified when generating a pre-signed URL");
         assertParameterNotNull(generatePresignedUrlRequest.getMethod(),
                 "The HTTP method request parameter must be specified when generating a pre-signed URL");
@@ -3442,7 +3555,15 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
             generatePresignedUrlRequest.setExpiration(
                     new Date(System.currentTimeMillis() + 1000 * 60 * 15));
         }
+    }
 
+    /*
+     * Builds the request for a pre-signed URL, with everything but the
+     * signature.
+     */
+    private Request<GeneratePresignedUrlRequest> createPresignedUrlRequest(
+            GeneratePresignedUrlRequest generatePresignedUrlRequest, String key) {
+        final String bucketName = generatePresignedUrlRequest.getBucketName();
         final HttpMethodName httpMethod = HttpMethodName.valueOf(generatePresignedUrlRequest.getMethod()
                 .toString());
 
@@ -3492,32 +3613,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         }
 
         addResponseHeaderParameters(request, generatePresignedUrlRequest.getResponseHeaders());
-
-        final Signer signer = createSigner(request, bucketName, key);
-
-
-        if (signer instanceof Presigner) {
-            // If we have a signer which knows how to presign requests,
-            // delegate directly to it.
-            ((Presigner) signer).presignRequest(
-                    request,
-                    awsCredentialsProvider.getCredentials(),
-                    generatePresignedUrlRequest.getExpiration()
-            );
-        } else {
-            // Otherwise use the default presigning method, which is hardcoded
-            // to use QueryStringSigner.
-            presignRequest(
-                    request,
-                    generatePresignedUrlRequest.getMethod(),
-                    bucketName,
-                    key,
-                    generatePresignedUrlRequest.getExpiration(),
-                    null);
-        }
-
-        // Remove the leading slash (if any) in the resource-path
-        return ServiceUtils.convertRequestToUrl(request, true);
+        return request;
     }
 
     /*
@@ -3837,13 +3933,19 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         populateSSE_C(request, uploadPartRequest.getSSECustomerKey());
 
         InputStream inputStream = null;
+        FileRegionInputStream fileRegion = null;
         if (uploadPartRequest.getInputStream() != null) {
             inputStream = uploadPartRequest.getInputStream();
         } else if (uploadPartRequest.getFile() != null) {
+            /*
+             * The part is sent as a file region, which the HTTP client may
+             * transfer straight from the file. Its digests are computed over
+             * mapped buffers up front instead of while it is streamed.
+             */
             try {
-                inputStream = new InputSubstream(new RepeatableFileInputStream(
-                        uploadPartRequest.getFile()),
-                        uploadPartRequest.getFileOffset(), partSize, true);
+                inputStream = fileRegion = new FileRegionInputStream(
+                        uploadPartRequest.getFile(), uploadPartRequest.getFileOffset(),
+                        partSize);
             } catch (final FileNotFoundException e) {
                 throw new IllegalArgumentException("The specified file doesn't exist", e);
             }
@@ -3852,8 +3954,24 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                     "A File or InputStream must be specified when uploading part");
         }
 
+        byte[] clientSideMd5 = null;
         MD5DigestCalculatingInputStream md5DigestStream = null;
         if (uploadPartRequest.getMd5Digest() == null
+                && !ServiceUtils.skipMd5CheckPerRequest(uploadPartRequest)
+                && fileRegion != null) {
+            try {
+                fileRegion.computeDigests("MD5", "SHA-256");
+                clientSideMd5 = fileRegion.getDigest("MD5");
+            } catch (final IOException e) {
+                try {
+                    fileRegion.close();
+                } catch (final IOException ignored) {
+                }
+                throw new AmazonClientException(
+                        "Unable to calculate MD5 hash: " + e.getMessage(), e);
+            }
+            request.addHeader(Headers.CONTENT_MD5, BinaryUtils.toBase64(clientSideMd5));
+        } else if (uploadPartRequest.getMd5Digest() == null
                 && !ServiceUtils.skipMd5CheckPerRequest(uploadPartRequest)) {
             /*
              * If the user hasn't set the content MD5, then we don't want to
@@ -3874,8 +3992,16 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                 .wrapListener(progressListener);
 
         if (progressListenerCallbackExecutor != null) {
-            inputStream = new ProgressReportingInputStream(inputStream, progressListenerCallbackExecutor);
-            ((ProgressReportingInputStream)inputStream).setNotificationThreshold(this.notificationThreshold);
+            if (fileRegion != null) {
+                // a wrapper would hide the region from the HTTP client
+                fileRegion.setProgressListener(progressListenerCallbackExecutor,
+                        this.notificationThreshold);
+            } else {
+                inputStream = new ProgressReportingInputStream(inputStream,
+                        progressListenerCallbackExecutor);
+                ((ProgressReportingInputStream) inputStream)
+                        .setNotificationThreshold(this.notificationThreshold);
+            }
             fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.PART_STARTED_EVENT_CODE);
         }
 
@@ -3884,9 +4010,10 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
             final ObjectMetadata metadata = invoke(request, new S3MetadataResponseHandler(), bucketName,
                     key);
 
-            if (metadata != null && md5DigestStream != null
+            if (metadata != null && (md5DigestStream != null || clientSideMd5 != null)
                     && !ServiceUtils.skipMd5CheckPerResponse(metadata)) {
-                final byte[] clientSideHash = md5DigestStream.getMd5Digest();
+                final byte[] clientSideHash = clientSideMd5 != null ? clientSideMd5
+                        : md5DigestStream.getMd5Digest();
                 final byte[] serverSideHash = BinaryUtils.fromHex(metadata.getETag());
 
                 if (!Arrays.equals(clientSideHash, serverSideHash)) {
@@ -4858,8 +4985,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
 
     @Override
     protected final ExecutionContext createExecutionContext(AmazonWebServiceRequest req) {
-        final boolean isMetricsEnabled = isRequestMetricsEnabled(req) || isProfilingEnabled();
-        return new S3ExecutionContext(requestHandler2s, isMetricsEnabled, this);
+        return new S3ExecutionContext(requestHandler2s, createAwsRequestMetrics(req), this);
     }
 
     private <X, Y extends AmazonWebServiceRequest> X invoke(Request<Y> request,
@@ -29,6 +29,8 @@ public class S3ClientOptions {
     public static final boolean DEFAULT_ACCELERATE_MODE_ENABLED = false;
     /** S3 dualstack endpoint is by default not enabled */
     public static final boolean DEFAULT_DUALSTACK_ENABLED = false;
+    /** File uploads are by default read once for the Content-MD5 header */
+    public static final boolean DEFAULT_SINGLE_PASS_CHECKSUM_ENABLED = false;
 
     /** Flag for use of path-style access */
     private boolean pathStyleAccess;
@@ -36,6 +38,7 @@ public class S3ClientOptions {
     private final boolean accelerateModeEnabled;
     private final boolean payloadSigningEnabled;
     private final boolean dualstackEnabled;
+    private final boolean singlePassChecksumEnabled;
 
     /**
      * @return a new S3ClientOptions builder.
@@ -54,6 +57,7 @@ public class S3ClientOptions {
         private boolean accelerateModeEnabled = DEFAULT_ACCELERATE_MODE_ENABLED;
         private boolean payloadSigningEnabled = DEFAULT_PAYLOAD_SIGNING_ENABLED;
         private boolean dualstackEnabled = DEFAULT_DUALSTACK_ENABLED;
+        private boolean singlePassChecksumEnabled = DEFAULT_SINGLE_PASS_CHECKSUM_ENABLED;
 
         private Builder() {
         }
@@ -67,7 +71,8 @@ public class S3ClientOptions {
                     chunkedEncodingDisabled,
                     accelerateModeEnabled,
                     payloadSigningEnabled,
-                    dualstackEnabled);
+                    dualstackEnabled,
+                    singlePassChecksumEnabled);
         }
 
         /**
@@ -178,6 +183,34 @@ public class S3ClientOptions {
             this.dualstackEnabled = true;
             return this;
         }
+
+        /**
+         * <p>
+         * Configures the client to compute the MD5 of file uploads while
+         * they are sent, instead of reading the file once beforehand for the
+         * Content-MD5 header.
+         * </p>
+         * <p>
+         * The default behavior is to read the whole file to calculate the
+         * Content-MD5 header before uploading it, so Amazon S3 rejects an
+         * upload that was corrupted in transit. Setting this flag halves the
+         * disk reads of a file upload: the MD5 is computed during the upload
+         * and validated against the ETag returned by Amazon S3 instead, and a
+         * mismatch fails the request after the object has been stored.
+         * Uploads with SSE-KMS parameters, whose ETag isn't the MD5 of the
+         * data, uploads that skip the MD5 check, such as those with SSE-C, and
+         * requests whose metadata already sets the Content-MD5 are unaffected.
+         * </p>
+         *
+         * @param singlePassChecksumEnabled True to compute the MD5 of file
+         *            uploads while they are sent.
+         * @return Builder for S3ClientOptions.
+         */
+        @SuppressWarnings("checkstyle:hiddenfield")
+        public Builder setSinglePassChecksumEnabled(boolean singlePassChecksumEnabled) {
+            this.singlePassChecksumEnabled = singlePassChecksumEnabled;
+            return this;
+        }
     }
 
     /**
@@ -191,6 +224,7 @@ public class S3ClientOptions {
         this.accelerateModeEnabled = DEFAULT_ACCELERATE_MODE_ENABLED;
         this.payloadSigningEnabled = DEFAULT_PAYLOAD_SIGNING_ENABLED;
         this.dualstackEnabled = DEFAULT_DUALSTACK_ENABLED;
+        this.singlePassChecksumEnabled = DEFAULT_SINGLE_PASS_CHECKSUM_ENABLED;
     }
 
     /**
@@ -205,18 +239,21 @@ public class S3ClientOptions {
         this.accelerateModeEnabled = other.accelerateModeEnabled;
         this.payloadSigningEnabled = other.payloadSigningEnabled;
         this.dualstackEnabled = other.dualstackEnabled;
+        this.singlePassChecksumEnabled = other.singlePassChecksumEnabled;
     }
 
     private S3ClientOptions(boolean pathStyleAccess,
             boolean chunkedEncodingDisabled,
             boolean accelerateModeEnabled,
             boolean payloadSigningEnabled,
-            boolean dualstackEnabled) {
+            boolean dualstackEnabled,
+            boolean singlePassChecksumEnabled) {
         this.pathStyleAccess = pathStyleAccess;
         this.chunkedEncodingDisabled = chunkedEncodingDisabled;
         this.accelerateModeEnabled = accelerateModeEnabled;
         this.payloadSigningEnabled = payloadSigningEnabled;
         this.dualstackEnabled = dualstackEnabled;
+        this.singlePassChecksumEnabled = singlePassChecksumEnabled;
     }
 
     /**
@@ -341,6 +378,19 @@ public class S3ClientOptions {
         return dualstackEnabled;
     }
 
+    /**
+     * <p>
+     * Returns whether the client computes the MD5 of file uploads while they
+     * are sent, and validates it against the returned ETag, instead of
+     * reading the file once beforehand for the Content-MD5 header.
+     * </p>
+     *
+     * @return True if the MD5 of file uploads is computed in a single pass
+     */
+    public boolean isSinglePassChecksumEnabled() {
+        return singlePassChecksumEnabled;
+    }
+
 
     /**
      * <p>
@@ -18,20 +18,31 @@ package com.amazonaws.services.s3.internal;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.Request;
 import com.amazonaws.auth.AWS4Signer;
+import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AwsChunkedEncodingInputStream;
+import com.amazonaws.auth.SigningAlgorithm;
+import com.amazonaws.auth.SigningKeyCache;
+import com.amazonaws.internal.FileRegionInputStream;
 import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.HttpUtils;
+import com.amazonaws.util.StringUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * AWS4 signer implementation for AWS S3
  */
 public class AWSS3V4Signer extends AWS4Signer {
     private static final String CONTENT_SHA_256 = "STREAMING-AWS4-HMAC-SHA256-PAYLOAD";
+    private static final String X_AMZ_DATE = "X-Amz-Date";
+    private static final String X_AMZ_SIGNATURE = "X-Amz-Signature";
+    private static final int DATE_STAMP_LENGTH = 8;
     private static final int DEFAULT_BYTE_LENGTH = 4096;
 
     /**
@@ -111,15 +122,104 @@ public class AWSS3V4Signer extends AWS4Signer {
                             .calculateStreamContentLength(originalContentLength)));
             return CONTENT_SHA_256;
         }
+        if (request.getContent() instanceof FileRegionInputStream) {
+            try {
+                return BinaryUtils.toHex(((FileRegionInputStream) request.getContent())
+                        .getDigest("SHA-256"));
+            } catch (IOException e) {
+                throw new AmazonClientException(
+                        "Unable to calculate the SHA-256 of the file region", e);
+            }
+        }
         return super.calculateContentHash(request);
     }
 
     /**
-     * Determine whether to use aws-chunked for signing
+     * Returns a presigner for requests that differ from the given presigned
+     * request only in their resource path, such as GET requests for other
+     * keys of the same bucket. The date, scope, signing key and every part of
+     * the canonical request except the path are computed once, from the
+     * presigned request.
+     *
+     * @param presigned a request presigned by this signer.
+     * @param credentials the credentials the request was presigned with.
+     * @return the presigner, or null if the request wasn't presigned, as is
+     *         the case with anonymous credentials.
+     */
+    public ResourcePathPresigner newResourcePathPresigner(Request<?> presigned,
+            AWSCredentials credentials) {
+        final String timeStamp = presigned.getParameters().get(X_AMZ_DATE);
+        if (timeStamp == null) {
+            return null;
+        }
+        return new ResourcePathPresigner(presigned, sanitizeCredentials(credentials), timeStamp);
+    }
+
+    /**
+     * Presigns requests for other resource paths, reusing the signing state
+     * of a presigned request. See
+     * {@link AWSS3V4Signer#newResourcePathPresigner(Request, AWSCredentials)}.
+     */
+    public final class ResourcePathPresigner {
+        private final String method;
+        private final String endpointPath;
+        private final String canonicalRequestSuffix;
+        private final String stringToSignPrefix;
+        private final byte[] kSigning;
+
+        private ResourcePathPresigner(Request<?> presigned, AWSCredentials credentials,
+                String timeStamp) {
+            final String dateStamp = timeStamp.substring(0, DATE_STAMP_LENGTH);
+            final String regionName = extractRegionName(presigned.getEndpoint());
+            final String serviceName = extractServiceName(presigned.getEndpoint());
+            final String scope = dateStamp + "/" + regionName + "/" + serviceName + "/"
+                    + TERMINATOR;
+            final Map<String, String> parameters = new HashMap<String, String>(
+                    presigned.getParameters());
+            parameters.remove(X_AMZ_SIGNATURE);
+
+            method = presigned.getHttpMethod().toString();
+            endpointPath = presigned.getEndpoint().getPath();
+            canonicalRequestSuffix = "\n" + getCanonicalizedQueryString(parameters) + "\n"
+                    + getCanonicalizedHeaderString(presigned) + "\n"
+                    + getSignedHeadersString(presigned) + "\n"
+                    + calculateContentHashPresign(presigned);
+            stringToSignPrefix = ALGORITHM + "\n" + timeStamp + "\n" + scope + "\n";
+            kSigning = SigningKeyCache.getDefault().getSigningKey(
+                    credentials.getAWSSecretKey(), dateStamp, regionName, serviceName);
+        }
+
+        /**
+         * Sets the signature of a request for its resource path. The request
+         * must have the same endpoint, parameters and headers as the request
+         * this presigner was created from.
+         *
+         * @param request the request to presign.
+         */
+        public void presign(Request<?> request) {
+            final String path = HttpUtils.appendUri(endpointPath, request.getResourcePath());
+            final String canonicalRequest = method + "\n"
+                    + getCanonicalizedResourcePath(path, doubleUrlEncode)
+                    + canonicalRequestSuffix;
+            final String stringToSign = stringToSignPrefix
+                    + BinaryUtils.toHex(hash(canonicalRequest));
+            final byte[] signature = sign(stringToSign.getBytes(StringUtils.UTF8), kSigning,
+                    SigningAlgorithm.HmacSHA256);
+            request.addParameter(X_AMZ_SIGNATURE, BinaryUtils.toHex(signature));
+        }
+    }
+
+    /**
+     * Determine whether to use aws-chunked for signing. A file region is
+     * signed with the hash of its whole content instead, so that it can be
+     * sent without being copied through a chunk-encoding stream.
      */
     private static boolean useChunkEncoding(Request<?> request) {
         // Whether to use chunked encoding for signing the request
         boolean chunkedEncodingEnabled = false;
+        if (request.getContent() instanceof FileRegionInputStream) {
+            return false;
+        }
         if (request.getOriginalRequest() instanceof PutObjectRequest
                 || request.getOriginalRequest() instanceof UploadPartRequest) {
             chunkedEncodingEnabled = true;
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal;
+
+/**
+ * Adapts the number of multipart upload parts in flight, and the size of the
+ * parts not created yet, to the measured throughput of the parts, additive
+ * increase / multiplicative decrease (AIMD) style.
+ * <p>
+ * Uploaders take a permit per part with {@link #acquire()} or
+ * {@link #tryAcquire()}, report the outcome of the part with
+ * {@link #onPartCompleted(long, long)} or {@link #onPartFailed()}, and give
+ * the permit back with {@link #release()}.
+ * <ul>
+ * <li>The limit grows by one part after a round of as many successful parts
+ * as the limit. Once it has reached the maximum concurrency, the part size
+ * doubles instead, up to the maximum part size.</li>
+ * <li>The limit is halved when a part fails, and when the time per byte of a
+ * part exceeds twice the best one observed, which means the parts are queuing
+ * behind each other rather than using spare bandwidth. Failures also halve
+ * the part size, down to the minimum part size.</li>
+ * </ul>
+ * This class is thread-safe.
+ */
+public class AdaptiveUploadController {
+    /** Parts in flight before anything has been measured. */
+    static final int INITIAL_CONCURRENCY = 2;
+    /** Time per byte, relative to the best, that is taken as congestion. */
+    static final double CONGESTION_LATENCY_RATIO = 2.0;
+
+    private final int maxConcurrency;
+    private final long minPartSize;
+    private final long maxPartSize;
+
+    /* All guarded by this. */
+    private int limit;
+    private int inFlight;
+    private int successesSinceChange;
+    private double bestNanosPerByte = Double.MAX_VALUE;
+    private long partSize;
+    private long bytesCompleted;
+    private long startNanos;
+
+    /**
+     * @param maxConcurrency the maximum number of parts in flight.
+     * @param minPartSize the initial and smallest part size.
+     * @param maxPartSize the largest part size.
+     */
+    public AdaptiveUploadController(int maxConcurrency, long minPartSize, long maxPartSize) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        if (minPartSize <= 0 || maxPartSize < minPartSize) {
+            throw new IllegalArgumentException("Invalid part size bounds " + minPartSize
+                    + " - " + maxPartSize);
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.minPartSize = minPartSize;
+        this.maxPartSize = maxPartSize;
+        this.limit = Math.min(INITIAL_CONCURRENCY, maxConcurrency);
+        this.partSize = minPartSize;
+    }
+
+    /**
+     * Takes a permit to upload a part, waiting until the number of parts in
+     * flight is below the limit.
+     *
+     * @throws InterruptedException if the thread is interrupted while
+     *             waiting.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) {
+            wait();
+        }
+        take();
+    }
+
+    /**
+     * Takes a permit to upload a part if the number of parts in flight is
+     * below the limit.
+     *
+     * @return true if a permit was taken.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= limit) {
+            return false;
+        }
+        take();
+        return true;
+    }
+
+    /**
+     * Gives back a permit taken by {@link #acquire()} or {@link #tryAcquire()}.
+     */
+    public synchronized void release() {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Records a part that has been uploaded.
+     *
+     * @param bytes the size of the part.
+     * @param elapsedNanos the time the part took to upload.
+     */
+    public synchronized void onPartCompleted(long bytes, long elapsedNanos) {
+        if (bytes <= 0) {
+            return;
+        }
+        bytesCompleted += bytes;
+        if (elapsedNanos <= 0) {
+            return;
+        }
+        final double nanosPerByte = (double) elapsedNanos / bytes;
+        if (nanosPerByte < bestNanosPerByte) {
+            bestNanosPerByte = nanosPerByte;
+        }
+        successesSinceChange++;
+        final boolean roundComplete = successesSinceChange >= limit;
+        if (nanosPerByte > CONGESTION_LATENCY_RATIO * bestNanosPerByte) {
+            if (roundComplete) {
+                decrease();
+                // the best time may have been measured on a faster link
+                bestNanosPerByte = Math.max(bestNanosPerByte,
+                        nanosPerByte / CONGESTION_LATENCY_RATIO);
+            }
+            return;
+        }
+        if (roundComplete) {
+            if (limit < maxConcurrency) {
+                limit++;
+            } else {
+                partSize = Math.min(maxPartSize, partSize * 2);
+            }
+            successesSinceChange = 0;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Records a part that has failed to upload.
+     */
+    public synchronized void onPartFailed() {
+        decrease();
+        partSize = Math.max(minPartSize, partSize / 2);
+    }
+
+    /**
+     * @return the number of parts that may currently be in flight.
+     */
+    public synchronized int getConcurrencyLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of permits currently taken.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the size for parts created from now on, between the minimum and
+     *         the maximum part size.
+     */
+    public synchronized long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * @return the bytes of the completed parts per second, measured from the
+     *         first permit taken, or 0 if no part has completed yet.
+     */
+    public synchronized long getBytesPerSecond() {
+        final long elapsed = System.nanoTime() - startNanos;
+        if (bytesCompleted == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return (long) (bytesCompleted * 1e9 / elapsed);
+    }
+
+    /* Must hold the lock. */
+    private void take() {
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+        inFlight++;
+    }
+
+    /* Must hold the lock. */
+    private void decrease() {
+        limit = Math.max(1, limit / 2);
+        successesSinceChange = 0;
+    }
+}
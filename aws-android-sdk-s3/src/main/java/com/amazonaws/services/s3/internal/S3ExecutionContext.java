@@ -19,6 +19,7 @@ import com.amazonaws.AmazonWebServiceClient;
 import com.amazonaws.auth.Signer;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.util.AWSRequestMetrics;
 
 import java.net.URI;
 import java.util.List;
@@ -40,6 +41,17 @@ public class S3ExecutionContext extends ExecutionContext {
         super(requestHandler2s, isMetricEnabled, awsClient);
     }
 
+    /**
+     * Constructor.
+     * @param requestHandler2s list of RequestHandler2.
+     * @param awsRequestMetrics the request metrics to record into.
+     * @param awsClient the AmazonWebServiceClient.
+     */
+    public S3ExecutionContext(List<RequestHandler2> requestHandler2s,
+            AWSRequestMetrics awsRequestMetrics, AmazonWebServiceClient awsClient) {
+        super(requestHandler2s, awsRequestMetrics, awsClient);
+    }
+
     @Override
     public void setSigner(Signer signer) {
         this.signer = signer;
@@ -43,9 +43,12 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -317,6 +320,72 @@ public class ServiceUtils {
         }
     }
 
+    /**
+     * Downloads the content of an S3Object, typically a byte range of an
+     * object, into the specified file at the given position. The data is
+     * written with positional {@link FileChannel} writes, so several ranges of
+     * the same file can be downloaded concurrently. The file is neither
+     * truncated nor appended to.
+     *
+     * @param s3Object The S3Object containing a reference to an InputStream
+     *            containing the data of the range.
+     * @param destinationFile The file to store the data in.
+     * @param position The position in the file of the first byte of the
+     *            range.
+     * @return The number of bytes written.
+     */
+    public static long downloadObjectToFileRegion(S3Object s3Object,
+            File destinationFile, long position) {
+
+        // attempt to create the parent if it doesn't exist
+        final File parentDirectory = destinationFile.getParentFile();
+        if (parentDirectory != null && !parentDirectory.exists()) {
+            parentDirectory.mkdirs();
+        }
+
+        final long expectedLength = s3Object.getObjectMetadata().getContentLength();
+        RandomAccessFile randomAccessFile = null;
+        long written = 0;
+        try {
+            randomAccessFile = new RandomAccessFile(destinationFile, "rw");
+            final FileChannel channel = randomAccessFile.getChannel();
+            final byte[] buffer = new byte[DEAFAULT_BYTE_SIZE];
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            int bytesRead;
+            while ((bytesRead = s3Object.getObjectContent().read(buffer)) > -1) {
+                byteBuffer.clear();
+                byteBuffer.limit(bytesRead);
+                while (byteBuffer.hasRemaining()) {
+                    written += channel.write(byteBuffer, position + written);
+                }
+            }
+        } catch (final IOException e) {
+            s3Object.getObjectContent().abort();
+            throw new AmazonClientException(
+                    "Unable to store object contents to disk: " + e.getMessage(), e);
+        } finally {
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (final Exception e) {
+                log.debug("Caught exception. Ignoring.");
+            }
+            try {
+                s3Object.getObjectContent().close();
+            } catch (final Exception e) {
+                log.debug("Caught exception. Ignoring.");
+            }
+        }
+
+        if (expectedLength > 0 && written != expectedLength) {
+            throw new AmazonClientException("Unable to download the range at " + position
+                    + " of '" + destinationFile.getAbsolutePath() + "'. Expected "
+                    + expectedLength + " bytes but received " + written + ".");
+        }
+        return written;
+    }
+
     /**
      * Interface for the task of downloading object from S3 to a specific file,
      * enabling one-time retry mechanism after integrity check failure on the
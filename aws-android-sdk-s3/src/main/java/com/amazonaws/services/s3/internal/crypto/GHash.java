@@ -0,0 +1,269 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal.crypto;
+
+import java.util.List;
+
+/**
+ * The GHASH function of AES/GCM, computed over consecutive pieces of the
+ * ciphertext independently and combined afterwards, so that the
+ * authentication tag of a ciphertext processed in parallel ranges can be
+ * verified. Only an empty additional authenticated data is supported, which
+ * is what the Amazon S3 encryption client uses.
+ * <p>
+ * GHASH is a polynomial in the hash key H evaluated over the ciphertext
+ * blocks: a piece of m blocks, hashed on its own, is combined with the hash
+ * of the pieces before it by multiplying the latter by H^m. See <a href=
+ * "http://csrc.nist.gov/publications/nistpubs/800-38D/SP-800-38D.pdf"> NIST
+ * Special Publication 800-38D</a>.
+ *
+ * @deprecated See {@link com.amazonaws.services.s3.AmazonS3EncryptionClient}
+ *             for further details.
+ */
+@Deprecated
+final class GHash {
+    static final int BLOCK_SIZE = 16;
+
+    private static final int BITS_PER_BYTE = 8;
+    private static final int BYTE_VALUES = 256;
+    private static final int LONG_BITS = 64;
+    private static final int LONG_BYTES = 8;
+    private static final int BYTE_MASK = 0xff;
+    /* The reduction polynomial of GF(2^128), in the bit order of GCM. */
+    private static final long R = 0xe100000000000000L;
+
+    private final long hHi;
+    private final long hLo;
+    /*
+     * The products of H with every byte value at every byte position, two
+     * longs per product: multiplying by H takes one lookup per byte.
+     */
+    private final long[] table = new long[BLOCK_SIZE * BYTE_VALUES * 2];
+
+    /**
+     * @param h the hash key, the encryption of the zero block.
+     */
+    GHash(byte[] h) {
+        if (h.length != BLOCK_SIZE) {
+            throw new IllegalArgumentException("The hash key must be 16 bytes");
+        }
+        hHi = toLong(h, 0);
+        hLo = toLong(h, LONG_BYTES);
+        final long[] product = new long[2];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            for (int bit = 0; bit < BITS_PER_BYTE; bit++) {
+                final int b = 1 << bit;
+                // the block with the single bit b at byte i
+                final int shift = (LONG_BYTES - 1 - i % LONG_BYTES) * BITS_PER_BYTE;
+                final long xHi = i < LONG_BYTES ? (long) b << shift : 0;
+                final long xLo = i < LONG_BYTES ? 0 : (long) b << shift;
+                multiply(xHi, xLo, hHi, hLo, product);
+                final int index = (i * BYTE_VALUES + b) * 2;
+                table[index] = product[0];
+                table[index + 1] = product[1];
+            }
+            for (int b = 1; b < BYTE_VALUES; b++) {
+                final int low = b & -b;
+                if (low == b) {
+                    continue;
+                }
+                final int index = (i * BYTE_VALUES + b) * 2;
+                final int lowIndex = (i * BYTE_VALUES + low) * 2;
+                final int restIndex = (i * BYTE_VALUES + (b ^ low)) * 2;
+                table[index] = table[lowIndex] ^ table[restIndex];
+                table[index + 1] = table[lowIndex + 1] ^ table[restIndex + 1];
+            }
+        }
+    }
+
+    /**
+     * Returns a hash of a piece of the ciphertext.
+     */
+    Piece newPiece() {
+        return new Piece();
+    }
+
+    /**
+     * Combines the hashes of the pieces making up the ciphertext, in order,
+     * into the GHASH of the ciphertext.
+     *
+     * @param pieces the finished pieces, in ciphertext order.
+     * @param ciphertextLength the length of the ciphertext in bytes.
+     * @return the 16-byte GHASH.
+     */
+    byte[] digest(List<Piece> pieces, long ciphertextLength) {
+        final long[] y = new long[2];
+        final long[] power = new long[2];
+        for (final Piece piece : pieces) {
+            power(piece.blocks, power);
+            multiply(y[0], y[1], power[0], power[1], y);
+            y[0] ^= piece.hi;
+            y[1] ^= piece.lo;
+        }
+        // the lengths block: no additional data, then the ciphertext bits
+        y[1] ^= ciphertextLength * BITS_PER_BYTE;
+        multiplyByH(y);
+        final byte[] out = new byte[BLOCK_SIZE];
+        toBytes(y[0], out, 0);
+        toBytes(y[1], out, LONG_BYTES);
+        return out;
+    }
+
+    /* Sets y to y times H. */
+    private void multiplyByH(long[] y) {
+        long zHi = 0;
+        long zLo = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            final long word = i < LONG_BYTES ? y[0] : y[1];
+            final int b = (int) (word >>> ((LONG_BYTES - 1 - i % LONG_BYTES) * BITS_PER_BYTE))
+                    & BYTE_MASK;
+            final int index = (i * BYTE_VALUES + b) * 2;
+            zHi ^= table[index];
+            zLo ^= table[index + 1];
+        }
+        y[0] = zHi;
+        y[1] = zLo;
+    }
+
+    /* Sets out to H raised to the power n. */
+    private void power(long n, long[] out) {
+        // one, in the reflected bit order of GCM
+        long rHi = Long.MIN_VALUE;
+        long rLo = 0;
+        long bHi = hHi;
+        long bLo = hLo;
+        final long[] t = new long[2];
+        for (long e = n; e > 0; e >>>= 1) {
+            if ((e & 1) != 0) {
+                multiply(rHi, rLo, bHi, bLo, t);
+                rHi = t[0];
+                rLo = t[1];
+            }
+            multiply(bHi, bLo, bHi, bLo, t);
+            bHi = t[0];
+            bLo = t[1];
+        }
+        out[0] = rHi;
+        out[1] = rLo;
+    }
+
+    /* Multiplies x by y in GF(2^128), bit by bit (Algorithm 1 of SP 800-38D). */
+    static void multiply(long xHi, long xLo, long yHi, long yLo, long[] out) {
+        long zHi = 0;
+        long zLo = 0;
+        long vHi = yHi;
+        long vLo = yLo;
+        for (int i = 0; i < 2 * LONG_BITS; i++) {
+            final long bit = i < LONG_BITS
+                    ? xHi >>> (LONG_BITS - 1 - i)
+                    : xLo >>> (2 * LONG_BITS - 1 - i);
+            if ((bit & 1) != 0) {
+                zHi ^= vHi;
+                zLo ^= vLo;
+            }
+            final boolean carry = (vLo & 1) != 0;
+            vLo = (vLo >>> 1) | (vHi << (LONG_BITS - 1));
+            vHi >>>= 1;
+            if (carry) {
+                vHi ^= R;
+            }
+        }
+        out[0] = zHi;
+        out[1] = zLo;
+    }
+
+    private static long toLong(byte[] b, int off) {
+        long v = 0;
+        for (int i = 0; i < LONG_BYTES; i++) {
+            v = (v << BITS_PER_BYTE) | (b[off + i] & BYTE_MASK);
+        }
+        return v;
+    }
+
+    private static void toBytes(long v, byte[] b, int off) {
+        for (int i = LONG_BYTES - 1; i >= 0; i--) {
+            b[off + i] = (byte) v;
+            v >>>= BITS_PER_BYTE;
+        }
+    }
+
+    /**
+     * The hash of a piece of the ciphertext that starts at a block boundary.
+     * Only the last piece of the ciphertext may end with a partial block.
+     * Not thread-safe.
+     */
+    final class Piece {
+        private final long[] y = new long[2];
+        private final byte[] pending = new byte[BLOCK_SIZE];
+        private int pendingLength;
+        private long hi;
+        private long lo;
+        private long blocks;
+
+        private Piece() {
+        }
+
+        /**
+         * Hashes the next bytes of the piece.
+         */
+        void update(byte[] b, int off, int len) {
+            int i = off;
+            final int end = off + len;
+            if (pendingLength > 0) {
+                final int n = Math.min(BLOCK_SIZE - pendingLength, len);
+                System.arraycopy(b, i, pending, pendingLength, n);
+                pendingLength += n;
+                i += n;
+                if (pendingLength < BLOCK_SIZE) {
+                    return;
+                }
+                block(pending, 0);
+                pendingLength = 0;
+            }
+            for (; i + BLOCK_SIZE <= end; i += BLOCK_SIZE) {
+                block(b, i);
+            }
+            pendingLength = end - i;
+            System.arraycopy(b, i, pending, 0, pendingLength);
+        }
+
+        /**
+         * Hashes the trailing partial block, padded with zeros.
+         */
+        void finish() {
+            if (pendingLength > 0) {
+                for (int i = pendingLength; i < BLOCK_SIZE; i++) {
+                    pending[i] = 0;
+                }
+                block(pending, 0);
+                pendingLength = 0;
+            }
+        }
+
+        long getBlocks() {
+            return blocks;
+        }
+
+        private void block(byte[] b, int off) {
+            y[0] = hi ^ toLong(b, off);
+            y[1] = lo ^ toLong(b, off + LONG_BYTES);
+            multiplyByH(y);
+            hi = y[0];
+            lo = y[1];
+            blocks++;
+        }
+    }
+}
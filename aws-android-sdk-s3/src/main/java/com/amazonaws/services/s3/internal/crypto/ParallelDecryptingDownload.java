@@ -0,0 +1,423 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.services.s3.AmazonS3EncryptionClient.USER_AGENT;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.event.ProgressListenerCallbackExecutor;
+import com.amazonaws.logging.Log;
+import com.amazonaws.logging.LogFactory;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.internal.S3Direct;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+
+/**
+ * Downloads an object encrypted with AES/GCM to a file in byte ranges, in
+ * parallel. Each range is decrypted on its own as AES/CTR, starting from the
+ * counter of its first block, and written at its offset in the file. The
+ * GHASH of every range is computed along the way and combined at the end to
+ * verify the authentication tag of the object; if the tag doesn't match, the
+ * file is deleted.
+ * <p>
+ * The first range carries the constraints, response header overrides and
+ * progress listener of the request; the other ranges carry the overrides and
+ * listener, and only match the ETag of the first one. The listener gets the
+ * bytes of every range, and a single started and completed event.
+ *
+ * @deprecated See {@link com.amazonaws.services.s3.AmazonS3EncryptionClient}
+ *             for further details.
+ */
+@Deprecated
+class ParallelDecryptingDownload {
+    private static final Log log = LogFactory.getLog(ParallelDecryptingDownload.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BITS_PER_BYTE = 8;
+    private static final int GCM_IV_LENGTH = 12;
+
+    private final S3Direct s3;
+    private final GetObjectRequest req;
+    private final CipherLite cipherLite;
+    private final long partSize;
+    private final int threads;
+    private final int tagLength;
+
+    /**
+     * @param s3 the client fetching the ranges.
+     * @param req the request for the whole object.
+     * @param cipherLite the AES/GCM decryption cipher of the object.
+     * @param partSize the size of the ranges, a multiple of the block size.
+     * @param threads the number of ranges fetched at once.
+     */
+    ParallelDecryptingDownload(S3Direct s3, GetObjectRequest req, CipherLite cipherLite,
+            long partSize, int threads) {
+        this.s3 = s3;
+        this.req = req;
+        this.cipherLite = cipherLite;
+        this.partSize = partSize;
+        this.threads = threads;
+        this.tagLength = cipherLite.getContentCryptoScheme().getTagLengthInBits()
+                / BITS_PER_BYTE;
+    }
+
+    /**
+     * Returns the request for the first range of the object, the one passed
+     * to {@link #download(S3Object, File)}. Its result is null if the
+     * constraints of the request are not met.
+     */
+    static GetObjectRequest firstRangeRequest(GetObjectRequest req, long partSize) {
+        return rangeRequest(req, 0, partSize - 1, null);
+    }
+
+    /**
+     * Downloads and decrypts the object.
+     *
+     * @param first the object with the content of the first range.
+     * @param destinationFile the file to write the plaintext to.
+     * @return the metadata of the whole object, as a download without a range
+     *         returns it.
+     * @throws SecurityException if the authentication tag doesn't match.
+     */
+    ObjectMetadata download(S3Object first, File destinationFile) {
+        final ObjectMetadata metadata = first.getObjectMetadata();
+        final long instanceLength = metadata.getInstanceLength();
+        final long ciphertextLength = instanceLength - tagLength;
+        if (ciphertextLength < 0 || cipherLite.getIV().length != GCM_IV_LENGTH) {
+            closeQuietly(first);
+            throw new SecurityException("Unexpected AES/GCM ciphertext of " + instanceLength
+                    + " bytes for " + req.getKey());
+        }
+        final List<Range> ranges = split(Math.min(partSize, instanceLength), instanceLength);
+        final byte[] tag = new byte[tagLength];
+        final GHash ghash;
+        final byte[] encryptedJ0;
+        try {
+            final Cipher aes = newAesCipher();
+            ghash = new GHash(aes.doFinal(new byte[GHash.BLOCK_SIZE]));
+            // J0 is the IV followed by the 32-bit block counter 1
+            final byte[] j0 = new byte[GHash.BLOCK_SIZE];
+            System.arraycopy(cipherLite.getIV(), 0, j0, 0, GCM_IV_LENGTH);
+            j0[GHash.BLOCK_SIZE - 1] = 1;
+            encryptedJ0 = aes.doFinal(j0);
+        } catch (final Exception e) {
+            closeQuietly(first);
+            throw new AmazonClientException("Unable to build cipher: " + e.getMessage(), e);
+        }
+
+        final ProgressListener listener = req.getGeneralProgressListener();
+        ProgressListenerCallbackExecutor.progressChanged(listener,
+                new ProgressEvent(ProgressEvent.STARTED_EVENT_CODE, 0));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        RandomAccessFile file = null;
+        // the first range, until a task owns it
+        S3Object object = first;
+        boolean verified = false;
+        try {
+            file = new RandomAccessFile(destinationFile, "rw");
+            file.setLength(ciphertextLength);
+            final FileChannel channel = file.getChannel();
+            final List<Future<GHash.Piece>> futures = new ArrayList<Future<GHash.Piece>>();
+            for (final Range range : ranges) {
+                futures.add(executor.submit(new RangeTask(range, object, ciphertextLength,
+                        metadata.getETag(), ghash.newPiece(), channel, tag)));
+                object = null;
+            }
+            final List<GHash.Piece> pieces = new ArrayList<GHash.Piece>();
+            for (final Future<GHash.Piece> future : futures) {
+                pieces.add(future.get());
+            }
+            final byte[] expected = ghash.digest(pieces, ciphertextLength);
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] ^= encryptedJ0[i];
+            }
+            if (!MessageDigest.isEqual(expected, tag)) {
+                throw new SecurityException("Authentication tag mismatch for "
+                        + req.getKey());
+            }
+            verified = true;
+            ProgressListenerCallbackExecutor.progressChanged(listener,
+                    new ProgressEvent(ProgressEvent.COMPLETED_EVENT_CODE, 0));
+            return wholeObjectMetadata(metadata, instanceLength);
+        } catch (final IOException e) {
+            throw new AmazonClientException(
+                    "Unable to store object contents to disk: " + e.getMessage(), e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while downloading " + req.getKey(), e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException("Unable to download " + req.getKey() + ": "
+                    + cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+            if (object != null) {
+                closeQuietly(object);
+            }
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (final IOException e) {
+                    log.debug("Unable to close " + destinationFile, e);
+                }
+            }
+            if (!verified && !destinationFile.delete()) {
+                log.warn("Unable to delete " + destinationFile);
+            }
+        }
+    }
+
+    /*
+     * Splits the object into the first range, already fetched, and ranges of
+     * the part size after it. A tail holding only (part of) the tag is merged
+     * into the range before it where possible.
+     */
+    private List<Range> split(long firstLength, long instanceLength) {
+        final List<Range> ranges = new ArrayList<Range>();
+        ranges.add(new Range(0, firstLength - 1));
+        long start = firstLength;
+        while (start < instanceLength) {
+            long end = Math.min(start + partSize, instanceLength);
+            if (instanceLength - end <= tagLength) {
+                end = instanceLength;
+            }
+            ranges.add(new Range(start, end - 1));
+            start = end;
+        }
+        return ranges;
+    }
+
+    private Cipher newAesCipher() throws Exception {
+        final Provider provider = cipherLite.getCipherProvider();
+        final Cipher aes = provider == null
+                ? Cipher.getInstance("AES/ECB/NoPadding")
+                : Cipher.getInstance("AES/ECB/NoPadding", provider);
+        aes.init(Cipher.ENCRYPT_MODE, cipherLite.getSecretKey());
+        return aes;
+    }
+
+    /*
+     * Returns the request for a range. The first range, with no ETag yet,
+     * carries the constraints of the request; the others only match the ETag
+     * of the first, which met them.
+     */
+    private static GetObjectRequest rangeRequest(GetObjectRequest req, long start, long end,
+            String eTag) {
+        final GetObjectRequest rangeReq = new GetObjectRequest(req.getBucketName(),
+                req.getKey(), req.getVersionId());
+        rangeReq.setRange(start, end);
+        rangeReq.setSSECustomerKey(req.getSSECustomerKey());
+        rangeReq.setRequesterPays(req.isRequesterPays());
+        rangeReq.setRequestCredentials(req.getRequestCredentials());
+        rangeReq.setResponseHeaders(req.getResponseHeaders());
+        if (eTag == null) {
+            rangeReq.setMatchingETagConstraints(req.getMatchingETagConstraints());
+            rangeReq.setNonmatchingETagConstraints(req.getNonmatchingETagConstraints());
+            rangeReq.setModifiedSinceConstraint(req.getModifiedSinceConstraint());
+            rangeReq.setUnmodifiedSinceConstraint(req.getUnmodifiedSinceConstraint());
+        } else {
+            // fail rather than mix up two versions of the object
+            rangeReq.withMatchingETagConstraint(eTag);
+        }
+        if (req.getGeneralProgressListener() != null) {
+            rangeReq.setGeneralProgressListener(
+                    new RangeProgressListener(req.getGeneralProgressListener()));
+        }
+        rangeReq.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return rangeReq;
+    }
+
+    /*
+     * Returns the metadata of the first range with the length of the whole
+     * object and without its Content-Range.
+     */
+    private static ObjectMetadata wholeObjectMetadata(ObjectMetadata ranged,
+            long instanceLength) {
+        final ObjectMetadata metadata = new ObjectMetadata();
+        for (final Map.Entry<String, Object> header : ranged.getRawMetadata().entrySet()) {
+            if (!Headers.CONTENT_RANGE.equalsIgnoreCase(header.getKey())) {
+                metadata.setHeader(header.getKey(), header.getValue());
+            }
+        }
+        metadata.setContentLength(instanceLength);
+        for (final Map.Entry<String, String> entry : ranged.getUserMetadata().entrySet()) {
+            metadata.addUserMetadata(entry.getKey(), entry.getValue());
+        }
+        metadata.setExpirationTime(ranged.getExpirationTime());
+        metadata.setExpirationTimeRuleId(ranged.getExpirationTimeRuleId());
+        metadata.setHttpExpiresDate(ranged.getHttpExpiresDate());
+        metadata.setRestoreExpirationTime(ranged.getRestoreExpirationTime());
+        if (ranged.getOngoingRestore() != null) {
+            metadata.setOngoingRestore(ranged.getOngoingRestore());
+        }
+        return metadata;
+    }
+
+    private static void closeQuietly(S3Object object) {
+        try {
+            object.close();
+        } catch (final IOException e) {
+            log.debug("Unable to close the object content", e);
+        }
+    }
+
+    /*
+     * Passes on the bytes of a range; the download reports the started and
+     * completed events of the whole object itself.
+     */
+    private static final class RangeProgressListener implements ProgressListener {
+        private final ProgressListener listener;
+
+        RangeProgressListener(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void progressChanged(ProgressEvent progressEvent) {
+            final int code = progressEvent.getEventCode();
+            if (code != ProgressEvent.STARTED_EVENT_CODE
+                    && code != ProgressEvent.COMPLETED_EVENT_CODE) {
+                listener.progressChanged(progressEvent);
+            }
+        }
+    }
+
+    private static final class Range {
+        private final long start;
+        private final long end;
+
+        Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /* Fetches, hashes and decrypts a range. */
+    private final class RangeTask implements Callable<GHash.Piece> {
+        private final Range range;
+        private final S3Object fetched;
+        private final long ciphertextLength;
+        private final String eTag;
+        private final GHash.Piece piece;
+        private final FileChannel channel;
+        private final byte[] tag;
+
+        RangeTask(Range range, S3Object fetched, long ciphertextLength, String eTag,
+                GHash.Piece piece, FileChannel channel, byte[] tag) {
+            this.range = range;
+            this.fetched = fetched;
+            this.ciphertextLength = ciphertextLength;
+            this.eTag = eTag;
+            this.piece = piece;
+            this.channel = channel;
+            this.tag = tag;
+        }
+
+        @Override
+        public GHash.Piece call() throws Exception {
+            final S3Object object = fetched != null ? fetched
+                    : s3.getObject(rangeRequest(req, range.start, range.end, eTag));
+            if (object == null) {
+                throw new AmazonClientException("The object " + req.getKey()
+                        + " changed during the download");
+            }
+            final S3ObjectInputStream in = object.getObjectContent();
+            boolean complete = false;
+            try {
+                final CipherLite ctr = range.start < ciphertextLength
+                        ? cipherLite.createAuxiliary(range.start)
+                        : null;
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                long position = range.start;
+                long outPosition = range.start;
+                int read;
+                while (position <= range.end && (read = in.read(buffer)) != -1) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+                    final int n = (int) Math.min(read, range.end + 1 - position);
+                    final int ciphertext = (int) Math.max(0,
+                            Math.min(n, ciphertextLength - position));
+                    if (ciphertext > 0) {
+                        piece.update(buffer, 0, ciphertext);
+                        outPosition += write(ctr.update(buffer, 0, ciphertext), outPosition);
+                    }
+                    for (int i = ciphertext; i < n; i++) {
+                        // the bytes past the ciphertext are the tag
+                        tag[(int) (position + i - ciphertextLength)] = buffer[i];
+                    }
+                    position += n;
+                }
+                if (position != range.end + 1) {
+                    throw new AmazonClientException("Unexpected end of the content of "
+                            + req.getKey() + " at byte " + position);
+                }
+                if (ctr != null) {
+                    write(ctr.doFinal(), outPosition);
+                }
+                piece.finish();
+                complete = true;
+                return piece;
+            } finally {
+                if (!complete) {
+                    in.abort();
+                }
+                closeQuietly(object);
+            }
+        }
+
+        private int write(byte[] plaintext, long position) throws IOException {
+            if (plaintext == null) {
+                return 0;
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(plaintext);
+            long p = position;
+            while (buffer.hasRemaining()) {
+                p += channel.write(buffer, p);
+            }
+            return plaintext.length;
+        }
+    }
+}
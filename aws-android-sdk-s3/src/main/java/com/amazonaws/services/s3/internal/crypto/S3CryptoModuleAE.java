@@ -25,6 +25,7 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.internal.SdkFilterInputStream;
 import com.amazonaws.services.kms.AWSKMSClient;
+import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.internal.S3Direct;
 import com.amazonaws.services.s3.model.CryptoConfiguration;
 import com.amazonaws.services.s3.model.CryptoMode;
@@ -255,6 +256,17 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
     private S3Object decipherWithMetadata(GetObjectRequest req,
             long[] desiredRange,
             long[] cryptoRange, S3ObjectWrapper retrieved) {
+        final ContentCryptoMaterial cekMaterial =
+                cekMaterialFromMetadata(req, cryptoRange, retrieved);
+        final S3ObjectWrapper decrypted = decrypt(retrieved, cekMaterial, cryptoRange);
+        // Adjust the output to the desired range of bytes.
+        final S3ObjectWrapper adjusted = adjustToDesiredRange(
+                decrypted, desiredRange, null);
+        return adjusted.getS3Object();
+    }
+
+    private ContentCryptoMaterial cekMaterialFromMetadata(GetObjectRequest req,
+            long[] cryptoRange, S3ObjectWrapper retrieved) {
         ExtraMaterialsDescription extraMatDesc = NONE;
         boolean keyWrapExpected = isStrict();
         if (req instanceof EncryptedGetObjectRequest) {
@@ -275,11 +287,7 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
                 kms
             );
         securityCheck(cekMaterial, retrieved);
-        final S3ObjectWrapper decrypted = decrypt(retrieved, cekMaterial, cryptoRange);
-        // Adjust the output to the desired range of bytes.
-        final S3ObjectWrapper adjusted = adjustToDesiredRange(
-                decrypted, desiredRange, null);
-        return adjusted.getS3Object();
+        return cekMaterial;
     }
 
     /**
@@ -342,6 +350,17 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
         assertParameterNotNull(destinationFile,
                 "The destination file parameter must be specified when downloading an object directly to a file");
 
+        if (cryptoConfig.getParallelDecryptionThreads() > 0
+                && getObjectRequest.getRange() == null
+                && getObjectRequest.getPartNumber() == null
+                && !hasInstructionFileSuffix(getObjectRequest)) {
+            return getObjectInParallel(getObjectRequest, destinationFile);
+        }
+        return getObjectSequentially(getObjectRequest, destinationFile);
+    }
+
+    private ObjectMetadata getObjectSequentially(GetObjectRequest getObjectRequest,
+            File destinationFile) {
         final S3Object s3Object = getObjectSecurely(getObjectRequest);
         // getObject can return null if constraints were specified but not met
         if (s3Object == null) {
@@ -373,6 +392,44 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
         return s3Object.getObjectMetadata();
     }
 
+    private static boolean hasInstructionFileSuffix(GetObjectRequest req) {
+        return req instanceof EncryptedGetObjectRequest
+                && ((EncryptedGetObjectRequest) req).getInstructionFileSuffix() != null;
+    }
+
+    /**
+     * Downloads an object encrypted with AES/GCM, with the encryption
+     * information in its metadata, to a file in parallel ranges. Other objects
+     * are downloaded as a single stream.
+     */
+    private ObjectMetadata getObjectInParallel(GetObjectRequest req, File destinationFile) {
+        final long partSize = cryptoConfig.getParallelDecryptionPartSize();
+        final S3Object first = s3.getObject(
+                ParallelDecryptingDownload.firstRangeRequest(req, partSize));
+        // getObject can return null if constraints were specified but not met
+        if (first == null) {
+            return null;
+        }
+        final ContentCryptoMaterial cekMaterial;
+        try {
+            final S3ObjectWrapper wrapped = new S3ObjectWrapper(first, req.getS3ObjectId());
+            final Map<String, String> userMeta = first.getObjectMetadata().getUserMetadata();
+            if (!wrapped.hasEncryptionInfo()
+                    || !ContentCryptoScheme.AES_GCM.getCipherAlgorithm().equals(
+                            userMeta.get(Headers.CRYPTO_CEK_ALGORITHM))) {
+                closeQuietly(first, log);
+                return getObjectSequentially(req, destinationFile);
+            }
+            cekMaterial = cekMaterialFromMetadata(req, null, wrapped);
+        } catch (final RuntimeException ex) {
+            closeQuietly(first, log);
+            throw ex;
+        }
+        return new ParallelDecryptingDownload(s3, req, cekMaterial.getCipherLite(),
+                partSize, cryptoConfig.getParallelDecryptionThreads())
+                .download(first, destinationFile);
+    }
+
     @Override
     final MultipartUploadCryptoContext newUploadContext(
             InitiateMultipartUploadRequest req, ContentCryptoMaterial cekMaterial) {
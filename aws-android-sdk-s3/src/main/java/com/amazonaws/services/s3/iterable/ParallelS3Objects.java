@@ -0,0 +1,550 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.iterable;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListNextBatchOfObjectsRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Iterates over the objects of an Amazon S3 bucket like {@link S3Objects},
+ * but lists several key ranges of the bucket at once. For example:
+ *
+ * <pre class="brush: java">
+ * ParallelS3Objects.ObjectSummaryIterator iter = ParallelS3Objects
+ *         .inBucket(s3, &quot;my-bucket&quot;).withParallelism(16).iterator();
+ * try {
+ *     while (iter.hasNext()) {
+ *         System.out.printf(&quot;Object with key '%s'\n&quot;, iter.next().getKey());
+ *     }
+ * } finally {
+ *     iter.close();
+ * }
+ * </pre>
+ * <p>
+ * The key ranges are discovered by listing the bucket (or the prefix) with a
+ * delimiter: each common prefix returned is listed in full by a worker
+ * thread, and the objects directly under the prefix are passed on as they
+ * are discovered. At most {@link #withParallelism(int)} common prefixes are
+ * listed at once, and each of them fetches up to
+ * {@link #withPrefetchPages(int)} pages ahead of the consumer, so the next
+ * page is usually there when it is needed. The speedup depends on how evenly
+ * the keys spread over the common prefixes; choose the delimiter that splits
+ * the bucket best.
+ * <p>
+ * By default the summaries come in key order, as from {@link S3Objects}.
+ * Without ordering (see {@link #withOrderedResults(boolean)}) they come in
+ * the order the pages arrive, which keeps every worker busy when the prefixes
+ * vary a lot in size.
+ * <p>
+ * Each iterator runs its own threads, which stop once the iterator has
+ * returned the last summary, thrown an exception, or been closed. Close
+ * iterators that are abandoned before the end.
+ */
+public final class ParallelS3Objects implements Iterable<S3ObjectSummary> {
+
+    /** Default number of common prefixes listed at once. */
+    public static final int DEFAULT_PARALLELISM = 8;
+    /** Default number of pages fetched ahead per common prefix. */
+    public static final int DEFAULT_PREFETCH_PAGES = 2;
+    /** Default delimiter used to discover the common prefixes. */
+    public static final String DEFAULT_DELIMITER = "/";
+
+    /* Marks the end of the pages of a partition, or of all the pages. */
+    private static final List<S3ObjectSummary> END = Collections
+            .unmodifiableList(new ArrayList<S3ObjectSummary>(0));
+    /* Marks the end of the partitions; never filled. */
+    private static final BlockingQueue<List<S3ObjectSummary>> NO_MORE_PARTITIONS =
+            new LinkedBlockingQueue<List<S3ObjectSummary>>(1);
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private String prefix = null;
+    private String delimiter = DEFAULT_DELIMITER;
+    private Integer batchSize = null;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private boolean orderedResults = true;
+
+    private ParallelS3Objects(AmazonS3 s3, String bucketName) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in an Amazon S3
+     * bucket.
+     *
+     * @param s3 The Amazon S3 client.
+     * @param bucketName The bucket name.
+     * @return An iterable for object summaries.
+     */
+    public static ParallelS3Objects inBucket(AmazonS3 s3, String bucketName) {
+        return new ParallelS3Objects(s3, bucketName);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in an Amazon S3 bucket
+     * where the key begins with the given prefix.
+     *
+     * @param s3 The Amazon S3 client.
+     * @param bucketName The bucket name.
+     * @param prefix The prefix.
+     * @return An iterable for object summaries.
+     */
+    public static ParallelS3Objects withPrefix(AmazonS3 s3, String bucketName, String prefix) {
+        final ParallelS3Objects objects = new ParallelS3Objects(s3, bucketName);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the batch size, i.e., how many {@link S3ObjectSummary}s will be
+     * fetched at once.
+     *
+     * @param batchSize How many object summaries to fetch at once.
+     * @return the ParallelS3Objects.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ParallelS3Objects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the delimiter used to split the keys into common prefixes that are
+     * listed at once.
+     *
+     * @param delimiter The delimiter, {@value #DEFAULT_DELIMITER} by default.
+     * @return the ParallelS3Objects.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ParallelS3Objects withDelimiter(String delimiter) {
+        if (delimiter == null || delimiter.length() == 0) {
+            throw new IllegalArgumentException("delimiter must not be empty");
+        }
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Sets how many common prefixes are listed at once.
+     *
+     * @param parallelism The number of listing threads, at least 1.
+     * @return the ParallelS3Objects.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ParallelS3Objects withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets how many pages each common prefix fetches ahead of the consumer.
+     *
+     * @param prefetchPages The number of pages, at least 1.
+     * @return the ParallelS3Objects.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ParallelS3Objects withPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException("prefetchPages must be at least 1");
+        }
+        this.prefetchPages = prefetchPages;
+        return this;
+    }
+
+    /**
+     * Sets whether the summaries are returned in key order.
+     *
+     * @param orderedResults True for key order, false for the order in which
+     *            the pages arrive.
+     * @return the ParallelS3Objects.
+     */
+    @SuppressWarnings("checkstyle:hiddenfield")
+    public ParallelS3Objects withOrderedResults(boolean orderedResults) {
+        this.orderedResults = orderedResults;
+        return this;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public AmazonS3 getS3() {
+        return s3;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    public boolean isOrderedResults() {
+        return orderedResults;
+    }
+
+    /**
+     * Starts listing the objects in the background.
+     *
+     * @return an iterator over the object summaries, to close if it is not
+     *         consumed to the end.
+     */
+    @Override
+    public ObjectSummaryIterator iterator() {
+        return new ObjectSummaryIterator();
+    }
+
+    /**
+     * Compares keys in the order S3 lists them, that of their UTF-8 bytes,
+     * which is the order of their code points.
+     */
+    static int compareKeys(String a, String b) {
+        final int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            final char ca = a.charAt(i);
+            final char cb = b.charAt(i);
+            if (ca != cb) {
+                // surrogates encode code points above every other char
+                final boolean sa = isSurrogate(ca);
+                final boolean sb = isSurrogate(cb);
+                if (sa != sb) {
+                    return sa ? 1 : -1;
+                }
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    /**
+     * Iterator over the object summaries, fed by the listing threads.
+     */
+    public final class ObjectSummaryIterator implements Iterator<S3ObjectSummary>, Closeable {
+
+        private final ExecutorService executor;
+        private final Semaphore permits;
+        private final boolean ordered = orderedResults;
+        /* The pages of each partition in key order, when ordered. */
+        private final BlockingQueue<BlockingQueue<List<S3ObjectSummary>>> partitions;
+        /* The pages of all partitions, when unordered. */
+        private final BlockingQueue<List<S3ObjectSummary>> pages;
+        /* Producers still running when unordered, the discovery included. */
+        private final AtomicInteger producers = new AtomicInteger(1);
+        private final AtomicReference<RuntimeException> failure =
+                new AtomicReference<RuntimeException>();
+        private volatile boolean closed;
+
+        private BlockingQueue<List<S3ObjectSummary>> partition;
+        private Iterator<S3ObjectSummary> current = Collections.<S3ObjectSummary> emptyList()
+                .iterator();
+        private boolean finished;
+
+        private ObjectSummaryIterator() {
+            // one thread per partition, and one for the discovery
+            executor = Executors.newFixedThreadPool(parallelism + 1, new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r);
+                    thread.setName("s3-list-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            permits = new Semaphore(parallelism);
+            if (ordered) {
+                partitions = new LinkedBlockingQueue<BlockingQueue<List<S3ObjectSummary>>>();
+                pages = null;
+            } else {
+                partitions = null;
+                pages = new LinkedBlockingQueue<List<S3ObjectSummary>>(parallelism
+                        * prefetchPages);
+            }
+            executor.execute(new Discovery());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (finished || closed) {
+                    return false;
+                }
+                final List<S3ObjectSummary> page = nextPage();
+                if (page == null) {
+                    finished = true;
+                    close();
+                    return false;
+                }
+                current = page.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public S3ObjectSummary next() {
+            hasNext();
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops the listing threads. The iterator returns no more summaries
+         * than those of the page in hand.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            executor.shutdownNow();
+        }
+
+        /* Returns the next page for the consumer, or null after the last. */
+        private List<S3ObjectSummary> nextPage() {
+            try {
+                if (!ordered) {
+                    final List<S3ObjectSummary> page = pages.take();
+                    checkFailure();
+                    return page == END ? null : page;
+                }
+                while (true) {
+                    if (partition == null) {
+                        partition = partitions.take();
+                        if (partition == NO_MORE_PARTITIONS) {
+                            checkFailure();
+                            return null;
+                        }
+                    }
+                    final List<S3ObjectSummary> page = partition.take();
+                    checkFailure();
+                    if (page != END) {
+                        return page;
+                    }
+                    partition = null;
+                    permits.release();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new AmazonClientException("Interrupted while listing the objects of "
+                        + bucketName, e);
+            }
+        }
+
+        private void checkFailure() {
+            final RuntimeException e = failure.get();
+            if (e != null) {
+                close();
+                throw e;
+            }
+        }
+
+        private ListObjectsRequest newRequest(String partitionPrefix, String partitionDelimiter) {
+            final ListObjectsRequest req = new ListObjectsRequest();
+            req.setBucketName(bucketName);
+            req.setPrefix(partitionPrefix);
+            req.setDelimiter(partitionDelimiter);
+            req.setMaxKeys(batchSize);
+            return req;
+        }
+
+        /*
+         * Starts a partition, either the objects found by the discovery or a
+         * common prefix to list. Blocks while as many partitions as allowed
+         * are running.
+         */
+        private void startPartition(List<S3ObjectSummary> summaries, String commonPrefix)
+                throws InterruptedException {
+            if (!ordered) {
+                if (summaries != null) {
+                    pages.put(summaries);
+                    return;
+                }
+                permits.acquire();
+                producers.incrementAndGet();
+                executor.execute(new PartitionLister(commonPrefix, pages));
+                return;
+            }
+            // released by the consumer once it has gone through the partition
+            permits.acquire();
+            final BlockingQueue<List<S3ObjectSummary>> queue =
+                    new LinkedBlockingQueue<List<S3ObjectSummary>>(prefetchPages + 1);
+            partitions.put(queue);
+            if (summaries != null) {
+                queue.put(summaries);
+                queue.put(END);
+            } else {
+                executor.execute(new PartitionLister(commonPrefix, queue));
+            }
+        }
+
+        private void producerDone() {
+            if (producers.decrementAndGet() == 0) {
+                putQuietly(pages, END);
+            }
+        }
+
+        private <T> void putQuietly(BlockingQueue<T> queue, T element) {
+            if (closed) {
+                return;
+            }
+            try {
+                queue.put(element);
+            } catch (final InterruptedException e) {
+                // closed
+            }
+        }
+
+        /*
+         * Lists the prefix with the delimiter and starts a partition per
+         * common prefix, and one per run of objects between them.
+         */
+        private final class Discovery implements Runnable {
+            @Override
+            public void run() {
+                try {
+                    ListObjectsRequest req = newRequest(prefix, delimiter);
+                    String lastCommonPrefix = null;
+                    ObjectListing listing;
+                    do {
+                        listing = s3.listObjects(req);
+                        final List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                        final List<String> commonPrefixes = listing.getCommonPrefixes();
+                        List<S3ObjectSummary> run = new ArrayList<S3ObjectSummary>();
+                        int i = 0;
+                        for (final String commonPrefix : commonPrefixes) {
+                            while (i < summaries.size()
+                                    && compareKeys(summaries.get(i).getKey(), commonPrefix) < 0) {
+                                run.add(summaries.get(i++));
+                            }
+                            // a page may repeat the common prefix it resumes from
+                            if (commonPrefix.equals(lastCommonPrefix)) {
+                                continue;
+                            }
+                            if (!run.isEmpty()) {
+                                startPartition(run, null);
+                                run = new ArrayList<S3ObjectSummary>();
+                            }
+                            startPartition(null, commonPrefix);
+                            lastCommonPrefix = commonPrefix;
+                        }
+                        while (i < summaries.size()) {
+                            run.add(summaries.get(i++));
+                        }
+                        if (!run.isEmpty()) {
+                            startPartition(run, null);
+                        }
+                        if (listing.isTruncated()) {
+                            req = new ListNextBatchOfObjectsRequest(listing).toListObjectsRequest();
+                        }
+                    } while (listing.isTruncated() && !closed);
+                } catch (final InterruptedException e) {
+                    // closed
+                } catch (final RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (ordered) {
+                        putQuietly(partitions, NO_MORE_PARTITIONS);
+                    } else {
+                        producerDone();
+                    }
+                }
+            }
+        }
+
+        /* Lists all the objects under a common prefix. */
+        private final class PartitionLister implements Runnable {
+            private final String commonPrefix;
+            private final BlockingQueue<List<S3ObjectSummary>> queue;
+
+            PartitionLister(String commonPrefix, BlockingQueue<List<S3ObjectSummary>> queue) {
+                this.commonPrefix = commonPrefix;
+                this.queue = queue;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    ListObjectsRequest req = newRequest(commonPrefix, null);
+                    ObjectListing listing;
+                    do {
+                        listing = s3.listObjects(req);
+                        if (!listing.getObjectSummaries().isEmpty()) {
+                            queue.put(listing.getObjectSummaries());
+                        }
+                        if (listing.isTruncated()) {
+                            req = new ListNextBatchOfObjectsRequest(listing).toListObjectsRequest();
+                        }
+                    } while (listing.isTruncated() && !closed);
+                } catch (final InterruptedException e) {
+                    // closed
+                } catch (final RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    if (ordered) {
+                        putQuietly(queue, END);
+                    } else {
+                        permits.release();
+                        producerDone();
+                    }
+                }
+            }
+        }
+    }
+}
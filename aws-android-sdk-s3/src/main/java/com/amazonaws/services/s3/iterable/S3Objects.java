@@ -16,9 +16,11 @@
 package com.amazonaws.services.s3.iterable;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListNextBatchOfObjectsRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3ObjectSummaryListener;
 
 import java.util.Iterator;
 
@@ -34,7 +36,10 @@ import java.util.Iterator;
  * <p>
  * The list of {@link S3ObjectSummary}s will be fetched lazily, a page at a
  * time, as they are needed. The size of the page can be controlled with the
- * {@link S3Objects#withBatchSize(int)} method.
+ * {@link S3Objects#withBatchSize(int)} method. To go through a large bucket
+ * without holding a page of summaries in memory, use
+ * {@link S3Objects#forEachObjectSummary(S3ObjectSummaryListener)}. To list
+ * several key ranges of a large bucket at once, use {@link ParallelS3Objects}.
  */
 public final class S3Objects implements Iterable<S3ObjectSummary> {
 
@@ -104,6 +109,27 @@ public final class S3Objects implements Iterable<S3ObjectSummary> {
         return s3;
     }
 
+    /**
+     * Passes the summaries of all the objects covered by this iterable to the
+     * given listener, in order, on the calling thread. The pages are fetched
+     * like the iterator does, but each summary is handed over as the response
+     * is parsed and isn't kept, so memory use stays flat however many keys
+     * the bucket holds.
+     *
+     * @param listener The listener of the object summaries.
+     */
+    public void forEachObjectSummary(S3ObjectSummaryListener listener) {
+        ListObjectsRequest req = new ListObjectsRequest();
+        req.setBucketName(getBucketName());
+        req.setPrefix(getPrefix());
+        req.setMaxKeys(getBatchSize());
+        ObjectListing listing = getS3().listObjects(req, listener);
+        while (listing.isTruncated()) {
+            req = new ListNextBatchOfObjectsRequest(listing).toListObjectsRequest();
+            listing = getS3().listObjects(req, listener);
+        }
+    }
+
     private class S3ObjectIterator implements Iterator<S3ObjectSummary> {
 
         private ObjectListing currentListing = null;
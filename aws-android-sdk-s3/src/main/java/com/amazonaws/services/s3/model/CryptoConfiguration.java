@@ -36,6 +36,19 @@ public class CryptoConfiguration implements Cloneable, Serializable {
 
     private static final long serialVersionUID = -8646831898339939580L;
 
+    /**
+     * Default size of the byte ranges of a parallel decrypting download.
+     */
+    public static final long DEFAULT_PARALLEL_DECRYPTION_PART_SIZE = 8L * 1024 * 1024;
+
+    /**
+     * Smallest size of the byte ranges of a parallel decrypting download.
+     */
+    public static final long MINIMUM_PARALLEL_DECRYPTION_PART_SIZE = 64L * 1024;
+
+    /* The byte ranges are whole cipher blocks. */
+    private static final int CIPHER_BLOCK_SIZE = 16;
+
     private CryptoMode cryptoMode;
     private CryptoStorageMode storageMode;
     private Provider cryptoProvider;
@@ -52,6 +65,16 @@ public class CryptoConfiguration implements Cloneable, Serializable {
      * null if no explicit KMS region is specified.
      */
     private transient com.amazonaws.regions.Region awskmsRegion;
+    /**
+     * Number of threads downloading and decrypting the byte ranges of an
+     * object downloaded to a file, or 0 to download and decrypt it as a
+     * single stream. Default is 0.
+     */
+    private int parallelDecryptionThreads;
+    /**
+     * Size of the byte ranges of a parallel decrypting download.
+     */
+    private long parallelDecryptionPartSize = DEFAULT_PARALLEL_DECRYPTION_PART_SIZE;
 
     /**
      * Creates a new CryptoConfiguration object with default storage mode and
@@ -216,6 +239,78 @@ public class CryptoConfiguration implements Cloneable, Serializable {
         return this;
     }
 
+    /**
+     * Returns the number of threads downloading and decrypting the byte ranges
+     * of an object downloaded to a file, or 0 if parallel decryption is
+     * disabled. Default is 0.
+     */
+    public int getParallelDecryptionThreads() {
+        return parallelDecryptionThreads;
+    }
+
+    /**
+     * Sets the number of threads downloading and decrypting the byte ranges
+     * of an object downloaded to a file with
+     * {@link com.amazonaws.services.s3.AmazonS3EncryptionClient#getObject(GetObjectRequest, java.io.File)}.
+     * <p>
+     * When set, an object encrypted with AES/GCM whose encryption information
+     * is stored in its metadata is fetched in byte ranges of
+     * {@link #getParallelDecryptionPartSize()} bytes. Each range is decrypted
+     * on its own, as AES/CTR from the counter of its first block, and written
+     * at its offset in the file. The GCM authentication tag is computed over
+     * all the ranges and verified once the whole object has been retrieved;
+     * if it doesn't match, the file is deleted and a
+     * {@link SecurityException} is thrown. Other objects, and requests for a
+     * range or a part, are downloaded as a single stream.
+     *
+     * @param parallelDecryptionThreads the number of threads, or 0 to disable
+     *            parallel decryption.
+     */
+    public void setParallelDecryptionThreads(int parallelDecryptionThreads) {
+        if (parallelDecryptionThreads < 0) {
+            throw new IllegalArgumentException("parallelDecryptionThreads must not be negative");
+        }
+        this.parallelDecryptionThreads = parallelDecryptionThreads;
+    }
+
+    /**
+     * Fluent API to set the number of threads of a parallel decrypting
+     * download.
+     */
+    public CryptoConfiguration withParallelDecryptionThreads(int parallelDecryptionThreads) {
+        setParallelDecryptionThreads(parallelDecryptionThreads);
+        return this;
+    }
+
+    /**
+     * Returns the size of the byte ranges of a parallel decrypting download.
+     * Default is 8 MB.
+     */
+    public long getParallelDecryptionPartSize() {
+        return parallelDecryptionPartSize;
+    }
+
+    /**
+     * Sets the size of the byte ranges of a parallel decrypting download. It
+     * is rounded down to a whole number of cipher blocks, and to no less than
+     * {@link #MINIMUM_PARALLEL_DECRYPTION_PART_SIZE}.
+     *
+     * @param parallelDecryptionPartSize the size of the byte ranges in bytes.
+     */
+    public void setParallelDecryptionPartSize(long parallelDecryptionPartSize) {
+        final long aligned = parallelDecryptionPartSize / CIPHER_BLOCK_SIZE * CIPHER_BLOCK_SIZE;
+        this.parallelDecryptionPartSize = Math.max(MINIMUM_PARALLEL_DECRYPTION_PART_SIZE, aligned);
+    }
+
+    /**
+     * Fluent API to set the size of the byte ranges of a parallel decrypting
+     * download.
+     */
+    public CryptoConfiguration withParallelDecryptionPartSize(long parallelDecryptionPartSize) {
+        setParallelDecryptionPartSize(parallelDecryptionPartSize);
+        return this;
+    }
+
     /**
      * Checks if the crypto mode is supported by the runtime.
      *
@@ -282,6 +377,20 @@ public class CryptoConfiguration implements Cloneable, Serializable {
         @Override public CryptoConfiguration withKmsRegion(Regions kmsRegion) {
             throw new UnsupportedOperationException();
         }
+        @Override public void setParallelDecryptionThreads(int parallelDecryptionThreads) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withParallelDecryptionThreads(
+                int parallelDecryptionThreads) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public void setParallelDecryptionPartSize(long parallelDecryptionPartSize) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withParallelDecryptionPartSize(
+                long parallelDecryptionPartSize) {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
@@ -305,6 +414,8 @@ public class CryptoConfiguration implements Cloneable, Serializable {
         that.cryptoProvider = this.cryptoProvider;
         that.ignoreMissingInstructionFile = this.ignoreMissingInstructionFile;
         that.awskmsRegion = this.awskmsRegion;
+        that.parallelDecryptionThreads = this.parallelDecryptionThreads;
+        that.parallelDecryptionPartSize = this.parallelDecryptionPartSize;
         return that;
     }
 
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.model;
+
+/**
+ * Receives the object summaries of a listing one at a time, as the response
+ * is parsed, so that a listing doesn't have to be held in memory.
+ *
+ * @see com.amazonaws.services.s3.AmazonS3#listObjects(ListObjectsRequest,
+ *      S3ObjectSummaryListener)
+ */
+public interface S3ObjectSummaryListener {
+
+    /**
+     * Called for each object summary of a listing, in the order of the
+     * listing.
+     *
+     * @param summary the object summary.
+     */
+    void onObjectSummary(S3ObjectSummary summary);
+}
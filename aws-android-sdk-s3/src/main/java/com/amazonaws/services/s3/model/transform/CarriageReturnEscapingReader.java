@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.model.transform;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Replaces carriage return (\r) characters with explicit XML character
+ * entities as the document is read, to prevent the SAX parser from
+ * misinterpreting 0x0D characters as 0x0A and being unable to parse the XML.
+ * Unlike reading the whole document into a string to replace them, memory
+ * use doesn't grow with the document.
+ */
+final class CarriageReturnEscapingReader extends Reader {
+    private static final char[] ESCAPED_CARRIAGE_RETURN = "&#013;".toCharArray();
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    /* Index of the next character of the entity to emit. */
+    private int pending = ESCAPED_CARRIAGE_RETURN.length;
+
+    CarriageReturnEscapingReader(Reader in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < len) {
+            if (pending < ESCAPED_CARRIAGE_RETURN.length) {
+                cbuf[off + n++] = ESCAPED_CARRIAGE_RETURN[pending++];
+                continue;
+            }
+            if (position == limit) {
+                if (n > 0) {
+                    // don't block once there is something to return
+                    break;
+                }
+                final int read = in.read(buffer, 0, buffer.length);
+                if (read == -1) {
+                    return -1;
+                }
+                position = 0;
+                limit = read;
+                continue;
+            }
+            final char c = buffer[position++];
+            if (c == '\r') {
+                pending = 0;
+            } else {
+                cbuf[off + n++] = c;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return pending < ESCAPED_CARRIAGE_RETURN.length || position < limit || in.ready();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -41,6 +41,7 @@ import com.amazonaws.services.s3.model.ListBucketMetricsConfigurationsResult;
 import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.model.MultipartUploadListing;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummaryListener;
 import com.amazonaws.services.s3.model.Owner;
 import com.amazonaws.services.s3.model.PartListing;
 import com.amazonaws.services.s3.model.RequestPaymentConfiguration;
@@ -93,16 +94,27 @@ public class Unmarshallers {
             Unmarshaller<ObjectListing, InputStream> {
 
         private final boolean shouldSDKDecodeResponse;
+        private final S3ObjectSummaryListener listener;
 
         public ListObjectsUnmarshaller(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        /**
+         * @param listener the listener the object summaries are passed to
+         *            instead of the listing, or null.
+         */
+        public ListObjectsUnmarshaller(final boolean shouldSDKDecodeResponse,
+                final S3ObjectSummaryListener listener) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.listener = listener;
         }
 
         @Override
         public ObjectListing unmarshall(InputStream in) throws Exception {
             return new XmlResponsesSaxParser()
                     .parseListBucketObjectsResponse(in,
-                            shouldSDKDecodeResponse)
+                            shouldSDKDecodeResponse, listener)
                     .getObjectListing();
         }
     }
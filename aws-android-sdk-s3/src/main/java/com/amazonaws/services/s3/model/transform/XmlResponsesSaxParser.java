@@ -79,6 +79,7 @@ import com.amazonaws.services.s3.model.RoutingRule;
 import com.amazonaws.services.s3.model.RoutingRuleCondition;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3ObjectSummaryListener;
 import com.amazonaws.services.s3.model.S3VersionSummary;
 import com.amazonaws.services.s3.model.Tag;
 import com.amazonaws.services.s3.model.TagSet;
@@ -127,6 +128,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -177,17 +179,44 @@ public class XmlResponsesSaxParser {
      */
     protected void parseXmlInputStream(DefaultHandler handler, InputStream inputStream)
             throws IOException {
+        parseXmlReader(handler, new BufferedReader(new InputStreamReader(inputStream,
+                Constants.DEFAULT_ENCODING)), inputStream);
+    }
+
+    /**
+     * Parses an XML document from an input stream using a document handler,
+     * replacing troublesome characters as the document is read.
+     *
+     * @param handler the handler for the XML document
+     * @param inputStream an input stream containing the XML document to parse
+     * @throws IOException on error reading from the input stream (ie connection
+     *             reset)
+     * @throws AmazonClientException on error with malformed XML, etc
+     */
+    protected void parseSanitizedXmlInputStream(DefaultHandler handler, InputStream inputStream)
+            throws IOException {
+        if (!sanitizeXmlDocument) {
+            parseXmlInputStream(handler, inputStream);
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Sanitizing XML document destined for handler " + handler.getClass());
+        }
+        parseXmlReader(handler, new CarriageReturnEscapingReader(new InputStreamReader(
+                inputStream, Constants.DEFAULT_ENCODING)), inputStream);
+    }
+
+    private void parseXmlReader(DefaultHandler handler, Reader reader, InputStream inputStream)
+            throws IOException {
         try {
 
             if (log.isDebugEnabled()) {
                 log.debug("Parsing XML response document with handler: " + handler.getClass());
             }
 
-            final BufferedReader breader = new BufferedReader(new InputStreamReader(inputStream,
-                    Constants.DEFAULT_ENCODING));
             xr.setContentHandler(handler);
             xr.setErrorHandler(handler);
-            xr.parse(new InputSource(breader));
+            xr.parse(new InputSource(reader));
 
         } catch (final IOException e) {
             throw e;
@@ -205,6 +234,13 @@ public class XmlResponsesSaxParser {
         }
     }
 
+    /**
+     * Reads the whole document into memory to replace troublesome characters.
+     *
+     * @deprecated Use {@link #parseSanitizedXmlInputStream(DefaultHandler, InputStream)},
+     *             which replaces them as the document is parsed.
+     */
+    @Deprecated
     protected InputStream sanitizeXmlDocument(DefaultHandler handler, InputStream inputStream)
             throws IOException {
 
@@ -363,8 +399,27 @@ public class XmlResponsesSaxParser {
     public ListBucketHandler parseListBucketObjectsResponse(InputStream inputStream,
             final boolean shouldSDKDecodeResponse)
             throws IOException {
-        final ListBucketHandler handler = new ListBucketHandler(shouldSDKDecodeResponse);
-        parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
+        return parseListBucketObjectsResponse(inputStream, shouldSDKDecodeResponse, null);
+    }
+
+    /**
+     * Parses a ListBucket response XML document from an input stream, passing
+     * the object summaries to a listener as they are parsed instead of
+     * collecting them in the listing.
+     *
+     * @param inputStream XML data input stream.
+     * @param listener the listener of the object summaries, or null to collect
+     *            them in the listing.
+     * @return the XML handler object populated with data parsed from the XML
+     *         stream.
+     * @throws AmazonClientException
+     */
+    public ListBucketHandler parseListBucketObjectsResponse(InputStream inputStream,
+            final boolean shouldSDKDecodeResponse, S3ObjectSummaryListener listener)
+            throws IOException {
+        final ListBucketHandler handler = new ListBucketHandler(shouldSDKDecodeResponse,
+                listener);
+        parseSanitizedXmlInputStream(handler, inputStream);
         return handler;
     }
 
@@ -380,7 +435,7 @@ public class XmlResponsesSaxParser {
             final boolean shouldSDKDecodeResponse)
             throws IOException {
         final ListObjectsV2Handler handler = new ListObjectsV2Handler(shouldSDKDecodeResponse);
-        parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
+        parseSanitizedXmlInputStream(handler, inputStream);
 
         return handler;
     }
@@ -396,7 +451,7 @@ public class XmlResponsesSaxParser {
     public ListVersionsHandler parseListVersionsResponse(InputStream inputStream,final boolean shouldSDKDecodeResponse)
             throws IOException {
         final ListVersionsHandler handler = new ListVersionsHandler(shouldSDKDecodeResponse);
-        parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
+        parseSanitizedXmlInputStream(handler, inputStream);
         return handler;
     }
 
@@ -411,7 +466,7 @@ public class XmlResponsesSaxParser {
     public ListAllMyBucketsHandler parseListMyBucketsResponse(InputStream inputStream)
             throws IOException {
         final ListAllMyBucketsHandler handler = new ListAllMyBucketsHandler();
-        parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
+        parseSanitizedXmlInputStream(handler, inputStream);
         return handler;
     }
 
@@ -634,13 +689,26 @@ public class XmlResponsesSaxParser {
 
         private final ObjectListing objectListing = new ObjectListing();
         private final boolean shouldSDKDecodeResponse;
+        private final S3ObjectSummaryListener listener;
 
         private S3ObjectSummary currentObject = null;
         private Owner currentOwner = null;
         private String lastKey = null;
+        private String lastSummaryKey = null;
 
         public ListBucketHandler(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        /**
+         * @param listener the listener the object summaries are passed to as
+         *            they are parsed, instead of being added to the listing,
+         *            or null.
+         */
+        public ListBucketHandler(final boolean shouldSDKDecodeResponse,
+                final S3ObjectSummaryListener listener) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.listener = listener;
         }
 
         public ObjectListing getObjectListing() {
@@ -682,10 +750,8 @@ public class XmlResponsesSaxParser {
                             && objectListing.getNextMarker() == null) {
 
                         String nextMarker = null;
-                        if (!objectListing.getObjectSummaries().isEmpty()) {
-                            nextMarker = objectListing.getObjectSummaries()
-                                    .get(objectListing.getObjectSummaries().size() - 1)
-                                    .getKey();
+                        if (lastSummaryKey != null) {
+                            nextMarker = lastSummaryKey;
 
                         } else if (!objectListing.getCommonPrefixes().isEmpty()) {
                             nextMarker = objectListing.getCommonPrefixes()
@@ -747,7 +813,12 @@ public class XmlResponsesSaxParser {
                     }
 
                 } else if (name.equals("Contents")) {
-                    objectListing.getObjectSummaries().add(currentObject);
+                    lastSummaryKey = currentObject.getKey();
+                    if (listener != null) {
+                        listener.onObjectSummary(currentObject);
+                    } else {
+                        objectListing.getObjectSummaries().add(currentObject);
+                    }
                     currentObject = null;
                 }
             }
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer.TransferState;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MultipartDownloadTest {
+    private static final String ETAG = "0123456789abcdef-2";
+    private static final int SIZE = 1000;
+    private static final int PART_SIZE = 100;
+
+    private final byte[] data = new byte[SIZE];
+    private AmazonS3 s3;
+    private TransferManager tm;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        new Random(7).nextBytes(data);
+        s3 = mock(AmazonS3.class);
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(SIZE);
+        metadata.setHeader("ETag", ETAG);
+        when(s3.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+        tm = new TransferManager(s3);
+        final TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMultipartDownloadEnabled(true);
+        configuration.setDownloadPartSize(PART_SIZE);
+        tm.setConfiguration(configuration);
+        file = File.createTempFile("multipart-download", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        tm.shutdownNow(false);
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadsRangesAtTheirOffsets() throws Exception {
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer(-1));
+
+        tm.download(new GetObjectRequest("bucket", "key"), file).waitForCompletion();
+
+        assertArrayEquals(data, FileUtils.readFileToByteArray(file));
+        final ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor
+                .forClass(GetObjectRequest.class);
+        verify(s3, times(SIZE / PART_SIZE)).getObject(captor.capture());
+        for (final GetObjectRequest request : captor.getAllValues()) {
+            assertEquals(Arrays.asList(ETAG), request.getMatchingETagConstraints());
+            final long[] range = request.getRange();
+            assertEquals(PART_SIZE - 1, range[1] - range[0]);
+        }
+    }
+
+    @Test
+    public void testFailedRangeKeepsTheRangesBeforeIt() throws Exception {
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer(500));
+
+        try {
+            tm.download(new GetObjectRequest("bucket", "key"), file).waitForCompletion();
+            fail("Expected the download to fail");
+        } catch (final AmazonClientException expected) {
+            // expected
+        }
+
+        final byte[] downloaded = FileUtils.readFileToByteArray(file);
+        assertTrue(downloaded.length <= 500);
+        assertEquals(0, downloaded.length % PART_SIZE);
+        assertArrayEquals(Arrays.copyOf(data, downloaded.length), downloaded);
+    }
+
+    @Test
+    public void testPausedDownloadCanBeResumed() throws Exception {
+        final RangeAnswer answer = new RangeAnswer(-1);
+        answer.blockAt = 500;
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(answer);
+
+        final Download download = tm.download(new GetObjectRequest("bucket", "key"), file);
+        assertTrue(answer.blocked.await(10, TimeUnit.SECONDS));
+        final PersistableDownload persistableDownload = download.pause();
+        assertNotNull(persistableDownload);
+        assertEquals(TransferState.Canceled, download.getState());
+
+        final byte[] downloaded = FileUtils.readFileToByteArray(file);
+        assertTrue(downloaded.length <= 500);
+        assertEquals(0, downloaded.length % PART_SIZE);
+        assertArrayEquals(Arrays.copyOf(data, downloaded.length), downloaded);
+
+        answer.blockAt = -1;
+        tm.resumeDownload(persistableDownload).waitForCompletion();
+        assertArrayEquals(data, FileUtils.readFileToByteArray(file));
+    }
+
+    @Test
+    public void testSmallObjectUsesSingleRequest() throws Exception {
+        tm.getConfiguration().setDownloadPartSize(SIZE);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new RangeAnswer(-1));
+
+        tm.download(new GetObjectRequest("bucket", "key"), file).waitForCompletion();
+
+        assertArrayEquals(data, FileUtils.readFileToByteArray(file));
+        final ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor
+                .forClass(GetObjectRequest.class);
+        verify(s3, atLeast(1)).getObject(captor.capture());
+        final List<GetObjectRequest> requests = captor.getAllValues();
+        assertEquals(1, requests.size());
+        assertNull(requests.get(0).getRange());
+    }
+
+    /**
+     * Serves the ranges of the object, and fails the range starting at the
+     * given position.
+     */
+    private class RangeAnswer implements Answer<S3Object> {
+        private final long failAt;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile long blockAt = -1;
+
+        RangeAnswer(long failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public S3Object answer(InvocationOnMock invocation) {
+            final GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+            final long[] range = request.getRange();
+            final int start = range == null ? 0 : (int) range[0];
+            final int end = range == null ? SIZE : (int) range[1] + 1;
+            if (start == failAt) {
+                throw new AmazonClientException("Unable to download range " + start);
+            }
+            final S3Object object = new S3Object();
+            object.setBucketName(request.getBucketName());
+            object.setKey(request.getKey());
+            final ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(end - start);
+            metadata.setHeader("ETag", ETAG);
+            object.setObjectMetadata(metadata);
+            InputStream content = new ByteArrayInputStream(Arrays.copyOfRange(data, start, end));
+            if (start == blockAt) {
+                content = new BlockingInputStream(blocked);
+            }
+            object.setObjectContent(content);
+            return object;
+        }
+    }
+
+    /**
+     * A range in flight: reads block until the range is aborted, which closes
+     * the stream.
+     */
+    private static class BlockingInputStream extends InputStream {
+        private final CountDownLatch blocked;
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        BlockingInputStream(CountDownLatch blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public int read() throws IOException {
+            blocked.countDown();
+            try {
+                closed.await();
+            } catch (final InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            throw new IOException("Stream closed");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transfermanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.mobileconnectors.s3.transfermanager.Transfer.TransferState;
+import com.amazonaws.mobileconnectors.s3.transfermanager.internal.SmallFileUploadImpl;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SmallFileUploadTest {
+    private static final int SMALL_FILES = 20;
+    private static final int SMALL_SIZE = 10;
+    private static final int LARGE_SIZE = 1000;
+
+    private final Map<String, Long> uploaded = Collections
+            .synchronizedMap(new HashMap<String, Long>());
+    private AmazonS3 s3;
+    private TransferManager tm;
+    private File directory;
+    private volatile String failingKey;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("small-files", "");
+        directory.delete();
+        directory.mkdir();
+        for (int i = 0; i < SMALL_FILES; i++) {
+            FileUtils.writeByteArrayToFile(new File(directory, "small" + i + ".txt"),
+                    new byte[SMALL_SIZE]);
+        }
+        FileUtils.writeByteArrayToFile(new File(directory, "large.bin"), new byte[LARGE_SIZE]);
+
+        s3 = mock(AmazonS3.class);
+        when(s3.putObject(any(PutObjectRequest.class))).thenAnswer(
+                new Answer<PutObjectResult>() {
+                    @Override
+                    public PutObjectResult answer(InvocationOnMock invocation) {
+                        final PutObjectRequest request = (PutObjectRequest) invocation
+                                .getArguments()[0];
+                        if (request.getKey().equals(failingKey)) {
+                            throw new AmazonClientException("put failed");
+                        }
+                        uploaded.put(request.getKey(), request.getMetadata().getContentLength());
+                        return new PutObjectResult();
+                    }
+                });
+        tm = new TransferManager(s3);
+        final TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setSmallFileUploadThreshold(SMALL_SIZE);
+        configuration.setMaxSmallFileUploadsInFlight(4);
+        tm.setConfiguration(configuration);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tm.shutdownNow(false);
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testSmallFilesShareOneSubTransfer() throws Exception {
+        final MultipleFileUpload upload = tm.uploadDirectory("bucket", "prefix", directory,
+                false);
+        upload.waitForCompletion();
+
+        assertEquals(TransferState.Completed, upload.getState());
+        assertEquals(2, upload.getSubTransfers().size());
+        int small = 0;
+        for (final Upload subTransfer : upload.getSubTransfers()) {
+            if (subTransfer instanceof SmallFileUploadImpl) {
+                small++;
+                assertEquals(SMALL_FILES * SMALL_SIZE,
+                        subTransfer.getProgress().getTotalBytesToTransfer());
+            }
+        }
+        assertEquals(1, small);
+        assertEquals(SMALL_FILES + 1, uploaded.size());
+        assertEquals(Long.valueOf(SMALL_SIZE), uploaded.get("prefix/small0.txt"));
+        assertEquals(Long.valueOf(LARGE_SIZE), uploaded.get("prefix/large.bin"));
+        assertEquals(SMALL_FILES * SMALL_SIZE + LARGE_SIZE,
+                upload.getProgress().getTotalBytesToTransfer());
+    }
+
+    @Test
+    public void testFailedSmallFileFailsUpload() throws Exception {
+        failingKey = "prefix/small3.txt";
+        final MultipleFileUpload upload = tm.uploadDirectory("bucket", "prefix", directory,
+                false);
+        try {
+            upload.waitForCompletion();
+            fail("Expected the upload to fail");
+        } catch (final AmazonClientException expected) {
+            assertEquals("put failed", expected.getMessage());
+        }
+        assertEquals(TransferState.Failed, upload.getState());
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        // even empty files get an upload of their own
+        FileUtils.writeByteArrayToFile(new File(directory, ".gitkeep"), new byte[0]);
+        tm.setConfiguration(new TransferManagerConfiguration());
+        final MultipleFileUpload upload = tm.uploadDirectory("bucket", null, directory, false);
+        upload.waitForCompletion();
+
+        assertEquals(SMALL_FILES + 2, upload.getSubTransfers().size());
+        for (final Upload subTransfer : upload.getSubTransfers()) {
+            assertTrue(!(subTransfer instanceof SmallFileUploadImpl));
+        }
+        assertEquals(SMALL_FILES + 2, uploaded.size());
+    }
+}
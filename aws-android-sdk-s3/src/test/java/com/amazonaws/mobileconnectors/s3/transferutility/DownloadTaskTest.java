@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentValues;
+
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class DownloadTaskTest {
+    private static final int ID = 1;
+    private static final int PART_SIZE = 1024 * 1024;
+    private static final String ETAG = "etag";
+
+    private final List<GetObjectRequest> requests =
+            Collections.synchronizedList(new ArrayList<GetObjectRequest>());
+    private byte[] data;
+    private File file;
+    private AmazonS3 s3;
+    private TransferDBUtil dbUtil;
+    private TransferStatusUpdater updater;
+    private TransferRecord download;
+    private volatile int failingPart;
+
+    @Before
+    public void setUp() throws Exception {
+        data = new byte[2 * PART_SIZE + PART_SIZE / 2];
+        new Random().nextBytes(data);
+        file = File.createTempFile("download", ".dat");
+        file.delete();
+
+        download = new TransferRecord(ID);
+        download.bucketName = "bucket";
+        download.key = "key";
+        download.file = file.getAbsolutePath();
+        download.transferUtilityOptions = new TransferUtilityOptions();
+        download.transferUtilityOptions.setMultipartDownloadEnabled(true);
+        download.transferUtilityOptions.setDownloadPartSize(PART_SIZE);
+
+        s3 = mock(AmazonS3.class);
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(data.length);
+        metadata.setHeader(Headers.ETAG, ETAG);
+        when(s3.getObjectMetadata(any(GetObjectMetadataRequest.class))).thenReturn(metadata);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation) {
+                return range((GetObjectRequest) invocation.getArguments()[0]);
+            }
+        });
+
+        dbUtil = mock(TransferDBUtil.class);
+        when(dbUtil.queryDownloadRangesFromDB(ID))
+                .thenReturn(new ArrayList<TransferRecord>())
+                .thenReturn(ranges());
+        when(dbUtil.bulkInsertDownloadRangeRecords(anyInt(), any(ContentValues[].class)))
+                .thenReturn(true);
+
+        updater = mock(TransferStatusUpdater.class);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testMultipartDownloadWritesRangesAtTheirOffsets() throws Exception {
+        final DownloadTask downloadTask = new DownloadTask(download, s3, dbUtil, updater);
+        assertTrue(downloadTask.call());
+
+        assertArrayEquals(data, FileUtils.readFileToByteArray(file));
+        assertEquals(3, requests.size());
+        for (final GetObjectRequest request : requests) {
+            assertEquals(Arrays.asList(ETAG), request.getMatchingETagConstraints());
+        }
+        verify(updater, atLeast(1)).updateProgress(ID, data.length, data.length, true);
+        verify(updater).updateState(ID, TransferState.COMPLETED);
+    }
+
+    @Test
+    public void testFailedPartRollsBackItsProgress() throws Exception {
+        failingPart = 2;
+        final DownloadTask downloadTask = new DownloadTask(download, s3, dbUtil, updater);
+        assertFalse(downloadTask.call());
+
+        assertEquals(0, downloadTask.downloadPartTasks.get(2).bytesTransferredSoFar);
+        verify(dbUtil).updateState(2, TransferState.FAILED);
+        verify(updater).updateState(ID, TransferState.FAILED);
+    }
+
+    private List<TransferRecord> ranges() {
+        final List<TransferRecord> ranges = new ArrayList<TransferRecord>();
+        for (int i = 0; i * PART_SIZE < data.length; i++) {
+            final TransferRecord range = new TransferRecord(i + 1);
+            range.bucketName = download.bucketName;
+            range.key = download.key;
+            range.file = download.file;
+            range.partNumber = i + 1;
+            range.rangeStart = (long) i * PART_SIZE;
+            range.rangeLast = Math.min((long) (i + 1) * PART_SIZE, data.length) - 1;
+            range.eTag = ETAG;
+            range.state = TransferState.WAITING;
+            ranges.add(range);
+        }
+        return ranges;
+    }
+
+    /* Serves a range of the object, reporting its bytes like the client would. */
+    private S3Object range(GetObjectRequest request) {
+        requests.add(request);
+        final long[] range = request.getRange();
+        final int start = (int) range[0];
+        final int end = (int) range[1];
+        request.getGeneralProgressListener().progressChanged(
+                new ProgressEvent(end - start + 1));
+
+        InputStream content = new ByteArrayInputStream(
+                Arrays.copyOfRange(data, start, end + 1));
+        if (start / PART_SIZE + 1 == failingPart) {
+            content = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("connection reset");
+                }
+            };
+        }
+        final S3Object object = new S3Object();
+        object.setObjectContent(new S3ObjectInputStream(content));
+        return object;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.mobileconnectors.s3.transferutility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+public class TransferStatusUpdaterTest {
+    private static final long TOTAL = 1000;
+
+    /* Progress written to the database, as a real table would keep it. */
+    private final Map<Integer, Long> savedBytes = new ConcurrentHashMap<Integer, Long>();
+    /* Bulk progress writes, in order. */
+    private final List<Map<Integer, Long>> bulkWrites =
+            Collections.synchronizedList(new ArrayList<Map<Integer, Long>>());
+    /* Every database write, in order. */
+    private final List<String> writes = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> notifications =
+            Collections.synchronizedList(new ArrayList<String>());
+
+    private TransferDBUtil dbUtil;
+    private TransferStatusUpdater updater;
+
+    @Before
+    public void setUp() {
+        dbUtil = mock(TransferDBUtil.class);
+        when(dbUtil.updateBytesTransferred(anyInt(), anyLong())).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) {
+                final Object[] args = invocation.getArguments();
+                savedBytes.put((Integer) args[0], (Long) args[1]);
+                writes.add("bytes " + args[0] + "=" + args[1]);
+                return 1;
+            }
+        });
+        when(dbUtil.updateBytesTransferred(any(Map.class))).thenAnswer(new Answer<Integer>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Integer answer(InvocationOnMock invocation) {
+                final Map<Integer, Long> bytesById = new HashMap<Integer, Long>(
+                        (Map<Integer, Long>) invocation.getArguments()[0]);
+                savedBytes.putAll(bytesById);
+                bulkWrites.add(bytesById);
+                writes.add("bytes " + bytesById);
+                return bytesById.size();
+            }
+        });
+        when(dbUtil.updateState(anyInt(), any(TransferState.class))).thenAnswer(
+                new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) {
+                        final Object[] args = invocation.getArguments();
+                        writes.add("state " + args[0] + "=" + args[1]);
+                        return 1;
+                    }
+                });
+        when(dbUtil.updateTransferRecord(any(TransferRecord.class))).thenAnswer(
+                new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) {
+                        final TransferRecord transfer =
+                                (TransferRecord) invocation.getArguments()[0];
+                        savedBytes.put(transfer.id, transfer.bytesCurrent);
+                        writes.add("record " + transfer.id + "=" + transfer.state + ","
+                                + transfer.bytesCurrent);
+                        return 1;
+                    }
+                });
+
+        // run the callbacks right away instead of on the main thread
+        updater = new TransferStatusUpdater(dbUtil, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        synchronized (TransferStatusUpdater.LISTENERS) {
+            TransferStatusUpdater.LISTENERS.clear();
+        }
+    }
+
+    @Test
+    public void testProgressIsWrittenTogetherOncePerInterval() throws Exception {
+        updater.setProgressIntervals(500, 0);
+
+        // the first update finds the interval elapsed
+        updater.updateProgress(1, 10, TOTAL, false);
+        assertEquals(1, bulkWrites.size());
+
+        updater.updateProgress(1, 20, TOTAL, false);
+        updater.updateProgress(2, 30, TOTAL, false);
+        updater.updateProgress(1, 40, TOTAL, false);
+        updater.updateProgress(3, 50, TOTAL, false);
+        assertEquals(1, bulkWrites.size());
+
+        Thread.sleep(600);
+        updater.updateProgress(2, 60, TOTAL, false);
+        assertEquals(2, bulkWrites.size());
+        final Map<Integer, Long> expected = new HashMap<Integer, Long>();
+        expected.put(1, 40L);
+        expected.put(2, 60L);
+        expected.put(3, 50L);
+        assertEquals(expected, bulkWrites.get(1));
+        verify(dbUtil, never()).updateBytesTransferred(anyInt(), anyLong());
+    }
+
+    @Test
+    public void testStateChangeFlushesPendingProgressFirst() {
+        updater.setProgressIntervals(60000, 0);
+        // take the first write so that the next updates stay pending
+        updater.updateProgress(9, 1, TOTAL, false);
+        writes.clear();
+
+        updater.updateProgress(5, 100, TOTAL, false);
+        updater.updateState(5, TransferState.PAUSED);
+        assertEquals(Arrays.asList("bytes 5=100", "state 5=PAUSED"), writes);
+
+        final TransferRecord transfer = new TransferRecord(6);
+        transfer.state = TransferState.IN_PROGRESS;
+        updater.addTransfer(transfer);
+        updater.updateProgress(6, 200, TOTAL, false);
+        updater.updateState(6, TransferState.PAUSED);
+        assertEquals("record 6=PAUSED,200", writes.get(2));
+
+        // the progress saved with the state isn't written again
+        writes.clear();
+        updater.persistProgress();
+        assertEquals(0, writes.size());
+    }
+
+    @Test
+    public void testNotificationsAreThrottledApartFromWrites() {
+        updater.setProgressIntervals(0, 60000);
+        TransferStatusUpdater.registerListener(7, new TransferListener() {
+            @Override
+            public void onStateChanged(int id, TransferState state) {
+            }
+
+            @Override
+            public void onProgressChanged(int id, long bytesCurrent, long bytesTotal) {
+                notifications.add(id + "=" + bytesCurrent);
+            }
+
+            @Override
+            public void onError(int id, Exception ex) {
+            }
+        });
+
+        updater.updateProgress(7, 10, TOTAL, true);
+        updater.updateProgress(7, 20, TOTAL, true);
+        updater.updateProgress(7, 30, TOTAL, true);
+        verify(dbUtil, times(3)).updateBytesTransferred(anyInt(), anyLong());
+        assertEquals(Arrays.asList("7=10"), notifications);
+
+        // completing the transfer is always notified
+        updater.updateProgress(7, TOTAL, TOTAL, true);
+        verify(dbUtil, times(4)).updateBytesTransferred(anyInt(), anyLong());
+        assertEquals(Arrays.asList("7=10", "7=" + TOTAL), notifications);
+    }
+
+    @Test
+    public void testConcurrentProgressOfDifferentTransfersIsNotLost() throws Exception {
+        updater.setProgressIntervals(1, 0);
+        final int transfers = 32;
+        final int updates = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 1; i <= transfers; i++) {
+            final int id = i;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (long bytes = 1; bytes <= updates; bytes++) {
+                        updater.updateProgress(id, bytes, TOTAL * 10, false);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join(30000);
+        }
+        updater.persistProgress();
+
+        assertTrue(bulkWrites.size() > 1);
+        for (int id = 1; id <= transfers; id++) {
+            assertEquals("transfer " + id, Long.valueOf(updates), savedBytes.get(id));
+        }
+    }
+}
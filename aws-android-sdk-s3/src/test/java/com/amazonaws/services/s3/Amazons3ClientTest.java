@@ -18,26 +18,51 @@ package com.amazonaws.services.s3;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.Request;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.Signer;
+import com.amazonaws.http.HttpClient;
 import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpRequest;
+import com.amazonaws.http.HttpResponse;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.internal.AWSS3V4Signer;
 import com.amazonaws.services.s3.internal.Constants;
 import com.amazonaws.services.s3.model.DeleteBucketRequest;
+import com.amazonaws.services.s3.model.GeneratePresignedUrlRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.ResponseHeaderOverrides;
+import com.amazonaws.services.s3.model.SSEAlgorithm;
+import com.amazonaws.services.s3.model.SSEAwsKeyManagementParams;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+import org.apache.commons.io.FileUtils;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Amazons3ClientTest {
     private AmazonS3Client s3;
@@ -220,5 +245,152 @@ public class Amazons3ClientTest {
     public void testSetNotificationThreshold() {
         s3.setNotificationThreshold(8 * 1024);
     }
-}
 
+    @Test
+    public void testPutObjectWithFileSetsContentMd5() throws Exception {
+        final File file = tempFile();
+        final PutObjectHttpClient httpClient = new PutObjectHttpClient(
+                BinaryUtils.toHex(Md5Utils.computeMD5Hash(file)));
+        s3 = new AmazonS3Client(creds, Region.getRegion(Regions.US_EAST_1),
+                new ClientConfiguration(), httpClient);
+
+        final PutObjectResult result = s3.putObject(new PutObjectRequest("bucket", "key", file));
+        assertEquals(Md5Utils.md5AsBase64(file), httpClient.headers.get(Headers.CONTENT_MD5));
+        assertEquals(httpClient.eTag, result.getETag());
+    }
+
+    @Test
+    public void testPutObjectWithFileChecksETagInSinglePass() throws Exception {
+        final File file = tempFile();
+        final PutObjectHttpClient httpClient = new PutObjectHttpClient(
+                BinaryUtils.toHex(Md5Utils.computeMD5Hash(file)));
+        s3 = new AmazonS3Client(creds, Region.getRegion(Regions.US_EAST_1),
+                new ClientConfiguration(), httpClient);
+        s3.setS3ClientOptions(S3ClientOptions.builder()
+                .setSinglePassChecksumEnabled(true).build());
+
+        s3.putObject(new PutObjectRequest("bucket", "key", file));
+        assertNull(httpClient.headers.get(Headers.CONTENT_MD5));
+
+        // the digest computed while sending is checked against the ETag
+        httpClient.eTag = BinaryUtils.toHex(new byte[16]);
+        try {
+            s3.putObject(new PutObjectRequest("bucket", "key", file));
+            fail("expected the integrity check to fail");
+        } catch (final AmazonClientException e) {
+            assertTrue(e.getMessage().startsWith("Unable to verify integrity"));
+        }
+    }
+
+    @Test
+    public void testPutObjectWithKmsSetsContentMd5() throws Exception {
+        final File file = tempFile();
+        // the ETag of an object encrypted with SSE-KMS isn't its MD5
+        final PutObjectHttpClient httpClient = new PutObjectHttpClient(
+                BinaryUtils.toHex(new byte[16]));
+        httpClient.sseAlgorithm = SSEAlgorithm.KMS.getAlgorithm();
+        s3 = new AmazonS3Client(creds, Region.getRegion(Regions.US_EAST_1),
+                new ClientConfiguration(), httpClient);
+
+        for (final boolean singlePass : new boolean[] {
+                false, true
+        }) {
+            s3.setS3ClientOptions(S3ClientOptions.builder()
+                    .setSinglePassChecksumEnabled(singlePass).build());
+            final PutObjectRequest request = new PutObjectRequest("bucket", "key", file)
+                    .withSSEAwsKeyManagementParams(new SSEAwsKeyManagementParams());
+            s3.putObject(request);
+            assertEquals(Md5Utils.md5AsBase64(file), httpClient.headers.get(Headers.CONTENT_MD5));
+        }
+    }
+
+    @Test
+    public void testGeneratePresignedUrlsMatchSingleUrlsWithSigV4() {
+        s3.setRegion(Region.getRegion(Regions.US_WEST_2));
+        final URL url = s3.generatePresignedUrls(new GeneratePresignedUrlRequest("bucket", null),
+                Arrays.asList("key")).get(0);
+        assertTrue(url.getQuery().contains("X-Amz-Signature="));
+        assertPresignedUrlsMatch();
+        s3.setS3ClientOptions(S3ClientOptions.builder().setPathStyleAccess(true).build());
+        assertPresignedUrlsMatch();
+    }
+
+    @Test
+    public void testGeneratePresignedUrlsMatchSingleUrlsWithSigV2() {
+        assertPresignedUrlsMatch();
+    }
+
+    @Test
+    public void testGeneratePresignedUrlsWithNoKeys() {
+        final List<URL> urls = s3.generatePresignedUrls(
+                new GeneratePresignedUrlRequest("bucket", null), Collections.<String> emptyList());
+        assertTrue(urls.isEmpty());
+    }
+
+    private static File tempFile() throws IOException {
+        final File file = File.createTempFile("put-object", ".txt");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "content of the file to upload");
+        return file;
+    }
+
+    /* Answers PUT requests with the given ETag, recording the headers. */
+    private static class PutObjectHttpClient implements HttpClient {
+        private volatile String eTag;
+        private volatile String sseAlgorithm;
+        private volatile Map<String, String> headers;
+
+        PutObjectHttpClient(String eTag) {
+            this.eTag = eTag;
+        }
+
+        @Override
+        public HttpResponse execute(HttpRequest request) throws IOException {
+            headers = new HashMap<String, String>(request.getHeaders());
+            final InputStream content = request.getContent();
+            while (content.read(new byte[1024]) != -1) {
+                // the client digests the body as it is read
+            }
+            final HttpResponse.Builder builder = HttpResponse.builder()
+                    .statusCode(200)
+                    .statusText("OK")
+                    .header(Headers.ETAG, eTag);
+            if (sseAlgorithm != null) {
+                builder.header(Headers.SERVER_SIDE_ENCRYPTION, sseAlgorithm);
+            }
+            return builder.build();
+        }
+
+        @Override
+        public void shutdown() {
+            // No op
+        }
+    }
+
+    private void assertPresignedUrlsMatch() {
+        final List<String> keys = Arrays.asList("key", "dir/key with spaces", "/leading",
+                "a//b", "caf\u00e9");
+        final GeneratePresignedUrlRequest request = new GeneratePresignedUrlRequest("bucket",
+                null);
+        request.setExpiration(new Date(System.currentTimeMillis() + 60 * 60 * 1000));
+        final ResponseHeaderOverrides overrides = new ResponseHeaderOverrides();
+        overrides.setContentType("text/plain");
+        request.setResponseHeaders(overrides);
+
+        // the signing time has a precision of a second: retry across a tick
+        for (int attempt = 0;; attempt++) {
+            final List<URL> urls = s3.generatePresignedUrls(request, keys);
+            final List<URL> expected = new ArrayList<URL>();
+            for (final String key : keys) {
+                request.setKey(key);
+                expected.add(s3.generatePresignedUrl(request));
+            }
+            request.setKey(null);
+            if (attempt < 3 && !urls.toString().equals(expected.toString())) {
+                continue;
+            }
+            assertEquals(expected.toString(), urls.toString());
+            return;
+        }
+    }
+}
@@ -15,6 +15,7 @@
 
 package com.amazonaws.services.s3;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -27,5 +28,13 @@ public class S3ClientOptionsTest {
         assertTrue(options.isAccelerateModeEnabled());
         assertTrue(options.isPathStyleAccess());
     }
-}
 
+    @Test
+    public void testSinglePassChecksum() {
+        assertFalse(S3ClientOptions.builder().build().isSinglePassChecksumEnabled());
+        S3ClientOptions options = S3ClientOptions.builder().setSinglePassChecksumEnabled(true)
+                .build();
+        assertTrue(options.isSinglePassChecksumEnabled());
+        assertTrue(new S3ClientOptions(options).isSinglePassChecksumEnabled());
+    }
+}
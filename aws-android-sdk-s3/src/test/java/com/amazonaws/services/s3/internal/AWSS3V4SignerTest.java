@@ -16,6 +16,8 @@
 package com.amazonaws.services.s3.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.amazonaws.DefaultRequest;
@@ -24,6 +26,7 @@ import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.internal.FileRegionInputStream;
 import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
@@ -34,6 +37,7 @@ import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.transform.RequestXmlFactory;
+import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.StringUtils;
 
 import org.junit.After;
@@ -41,10 +45,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -176,6 +184,47 @@ public class AWSS3V4SignerTest {
                 "dc67ca67af0a19b9d70f515879631a287bc8bb18499004420aa294b8beb1b8ec");
     }
 
+    @Test
+    public void testSignFileRegionUploadPart() throws Exception {
+        final AWSS3V4Signer signer = new S3SignerWithDateOverride(new Date(1431114076800L));
+        // THESE ARE BOGUS CREDENTIALS
+        final AWSCredentials credentials = new BasicAWSCredentials(
+                "AKIAJd4scjDDmxXZTESTGOZQ", "LYd/ad4scjDDmxXZTESTtRz7xdOM1SiD6");
+
+        final File file = File.createTempFile("part", ".txt");
+        file.deleteOnExit();
+        final OutputStream out = new FileOutputStream(file);
+        out.write("skip:multipartContent".getBytes(StringUtils.UTF8));
+        out.close();
+
+        final FileRegionInputStream content = new FileRegionInputStream(file, 5, 16);
+        try {
+            final UploadPartRequest upr = new UploadPartRequest().withUploadId("upload")
+                    .withPartNumber(1).withPartSize(16).withBucketName("test-bucket123456")
+                    .withKey("multi-key").withFile(file).withFileOffset(5);
+            final Request<?> ur = new DefaultRequest(upr, Constants.S3_SERVICE_DISPLAY_NAME);
+            ur.addHeader(Headers.CONTENT_LENGTH, "16");
+            ur.setEndpoint(new URI("https://test-bucket123456.s3-us-west-2.amazonaws.com"));
+            ur.addHeader("Host", "test-bucket123456.s3-us-west-2.amazonaws.com");
+            ur.setResourcePath("multi-key");
+            ur.addParameter("partNumber", "1");
+            ur.addParameter("uploadId", "upload");
+            ur.setHttpMethod(HttpMethodName.PUT);
+            ur.setContent(content);
+            signer.sign(ur, credentials);
+
+            assertSame(content, ur.getContent());
+            assertEquals("16", ur.getHeaders().get(Headers.CONTENT_LENGTH));
+            assertNull(ur.getHeaders().get("x-amz-decoded-content-length"));
+            assertEquals(BinaryUtils.toHex(MessageDigest.getInstance("SHA-256")
+                    .digest("multipartContent".getBytes(StringUtils.UTF8))),
+                    ur.getHeaders().get("x-amz-content-sha256"));
+            assertEquals(16, content.getRemaining());
+        } finally {
+            content.close();
+        }
+    }
+
     @Test
     public void testHeadBucket() throws URISyntaxException {
         final AWSS3V4Signer signer = new S3SignerWithDateOverride(new Date(1431114075631L));
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveUploadControllerTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final long NANOS = 1000000000L;
+
+    @Test
+    public void testPermitsFollowLimit() {
+        final AdaptiveUploadController controller = new AdaptiveUploadController(8, MB, 4 * MB);
+        assertEquals(AdaptiveUploadController.INITIAL_CONCURRENCY,
+                controller.getConcurrencyLimit());
+        assertTrue(controller.tryAcquire());
+        assertTrue(controller.tryAcquire());
+        assertFalse(controller.tryAcquire());
+        controller.release();
+        assertEquals(1, controller.getInFlight());
+        assertTrue(controller.tryAcquire());
+    }
+
+    @Test
+    public void testAdditiveIncreaseThenPartSizeGrowth() {
+        final AdaptiveUploadController controller = new AdaptiveUploadController(3, MB, 4 * MB);
+        // a round of two successful parts
+        controller.onPartCompleted(MB, NANOS);
+        assertEquals(2, controller.getConcurrencyLimit());
+        controller.onPartCompleted(MB, NANOS);
+        assertEquals(3, controller.getConcurrencyLimit());
+        assertEquals(MB, controller.getPartSize());
+
+        // at the maximum concurrency the part size grows instead
+        completeRound(controller, 3);
+        assertEquals(3, controller.getConcurrencyLimit());
+        assertEquals(2 * MB, controller.getPartSize());
+        completeRound(controller, 3);
+        completeRound(controller, 3);
+        assertEquals(4 * MB, controller.getPartSize());
+    }
+
+    @Test
+    public void testFailureHalvesLimitAndPartSize() {
+        final AdaptiveUploadController controller = new AdaptiveUploadController(8, MB, 8 * MB);
+        for (int i = 2; i < 8; i++) {
+            completeRound(controller, i);
+        }
+        completeRound(controller, 8);
+        assertEquals(8, controller.getConcurrencyLimit());
+        assertEquals(2 * MB, controller.getPartSize());
+
+        controller.onPartFailed();
+        assertEquals(4, controller.getConcurrencyLimit());
+        assertEquals(MB, controller.getPartSize());
+        controller.onPartFailed();
+        controller.onPartFailed();
+        controller.onPartFailed();
+        assertEquals(1, controller.getConcurrencyLimit());
+        assertEquals(MB, controller.getPartSize());
+    }
+
+    @Test
+    public void testCongestionDecreasesOncePerRound() {
+        final AdaptiveUploadController controller = new AdaptiveUploadController(8, MB, 8 * MB);
+        for (int i = 2; i < 6; i++) {
+            completeRound(controller, i);
+        }
+        assertEquals(6, controller.getConcurrencyLimit());
+
+        // parts slowing down by more than twice are queuing behind each other
+        for (int i = 0; i < 5; i++) {
+            controller.onPartCompleted(MB, 3 * NANOS);
+            assertEquals(6, controller.getConcurrencyLimit());
+        }
+        controller.onPartCompleted(MB, 3 * NANOS);
+        assertEquals(3, controller.getConcurrencyLimit());
+
+        // the slower link becomes the new reference
+        completeRound(controller, 3, 3 * NANOS);
+        assertEquals(4, controller.getConcurrencyLimit());
+    }
+
+    @Test
+    public void testAcquireWaitsForRelease() throws Exception {
+        final AdaptiveUploadController controller = new AdaptiveUploadController(1, MB, MB);
+        controller.acquire();
+        final Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    controller.acquire();
+                } catch (final InterruptedException e) {
+                    // the test fails on the join below
+                }
+            }
+        };
+        waiter.start();
+        waiter.join(100);
+        assertTrue(waiter.isAlive());
+        controller.release();
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertEquals(1, controller.getInFlight());
+    }
+
+    private static void completeRound(AdaptiveUploadController controller, int parts) {
+        completeRound(controller, parts, NANOS);
+    }
+
+    private static void completeRound(AdaptiveUploadController controller, int parts,
+            long nanos) {
+        for (int i = 0; i < parts; i++) {
+            controller.onPartCompleted(MB, nanos);
+        }
+    }
+}
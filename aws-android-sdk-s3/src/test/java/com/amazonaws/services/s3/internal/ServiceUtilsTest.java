@@ -30,6 +30,7 @@ import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.SSEAlgorithm;
+import com.amazonaws.services.s3.model.SSEAwsKeyManagementParams;
 import com.amazonaws.services.s3.model.SSECustomerKey;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.util.Base64;
@@ -37,6 +38,7 @@ import com.amazonaws.util.DateUtils;
 import com.amazonaws.util.StringInputStream;
 import com.amazonaws.util.StringUtils;
 
+import org.apache.commons.io.FileUtils;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -181,6 +183,13 @@ public class ServiceUtilsTest {
 
         assertTrue(ServiceUtils.skipMd5CheckPerRequest(putObjectRequest));
 
+        putObjectRequest = new PutObjectRequest("bucket", "key",
+                File.createTempFile("test", "test2"));
+        putObjectRequest.setSSEAwsKeyManagementParams(new SSEAwsKeyManagementParams());
+
+        // the Content-MD5 of SSE-KMS uploads is still checked by Amazon S3
+        assertFalse(ServiceUtils.skipMd5CheckPerRequest(putObjectRequest));
+
         putObjectRequest = new PutObjectRequest("bucket", "key",
                 File.createTempFile("test", "test2"));
         assertFalse(ServiceUtils.skipMd5CheckPerRequest(putObjectRequest));
@@ -206,6 +215,38 @@ public class ServiceUtilsTest {
                 false);
     }
 
+    @Test
+    public void downloadObjectToFileRegionTest() throws Throwable {
+        final File file = File.createTempFile("temp1", "temp2");
+        file.deleteOnExit();
+
+        assertEquals(5, ServiceUtils.downloadObjectToFileRegion(
+                newS3Object("input"), file, 5));
+        assertEquals(5, ServiceUtils.downloadObjectToFileRegion(
+                newS3Object("test "), file, 0));
+
+        assertEquals("test input", FileUtils.readFileToString(file, "UTF-8"));
+    }
+
+    @Test(expected = AmazonClientException.class)
+    public void downloadObjectToFileRegionTruncatedTest() throws Throwable {
+        final S3Object s3Object = newS3Object("test");
+        s3Object.getObjectMetadata().setContentLength(10);
+        final File file = File.createTempFile("temp1", "temp2");
+        file.deleteOnExit();
+
+        ServiceUtils.downloadObjectToFileRegion(s3Object, file, 0);
+    }
+
+    private static S3Object newS3Object(String content) throws Throwable {
+        final S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new StringInputStream(content));
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length());
+        s3Object.setObjectMetadata(metadata);
+        return s3Object;
+    }
+
     @Test
     public void testDateParse() {
         final Date date = new Date();
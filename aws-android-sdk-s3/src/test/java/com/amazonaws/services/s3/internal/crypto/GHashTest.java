@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public class GHashTest {
+    private static final int TAG_LENGTH = 16;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Test
+    public void testSinglePieceMatchesTag() throws Exception {
+        for (final int length : new int[] {
+                0, 1, 15, 16, 17, 100, 4096
+        }) {
+            assertTag(length, length);
+        }
+    }
+
+    @Test
+    public void testPiecesMatchTag() throws Exception {
+        assertTag(1000, 64);
+        assertTag(1024, 256);
+        assertTag(1025, 16);
+        assertTag(70000, 8192);
+    }
+
+    @Test
+    public void testMultiplyByOne() {
+        final long[] out = new long[2];
+        GHash.multiply(0x0123456789abcdefL, 0x0fedcba987654321L, Long.MIN_VALUE, 0, out);
+        assertArrayEquals(new long[] {
+                0x0123456789abcdefL, 0x0fedcba987654321L
+        }, out);
+    }
+
+    /*
+     * Encrypts random data with AES/GCM and checks that the GHASH of the
+     * ciphertext, hashed in pieces of the given size, gives the same tag.
+     */
+    private void assertTag(int length, int pieceSize) throws Exception {
+        final byte[] key = new byte[32];
+        final byte[] iv = new byte[12];
+        final byte[] plaintext = new byte[length];
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        random.nextBytes(plaintext);
+        final SecretKeySpec secretKey = new SecretKeySpec(key, "AES");
+        final Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        gcm.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+        final byte[] encrypted = gcm.doFinal(plaintext);
+
+        final Cipher aes = Cipher.getInstance("AES/ECB/NoPadding");
+        aes.init(Cipher.ENCRYPT_MODE, secretKey);
+        final GHash ghash = new GHash(aes.doFinal(new byte[GHash.BLOCK_SIZE]));
+        final List<GHash.Piece> pieces = new ArrayList<GHash.Piece>();
+        for (int start = 0; start < length; start += pieceSize) {
+            final GHash.Piece piece = ghash.newPiece();
+            // feed the piece in uneven chunks to exercise the partial blocks
+            final int end = Math.min(start + pieceSize, length);
+            for (int i = start; i < end; i += 7) {
+                piece.update(encrypted, i, Math.min(7, end - i));
+            }
+            piece.finish();
+            pieces.add(piece);
+        }
+        final byte[] tag = ghash.digest(pieces, length);
+
+        final byte[] j0 = Arrays.copyOf(iv, GHash.BLOCK_SIZE);
+        j0[GHash.BLOCK_SIZE - 1] = 1;
+        final byte[] encryptedJ0 = aes.doFinal(j0);
+        for (int i = 0; i < tag.length; i++) {
+            tag[i] ^= encryptedJ0[i];
+        }
+        assertArrayEquals(Arrays.copyOfRange(encrypted, length, length + TAG_LENGTH), tag);
+    }
+}
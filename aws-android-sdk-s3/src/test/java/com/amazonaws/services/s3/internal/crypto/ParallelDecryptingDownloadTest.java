@@ -0,0 +1,218 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.internal.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.internal.S3Direct;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.ResponseHeaderOverrides;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+public class ParallelDecryptingDownloadTest {
+    private static final int PART_SIZE = 1024;
+    private static final String ETAG = "etag";
+
+    private final SecureRandom random = new SecureRandom();
+    private SecretKey key;
+    private byte[] iv;
+    private File file;
+    private S3Direct s3;
+    private byte[] stored;
+    private boolean changed;
+    private final List<GetObjectRequest> requests =
+            Collections.synchronizedList(new ArrayList<GetObjectRequest>());
+
+    @Before
+    public void setUp() throws IOException {
+        final byte[] keyBytes = new byte[32];
+        random.nextBytes(keyBytes);
+        key = new SecretKeySpec(keyBytes, "AES");
+        iv = new byte[12];
+        random.nextBytes(iv);
+        file = File.createTempFile("parallel", ".dat");
+        s3 = mock(S3Direct.class);
+        when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation) {
+                return range((GetObjectRequest) invocation.getArguments()[0]);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadDecryptsAllRanges() throws Exception {
+        // one range, several, a partial last block and a tag-only tail
+        for (final int length : new int[] {
+                0, 100, PART_SIZE, 3 * PART_SIZE + 5, 4 * PART_SIZE - 8
+        }) {
+            final byte[] plaintext = new byte[length];
+            random.nextBytes(plaintext);
+            stored = encrypt(plaintext);
+            final ObjectMetadata metadata = download(3);
+            assertEquals(ETAG, metadata.getETag());
+            assertEquals(stored.length, metadata.getContentLength());
+            assertNull(metadata.getContentRange());
+            assertArrayEquals(plaintext, read(file));
+        }
+    }
+
+    @Test
+    public void testRangesCarryTheRequestOptions() throws Exception {
+        final byte[] plaintext = new byte[3 * PART_SIZE];
+        random.nextBytes(plaintext);
+        stored = encrypt(plaintext);
+        final ResponseHeaderOverrides overrides = new ResponseHeaderOverrides()
+                .withContentType("text/plain");
+        final Date since = new Date(0);
+        final GetObjectRequest req = new GetObjectRequest("bucket", "key")
+                .withMatchingETagConstraint(ETAG)
+                .withModifiedSinceConstraint(since)
+                .withResponseHeaders(overrides);
+        download(req, 2);
+        assertArrayEquals(plaintext, read(file));
+
+        final GetObjectRequest first = requests.get(0);
+        assertEquals(Arrays.asList(ETAG), first.getMatchingETagConstraints());
+        assertEquals(since, first.getModifiedSinceConstraint());
+        assertSame(overrides, first.getResponseHeaders());
+        for (final GetObjectRequest rangeReq : requests.subList(1, requests.size())) {
+            assertEquals(Arrays.asList(ETAG), rangeReq.getMatchingETagConstraints());
+            assertNull(rangeReq.getModifiedSinceConstraint());
+            assertSame(overrides, rangeReq.getResponseHeaders());
+        }
+    }
+
+    @Test
+    public void testTamperedCiphertextDeletesFile() throws Exception {
+        final byte[] plaintext = new byte[5 * PART_SIZE];
+        random.nextBytes(plaintext);
+        stored = encrypt(plaintext);
+        stored[3 * PART_SIZE + 7] ^= 1;
+        try {
+            download(2);
+            fail("expected the tag mismatch");
+        } catch (final SecurityException e) {
+            assertFalse(file.exists());
+        }
+    }
+
+    @Test
+    public void testChangedObjectFailsDownload() throws Exception {
+        stored = encrypt(new byte[3 * PART_SIZE]);
+        changed = true;
+        try {
+            download(2);
+            fail("expected the download to fail");
+        } catch (final AmazonClientException e) {
+            assertFalse(file.exists());
+        }
+    }
+
+    private ObjectMetadata download(int threads) throws Exception {
+        return download(new GetObjectRequest("bucket", "key"), threads);
+    }
+
+    private ObjectMetadata download(GetObjectRequest req, int threads) throws Exception {
+        final Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        gcm.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        final CipherLite cipherLite = new GCMCipherLite(gcm, key, Cipher.DECRYPT_MODE);
+        final S3Object first = s3.getObject(
+                ParallelDecryptingDownload.firstRangeRequest(req, PART_SIZE));
+        return new ParallelDecryptingDownload(s3, req, cipherLite, PART_SIZE, threads)
+                .download(first, file);
+    }
+
+    private byte[] encrypt(byte[] plaintext) throws Exception {
+        final Cipher gcm = Cipher.getInstance("AES/GCM/NoPadding");
+        gcm.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        return gcm.doFinal(plaintext);
+    }
+
+    /* Serves a range of the stored object like S3 would. */
+    private S3Object range(GetObjectRequest req) {
+        requests.add(req);
+        final long[] range = req.getRange();
+        if (changed && range[0] > 0) {
+            // the ETag constraint isn't met
+            return null;
+        }
+        final int start = (int) range[0];
+        final int end = (int) Math.min(range[1], stored.length - 1);
+        final ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setHeader(Headers.CONTENT_RANGE,
+                "bytes " + start + "-" + end + "/" + stored.length);
+        metadata.setHeader(Headers.ETAG, ETAG);
+        final S3Object object = new S3Object();
+        object.setObjectMetadata(metadata);
+        object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(
+                Arrays.copyOfRange(stored, start, end + 1))));
+        return object;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            int off = 0;
+            while (off < bytes.length) {
+                off += in.read(bytes, off, bytes.length - off);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
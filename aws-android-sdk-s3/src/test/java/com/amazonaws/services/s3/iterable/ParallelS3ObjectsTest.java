@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.iterable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+public class ParallelS3ObjectsTest {
+
+    private AmazonS3 s3;
+    private final List<String> keys = new ArrayList<String>();
+    private volatile String failingPrefix;
+
+    @Before
+    public void setUp() {
+        final TreeSet<String> sorted = new TreeSet<String>();
+        sorted.add("a.txt");
+        sorted.add("m.txt");
+        sorted.add("z.txt");
+        for (int dir = 0; dir < 12; dir++) {
+            for (int file = 0; file < dir * 3; file++) {
+                sorted.add("dir" + (char) ('a' + dir) + "/file" + (100 + file));
+            }
+        }
+        keys.addAll(sorted);
+
+        s3 = mock(AmazonS3.class);
+        when(s3.listObjects(any(ListObjectsRequest.class))).thenAnswer(
+                new Answer<ObjectListing>() {
+                    @Override
+                    public ObjectListing answer(InvocationOnMock invocation) {
+                        return list((ListObjectsRequest) invocation.getArguments()[0]);
+                    }
+                });
+    }
+
+    @Test
+    public void testOrderedReturnsAllKeysInOrder() {
+        final ParallelS3Objects objects = ParallelS3Objects.inBucket(s3, "bucket")
+                .withBatchSize(4).withParallelism(3).withPrefetchPages(1);
+        assertEquals(keys, collect(objects));
+    }
+
+    @Test
+    public void testUnorderedReturnsAllKeys() {
+        final ParallelS3Objects objects = ParallelS3Objects.inBucket(s3, "bucket")
+                .withBatchSize(5).withParallelism(4).withOrderedResults(false);
+        final List<String> listed = collect(objects);
+        Collections.sort(listed);
+        assertEquals(keys, listed);
+    }
+
+    @Test
+    public void testWithPrefix() {
+        final ParallelS3Objects objects = ParallelS3Objects.withPrefix(s3, "bucket", "dirc")
+                .withBatchSize(2);
+        final List<String> expected = new ArrayList<String>();
+        for (final String key : keys) {
+            if (key.startsWith("dirc")) {
+                expected.add(key);
+            }
+        }
+        assertEquals(expected, collect(objects));
+    }
+
+    @Test
+    public void testFailureIsThrownToConsumer() {
+        failingPrefix = "dirk/";
+        final ParallelS3Objects objects = ParallelS3Objects.inBucket(s3, "bucket")
+                .withBatchSize(3).withParallelism(2);
+        try {
+            collect(objects);
+            fail("expected the listing failure");
+        } catch (final AmazonServiceException e) {
+            assertEquals("listing failed", e.getErrorMessage());
+        }
+    }
+
+    @Test
+    public void testCloseStopsIteration() {
+        final ParallelS3Objects.ObjectSummaryIterator iter = ParallelS3Objects
+                .inBucket(s3, "bucket").withBatchSize(1).iterator();
+        assertTrue(iter.hasNext());
+        final S3ObjectSummary first = iter.next();
+        assertEquals("a.txt", first.getKey());
+        iter.close();
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void testCompareKeysUsesCodePointOrder() {
+        assertTrue(ParallelS3Objects.compareKeys("a", "b") < 0);
+        assertTrue(ParallelS3Objects.compareKeys("ab", "a") > 0);
+        assertEquals(0, ParallelS3Objects.compareKeys("same", "same"));
+        // U+1F600 sorts after U+FF5E in UTF-8, but not in UTF-16
+        assertTrue("\uD83D\uDE00".compareTo("\uFF5E") < 0);
+        assertTrue(ParallelS3Objects.compareKeys("\uD83D\uDE00", "\uFF5E") > 0);
+    }
+
+    private static List<String> collect(ParallelS3Objects objects) {
+        final List<String> listed = new ArrayList<String>();
+        for (final S3ObjectSummary summary : objects) {
+            listed.add(summary.getKey());
+        }
+        return listed;
+    }
+
+    /* Lists the keys like S3 would, rolling them up on the delimiter. */
+    private ObjectListing list(ListObjectsRequest req) {
+        final String prefix = req.getPrefix() == null ? "" : req.getPrefix();
+        if (prefix.equals(failingPrefix)) {
+            final AmazonServiceException e = new AmazonServiceException("listing failed");
+            e.setErrorMessage("listing failed");
+            throw e;
+        }
+        final int maxKeys = req.getMaxKeys() == null ? 1000 : req.getMaxKeys();
+        final ObjectListing listing = new ObjectListing();
+        listing.setBucketName(req.getBucketName());
+        listing.setPrefix(req.getPrefix());
+        listing.setDelimiter(req.getDelimiter());
+        listing.setMaxKeys(maxKeys);
+        int count = 0;
+        String last = null;
+        for (final String key : keys) {
+            if (!key.startsWith(prefix)
+                    || (req.getMarker() != null && key.compareTo(req.getMarker()) <= 0)) {
+                continue;
+            }
+            String rolledUp = null;
+            if (req.getDelimiter() != null) {
+                final int end = key.indexOf(req.getDelimiter(), prefix.length());
+                if (end >= 0) {
+                    rolledUp = key.substring(0, end + req.getDelimiter().length());
+                }
+            }
+            if (rolledUp != null && rolledUp.equals(last)) {
+                continue;
+            }
+            if (count == maxKeys) {
+                listing.setTruncated(true);
+                listing.setNextMarker(last);
+                break;
+            }
+            if (rolledUp != null) {
+                listing.getCommonPrefixes().add(rolledUp);
+                last = rolledUp;
+            } else {
+                final S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setBucketName(req.getBucketName());
+                summary.setKey(key);
+                listing.getObjectSummaries().add(summary);
+                last = key;
+            }
+            count++;
+        }
+        return listing;
+    }
+}
@@ -30,6 +30,7 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3ObjectSummaryListener;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -148,4 +149,27 @@ public abstract class S3ObjectsTestCommon {
         assertFalse(iter.hasNext());
     }
 
+    @Test
+    public void testForEachObjectSummaryStreamsAllPages() throws Exception {
+        S3ObjectSummaryListener listener = mock(S3ObjectSummaryListener.class);
+        ObjectListing firstPage = new ObjectListing();
+        firstPage.setBucketName(s3Objects.getBucketName());
+        firstPage.setPrefix(s3Objects.getPrefix());
+        firstPage.setTruncated(true);
+        firstPage.setNextMarker("marker");
+        ObjectListing secondPage = new ObjectListing();
+        when(s3.listObjects(any(ListObjectsRequest.class), any(S3ObjectSummaryListener.class)))
+                .thenReturn(firstPage, secondPage);
+
+        s3Objects.forEachObjectSummary(listener);
+
+        ArgumentCaptor<ListObjectsRequest> listCaptor = ArgumentCaptor
+                .forClass(ListObjectsRequest.class);
+        verify(s3, times(2)).listObjects(listCaptor.capture(), any(S3ObjectSummaryListener.class));
+        assertEquals(s3Objects.getBucketName(), listCaptor.getAllValues().get(0).getBucketName());
+        assertNull(listCaptor.getAllValues().get(0).getMarker());
+        assertEquals(s3Objects.getBucketName(), listCaptor.getAllValues().get(1).getBucketName());
+        assertEquals(s3Objects.getPrefix(), listCaptor.getAllValues().get(1).getPrefix());
+        assertEquals("marker", listCaptor.getAllValues().get(1).getMarker());
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2010-2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazonaws.services.s3.model.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3ObjectSummaryListener;
+import com.amazonaws.util.StringUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class XmlResponsesSaxParserTest {
+
+    private static final String LISTING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+            + "<Name>bucket</Name><Prefix></Prefix><Marker></Marker>"
+            + "<MaxKeys>2</MaxKeys><IsTruncated>true</IsTruncated>"
+            + "<Contents><Key>first</Key><ETag>\"e1\"</ETag><Size>1</Size>"
+            + "<StorageClass>STANDARD</StorageClass></Contents>"
+            + "<Contents><Key>second\rkey</Key><ETag>\"e2\"</ETag><Size>2</Size>"
+            + "<StorageClass>STANDARD</StorageClass></Contents>"
+            + "</ListBucketResult>";
+
+    @Test
+    public void testListObjectsCollectsSummaries() throws Exception {
+        ObjectListing listing = new XmlResponsesSaxParser()
+                .parseListBucketObjectsResponse(stream(LISTING), false)
+                .getObjectListing();
+        assertEquals(2, listing.getObjectSummaries().size());
+        assertEquals("second\rkey", listing.getObjectSummaries().get(1).getKey());
+        assertEquals(2L, listing.getObjectSummaries().get(1).getSize());
+        assertEquals("second\rkey", listing.getNextMarker());
+    }
+
+    @Test
+    public void testListObjectsStreamsSummariesToListener() throws Exception {
+        final List<S3ObjectSummary> summaries = new ArrayList<S3ObjectSummary>();
+        ObjectListing listing = new XmlResponsesSaxParser()
+                .parseListBucketObjectsResponse(stream(LISTING), false,
+                        new S3ObjectSummaryListener() {
+                            @Override
+                            public void onObjectSummary(S3ObjectSummary summary) {
+                                summaries.add(summary);
+                            }
+                        })
+                .getObjectListing();
+        assertTrue(listing.getObjectSummaries().isEmpty());
+        assertEquals(2, summaries.size());
+        assertEquals("first", summaries.get(0).getKey());
+        assertEquals("bucket", summaries.get(0).getBucketName());
+        assertEquals("e1", summaries.get(0).getETag());
+        assertEquals("second\rkey", summaries.get(1).getKey());
+        assertTrue(listing.isTruncated());
+        assertEquals("second\rkey", listing.getNextMarker());
+    }
+
+    @Test
+    public void testCarriageReturnEscapingReader() throws Exception {
+        StringBuilder document = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            document.append("a\r\nb\r");
+        }
+        CarriageReturnEscapingReader reader = new CarriageReturnEscapingReader(
+                new StringReader(document.toString()));
+        StringBuilder escaped = new StringBuilder();
+        char[] buffer = new char[7];
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+            escaped.append(buffer, 0, read);
+        }
+        assertEquals(document.toString().replaceAll("\r", "&#013;"), escaped.toString());
+    }
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StringUtils.UTF8));
+    }
+}